@@ -8,15 +8,17 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.LockMetrics;
 
 /** {@link SingleLockConcurrentCertainBookStore} implements the {@link BookStore} and
  * {@link StockManager} functionalities.
@@ -26,10 +28,16 @@ import com.acertainbookstore.utils.BookStoreUtility;
  */
 public class SingleLockConcurrentCertainBookStore implements BookStore, StockManager {
 	
-	private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+	private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
     private final Lock writeLock = readWriteLock.writeLock();
     private final Lock readLock = readWriteLock.readLock();
 
+	/** The number of threads waiting for the lock. */
+	private final IntSupplier lockQueueLength = readWriteLock::getQueueLength;
+
+	/** The lock contention metrics. */
+	private final LockMetrics lockMetrics = new LockMetrics(SingleLockConcurrentCertainBookStore.class.getSimpleName());
+
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
 	private Map<Integer, BookStoreBook> bookMap = null;
 
@@ -41,6 +49,15 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 		bookMap = new HashMap<>();
 	}
 
+	/**
+	 * Gets the lock contention metrics of the store.
+	 *
+	 * @return the lock metrics
+	 */
+	public LockMetrics getLockMetrics() {
+		return lockMetrics;
+	}
+
 	private void validate(StockBook book) throws BookStoreException {
 		int isbn = book.getISBN();
 		String bookTitle = book.getTitle();
@@ -106,7 +123,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
 	 */
 	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.ADDBOOKS);
 		try {
 			if (bookSet == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -122,7 +139,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				bookMap.put(isbn, new BookStoreBook(book));
 			}
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.ADDBOOKS);
 		} 
 	}
 
@@ -133,7 +150,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
 	 */
 	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.ADDCOPIES);
 		try {
 			int isbn;
 			int numCopies;
@@ -156,7 +173,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				book.addCopies(numCopies);
 			}
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.ADDCOPIES);
 		}
 	}
 
@@ -166,13 +183,13 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
 	 */
 	public List<StockBook> getBooks() {
-		readLock.lock();
+		long acquiredAt = lockMetrics.lock(readLock, lockQueueLength, BookStoreMessageTag.LISTBOOKS);
 		try {
 			Collection<BookStoreBook> bookMapValues = bookMap.values();
 
 			return bookMapValues.stream().map(book -> book.immutableStockBook()).collect(Collectors.toList());
 		} finally {
-			readLock.unlock();
+			lockMetrics.unlock(readLock, acquiredAt, BookStoreMessageTag.LISTBOOKS);
 		}
 	}
 
@@ -184,7 +201,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * .Set)
 	 */
 	public void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.UPDATEEDITORPICKS);
 		try {
 			// Check that all ISBNs that we add/remove are there first.
 			if (editorPicks == null) {
@@ -201,7 +218,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
 			}
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.UPDATEEDITORPICKS);
 		}
 	}
 
@@ -211,7 +228,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
 	 */
 	public void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.BUYBOOKS);
 		try {
 			if (bookCopiesToBuy == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -254,7 +271,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				book.buyCopies(bookCopyToBuy.getNumCopies());
 			}
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.BUYBOOKS);
 		}
 	}
 
@@ -266,7 +283,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * Set)
 	 */
 	public List<StockBook> getBooksByISBN(Set<Integer> isbnSet) throws BookStoreException {
-		readLock.lock();
+		long acquiredAt = lockMetrics.lock(readLock, lockQueueLength, BookStoreMessageTag.GETSTOCKBOOKSBYISBN);
 		try {
 			if (isbnSet == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -278,7 +295,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 
 			return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableStockBook()).collect(Collectors.toList());
 		} finally {
-			readLock.unlock();
+			lockMetrics.unlock(readLock, acquiredAt, BookStoreMessageTag.GETSTOCKBOOKSBYISBN);
 		}
 	}
 
@@ -288,7 +305,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
 	 */
 	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
-		readLock.lock();
+		long acquiredAt = lockMetrics.lock(readLock, lockQueueLength, BookStoreMessageTag.GETBOOKS);
 		try {
 			if (isbnSet == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -301,7 +318,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 
 			return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableBook()).collect(Collectors.toList());
 		} finally {
-			readLock.unlock();
+			lockMetrics.unlock(readLock, acquiredAt, BookStoreMessageTag.GETBOOKS);
 		}
 	}
 
@@ -311,7 +328,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
 	 */
 	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
-		readLock.lock();
+		long acquiredAt = lockMetrics.lock(readLock, lockQueueLength, BookStoreMessageTag.GETEDITORPICKS);
 		try {
 			if (numBooks < 0) {
 				throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
@@ -346,7 +363,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 			return tobePicked.stream().map(index -> listAllEditorPicks.get(index).immutableBook())
 					.collect(Collectors.toList());
 		} finally {
-			readLock.unlock();
+			lockMetrics.unlock(readLock, acquiredAt, BookStoreMessageTag.GETEDITORPICKS);
 		}
 	}
 
@@ -386,11 +403,11 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
 	public void removeAllBooks() throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.REMOVEALLBOOKS);
 		try {
 			bookMap.clear();
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.REMOVEALLBOOKS);
 		}
 	}
 
@@ -401,7 +418,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
 	 */
 	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
-		writeLock.lock();
+		long acquiredAt = lockMetrics.lock(writeLock, lockQueueLength, BookStoreMessageTag.REMOVEBOOKS);
 		try {
 			if (isbnSet == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -421,7 +438,7 @@ public class SingleLockConcurrentCertainBookStore implements BookStore, StockMan
 				bookMap.remove(isbn);
 			}
 		} finally {
-			writeLock.unlock();
+			lockMetrics.unlock(writeLock, acquiredAt, BookStoreMessageTag.REMOVEBOOKS);
 		}
 	}
 }
@@ -1,5 +1,6 @@
 package com.acertainbookstore.business;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -7,16 +8,19 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.LockMetrics;
 
 /**
  * {@link TwoLevelLockingConcurrentCertainBookStore} implements the
@@ -27,13 +31,20 @@ import com.acertainbookstore.utils.BookStoreUtility;
  */
 public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, StockManager {
 
-	private ReadWriteLock rwLock = new ReentrantReadWriteLock();
+	private ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
 	private Lock exclusiveLock = rwLock.writeLock();
 	private Lock sharedLock = rwLock.readLock();
 
+	/** The number of threads waiting for the global lock. */
+	private final IntSupplier lockQueueLength = rwLock::getQueueLength;
+
+	/** The lock contention metrics. */
+	private final LockMetrics lockMetrics = new LockMetrics(
+			TwoLevelLockingConcurrentCertainBookStore.class.getSimpleName());
+
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
 	private Map<Integer, BookStoreBook> bookMap = null;
-	private Map<Integer, ReadWriteLock> bookLocks;
+	private Map<Integer, ReentrantReadWriteLock> bookLocks;
 
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
@@ -44,21 +55,36 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		bookLocks = new HashMap<>();
 	}
 
-	private void getLocalLock(int isbn, boolean readLock) throws BookStoreException {
-		if (!bookLocks.containsKey(isbn)) {
+	/**
+	 * Gets the lock contention metrics of the store. The waits for the global
+	 * lock and for the book locks are recorded per operation, those for the
+	 * book locks also per ISBN, while the hold time of an operation spans from
+	 * its first lock until all of them are released.
+	 *
+	 * @return the lock metrics
+	 */
+	public LockMetrics getLockMetrics() {
+		return lockMetrics;
+	}
+
+	private long getLocalLock(int isbn, boolean readLock, BookStoreMessageTag operation, long acquiredAt)
+			throws BookStoreException {
+		// The book locks are looked up under the global lock, as the stock
+		// manager adds and removes them under it
+		long lockedAt = lockMetrics.lock(sharedLock, lockQueueLength, operation);
+		ReentrantReadWriteLock lock = bookLocks.get(isbn);
+		if (lock == null) {
+			sharedLock.unlock();
 			throw new BookStoreException("ISBN" + isbn + BookStoreConstants.NOT_AVAILABLE);
 		}
-		ReadWriteLock lock = bookLocks.get(isbn);
-		sharedLock.lock();
-		if (readLock) {
-			lock.readLock().lock();
-		} else {
-			lock.writeLock().lock();
-		}
+		lockMetrics.lock(readLock ? lock.readLock() : lock.writeLock(), lock::getQueueLength, operation, isbn);
+
+		// Keep the timestamp of the first lock, the hold time spans all of them.
+		return acquiredAt == 0L ? lockedAt : acquiredAt;
 	}
 
 	private void releaseLocalLock(int isbn, boolean readLock) throws BookStoreException {
-		ReadWriteLock lock = bookLocks.get(isbn);
+		ReentrantReadWriteLock lock = bookLocks.get(isbn);
 		if(lock==null) {
 			throw new BookStoreException(BookStoreConstants.ISBN + isbn + BookStoreConstants.INVALID);
 		}
@@ -70,6 +96,40 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		sharedLock.unlock();
 	}
 
+	/**
+	 * Locks the books in ascending ISBN order, so that two operations never
+	 * wait for the locks of each other.
+	 *
+	 * @param isbns
+	 *            the ISBNs of the books
+	 * @param readLock
+	 *            whether to take the read locks rather than the write locks
+	 * @param operation
+	 *            the operation
+	 * @param locked
+	 *            the ISBNs locked so far, to be released by
+	 *            {@link #releaseLocalLocks(List, boolean)} even if a book is
+	 *            missing
+	 * @return the time the first lock was acquired
+	 * @throws BookStoreException
+	 *             if a book is missing
+	 */
+	private long getLocalLocks(Collection<Integer> isbns, boolean readLock, BookStoreMessageTag operation,
+			List<Integer> locked) throws BookStoreException {
+		long acquiredAt = 0L;
+		for (int isbn : new TreeSet<>(isbns)) {
+			acquiredAt = getLocalLock(isbn, readLock, operation, acquiredAt);
+			locked.add(isbn);
+		}
+		return acquiredAt;
+	}
+
+	private void releaseLocalLocks(List<Integer> locked, boolean readLock) throws BookStoreException {
+		for (int isbn : locked) {
+			releaseLocalLock(isbn, readLock);
+		}
+	}
+
 	private void validate(StockBook book) throws BookStoreException {
 		int isbn = book.getISBN();
 		String bookTitle = book.getTitle();
@@ -137,7 +197,7 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
-		exclusiveLock.lock();
+		long acquiredAt = lockMetrics.lock(exclusiveLock, lockQueueLength, BookStoreMessageTag.ADDBOOKS);
 		try {
 
 			// Check if all are there
@@ -151,7 +211,7 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				bookLocks.put(isbn, new ReentrantReadWriteLock());
 			}
 		} finally {
-			exclusiveLock.unlock();
+			lockMetrics.unlock(exclusiveLock, acquiredAt, BookStoreMessageTag.ADDBOOKS);
 		}
 	}
 
@@ -167,9 +227,13 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		if (bookCopiesSet == null) {
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
+		long acquiredAt = 0L;
+		List<Integer> locked = new ArrayList<>();
 		try {
+			acquiredAt = getLocalLocks(
+					bookCopiesSet.stream().map(BookCopy::getISBN).collect(Collectors.toList()), false,
+					BookStoreMessageTag.ADDCOPIES, locked);
 			for (BookCopy bookCopy : bookCopiesSet) {
-				getLocalLock(bookCopy.getISBN(), false);
 				validate(bookCopy);
 			}
 
@@ -183,9 +247,8 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				book.addCopies(numCopies);
 			}
 		} finally {
-			for (BookCopy bookCopy : bookCopiesSet) {
-				releaseLocalLock(bookCopy.getISBN(), false);
-			}
+			lockMetrics.recordHoldTime(BookStoreMessageTag.ADDCOPIES, acquiredAt);
+			releaseLocalLocks(locked, false);
 		}
 	}
 
@@ -196,17 +259,15 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 */
 	public List<StockBook> getBooks() throws BookStoreException {
 
-		Collection<BookStoreBook> bookMapValues = bookMap.values();
+		List<Integer> locked = new ArrayList<>();
+		long acquiredAt = lockMetrics.lock(sharedLock, lockQueueLength, BookStoreMessageTag.LISTBOOKS);
 		try {
-			for (BookStoreBook book : bookMapValues) {
-				getLocalLock(book.getISBN(), true);
-			}
+			getLocalLocks(new ArrayList<>(bookMap.keySet()), true, BookStoreMessageTag.LISTBOOKS, locked);
 
-			return bookMapValues.stream().map(book -> book.immutableStockBook()).collect(Collectors.toList());
+			return locked.stream().map(isbn -> bookMap.get(isbn).immutableStockBook()).collect(Collectors.toList());
 		} finally {
-			for (BookStoreBook book : bookMapValues) {
-				releaseLocalLock(book.getISBN(), true);
-			}
+			releaseLocalLocks(locked, true);
+			lockMetrics.unlock(sharedLock, acquiredAt, BookStoreMessageTag.LISTBOOKS);
 		}
 
 	}
@@ -227,9 +288,13 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 
 		int isbnValue;
 
+		long acquiredAt = 0L;
+		List<Integer> locked = new ArrayList<>();
 		try {
+			acquiredAt = getLocalLocks(
+					editorPicks.stream().map(BookEditorPick::getISBN).collect(Collectors.toList()), false,
+					BookStoreMessageTag.UPDATEEDITORPICKS, locked);
 			for (BookEditorPick editorPickArg : editorPicks) {
-				getLocalLock(editorPickArg.getISBN(), false);
 				validate(editorPickArg);
 			}
 
@@ -237,9 +302,8 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
 			}
 		} finally {
-			for (BookEditorPick editorPick : editorPicks) {
-				releaseLocalLock(editorPick.getISBN(), false);
-			}
+			lockMetrics.recordHoldTime(BookStoreMessageTag.UPDATEEDITORPICKS, acquiredAt);
+			releaseLocalLocks(locked, false);
 		}
 	}
 
@@ -259,10 +323,14 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		Boolean saleMiss = false;
 
 		Map<Integer, Integer> salesMisses = new HashMap<>();
+		long acquiredAt = 0L;
+		List<Integer> locked = new ArrayList<>();
 		try {
+			acquiredAt = getLocalLocks(
+					bookCopiesToBuy.stream().map(BookCopy::getISBN).collect(Collectors.toList()), false,
+					BookStoreMessageTag.BUYBOOKS, locked);
 			for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
 				isbn = bookCopyToBuy.getISBN();
-				getLocalLock(isbn, false);
 				validate(bookCopyToBuy);
 
 				book = bookMap.get(isbn);
@@ -290,9 +358,8 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				book.buyCopies(bookCopyToBuy.getNumCopies());
 			}
 		} finally {
-			for (BookCopy bookCopy : bookCopiesToBuy) {
-				releaseLocalLock(bookCopy.getISBN(), false);
-			}
+			lockMetrics.recordHoldTime(BookStoreMessageTag.BUYBOOKS, acquiredAt);
+			releaseLocalLocks(locked, false);
 		}
 	}
 
@@ -306,17 +373,18 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 		if (isbnSet == null) {
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
+		long acquiredAt = 0L;
+		List<Integer> locked = new ArrayList<>();
 		try {
+			acquiredAt = getLocalLocks(isbnSet, true, BookStoreMessageTag.GETSTOCKBOOKSBYISBN, locked);
 			for (Integer ISBN : isbnSet) {
-				getLocalLock(ISBN, true);
 				validateISBNInStock(ISBN);
 			}
 
 			return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableStockBook()).collect(Collectors.toList());
 		} finally {
-			for (Integer ISBN : isbnSet) {
-				releaseLocalLock(ISBN, true);
-			}
+			lockMetrics.recordHoldTime(BookStoreMessageTag.GETSTOCKBOOKSBYISBN, acquiredAt);
+			releaseLocalLocks(locked, true);
 		}
 	}
 
@@ -330,18 +398,19 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
 
+		long acquiredAt = 0L;
+		List<Integer> locked = new ArrayList<>();
 		try {
 			// Check that all ISBNs that we rate are there to start with.
+			acquiredAt = getLocalLocks(isbnSet, true, BookStoreMessageTag.GETBOOKS, locked);
 			for (Integer ISBN : isbnSet) {
-				getLocalLock(ISBN, true);
 				validateISBNInStock(ISBN);
 			}
 
 			return isbnSet.stream().map(isbn -> bookMap.get(isbn).immutableBook()).collect(Collectors.toList());
 		} finally {
-			for (Integer ISBN : isbnSet) {
-				releaseLocalLock(ISBN, true);
-			}
+			lockMetrics.recordHoldTime(BookStoreMessageTag.GETBOOKS, acquiredAt);
+			releaseLocalLocks(locked, true);
 		}
 	}
 
@@ -355,13 +424,14 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
 		}
 
+		List<Integer> locked = new ArrayList<>();
+		long acquiredAt = lockMetrics.lock(sharedLock, lockQueueLength, BookStoreMessageTag.GETEDITORPICKS);
 		try {
 			List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream().map(pair -> pair.getValue())
 					.filter(book -> book.isEditorPick()).collect(Collectors.toList());
 
-			for (Book book : listAllEditorPicks) {
-				getLocalLock(book.getISBN(), true);
-			}
+			getLocalLocks(listAllEditorPicks.stream().map(Book::getISBN).collect(Collectors.toList()), true,
+					BookStoreMessageTag.GETEDITORPICKS, locked);
 
 			// Find numBooks random indices of books that will be picked.
 			Random rand = new Random();
@@ -389,9 +459,8 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 			return tobePicked.stream().map(index -> listAllEditorPicks.get(index).immutableBook())
 					.collect(Collectors.toList());
 		} finally {
-			for (Book book : bookMap.values()) {
-				releaseLocalLock(book.getISBN(), true);
-			}
+			releaseLocalLocks(locked, true);
+			lockMetrics.unlock(sharedLock, acquiredAt, BookStoreMessageTag.GETEDITORPICKS);
 		}
 	}
 
@@ -431,12 +500,12 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
 	public void removeAllBooks() throws BookStoreException {
-		exclusiveLock.lock();
+		long acquiredAt = lockMetrics.lock(exclusiveLock, lockQueueLength, BookStoreMessageTag.REMOVEALLBOOKS);
 		try {
 			bookMap.clear();
 			bookLocks.clear();
 		} finally {
-			exclusiveLock.unlock();
+			lockMetrics.unlock(exclusiveLock, acquiredAt, BookStoreMessageTag.REMOVEALLBOOKS);
 		}
 	}
 
@@ -446,7 +515,7 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 	 * @see com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
 	 */
 	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
-		exclusiveLock.lock();
+		long acquiredAt = lockMetrics.lock(exclusiveLock, lockQueueLength, BookStoreMessageTag.REMOVEBOOKS);
 		try {
 			if (isbnSet == null) {
 				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
@@ -466,7 +535,7 @@ public class TwoLevelLockingConcurrentCertainBookStore implements BookStore, Sto
 				bookMap.remove(isbn);
 			}
 		} finally {
-			exclusiveLock.unlock();
+			lockMetrics.unlock(exclusiveLock, acquiredAt, BookStoreMessageTag.REMOVEBOOKS);
 		}
 
 	}
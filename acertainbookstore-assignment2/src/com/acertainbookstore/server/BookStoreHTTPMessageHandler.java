@@ -25,6 +25,7 @@ import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreResponse;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.LockMetrics;
 import com.esotericsoftware.kryo.io.Input;
 
 /**
@@ -44,6 +45,9 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	/** The stock manager. */
 	private StockManager stockManager = null;
 
+	/** The lock metrics of the store, if it is instrumented. */
+	private LockMetrics lockMetrics = null;
+
 	/** The serializer. */
 	private static ThreadLocal<BookStoreSerializer> serializer;
 
@@ -54,8 +58,24 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 *            the book store
 	 */
 	public BookStoreHTTPMessageHandler(BookStore bookStore, StockManager stockManager) {
+		this(bookStore, stockManager, null);
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreHTTPMessageHandler} which also serves
+	 * the lock metrics of the store.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param stockManager
+	 *            the stock manager
+	 * @param lockMetrics
+	 *            the lock metrics
+	 */
+	public BookStoreHTTPMessageHandler(BookStore bookStore, StockManager stockManager, LockMetrics lockMetrics) {
 		this.bookStore = bookStore;
 		this.stockManager = stockManager;
+		this.lockMetrics = lockMetrics;
 
 		// Setup the type of serializer.
 		if (BookStoreConstants.BINARY_SERIALIZATION) {
@@ -134,6 +154,10 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 				getStockBooksByISBN(request, response);
 				break;
 
+			case METRICS:
+				metrics(response);
+				break;
+
 			default:
 				System.err.println("Unsupported message tag.");
 				break;
@@ -144,6 +168,20 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 		baseRequest.setHandled(true);
 	}
 
+	/**
+	 * Writes the lock metrics of the store as plain text.
+	 *
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void metrics(HttpServletResponse response) throws IOException {
+		String report = (lockMetrics != null) ? lockMetrics.getReport() : "Lock metrics are not available.\n";
+		response.setContentType("text/plain; charset=utf-8");
+		response.getOutputStream().write(report.getBytes(StandardCharsets.UTF_8));
+	}
+
 	/**
 	 * Gets the stock books by ISBN.
 	 *
@@ -5,6 +5,7 @@ import com.acertainbookstore.business.TwoLevelLockingConcurrentCertainBookStore;
 
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreFlightRecorder;
 
 /**
  * Starts the {@link BookStoreHTTPServer} that the clients will communicate
@@ -36,6 +37,7 @@ public class BookStoreHTTPServer {
 	 *            the arguments
 	 */
 	public static void main(String[] args) {
+		BookStoreFlightRecorder.startFromProperties(BookStoreHTTPServer.class.getSimpleName());
 		int listenOnPort = DEFAULT_PORT;
 		
 		BookStoreHTTPMessageHandler handler = null;
@@ -44,10 +46,12 @@ public class BookStoreHTTPServer {
 			SingleLockConcurrentCertainBookStore bookStore = new SingleLockConcurrentCertainBookStore();
 			/* we pass bookStore to BookStoreHTTPMessageHandler constructor twice, 
 			 * since it implements both interfaces: BookStore and StockManager */
-			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
+			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore, bookStore.getLockMetrics());
+			bookStore.getLockMetrics().register();
 		} else {
 			TwoLevelLockingConcurrentCertainBookStore bookStore = new TwoLevelLockingConcurrentCertainBookStore();
-			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore);
+			handler = new BookStoreHTTPMessageHandler(bookStore, bookStore, bookStore.getLockMetrics());
+			bookStore.getLockMetrics().register();
 		}		
 		
 		String serverPortString = System.getProperty(BookStoreConstants.PROPERTY_KEY_SERVER_PORT);
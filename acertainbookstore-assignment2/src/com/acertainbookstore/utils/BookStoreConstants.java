@@ -63,6 +63,12 @@ public final class BookStoreConstants {
 	/** The Constant PROPERTY_KEY_SERVER_PORT. */
 	public static final String PROPERTY_KEY_SERVER_PORT = "port";
 
+	/** The Constant PROPERTY_KEY_LOCK_METRICS enables the lock instrumentation. */
+	public static final String PROPERTY_KEY_LOCK_METRICS = "lockmetrics";
+
+	/** The Constant PROPERTY_KEY_JFR starts a flight recording, to the file it names if any. */
+	public static final String PROPERTY_KEY_JFR = "bookstore.jfr";
+
 	/** The Constant EPSILON used for floating point number comparison */
 	public static final float EPSILON = 0.000001F;
 
@@ -0,0 +1,133 @@
+package com.acertainbookstore.utils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * {@link BookStoreFlightRecorder} starts the flight recordings of the
+ * bookstore programs, and tells the instrumented code whether any recording
+ * is running, including those started from outside with jcmd. The custom
+ * events are only created while one is, so the fast paths pay a volatile
+ * read otherwise.
+ *
+ * @see LockWaitEvent
+ */
+public final class BookStoreFlightRecorder {
+
+	/** The settings of the recordings, which include the GC and lock events. */
+	private static final String CONFIGURATION = "profile";
+
+	/** Whether a flight recording is running. */
+	private static volatile boolean recording = false;
+
+	static {
+		FlightRecorder.addListener(new FlightRecorderListener() {
+
+			@Override
+			public void recordingStateChanged(Recording changed) {
+				updateRecording();
+			}
+		});
+
+		// The recordings started before the listener, such as those of
+		// -XX:StartFlightRecording, are not notified to it
+		if (FlightRecorder.isInitialized()) {
+			updateRecording();
+		}
+	}
+
+	/**
+	 * Updates whether a flight recording is running from the recordings of
+	 * the flight recorder.
+	 */
+	private static void updateRecording() {
+		boolean running = false;
+
+		for (Recording other : FlightRecorder.getFlightRecorder().getRecordings()) {
+			running |= other.getState() == RecordingState.RUNNING;
+		}
+
+		recording = running;
+	}
+
+	/**
+	 * Prevents the instantiation of a new {@link BookStoreFlightRecorder}.
+	 */
+	private BookStoreFlightRecorder() {
+		// Prevent instances from being created.
+	}
+
+	/**
+	 * Checks whether a flight recording is running.
+	 *
+	 * @return true, if the custom events may be recorded
+	 */
+	public static boolean isRecording() {
+		return recording;
+	}
+
+	/**
+	 * Starts a flight recording if the
+	 * {@link BookStoreConstants#PROPERTY_KEY_JFR} system property is set. Its
+	 * value names the file of the recording, the name of the program with
+	 * the .jfr extension if it is empty or true. The recording is written
+	 * when it is stopped, or when the virtual machine exits.
+	 *
+	 * @param name
+	 *            the name of the program
+	 * @return the recording, null if none was started
+	 */
+	public static Recording startFromProperties(String name) {
+		String destination = System.getProperty(BookStoreConstants.PROPERTY_KEY_JFR);
+
+		if (destination == null) {
+			return null;
+		}
+
+		if (destination.isEmpty() || destination.equalsIgnoreCase("true")) {
+			destination = name + ".jfr";
+		}
+
+		try {
+			Path path = Paths.get(destination).toAbsolutePath();
+			Recording recording = new Recording(Configuration.getConfiguration(CONFIGURATION));
+			recording.setName(name);
+			recording.setDestination(path);
+			recording.setDumpOnExit(true);
+			recording.start();
+			System.out.println("Flight recording to " + path);
+			return recording;
+		} catch (IOException | ParseException ex) {
+			System.err.println(ex.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stops a recording, which writes it to its file.
+	 *
+	 * @param recording
+	 *            the recording, may be null
+	 */
+	public static void stop(Recording recording) {
+		if (recording == null) {
+			return;
+		}
+
+		try {
+			recording.stop();
+		} catch (IllegalStateException ex) {
+			System.err.println(ex.getMessage());
+		} finally {
+			recording.close();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package com.acertainbookstore.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ConcurrentHistogram} is a lock-free histogram of non-negative long
+ * values (typically nanoseconds). Values are counted in log-linear buckets:
+ * every power of two is split into a fixed number of linear sub-buckets, which
+ * bounds the relative error of a reported percentile to about 3% while keeping
+ * the footprint constant and the recording path free of allocation and locks.
+ */
+public final class ConcurrentHistogram {
+
+	/** The number of bits used to index the linear sub-buckets. */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/** The number of linear sub-buckets per power of two. */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/** The largest exponent tracked, values above 2^40 are clamped. */
+	private static final int MAX_EXPONENT = 40;
+
+	/** The largest value that can be recorded without clamping. */
+	private static final long MAX_TRACKABLE_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	/** The total number of buckets. */
+	private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+	/** The bucket counts. */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/** The number of recorded values. */
+	private final LongAdder count = new LongAdder();
+
+	/** The sum of the recorded values. */
+	private final LongAdder sum = new LongAdder();
+
+	/** The largest recorded value. */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value, negative values are recorded as zero.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		long clamped = value < 0 ? 0 : Math.min(value, MAX_TRACKABLE_VALUE);
+		buckets.incrementAndGet(bucketIndex(clamped));
+		count.increment();
+		sum.add(clamped);
+
+		long currentMax = max.get();
+
+		while (clamped > currentMax && !max.compareAndSet(currentMax, clamped)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Gets the sum of the recorded values.
+	 *
+	 * @return the sum
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Gets the largest recorded value.
+	 *
+	 * @return the max
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the mean of the recorded values.
+	 *
+	 * @return the mean, or zero if nothing was recorded
+	 */
+	public double getMean() {
+		long numValues = getCount();
+		return numValues == 0 ? 0.0 : (double) getSum() / numValues;
+	}
+
+	/**
+	 * Gets the value at the given percentile, i.e. the upper bound of the
+	 * bucket holding that rank.
+	 *
+	 * @param percentile
+	 *            the percentile in the range [0, 100]
+	 * @return the value at the percentile, or zero if nothing was recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long total = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		double clampedPercentile = Math.max(0.0, Math.min(100.0, percentile));
+		long rank = Math.max(1, (long) Math.ceil(clampedPercentile / 100.0 * total));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Adds all the values recorded in another histogram to this one.
+	 *
+	 * @param other
+	 *            the other histogram
+	 */
+	public void add(ConcurrentHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long bucketCount = other.buckets.get(i);
+
+			if (bucketCount != 0) {
+				buckets.addAndGet(i, bucketCount);
+			}
+		}
+
+		count.add(other.getCount());
+		sum.add(other.getSum());
+
+		long otherMax = other.getMax();
+		long currentMax = max.get();
+
+		while (otherMax > currentMax && !max.compareAndSet(currentMax, otherMax)) {
+			currentMax = max.get();
+		}
+	}
+
+	/**
+	 * Resets the histogram. Values recorded concurrently with a reset may be
+	 * partially lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+		}
+
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	/**
+	 * Gets a one line summary of the histogram, using the given unit divisor
+	 * for the values (e.g. 1000 to print nanoseconds as microseconds).
+	 *
+	 * @param unitDivisor
+	 *            the unit divisor
+	 * @return the summary
+	 */
+	public String toSummaryString(double unitDivisor) {
+		return String.format("count=%d mean=%.2f p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f", getCount(),
+				getMean() / unitDivisor, getValueAtPercentile(50) / unitDivisor,
+				getValueAtPercentile(90) / unitDivisor, getValueAtPercentile(99) / unitDivisor,
+				getValueAtPercentile(99.9) / unitDivisor, getMax() / unitDivisor);
+	}
+
+	/**
+	 * Gets the bucket index of a value.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the bucket index
+	 */
+	private static int bucketIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Gets the largest value that falls into a bucket.
+	 *
+	 * @param index
+	 *            the bucket index
+	 * @return the upper bound
+	 */
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+
+		int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+		long subBucket = index % SUB_BUCKET_COUNT;
+		long lowerBound = (1L << exponent) | (subBucket << (exponent - SUB_BUCKET_BITS));
+		return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
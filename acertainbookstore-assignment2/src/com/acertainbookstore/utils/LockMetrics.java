@@ -0,0 +1,481 @@
+package com.acertainbookstore.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.IntSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link LockMetrics} records how long the operations of a bookstore wait for
+ * and hold their locks, and how many threads were queued on a lock when it was
+ * requested. Histograms are kept per operation type and, for books whose own
+ * lock was contended, per ISBN.
+ *
+ * When the instrumentation is disabled, {@link #lock} and {@link #unlock} only
+ * read a volatile flag before delegating to the lock, so they can stay on the
+ * fast path of every store. The lock waits are also emitted as
+ * {@link LockWaitEvent flight recorder events} while a flight recording is
+ * running, whether the instrumentation is enabled or not.
+ *
+ * @see ConcurrentHistogram
+ * @see LockMetricsMBean
+ */
+public final class LockMetrics implements LockMetricsMBean {
+
+	/** The JMX domain under which the metrics are registered. */
+	public static final String JMX_DOMAIN = "com.acertainbookstore";
+
+	/** The default number of ISBNs tracked individually. */
+	public static final int DEFAULT_MAX_TRACKED_ISBNS = 64;
+
+	/** The number of hot ISBNs printed in the report. */
+	private static final int NUM_REPORTED_ISBNS = 10;
+
+	/** A wait longer than this marks the ISBN as hot. */
+	private static final long HOT_WAIT_THRESHOLD_NANOS = 10000;
+
+	/** Nanoseconds per microsecond, the unit used in the report. */
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	/** The name of the instrumented store. */
+	private final String storeName;
+
+	/** The maximum number of ISBNs tracked individually. */
+	private final int maxTrackedISBNs;
+
+	/** Whether the instrumentation is enabled. */
+	private volatile boolean enabled;
+
+	/** The statistics per operation, indexed by the message tag ordinal. */
+	private final LockStatistics[] operationStatistics;
+
+	/** The statistics of the hot ISBNs. */
+	private final Map<Integer, LockStatistics> isbnStatistics = new ConcurrentHashMap<>();
+
+	/**
+	 * Instantiates a new {@link LockMetrics}, enabled if the
+	 * {@link BookStoreConstants#PROPERTY_KEY_LOCK_METRICS} system property is
+	 * set to true.
+	 *
+	 * @param storeName
+	 *            the store name
+	 */
+	public LockMetrics(String storeName) {
+		this(storeName, Boolean.getBoolean(BookStoreConstants.PROPERTY_KEY_LOCK_METRICS), DEFAULT_MAX_TRACKED_ISBNS);
+	}
+
+	/**
+	 * Instantiates a new {@link LockMetrics}.
+	 *
+	 * @param storeName
+	 *            the store name
+	 * @param enabled
+	 *            whether the instrumentation starts enabled
+	 * @param maxTrackedISBNs
+	 *            the maximum number of ISBNs tracked individually
+	 */
+	public LockMetrics(String storeName, boolean enabled, int maxTrackedISBNs) {
+		this.storeName = storeName;
+		this.enabled = enabled;
+		this.maxTrackedISBNs = maxTrackedISBNs;
+
+		BookStoreMessageTag[] tags = BookStoreMessageTag.values();
+		operationStatistics = new LockStatistics[tags.length];
+
+		for (int i = 0; i < tags.length; i++) {
+			operationStatistics[i] = new LockStatistics();
+		}
+	}
+
+	/**
+	 * Acquires the lock on behalf of an operation.
+	 *
+	 * @param lock
+	 *            the lock
+	 * @param queueLength
+	 *            the supplier of the number of threads queued on the lock
+	 * @param operation
+	 *            the operation
+	 * @return the acquisition timestamp to pass to {@link #unlock}
+	 */
+	public long lock(Lock lock, IntSupplier queueLength, BookStoreMessageTag operation) {
+		if (!enabled) {
+			acquire(lock, queueLength, operation, LockWaitEvent.NO_ISBN);
+			return 0L;
+		}
+
+		int queued = queueLength.getAsInt();
+		long waitStart = System.nanoTime();
+		acquire(lock, queueLength, operation, LockWaitEvent.NO_ISBN);
+		long acquiredAt = System.nanoTime();
+
+		operationStatistics[operation.ordinal()].recordAcquisition(acquiredAt - waitStart, queued);
+		return acquiredAt;
+	}
+
+	/**
+	 * Acquires the lock of a single book on behalf of an operation.
+	 *
+	 * @param lock
+	 *            the lock
+	 * @param queueLength
+	 *            the supplier of the number of threads queued on the lock
+	 * @param operation
+	 *            the operation
+	 * @param isbn
+	 *            the ISBN of the locked book
+	 * @return the acquisition timestamp to pass to {@link #recordHoldTime}
+	 */
+	public long lock(Lock lock, IntSupplier queueLength, BookStoreMessageTag operation, int isbn) {
+		if (!enabled) {
+			acquire(lock, queueLength, operation, isbn);
+			return 0L;
+		}
+
+		int queued = queueLength.getAsInt();
+		long waitStart = System.nanoTime();
+		acquire(lock, queueLength, operation, isbn);
+		long acquiredAt = System.nanoTime();
+		long waitTime = acquiredAt - waitStart;
+
+		operationStatistics[operation.ordinal()].recordAcquisition(waitTime, queued);
+
+		LockStatistics statistics = isbnStatistics.get(isbn);
+
+		if (statistics == null && waitTime > HOT_WAIT_THRESHOLD_NANOS && isbnStatistics.size() < maxTrackedISBNs) {
+			statistics = isbnStatistics.computeIfAbsent(isbn, key -> new LockStatistics());
+		}
+
+		if (statistics != null) {
+			statistics.recordAcquisition(waitTime, queued);
+		}
+
+		return acquiredAt;
+	}
+
+	/**
+	 * Acquires a lock, and emits the wait as a flight recorder event if a
+	 * flight recording is running.
+	 *
+	 * @param lock
+	 *            the lock
+	 * @param queueLength
+	 *            the supplier of the number of threads queued on the lock
+	 * @param operation
+	 *            the operation
+	 * @param isbn
+	 *            the ISBN of the locked book, {@link LockWaitEvent#NO_ISBN} if
+	 *            the lock guards no single book
+	 */
+	private static void acquire(Lock lock, IntSupplier queueLength, BookStoreMessageTag operation, int isbn) {
+		if (!BookStoreFlightRecorder.isRecording()) {
+			lock.lock();
+			return;
+		}
+
+		LockWaitEvent event = new LockWaitEvent();
+		int queued = queueLength.getAsInt();
+		event.begin();
+		lock.lock();
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.operation = operation.name();
+			event.isbn = isbn;
+			event.queueLength = queued;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Releases the lock on behalf of an operation.
+	 *
+	 * @param lock
+	 *            the lock
+	 * @param acquiredAt
+	 *            the timestamp returned by {@link #lock}
+	 * @param operation
+	 *            the operation
+	 */
+	public void unlock(Lock lock, long acquiredAt, BookStoreMessageTag operation) {
+		if (acquiredAt != 0L) {
+			operationStatistics[operation.ordinal()].holdTime.record(System.nanoTime() - acquiredAt);
+		}
+
+		lock.unlock();
+	}
+
+	/**
+	 * Records the hold time of a group of locks that an operation acquired one
+	 * after the other and releases together, e.g. the book locks of a two-level
+	 * locking store.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @param acquiredAt
+	 *            the timestamp returned by the first {@link #lock}
+	 */
+	public void recordHoldTime(BookStoreMessageTag operation, long acquiredAt) {
+		if (acquiredAt != 0L) {
+			operationStatistics[operation.ordinal()].holdTime.record(System.nanoTime() - acquiredAt);
+		}
+	}
+
+	/**
+	 * Gets the name of the instrumented store.
+	 *
+	 * @return the store name
+	 */
+	public String getStoreName() {
+		return storeName;
+	}
+
+	/**
+	 * Gets the wait time histogram of an operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the wait time histogram
+	 */
+	public ConcurrentHistogram getWaitTime(BookStoreMessageTag operation) {
+		return operationStatistics[operation.ordinal()].waitTime;
+	}
+
+	/**
+	 * Gets the hold time histogram of an operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the hold time histogram
+	 */
+	public ConcurrentHistogram getHoldTime(BookStoreMessageTag operation) {
+		return operationStatistics[operation.ordinal()].holdTime;
+	}
+
+	/**
+	 * Gets the queue length histogram of an operation.
+	 *
+	 * @param operation
+	 *            the operation
+	 * @return the queue length histogram
+	 */
+	public ConcurrentHistogram getQueueLength(BookStoreMessageTag operation) {
+		return operationStatistics[operation.ordinal()].queueLength;
+	}
+
+	/**
+	 * Gets the wait time histogram of a hot ISBN.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return the wait time histogram, or null if the ISBN is not tracked
+	 */
+	public ConcurrentHistogram getWaitTime(int isbn) {
+		LockStatistics statistics = isbnStatistics.get(isbn);
+		return statistics == null ? null : statistics.waitTime;
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			ObjectName name = new ObjectName(JMX_DOMAIN + ":type=LockMetrics,name=" + ObjectName.quote(storeName));
+
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException ex) {
+			System.err.println(ex.getMessage());
+			return false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#setEnabled(boolean)
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#getTotalAcquisitions()
+	 */
+	@Override
+	public long getTotalAcquisitions() {
+		long total = 0;
+
+		for (LockStatistics statistics : operationStatistics) {
+			total += statistics.waitTime.getCount();
+		}
+
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#getTotalWaitTimeNanos()
+	 */
+	@Override
+	public long getTotalWaitTimeNanos() {
+		long total = 0;
+
+		for (LockStatistics statistics : operationStatistics) {
+			total += statistics.waitTime.getSum();
+		}
+
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#getTotalHoldTimeNanos()
+	 */
+	@Override
+	public long getTotalHoldTimeNanos() {
+		long total = 0;
+
+		for (LockStatistics statistics : operationStatistics) {
+			total += statistics.holdTime.getSum();
+		}
+
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#getReport()
+	 */
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append("# Lock metrics of ").append(storeName).append(" (enabled=").append(enabled)
+				.append(", times in us)\n");
+
+		for (BookStoreMessageTag operation : BookStoreMessageTag.values()) {
+			LockStatistics statistics = operationStatistics[operation.ordinal()];
+
+			if (statistics.waitTime.getCount() == 0) {
+				continue;
+			}
+
+			statistics.appendTo(report, operation.toString(), NANOS_PER_MICRO);
+		}
+
+		List<Map.Entry<Integer, LockStatistics>> hotISBNs = new ArrayList<>(isbnStatistics.entrySet());
+		hotISBNs.sort(Comparator.comparingLong(
+				(Map.Entry<Integer, LockStatistics> entry) -> entry.getValue().waitTime.getSum()).reversed());
+
+		for (Map.Entry<Integer, LockStatistics> entry : hotISBNs.subList(0,
+				Math.min(NUM_REPORTED_ISBNS, hotISBNs.size()))) {
+			entry.getValue().appendTo(report, BookStoreConstants.BOOKISBN_PARAM + "=" + entry.getKey(),
+					NANOS_PER_MICRO);
+		}
+
+		return report.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.LockMetricsMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (LockStatistics statistics : operationStatistics) {
+			statistics.reset();
+		}
+
+		isbnStatistics.clear();
+	}
+
+	/**
+	 * {@link LockStatistics} groups the histograms kept for an operation or a
+	 * book.
+	 */
+	private static final class LockStatistics {
+
+		/** The wait time. */
+		private final ConcurrentHistogram waitTime = new ConcurrentHistogram();
+
+		/** The hold time. */
+		private final ConcurrentHistogram holdTime = new ConcurrentHistogram();
+
+		/** The queue length. */
+		private final ConcurrentHistogram queueLength = new ConcurrentHistogram();
+
+		/**
+		 * Records a lock acquisition.
+		 *
+		 * @param wait
+		 *            the wait time
+		 * @param queued
+		 *            the queue length
+		 */
+		private void recordAcquisition(long wait, int queued) {
+			waitTime.record(wait);
+			queueLength.record(queued);
+		}
+
+		/**
+		 * Appends the statistics to a report.
+		 *
+		 * @param report
+		 *            the report
+		 * @param label
+		 *            the label
+		 * @param unitDivisor
+		 *            the unit divisor of the times
+		 */
+		private void appendTo(StringBuilder report, String label, double unitDivisor) {
+			report.append(label).append(" wait ").append(waitTime.toSummaryString(unitDivisor)).append('\n');
+
+			if (holdTime.getCount() != 0) {
+				report.append(label).append(" hold ").append(holdTime.toSummaryString(unitDivisor)).append('\n');
+			}
+
+			report.append(label).append(" queue ").append(queueLength.toSummaryString(1.0)).append('\n');
+		}
+
+		/**
+		 * Resets the histograms.
+		 */
+		private void reset() {
+			waitTime.reset();
+			holdTime.reset();
+			queueLength.reset();
+		}
+	}
+}
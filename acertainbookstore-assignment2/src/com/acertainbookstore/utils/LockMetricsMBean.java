@@ -0,0 +1,58 @@
+package com.acertainbookstore.utils;
+
+/**
+ * {@link LockMetricsMBean} declares the JMX management interface of the
+ * {@link LockMetrics} collected by a bookstore.
+ *
+ * @see LockMetrics
+ */
+public interface LockMetricsMBean {
+
+	/**
+	 * Checks if the lock instrumentation is enabled.
+	 *
+	 * @return true, if enabled
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Enables or disables the lock instrumentation.
+	 *
+	 * @param enabled
+	 *            the new enabled flag
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Gets the total number of instrumented lock acquisitions.
+	 *
+	 * @return the total acquisitions
+	 */
+	public long getTotalAcquisitions();
+
+	/**
+	 * Gets the total time spent waiting for locks in nanoseconds.
+	 *
+	 * @return the total wait time
+	 */
+	public long getTotalWaitTimeNanos();
+
+	/**
+	 * Gets the total time locks were held in nanoseconds.
+	 *
+	 * @return the total hold time
+	 */
+	public long getTotalHoldTimeNanos();
+
+	/**
+	 * Gets the human readable report of all the collected histograms.
+	 *
+	 * @return the report
+	 */
+	public String getReport();
+
+	/**
+	 * Resets all the collected histograms.
+	 */
+	public void reset();
+}
@@ -0,0 +1,40 @@
+package com.acertainbookstore.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+/**
+ * {@link LockWaitEvent} is the flight recorder event of an operation waiting
+ * for a lock of a store, emitted by {@link LockMetrics}. Only the waits
+ * longer than the threshold are recorded, so the uncontended acquisitions do
+ * not flood the recording.
+ *
+ * @see BookStoreFlightRecorder
+ */
+@Name("com.acertainbookstore.LockWait")
+@Label("Lock Wait")
+@Category("Bookstore")
+@Description("An operation waiting for a lock of the store")
+@Threshold("10 us")
+public final class LockWaitEvent extends Event {
+
+	/** The ISBN of the waits for a lock guarding no single book. */
+	public static final int NO_ISBN = -1;
+
+	/** The operation. */
+	@Label("Operation")
+	String operation;
+
+	/** The ISBN of the locked book. */
+	@Label("ISBN")
+	@Description("The ISBN of the locked book, -1 if the lock guards no single book")
+	int isbn;
+
+	/** The number of threads queued on the lock when it was requested. */
+	@Label("Queue Length")
+	int queueLength;
+}
@@ -0,0 +1,201 @@
+package com.acertainbookstore.benchmarks;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.LockMetrics;
+
+/**
+ * {@link LockMetricsBenchmark} measures the cost of the lock instrumentation
+ * of the stores on their buyBooks and getBooks fast paths, with the
+ * instrumentation disabled and enabled, against an uninstrumented baseline
+ * locking and unlocking the same kind of lock directly.
+ *
+ * The store is named by its class, in the business package unless
+ * qualified. Only the classes of both assignments are used, so that the
+ * benchmark is also built against the output of assignment2 and measures its
+ * single lock and two-level locking stores as they are built there.
+ *
+ * Run with: ant -f benchmark.xml run -Dbench.args="LockMetricsBenchmark", or
+ * ant -f benchmark.xml locks-assignment2 for the stores of assignment2
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockMetricsBenchmark {
+
+	/** The number of books in the store. */
+	private static final int NUM_BOOKS = 1000;
+
+	/**
+	 * {@link Store} holds the store, filled with books that have enough copies
+	 * for the whole run.
+	 */
+	@State(Scope.Benchmark)
+	public static class Store {
+
+		/** The class of the store. */
+		@Param({ "CertainBookStore" })
+		public String store;
+
+		/** Whether the lock instrumentation is enabled. */
+		@Param({ "false", "true" })
+		public boolean instrumented;
+
+		/** The book store. */
+		private BookStore bookStore;
+
+		/**
+		 * Instantiates the store and fills it.
+		 *
+		 * @throws Exception
+		 *             the exception
+		 */
+		@Setup(Level.Trial)
+		public void setUp() throws Exception {
+			String className = store.contains(".") ? store : "com.acertainbookstore.business." + store;
+			Object instance = Class.forName(className).getDeclaredConstructor().newInstance();
+			((LockMetrics) instance.getClass().getMethod("getLockMetrics").invoke(instance)).setEnabled(instrumented);
+			bookStore = (BookStore) instance;
+
+			Set<StockBook> books = new HashSet<>();
+
+			for (int isbn = 1; isbn <= NUM_BOOKS; isbn++) {
+				books.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, Integer.MAX_VALUE / 2,
+						0, 0, 0, false));
+			}
+
+			((StockManager) instance).addBooks(books);
+		}
+	}
+
+	/**
+	 * {@link Baseline} holds a lock of the kind the stores take, acquired
+	 * without instrumentation.
+	 */
+	@State(Scope.Benchmark)
+	public static class Baseline {
+
+		/** The lock. */
+		private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+		/** The write lock. */
+		private final Lock writeLock = rwLock.writeLock();
+	}
+
+	/**
+	 * {@link Instrumented} holds the same lock, acquired through the lock
+	 * metrics.
+	 */
+	@State(Scope.Benchmark)
+	public static class Instrumented {
+
+		/** Whether the lock instrumentation is enabled. */
+		@Param({ "false", "true" })
+		public boolean instrumented;
+
+		/** The lock. */
+		private final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
+
+		/** The write lock. */
+		private final Lock writeLock = rwLock.writeLock();
+
+		/** The number of threads waiting for the lock. */
+		private final IntSupplier queueLength = rwLock::getQueueLength;
+
+		/** The lock metrics. */
+		private LockMetrics lockMetrics;
+
+		/**
+		 * Creates the lock metrics.
+		 */
+		@Setup(Level.Trial)
+		public void setUp() {
+			lockMetrics = new LockMetrics(LockMetricsBenchmark.class.getSimpleName(), instrumented,
+					LockMetrics.DEFAULT_MAX_TRACKED_ISBNS);
+		}
+	}
+
+	/**
+	 * Buys a single copy of a random book.
+	 *
+	 * @param store
+	 *            the store
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public void buyBooks(Store store) throws BookStoreException {
+		int isbn = 1 + ThreadLocalRandom.current().nextInt(NUM_BOOKS);
+		store.bookStore.buyBooks(Collections.singleton(new BookCopy(isbn, 1)));
+	}
+
+	/**
+	 * Reads a single random book.
+	 *
+	 * @param store
+	 *            the store
+	 * @return the book list
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public Object getBooks(Store store) throws BookStoreException {
+		int isbn = 1 + ThreadLocalRandom.current().nextInt(NUM_BOOKS);
+		return store.bookStore.getBooks(Collections.singleton(isbn));
+	}
+
+	/**
+	 * Locks and unlocks the lock directly, as the stores did before they were
+	 * instrumented.
+	 *
+	 * @param baseline
+	 *            the lock
+	 */
+	@Benchmark
+	public void uninstrumentedLock(Baseline baseline) {
+		baseline.writeLock.lock();
+		baseline.writeLock.unlock();
+	}
+
+	/**
+	 * Locks and unlocks the lock through the lock metrics, as the stores do.
+	 *
+	 * @param instrumented
+	 *            the lock and its metrics
+	 */
+	@Benchmark
+	public void instrumentedLock(Instrumented instrumented) {
+		long acquiredAt = instrumented.lockMetrics.lock(instrumented.writeLock, instrumented.queueLength,
+				BookStoreMessageTag.BUYBOOKS);
+		instrumented.lockMetrics.unlock(instrumented.writeLock, acquiredAt, BookStoreMessageTag.BUYBOOKS);
+	}
+}
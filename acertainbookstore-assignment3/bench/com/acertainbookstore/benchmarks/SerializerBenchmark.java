@@ -0,0 +1,147 @@
+package com.acertainbookstore.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
+
+/**
+ * {@link SerializerBenchmark} measures the per-request cost of each codec of
+ * the {@link BookStoreSerializerRegistry}: the round trip of a buyBooks
+ * request and of a getBooks response, as the client and the server each
+ * perform one half of it on every call. The pooled variants write into a
+ * buffer reused from a call to the next and read the payload in place, as the
+ * TCP transport does; their allocation, measured with -prof gc, is that of
+ * the de-serialized objects.
+ *
+ * Run with: ant -f benchmark.xml run -Dbench.args="SerializerBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+
+	/** The number of copies of a buyBooks request. */
+	private static final int NUM_COPIES = 5;
+
+	/** The number of books of a getBooks response. */
+	private static final int NUM_BOOKS = 100;
+
+	/** The content type of the codec. */
+	@Param({ "application/x-xstream+xml", "application/x-kryo", "application/x-bookstore-compact" })
+	public String contentType;
+
+	/** The serializer of the codec. */
+	private BookStoreSerializer serializer;
+
+	/** The buyBooks request. */
+	private Set<BookCopy> buyBooksRequest;
+
+	/** The getBooks response. */
+	private BookStoreResponse getBooksResponse;
+
+	/** The buffer reused by the pooled round trips. */
+	private final BookStoreBuffer buffer = new BookStoreBuffer(BookStoreConstants.STREAM_BUFFER_SIZE);
+
+	/**
+	 * Selects the serializer and builds the messages.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		serializer = BookStoreSerializerRegistry.newDefaultRegistry().get(contentType);
+		buyBooksRequest = new HashSet<>();
+
+		for (int isbn = 1; isbn <= NUM_COPIES; isbn++) {
+			buyBooksRequest.add(new BookCopy(isbn, 1));
+		}
+
+		List<Book> books = new ArrayList<>();
+
+		for (int isbn = 1; isbn <= NUM_BOOKS; isbn++) {
+			books.add(new ImmutableBook(isbn, "Title " + isbn, "Author " + isbn, 10));
+		}
+
+		getBooksResponse = new BookStoreResponse(null, books);
+	}
+
+	/**
+	 * Serializes and de-serializes a buyBooks request.
+	 *
+	 * @return the de-serialized request
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public Object buyBooksRequest() throws IOException {
+		return serializer.deserialize(serializer.serialize(buyBooksRequest));
+	}
+
+	/**
+	 * Serializes and de-serializes a getBooks response.
+	 *
+	 * @return the de-serialized response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public Object getBooksResponse() throws IOException {
+		return serializer.deserialize(serializer.serialize(getBooksResponse));
+	}
+
+	/**
+	 * Serializes a buyBooks request into the reused buffer and de-serializes
+	 * it in place.
+	 *
+	 * @return the de-serialized request
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public Object buyBooksRequestPooled() throws IOException {
+		buffer.reset();
+		serializer.serialize(buyBooksRequest, buffer);
+		return serializer.deserialize(buffer.getArray(), 0, buffer.size());
+	}
+
+	/**
+	 * Serializes a getBooks response into the reused buffer and de-serializes
+	 * it in place.
+	 *
+	 * @return the de-serialized response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Benchmark
+	public Object getBooksResponsePooled() throws IOException {
+		buffer.reset();
+		serializer.serialize(getBooksResponse, buffer);
+		return serializer.deserialize(buffer.getArray(), 0, buffer.size());
+	}
+}
@@ -0,0 +1,279 @@
+package com.acertainbookstore.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.workloads.BookSetGenerator;
+import com.acertainbookstore.client.workloads.UniformKeyChooser;
+import com.acertainbookstore.client.workloads.ZipfianKeyChooser;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link StoreBenchmark} measures the operations of the store
+ * implementations in-process, without the HTTP transport of the workload, by
+ * catalog size, batch size and access skew. A skew of 0 draws the books
+ * uniformly, otherwise with the Zipfian skew theta of a
+ * {@link ZipfianKeyChooser}, the first books of the catalog being the
+ * hottest. The store is named by its class, in the business package unless
+ * qualified, so that a new store is measured with -p store=... and no change
+ * here. The single lock and two-level locking stores are those of
+ * assignment2, which the build compiles from its sources. The stores are
+ * refilled before every iteration, so that the copies bought and added do not
+ * run out or overflow.
+ *
+ * The main method runs the benchmark with 1, 4 and 16 threads, or those of
+ * -t, and the GC profiler whose normalized allocation rate is the allocation
+ * per operation, writing the results of each thread count to
+ * storeBenchmark-[threads]threads.json.
+ *
+ * Run with: ant -f benchmark.xml stores -Dbench.args="-p catalogSize=1000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StoreBenchmark {
+
+	/** The thread counts the main method runs with by default. */
+	private static final List<Integer> THREAD_COUNTS = Arrays.asList(1, 4, 16);
+
+	/** The number of precomputed batches each thread cycles through. */
+	private static final int NUM_BATCHES = 1024;
+
+	/** The copies of each book, enough for an iteration of purchases. */
+	private static final int NUM_COPIES = Integer.MAX_VALUE / 2;
+
+	/** One book in EDITOR_PICK_RATIO is an editor pick. */
+	private static final int EDITOR_PICK_RATIO = 10;
+
+	/** The class of the store. */
+	@Param({ "CertainBookStore", "SingleLockConcurrentCertainBookStore",
+			"TwoLevelLockingConcurrentCertainBookStore" })
+	public String store;
+
+	/** The number of books of the catalog. */
+	@Param({ "1000", "100000" })
+	public int catalogSize;
+
+	/** The number of books per call. */
+	@Param({ "1", "10" })
+	public int batchSize;
+
+	/** The Zipfian skew of the books accessed, 0 for uniform. */
+	@Param({ "0", "0.99" })
+	public double skew;
+
+	/** The book store. */
+	private BookStore bookStore;
+
+	/** The stock manager. */
+	private StockManager stockManager;
+
+	/** The catalog. */
+	private Set<StockBook> catalog;
+
+	/**
+	 * Instantiates the store and generates the catalog.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		String className = store.contains(".") ? store : "com.acertainbookstore.business." + store;
+		Object instance = Class.forName(className).getDeclaredConstructor().newInstance();
+		bookStore = (BookStore) instance;
+		stockManager = (StockManager) instance;
+
+		catalog = new HashSet<>();
+		for (int isbn = 1; isbn <= catalogSize; isbn++) {
+			catalog.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, NUM_COPIES, 0, 0, 0,
+					isbn % EDITOR_PICK_RATIO == 0));
+		}
+	}
+
+	/**
+	 * Refills the store with the catalog.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Setup(Level.Iteration)
+	public void refill() throws BookStoreException {
+		stockManager.removeAllBooks();
+		stockManager.addBooks(catalog);
+	}
+
+	/**
+	 * {@link Batches} holds the batches of books a thread calls the store
+	 * with, drawn ahead of the measurement so that drawing them is not
+	 * measured.
+	 */
+	@State(Scope.Thread)
+	public static class Batches {
+
+		/** The batches of isbns. */
+		private final List<Set<Integer>> isbns = new ArrayList<>(NUM_BATCHES);
+
+		/** The batches of single copies of the books. */
+		private final List<Set<BookCopy>> copies = new ArrayList<>(NUM_BATCHES);
+
+		/** The index of the next batch. */
+		private int next = 0;
+
+		/**
+		 * Draws the batches.
+		 *
+		 * @param benchmark
+		 *            the benchmark
+		 */
+		@Setup(Level.Trial)
+		public void setUp(StoreBenchmark benchmark) {
+			BookSetGenerator generator = new BookSetGenerator();
+			generator.setKeyChooser(
+					benchmark.skew > 0 ? new ZipfianKeyChooser(benchmark.skew) : new UniformKeyChooser());
+			List<Integer> catalogISBNs = IntStream.rangeClosed(1, benchmark.catalogSize).boxed()
+					.collect(Collectors.toList());
+
+			for (int i = 0; i < NUM_BATCHES; i++) {
+				Set<Integer> batch = generator.sampleFromListOfISBNs(catalogISBNs, benchmark.batchSize);
+				isbns.add(batch);
+				copies.add(batch.stream().map(isbn -> new BookCopy(isbn, 1)).collect(Collectors.toSet()));
+			}
+		}
+
+		/**
+		 * Advances to the next batch.
+		 *
+		 * @return the index of the batch
+		 */
+		private int advance() {
+			int index = next;
+			next = (next + 1) % NUM_BATCHES;
+			return index;
+		}
+	}
+
+	/**
+	 * Buys a copy of each book of a batch.
+	 *
+	 * @param batches
+	 *            the batches of the thread
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public void buyBooks(Batches batches) throws BookStoreException {
+		bookStore.buyBooks(batches.copies.get(batches.advance()));
+	}
+
+	/**
+	 * Reads the books of a batch.
+	 *
+	 * @param batches
+	 *            the batches of the thread
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public Object getBooks(Batches batches) throws BookStoreException {
+		return bookStore.getBooks(batches.isbns.get(batches.advance()));
+	}
+
+	/**
+	 * Reads batch size editor picks.
+	 *
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public Object getEditorPicks() throws BookStoreException {
+		return bookStore.getEditorPicks(batchSize);
+	}
+
+	/**
+	 * Adds a copy of each book of a batch.
+	 *
+	 * @param batches
+	 *            the batches of the thread
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public void addCopies(Batches batches) throws BookStoreException {
+		stockManager.addCopies(batches.copies.get(batches.advance()));
+	}
+
+	/**
+	 * Lists the catalog.
+	 *
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Benchmark
+	public Object listBooks() throws BookStoreException {
+		return stockManager.getBooks();
+	}
+
+	/**
+	 * Runs the benchmark with each thread count and the GC profiler.
+	 *
+	 * @param args
+	 *            the JMH command line options
+	 * @throws Exception
+	 *             the exception
+	 */
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		List<Integer> threadCounts = commandLine.getThreads().hasValue()
+				? Arrays.asList(commandLine.getThreads().get())
+				: THREAD_COUNTS;
+
+		for (int threads : threadCounts) {
+			ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine).threads(threads)
+					.addProfiler(GCProfiler.class).resultFormat(ResultFormatType.JSON)
+					.result("storeBenchmark-" + threads + "threads.json");
+
+			if (commandLine.getIncludes().isEmpty()) {
+				options.include(StoreBenchmark.class.getSimpleName());
+			}
+
+			new Runner(options.build()).run();
+		}
+	}
+}
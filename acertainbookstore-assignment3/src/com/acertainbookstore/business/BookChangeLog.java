@@ -0,0 +1,125 @@
+package com.acertainbookstore.business;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link BookChangeLog} stamps the books added or removed with the catalog
+ * version of the change, so that a client caching the {@link Book} part of
+ * the books learns which of them changed since the version it last
+ * revalidated at. The title, author and price of a book never change while
+ * it is in the store, so only its additions and removals are logged.
+ *
+ * The log keeps the last changes only, in a ring: a client revalidating from
+ * a version older than the oldest change kept is told to drop all its books.
+ * It is not thread-safe, the store accesses it under its lock.
+ *
+ * @see CertainBookStore#getBooksChangedSince(long)
+ */
+final class BookChangeLog {
+
+	/** The versions of the changes, in a ring. */
+	private final long[] versions;
+
+	/** The ISBNs of the changes, in a ring. */
+	private final int[] isbns;
+
+	/** The index of the oldest change. */
+	private int head = 0;
+
+	/** The number of changes kept. */
+	private int size = 0;
+
+	/** The version after which all the changes are kept. */
+	private long floor = 0;
+
+	/**
+	 * Instantiates a new {@link BookChangeLog}.
+	 *
+	 * @param capacity
+	 *            the number of changes kept
+	 */
+	BookChangeLog(int capacity) {
+		versions = new long[capacity];
+		isbns = new int[capacity];
+	}
+
+	/**
+	 * Stamps a book added or removed, dropping the oldest change if the log
+	 * is full.
+	 *
+	 * @param version
+	 *            the catalog version of the change
+	 * @param isbn
+	 *            the ISBN of the book
+	 */
+	void record(long version, int isbn) {
+		if (size == versions.length) {
+			floor = versions[head];
+			head = (head + 1) % versions.length;
+			size--;
+		}
+
+		int tail = (head + size) % versions.length;
+		versions[tail] = version;
+		isbns[tail] = isbn;
+		size++;
+	}
+
+	/**
+	 * Drops the changes stamped with a version, the newest, as when the
+	 * mutation making them was rolled back.
+	 *
+	 * @param version
+	 *            the catalog version of the changes
+	 */
+	void discard(long version) {
+		while (size > 0 && versions[(head + size - 1) % versions.length] == version) {
+			size--;
+		}
+	}
+
+	/**
+	 * Drops all the changes, as when any book may have changed.
+	 *
+	 * @param version
+	 *            the catalog version of the change
+	 */
+	void reset(long version) {
+		head = 0;
+		size = 0;
+		floor = version;
+	}
+
+	/**
+	 * Gets the ISBNs of the books added or removed after a version.
+	 *
+	 * @param version
+	 *            the version
+	 * @return the ISBNs, or null if the log no longer goes back to the
+	 *         version
+	 */
+	List<Integer> changedSince(long version) {
+		if (version < floor) {
+			return null;
+		}
+
+		Set<Integer> changed = new LinkedHashSet<>();
+
+		// The newest changes are at the tail, so scan backwards and stop at
+		// the first change made at or before the version.
+		for (int i = size - 1; i >= 0; i--) {
+			int index = (head + i) % versions.length;
+
+			if (versions[index] <= version) {
+				break;
+			}
+
+			changed.add(isbns[index]);
+		}
+
+		return new ArrayList<>(changed);
+	}
+}
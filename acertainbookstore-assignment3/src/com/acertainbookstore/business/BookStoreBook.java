@@ -28,6 +28,18 @@ public class BookStoreBook extends ImmutableBook {
 	/** Whether the book is editor picked. */
 	private boolean editorPick;
 
+	/**
+	 * The snapshot returned by {@link #immutableBook()}, kept for good as the
+	 * title, author and price of a book never change.
+	 */
+	private ImmutableBook bookSnapshot = null;
+
+	/**
+	 * The snapshot returned by {@link #immutableStockBook()}, dropped whenever
+	 * the book changes, so that its identity stands for the state of the book.
+	 */
+	private StockBook stockBookSnapshot = null;
+
 	/**
 	 * Instantiates a new {@link BookStoreBook}.
 	 *
@@ -131,6 +143,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	private void setTotalRating(long totalRating) {
 		this.totalRating = totalRating;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -141,6 +154,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	private void setNumTimesRated(long numTimesRated) {
 		this.numTimesRated = numTimesRated;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -151,6 +165,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	private void setNumCopies(int numCopies) {
 		this.numCopies = numCopies;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -162,6 +177,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	private void setNumSaleMisses(long numSaleMisses) {
 		this.numSaleMisses = numSaleMisses;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -173,6 +189,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	public void setEditorPick(boolean editorPick) {
 		this.editorPick = editorPick;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -196,6 +213,7 @@ public class BookStoreBook extends ImmutableBook {
 	public boolean buyCopies(int numCopies) {
 		if (!BookStoreUtility.isInvalidNoCopies(numCopies) && areCopiesInStore(numCopies)) {
 			this.numCopies -= numCopies;
+			this.stockBookSnapshot = null;
 			return true;
 		}
 
@@ -212,6 +230,7 @@ public class BookStoreBook extends ImmutableBook {
 		if (!BookStoreUtility.isInvalidNoCopies(numNewCopies)) {
 			this.numCopies += numNewCopies;
 			this.numSaleMisses = 0;
+			this.stockBookSnapshot = null;
 		}
 	}
 
@@ -223,6 +242,7 @@ public class BookStoreBook extends ImmutableBook {
 	 */
 	public void addSaleMiss(int numSaleMisses) {
 		this.numSaleMisses += numSaleMisses;
+		this.stockBookSnapshot = null;
 	}
 
 	/**
@@ -235,6 +255,7 @@ public class BookStoreBook extends ImmutableBook {
 		if (!BookStoreUtility.isInvalidRating(rating)) {
 			this.totalRating += rating;
 			this.numTimesRated++;
+			this.stockBookSnapshot = null;
 		}
 	}
 
@@ -260,24 +281,51 @@ public class BookStoreBook extends ImmutableBook {
 	}
 
 	/**
-	 * Returns a {@link ImmutableBook} copy of the book.
+	 * Returns a {@link ImmutableBook} copy of the book. The same copy is
+	 * returned by every call.
 	 *
 	 * @return the immutable book
 	 */
 	public ImmutableBook immutableBook() {
-		return new ImmutableBook(this.getISBN(), new String(this.getTitle()), new String(this.getAuthor()),
-				this.getPrice());
+		if (bookSnapshot == null) {
+			bookSnapshot = new ImmutableBook(this.getISBN(), new String(this.getTitle()),
+					new String(this.getAuthor()), this.getPrice());
+		}
+
+		return bookSnapshot;
 	}
 
 	/**
-	 * Returns a {@link StockBook} copy of the book.
+	 * Returns a {@link StockBook} copy of the book. The same copy is returned
+	 * by the calls until the book changes.
 	 *
 	 * @return the stock book
 	 */
 	public StockBook immutableStockBook() {
-		return new ImmutableStockBook(this.getISBN(), new String(this.getTitle()), new String(this.getAuthor()),
-				this.getPrice(), this.numCopies, this.numSaleMisses, this.numTimesRated, this.totalRating,
-				this.editorPick);
+		if (stockBookSnapshot == null) {
+			stockBookSnapshot = new ImmutableStockBook(this.getISBN(), new String(this.getTitle()),
+					new String(this.getAuthor()), this.getPrice(), this.numCopies, this.numSaleMisses,
+					this.numTimesRated, this.totalRating, this.editorPick);
+		}
+
+		return stockBookSnapshot;
+	}
+
+	/**
+	 * Restores the state of the book from one of its snapshots, which is
+	 * handed out again by {@link #immutableStockBook()}, as when a
+	 * transaction changing the book is rolled back.
+	 *
+	 * @param snapshot
+	 *            the snapshot returned by {@link #immutableStockBook()}
+	 */
+	void restore(StockBook snapshot) {
+		this.numCopies = snapshot.getNumCopies();
+		this.numSaleMisses = snapshot.getNumSaleMisses();
+		this.numTimesRated = snapshot.getNumTimesRated();
+		this.totalRating = snapshot.getTotalRating();
+		this.editorPick = snapshot.isEditorPick();
+		this.stockBookSnapshot = snapshot;
 	}
 
 	/**
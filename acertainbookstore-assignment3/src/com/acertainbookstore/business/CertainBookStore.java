@@ -10,13 +10,18 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.interfaces.TransactionalStore;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreUtility;
+import com.acertainbookstore.utils.LockMetrics;
 
 /**
  * {@link CertainBookStore} implements the {@link BookStore} and
@@ -24,12 +29,66 @@ import com.acertainbookstore.utils.BookStoreUtility;
  * 
  * @see BookStore
  * @see StockManager
+ * @see TransactionalStore
  */
-public class CertainBookStore implements BookStore, StockManager {
+public class CertainBookStore implements BookStore, StockManager, TransactionalStore {
 
 	/** The mapping of books from ISBN to {@link BookStoreBook}. */
 	private Map<Integer, BookStoreBook> bookMap = null;
 
+	/** The lock serializing all the operations on the store. */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** The number of threads waiting for the lock. */
+	private final IntSupplier lockQueueLength = lock::getQueueLength;
+
+	/** The lock contention metrics. */
+	private final LockMetrics lockMetrics = new LockMetrics(CertainBookStore.class.getSimpleName());
+
+	/**
+	 * The version of the catalog, bumped by every mutation which changed the
+	 * books before it releases the lock, so that a reader seeing the same
+	 * version before and after a call saw no change in between. A transaction
+	 * bumps it once, when it commits.
+	 */
+	private volatile long catalogVersion = 0;
+
+	/** Whether the books changed since the catalog version was bumped. */
+	private boolean changed = false;
+
+	/** The books added or removed, stamped with the catalog version of the change. */
+	private final BookChangeLog bookChanges = new BookChangeLog(BookStoreConstants.BOOK_CHANGE_LOG_SIZE);
+
+	/**
+	 * The books changed by the running transaction, as it found them, by ISBN;
+	 * null when no transaction runs.
+	 */
+	private Map<Integer, UndoRecord> undoLog = null;
+
+	/**
+	 * {@link UndoRecord} is a book as a transaction found it before changing
+	 * it, restored if the transaction fails.
+	 */
+	private static final class UndoRecord {
+
+		/** The book, null if it was not in the store. */
+		private final BookStoreBook book;
+
+		/** The snapshot of the state of the book. */
+		private final StockBook state;
+
+		/**
+		 * Instantiates a new {@link UndoRecord}.
+		 *
+		 * @param book
+		 *            the book, null if it was not in the store
+		 */
+		private UndoRecord(BookStoreBook book) {
+			this.book = book;
+			this.state = book == null ? null : book.immutableStockBook();
+		}
+	}
+
 	/**
 	 * Instantiates a new {@link CertainBookStore}.
 	 */
@@ -38,7 +97,128 @@ public class CertainBookStore implements BookStore, StockManager {
 		// Constructors are not synchronized
 		bookMap = new HashMap<>();
 	}
-	private synchronized void validate(StockBook book) throws BookStoreException {
+
+	/**
+	 * Gets the lock contention metrics of the store.
+	 *
+	 * @return the lock metrics
+	 */
+	public LockMetrics getLockMetrics() {
+		return lockMetrics;
+	}
+
+	/**
+	 * Gets the version of the catalog, which changes whenever a mutation
+	 * changed the books.
+	 *
+	 * @return the catalog version
+	 */
+	public long getCatalogVersion() {
+		return catalogVersion;
+	}
+
+	/**
+	 * Gets the ISBNs of the books added or removed after a catalog version,
+	 * for a client revalidating the books it cached at that version. The
+	 * other mutations leave the title, author and price of the books as they
+	 * are, so they are not reported.
+	 *
+	 * @param version
+	 *            the catalog version
+	 * @return the ISBNs, or null if the store no longer knows the changes
+	 *         made since the version, so that any book may have changed
+	 */
+	public List<Integer> getBooksChangedSince(long version) {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.GETBOOKCHANGES);
+		try {
+			return version > catalogVersion ? null : bookChanges.changedSince(version);
+		} finally {
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.GETBOOKCHANGES);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.TransactionalStore#runAtomically(com.
+	 * acertainbookstore.interfaces.TransactionalStore.Transaction)
+	 */
+	@Override
+	public <T> T runAtomically(Transaction<T> transaction) throws BookStoreException {
+		// The lock is reentrant, so the operations of the transaction take it
+		// again; holding it throughout keeps other operations out.
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.EXECUTEBATCH);
+		try {
+			// Only the books the operations change are recorded, so that a
+			// transaction costs as much as its operations whatever the size
+			// of the catalog.
+			undoLog = new HashMap<>();
+
+			try {
+				return transaction.run();
+			} catch (BookStoreException | RuntimeException ex) {
+				// The books are as the transaction found them, at the current
+				// version.
+				rollBack();
+				bookChanges.discard(catalogVersion + 1);
+				changed = false;
+				throw ex;
+			} finally {
+				undoLog = null;
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.EXECUTEBATCH);
+		}
+	}
+
+	/**
+	 * Marks the books changed before a book is changed, added or removed, and
+	 * records the book in the undo log, unless no transaction runs or the
+	 * book is already recorded. The lock must be held.
+	 *
+	 * @param isbn
+	 *            the ISBN of the book
+	 */
+	private void logChange(int isbn) {
+		changed = true;
+
+		if (undoLog != null && !undoLog.containsKey(isbn)) {
+			undoLog.put(isbn, new UndoRecord(bookMap.get(isbn)));
+		}
+	}
+
+	/**
+	 * Bumps the catalog version if the books changed, unless a transaction
+	 * runs, which bumps it once when it commits. The lock must be held.
+	 */
+	private void bumpCatalogVersion() {
+		if (changed && undoLog == null) {
+			catalogVersion++;
+			changed = false;
+		}
+	}
+
+	/**
+	 * Restores the books recorded in the undo log. The books keep their
+	 * identity and their snapshots, so that what was cached from them remains
+	 * valid. The lock must be held.
+	 */
+	private void rollBack() {
+		for (Entry<Integer, UndoRecord> entry : undoLog.entrySet()) {
+			UndoRecord record = entry.getValue();
+
+			if (record.book == null) {
+				bookMap.remove(entry.getKey());
+			} else {
+				record.book.restore(record.state);
+				bookMap.put(entry.getKey(), record.book);
+			}
+		}
+	}
+
+	private void validate(StockBook book) throws BookStoreException {
 		int isbn = book.getISBN();
 		String bookTitle = book.getTitle();
 		String bookAuthor = book.getAuthor();
@@ -70,7 +250,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		}
 	}
 
-	private synchronized void validate(BookCopy bookCopy) throws BookStoreException {
+	private void validate(BookCopy bookCopy) throws BookStoreException {
 		int isbn = bookCopy.getISBN();
 		int numCopies = bookCopy.getNumCopies();
 
@@ -81,12 +261,12 @@ public class CertainBookStore implements BookStore, StockManager {
 		}
 	}
 
-	private synchronized void validate(BookEditorPick editorPickArg) throws BookStoreException {
+	private void validate(BookEditorPick editorPickArg) throws BookStoreException {
 		int isbn = editorPickArg.getISBN();
 		validateISBNInStock(isbn); // Check if the book has valid ISBN and in stock
 	}
 
-	private synchronized void validateISBNInStock(Integer ISBN) throws BookStoreException {
+	private void validateISBNInStock(Integer ISBN) throws BookStoreException {
 		if (BookStoreUtility.isInvalidISBN(ISBN)) { // Check if the book has valid ISBN
 			throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
 		}
@@ -100,19 +280,27 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see
 	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
 	 */
-	public synchronized void addBooks(Set<StockBook> bookSet) throws BookStoreException {
-		if (bookSet == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
+	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.ADDBOOKS);
+		try {
+			if (bookSet == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+			}
 
-		// Check if all are there
-		for (StockBook book : bookSet) {
-			validate(book);
-		}
+			// Check if all are there
+			for (StockBook book : bookSet) {
+				validate(book);
+			}
 
-		for (StockBook book : bookSet) {
-			int isbn = book.getISBN();
-			bookMap.put(isbn, new BookStoreBook(book));
+			for (StockBook book : bookSet) {
+				int isbn = book.getISBN();
+				logChange(isbn);
+				bookMap.put(isbn, new BookStoreBook(book));
+				bookChanges.record(catalogVersion + 1, isbn);
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.ADDBOOKS);
 		}
 	}
 
@@ -122,26 +310,33 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see
 	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
 	 */
-	public synchronized void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
-		int isbn;
-		int numCopies;
-
-		if (bookCopiesSet == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
+	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.ADDCOPIES);
+		try {
+			int isbn;
+			int numCopies;
+
+			if (bookCopiesSet == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+			}
 
-		for (BookCopy bookCopy : bookCopiesSet) {
-			validate(bookCopy);
-		}
+			for (BookCopy bookCopy : bookCopiesSet) {
+				validate(bookCopy);
+			}
 
-		BookStoreBook book;
+			BookStoreBook book;
 
-		// Update the number of copies
-		for (BookCopy bookCopy : bookCopiesSet) {
-			isbn = bookCopy.getISBN();
-			numCopies = bookCopy.getNumCopies();
-			book = bookMap.get(isbn);
-			book.addCopies(numCopies);
+			// Update the number of copies
+			for (BookCopy bookCopy : bookCopiesSet) {
+				isbn = bookCopy.getISBN();
+				numCopies = bookCopy.getNumCopies();
+				logChange(isbn);
+				book = bookMap.get(isbn);
+				book.addCopies(numCopies);
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.ADDCOPIES);
 		}
 	}
 
@@ -150,12 +345,17 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * 
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
 	 */
-	public synchronized List<StockBook> getBooks() {
-		Collection<BookStoreBook> bookMapValues = bookMap.values();
-
-		return bookMapValues.stream()
-				.map(book -> book.immutableStockBook())
-				.collect(Collectors.toList());
+	public List<StockBook> getBooks() {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.LISTBOOKS);
+		try {
+			Collection<BookStoreBook> bookMapValues = bookMap.values();
+
+			return bookMapValues.stream()
+					.map(book -> book.immutableStockBook())
+					.collect(Collectors.toList());
+		} finally {
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.LISTBOOKS);
+		}
 	}
 
 	/*
@@ -165,30 +365,87 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#updateEditorPicks(java.util
 	 * .Set)
 	 */
-	public synchronized void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
+	public void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.UPDATEEDITORPICKS);
+		try {
+			// Check that all ISBNs that we add/remove are there first.
+			if (editorPicks == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+			}
 
-		// Check that all ISBNs that we add/remove are there first.
-		if (editorPicks == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
+			int isbnValue;
 
-		int isbnValue;
+			for (BookEditorPick editorPickArg : editorPicks) {
+				validate(editorPickArg);
+			}
 
-		for (BookEditorPick editorPickArg : editorPicks) {
-			validate(editorPickArg);
+			for (BookEditorPick editorPickArg : editorPicks) {
+				logChange(editorPickArg.getISBN());
+				bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.UPDATEEDITORPICKS);
 		}
+	}
 
-		for (BookEditorPick editorPickArg : editorPicks) {
-			bookMap.get(editorPickArg.getISBN()).setEditorPick(editorPickArg.isEditorPick());
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 */
+	public void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.BUYBOOKS);
+		try {
+			buyBooksLocked(bookCopiesToBuy);
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.BUYBOOKS);
 		}
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStore#buyBooksBatch(java.util.List)
 	 */
-	public synchronized void buyBooks(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
+	@Override
+	public List<BookStoreException> buyBooksBatch(List<Set<BookCopy>> orders) throws BookStoreException {
+		if (orders == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		List<BookStoreException> results = new ArrayList<>(orders.size());
+
+		// The lock is acquired once for the whole batch.
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.BATCHBUYBOOKS);
+		try {
+			for (Set<BookCopy> order : orders) {
+				try {
+					buyBooksLocked(order);
+					results.add(null);
+				} catch (BookStoreException ex) {
+					results.add(ex);
+				}
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.BATCHBUYBOOKS);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Buys the books of an order, all or nothing. The lock must be held.
+	 *
+	 * @param bookCopiesToBuy
+	 *            the book copies to buy
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private void buyBooksLocked(Set<BookCopy> bookCopiesToBuy) throws BookStoreException {
 		if (bookCopiesToBuy == null) {
 			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 		}
@@ -202,7 +459,7 @@ public class CertainBookStore implements BookStore, StockManager {
 
 		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
 			isbn = bookCopyToBuy.getISBN();
-			
+
 			validate(bookCopyToBuy);
 
 			book = bookMap.get(isbn);
@@ -218,6 +475,7 @@ public class CertainBookStore implements BookStore, StockManager {
 		// order incurred misses which is used by books in demand
 		if (saleMiss) {
 			for (Map.Entry<Integer, Integer> saleMissEntry : salesMisses.entrySet()) {
+				logChange(saleMissEntry.getKey());
 				book = bookMap.get(saleMissEntry.getKey());
 				book.addSaleMiss(saleMissEntry.getValue());
 			}
@@ -226,6 +484,7 @@ public class CertainBookStore implements BookStore, StockManager {
 
 		// Then make the purchase.
 		for (BookCopy bookCopyToBuy : bookCopiesToBuy) {
+			logChange(bookCopyToBuy.getISBN());
 			book = bookMap.get(bookCopyToBuy.getISBN());
 			book.buyCopies(bookCopyToBuy.getNumCopies());
 		}
@@ -238,19 +497,24 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.
 	 * Set)
 	 */
-	public synchronized List<StockBook> getBooksByISBN(Set<Integer> isbnSet) throws BookStoreException {
-		if (isbnSet == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
+	public List<StockBook> getBooksByISBN(Set<Integer> isbnSet) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.GETSTOCKBOOKSBYISBN);
+		try {
+			if (isbnSet == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+			}
 
-		for (Integer ISBN : isbnSet) {
-			validateISBNInStock(ISBN);
-		}
+			for (Integer ISBN : isbnSet) {
+				validateISBNInStock(ISBN);
+			}
 
-		// Return the set of books matching isbns in the validated set.
-		return isbnSet.stream()
-				.map(isbn -> bookMap.get(isbn).immutableStockBook())
-				.collect(Collectors.toList());
+			// Return the set of books matching isbns in the validated set.
+			return isbnSet.stream()
+					.map(isbn -> bookMap.get(isbn).immutableStockBook())
+					.collect(Collectors.toList());
+		} finally {
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.GETSTOCKBOOKSBYISBN);
+		}
 	}
 
 	/*
@@ -258,19 +522,24 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * 
 	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
 	 */
-	public synchronized List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
-		if (isbnSet == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.GETBOOKS);
+		try {
+			if (isbnSet == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+			}
 
-		// Check that all ISBNs that we rate are there to start with.
-		for (Integer ISBN : isbnSet) {
-			validateISBNInStock(ISBN);
-		}
+			// Check that all ISBNs that we rate are there to start with.
+			for (Integer ISBN : isbnSet) {
+				validateISBNInStock(ISBN);
+			}
 
-		return isbnSet.stream()
-				.map(isbn -> bookMap.get(isbn).immutableBook())
-				.collect(Collectors.toList());
+			return isbnSet.stream()
+					.map(isbn -> bookMap.get(isbn).immutableBook())
+					.collect(Collectors.toList());
+		} finally {
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.GETBOOKS);
+		}
 	}
 
 	/*
@@ -278,43 +547,48 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * 
 	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
 	 */
-	public synchronized List<Book> getEditorPicks(int numBooks) throws BookStoreException {
-		if (numBooks < 0) {
-			throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
-		}
+	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.GETEDITORPICKS);
+		try {
+			if (numBooks < 0) {
+				throw new BookStoreException("numBooks = " + numBooks + ", but it must be positive");
+			}
 
-		// Query for all books with the Editor Pick boolean set.
-		List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream()
-				.map(pair -> pair.getValue())
-				.filter(book -> book.isEditorPick())
-				.collect(Collectors.toList());
+			// Query for all books with the Editor Pick boolean set.
+			List<BookStoreBook> listAllEditorPicks = bookMap.entrySet().stream()
+					.map(pair -> pair.getValue())
+					.filter(book -> book.isEditorPick())
+					.collect(Collectors.toList());
 
-		// Find numBooks random indices of books that will be picked.
-		Random rand = new Random();
-		Set<Integer> tobePicked = new HashSet<>();
-		int rangePicks = listAllEditorPicks.size();
+			// Find numBooks random indices of books that will be picked.
+			Random rand = new Random();
+			Set<Integer> tobePicked = new HashSet<>();
+			int rangePicks = listAllEditorPicks.size();
 
-		if (rangePicks <= numBooks) {
+			if (rangePicks <= numBooks) {
 
-			// We need to add all books.
-			for (int i = 0; i < listAllEditorPicks.size(); i++) {
-				tobePicked.add(i);
-			}
-		} else {
+				// We need to add all books.
+				for (int i = 0; i < listAllEditorPicks.size(); i++) {
+					tobePicked.add(i);
+				}
+			} else {
 
-			// We need to pick randomly the books that need to be returned.
-			int randNum;
+				// We need to pick randomly the books that need to be returned.
+				int randNum;
 
-			while (tobePicked.size() < numBooks) {
-				randNum = rand.nextInt(rangePicks);
-				tobePicked.add(randNum);
+				while (tobePicked.size() < numBooks) {
+					randNum = rand.nextInt(rangePicks);
+					tobePicked.add(randNum);
+				}
 			}
-		}
 
-		// Return all the books by the randomly chosen indices.
-		return tobePicked.stream()
-				.map(index -> listAllEditorPicks.get(index).immutableBook())
-				.collect(Collectors.toList());
+			// Return all the books by the randomly chosen indices.
+			return tobePicked.stream()
+					.map(index -> listAllEditorPicks.get(index).immutableBook())
+					.collect(Collectors.toList());
+		} finally {
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.GETEDITORPICKS);
+		}
 	}
 
 	/*
@@ -323,7 +597,7 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see com.acertainbookstore.interfaces.BookStore#getTopRatedBooks(int)
 	 */
 	@Override
-	public synchronized List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
+	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
 		throw new BookStoreException();
 	}
 
@@ -333,7 +607,7 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand()
 	 */
 	@Override
-	public synchronized List<StockBook> getBooksInDemand() throws BookStoreException {
+	public List<StockBook> getBooksInDemand() throws BookStoreException {
 		throw new BookStoreException();
 	}
 
@@ -343,7 +617,7 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see com.acertainbookstore.interfaces.BookStore#rateBooks(java.util.Set)
 	 */
 	@Override
-	public synchronized void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
+	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
 		throw new BookStoreException();
 	}
 
@@ -352,8 +626,22 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * 
 	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
 	 */
-	public synchronized void removeAllBooks() throws BookStoreException {
-		bookMap.clear();
+	public void removeAllBooks() throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.REMOVEALLBOOKS);
+		try {
+			if (undoLog != null) {
+				for (Integer isbn : bookMap.keySet()) {
+					logChange(isbn);
+				}
+			}
+
+			changed = true;
+			bookMap.clear();
+			bookChanges.reset(catalogVersion + 1);
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.REMOVEALLBOOKS);
+		}
 	}
 
 	/*
@@ -362,23 +650,31 @@ public class CertainBookStore implements BookStore, StockManager {
 	 * @see
 	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
 	 */
-	public synchronized void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
-		if (isbnSet == null) {
-			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
-		}
-
-		for (Integer ISBN : isbnSet) {
-			if (BookStoreUtility.isInvalidISBN(ISBN)) {
-				throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		long acquiredAt = lockMetrics.lock(lock, lockQueueLength, BookStoreMessageTag.REMOVEBOOKS);
+		try {
+			if (isbnSet == null) {
+				throw new BookStoreException(BookStoreConstants.NULL_INPUT);
 			}
 
-			if (!bookMap.containsKey(ISBN)) {
-				throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+			for (Integer ISBN : isbnSet) {
+				if (BookStoreUtility.isInvalidISBN(ISBN)) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.INVALID);
+				}
+
+				if (!bookMap.containsKey(ISBN)) {
+					throw new BookStoreException(BookStoreConstants.ISBN + ISBN + BookStoreConstants.NOT_AVAILABLE);
+				}
 			}
-		}
 
-		for (int isbn : isbnSet) {
-			bookMap.remove(isbn);
+			for (int isbn : isbnSet) {
+				logChange(isbn);
+				bookMap.remove(isbn);
+				bookChanges.record(catalogVersion + 1, isbn);
+			}
+		} finally {
+			bumpCatalogVersion();
+			lockMetrics.unlock(lock, acquiredAt, BookStoreMessageTag.REMOVEBOOKS);
 		}
 	}
 }
@@ -0,0 +1,281 @@
+package com.acertainbookstore.client;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link AsyncBookStoreAdapter} exposes a synchronous {@link BookStore} and
+ * {@link StockManager}, e.g. a local {@link CertainBookStore}, through the
+ * {@link AsyncBookStore} and {@link AsyncStockManager} APIs by running every
+ * call on an {@link Executor}. This allows the asynchronous clients to be
+ * exercised against an in-process bookstore.
+ *
+ * @see AsyncBookStore
+ * @see AsyncStockManager
+ */
+public class AsyncBookStoreAdapter implements AsyncBookStore, AsyncStockManager {
+
+	/**
+	 * {@link BookStoreCall} is a call to the synchronous API which can fail with
+	 * a {@link BookStoreException}.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 */
+	@FunctionalInterface
+	private interface BookStoreCall<T> {
+
+		/**
+		 * Performs the call.
+		 *
+		 * @return the result
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		T call() throws BookStoreException;
+	}
+
+	/** The book store. */
+	private final BookStore bookStore;
+
+	/** The stock manager. */
+	private final StockManager stockManager;
+
+	/** The executor running the calls. */
+	private final Executor executor;
+
+	/**
+	 * Initializes a new {@link AsyncBookStoreAdapter} running the calls on the
+	 * common fork join pool.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param stockManager
+	 *            the stock manager
+	 */
+	public AsyncBookStoreAdapter(BookStore bookStore, StockManager stockManager) {
+		this(bookStore, stockManager, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Initializes a new {@link AsyncBookStoreAdapter}.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param stockManager
+	 *            the stock manager
+	 * @param executor
+	 *            the executor running the calls
+	 */
+	public AsyncBookStoreAdapter(BookStore bookStore, StockManager stockManager, Executor executor) {
+		this.bookStore = bookStore;
+		this.stockManager = stockManager;
+		this.executor = executor;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#buyBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> buyBooksAsync(Set<BookCopy> booksToBuy) {
+		return run(() -> {
+			bookStore.buyBooks(booksToBuy);
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#rateBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> rateBooksAsync(Set<BookRating> bookRating) {
+		return run(() -> {
+			bookStore.rateBooks(bookRating);
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<List<Book>> getBooksAsync(Set<Integer> isbnSet) {
+		return run(() -> bookStore.getBooks(isbnSet));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getTopRatedBooksAsync(int)
+	 */
+	@Override
+	public CompletableFuture<List<Book>> getTopRatedBooksAsync(int numBooks) {
+		return run(() -> bookStore.getTopRatedBooks(numBooks));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getEditorPicksAsync(int)
+	 */
+	@Override
+	public CompletableFuture<List<Book>> getEditorPicksAsync(int numBooks) {
+		return run(() -> bookStore.getEditorPicks(numBooks));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addBooksAsync(Set<StockBook> bookSet) {
+		return run(() -> {
+			stockManager.addBooks(bookSet);
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addCopiesAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addCopiesAsync(Set<BookCopy> bookCopiesSet) {
+		return run(() -> {
+			stockManager.addCopies(bookCopiesSet);
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.AsyncStockManager#getBooksAsync()
+	 */
+	@Override
+	public CompletableFuture<List<StockBook>> getBooksAsync() {
+		return run(stockManager::getBooks);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksByISBNAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	public CompletableFuture<List<StockBook>> getBooksByISBNAsync(Set<Integer> isbns) {
+		return run(() -> stockManager.getBooksByISBN(isbns));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksInDemandAsync()
+	 */
+	@Override
+	public CompletableFuture<List<StockBook>> getBooksInDemandAsync() {
+		return run(stockManager::getBooksInDemand);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#updateEditorPicksAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> updateEditorPicksAsync(Set<BookEditorPick> editorPicks) {
+		return run(() -> {
+			stockManager.updateEditorPicks(editorPicks);
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeAllBooksAsync()
+	 */
+	@Override
+	public CompletableFuture<Void> removeAllBooksAsync() {
+		return run(() -> {
+			stockManager.removeAllBooks();
+			return null;
+		});
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> removeBooksAsync(Set<Integer> isbnSet) {
+		return run(() -> {
+			stockManager.removeBooks(isbnSet);
+			return null;
+		});
+	}
+
+	/**
+	 * Runs a call on the executor, completing the future exceptionally with
+	 * the {@link BookStoreException} it throws.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 * @param call
+	 *            the call
+	 * @return the future of the result
+	 */
+	private <T> CompletableFuture<T> run(BookStoreCall<T> call) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return call.call();
+			} catch (BookStoreException ex) {
+				throw new CompletionException(ex);
+			}
+		}, executor);
+	}
+}
@@ -0,0 +1,360 @@
+package com.acertainbookstore.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.utils.BookStoreCachedResponse;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link BookReadCache} keeps the books read through a proxy, up to a max
+ * number of books evicted least recently used first, so that the popular
+ * books are read without a round trip to the server.
+ *
+ * The cache revalidates its books when the last revalidation is older than
+ * its max staleness: it asks the server for the books added or removed since
+ * the catalog version it last revalidated at, a
+ * {@link BookStoreMessageTag#GETBOOKCHANGES} request answered with 304 Not
+ * Modified if the catalog did not change, and drops them. A cached book is
+ * thus never older than the max staleness, plus the time a revalidation
+ * takes. A book read from the server while a revalidation dropped books is
+ * not cached, as it may be older than the revalidation.
+ *
+ * @see BookStoreHTTPProxy#enableReadCache(int, long)
+ * @see CertainBookStore#getBooksChangedSince(long)
+ */
+public class BookReadCache {
+
+	/**
+	 * {@link BooksLoader} reads books from the server.
+	 */
+	@FunctionalInterface
+	public interface BooksLoader {
+
+		/**
+		 * Reads books from the server.
+		 *
+		 * @param isbnSet
+		 *            the ISBNs of the books
+		 * @return the books
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException;
+	}
+
+	/**
+	 * {@link ChangesLoader} reads the books changed since a revalidation from
+	 * the server.
+	 */
+	@FunctionalInterface
+	public interface ChangesLoader {
+
+		/**
+		 * Reads the books changed since a revalidation.
+		 *
+		 * @param lastChanges
+		 *            the response of the last revalidation, null if none
+		 * @return the same response if the catalog did not change, otherwise
+		 *         a response listing the ISBNs of the books changed, or
+		 *         listing none if any book may have changed
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		BookStoreCachedResponse getBookChanges(BookStoreCachedResponse lastChanges) throws BookStoreException;
+	}
+
+	/** The loader of the books missing from the cache. */
+	private final BooksLoader booksLoader;
+
+	/** The loader of the changed books. */
+	private final ChangesLoader changesLoader;
+
+	/** The max staleness of a cached book in nanoseconds. */
+	private final long maxStalenessNanos;
+
+	/** The books, in least recently used order. */
+	private final LinkedHashMap<Integer, Book> books;
+
+	/** The response of the last revalidation, null if none. */
+	private BookStoreCachedResponse lastChanges = null;
+
+	/** The time the last revalidation was sent, in nanoseconds. */
+	private volatile long revalidatedAt;
+
+	/** The number of revalidations which dropped books, read before and after loading books. */
+	private volatile long numDroppingRevalidations = 0;
+
+	/** The lock serializing the revalidations. */
+	private final Object revalidationLock = new Object();
+
+	/** The number of books read from the cache. */
+	private final AtomicLong numHits = new AtomicLong();
+
+	/** The number of books read from the server. */
+	private final AtomicLong numMisses = new AtomicLong();
+
+	/** The number of books dropped by the revalidations. */
+	private final AtomicLong numInvalidations = new AtomicLong();
+
+	/** The number of revalidations. */
+	private final AtomicLong numRevalidations = new AtomicLong();
+
+	/** The total staleness of the books read from the cache, in nanoseconds. */
+	private final AtomicLong totalStalenessNanos = new AtomicLong();
+
+	/** The max staleness of a book read from the cache, in nanoseconds. */
+	private final AtomicLong maxObservedStalenessNanos = new AtomicLong();
+
+	/**
+	 * Instantiates a new {@link BookReadCache}.
+	 *
+	 * @param booksLoader
+	 *            the loader of the books missing from the cache
+	 * @param changesLoader
+	 *            the loader of the changed books
+	 * @param maxEntries
+	 *            the max number of books
+	 * @param maxStalenessMillis
+	 *            the max staleness of a cached book in milliseconds
+	 */
+	public BookReadCache(BooksLoader booksLoader, ChangesLoader changesLoader, int maxEntries,
+			long maxStalenessMillis) {
+		this.booksLoader = booksLoader;
+		this.changesLoader = changesLoader;
+		this.maxStalenessNanos = TimeUnit.MILLISECONDS.toNanos(maxStalenessMillis);
+		this.revalidatedAt = System.nanoTime() - maxStalenessNanos - 1;
+		this.books = new LinkedHashMap<Integer, Book>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Book> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets books, from the cache if it holds them, otherwise from the server.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs of the books
+	 * @return the books, in the order of the set
+	 * @throws BookStoreException
+	 *             if the server fails to revalidate the cache or to read
+	 *             the books missing from it
+	 */
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		if (isbnSet == null) {
+			return booksLoader.getBooks(isbnSet);
+		}
+
+		revalidate();
+
+		Map<Integer, Book> found = new HashMap<>();
+		Set<Integer> missing = new LinkedHashSet<>();
+		long revalidations = numDroppingRevalidations;
+		long staleness = System.nanoTime() - revalidatedAt;
+
+		synchronized (books) {
+			for (Integer isbn : isbnSet) {
+				Book book = books.get(isbn);
+
+				if (book == null) {
+					missing.add(isbn);
+				} else {
+					found.put(isbn, book);
+				}
+			}
+		}
+
+		if (!found.isEmpty()) {
+			numHits.addAndGet(found.size());
+			totalStalenessNanos.addAndGet(staleness * found.size());
+			maxObservedStalenessNanos.accumulateAndGet(staleness, Math::max);
+		}
+
+		if (!missing.isEmpty()) {
+			numMisses.addAndGet(missing.size());
+			List<Book> loaded = booksLoader.getBooks(missing);
+
+			synchronized (books) {
+				for (Book book : loaded) {
+					found.put(book.getISBN(), book);
+
+					if (revalidations == numDroppingRevalidations) {
+						books.put(book.getISBN(), book);
+					}
+				}
+			}
+		}
+
+		List<Book> result = new ArrayList<>(isbnSet.size());
+
+		for (Integer isbn : isbnSet) {
+			result.add(found.get(isbn));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Revalidates the cache if the last revalidation is older than the max
+	 * staleness. The calls arriving during a revalidation wait for it.
+	 *
+	 * @throws BookStoreException
+	 *             if the server fails to answer
+	 */
+	private void revalidate() throws BookStoreException {
+		if (System.nanoTime() - revalidatedAt <= maxStalenessNanos) {
+			return;
+		}
+
+		synchronized (revalidationLock) {
+			long sentAt = System.nanoTime();
+
+			if (sentAt - revalidatedAt <= maxStalenessNanos) {
+				return;
+			}
+
+			BookStoreCachedResponse changes = changesLoader.getBookChanges(lastChanges);
+			numRevalidations.incrementAndGet();
+
+			if (changes != lastChanges) {
+				drop(changes.getResponse().getList());
+				lastChanges = changes;
+			}
+
+			revalidatedAt = sentAt;
+		}
+	}
+
+	/**
+	 * Drops the changed books.
+	 *
+	 * @param changed
+	 *            the ISBNs of the changed books, null to drop all the books
+	 */
+	private void drop(List<?> changed) {
+		int numDropped = 0;
+
+		synchronized (books) {
+			if (changed == null) {
+				numDropped = books.size();
+				books.clear();
+			} else {
+				for (Object isbn : changed) {
+					numDropped += books.remove(isbn) == null ? 0 : 1;
+				}
+			}
+
+			if (changed == null || !changed.isEmpty()) {
+				numDroppingRevalidations++;
+			}
+		}
+
+		numInvalidations.addAndGet(numDropped);
+	}
+
+	/**
+	 * Gets the number of books read from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getNumHits() {
+		return numHits.get();
+	}
+
+	/**
+	 * Gets the number of books read from the server.
+	 *
+	 * @return the number of misses
+	 */
+	public long getNumMisses() {
+		return numMisses.get();
+	}
+
+	/**
+	 * Gets the share of the books read from the cache.
+	 *
+	 * @return the hit rate, 0 if no book was read
+	 */
+	public double getHitRate() {
+		long hits = numHits.get();
+		long reads = hits + numMisses.get();
+		return reads == 0 ? 0 : (double) hits / reads;
+	}
+
+	/**
+	 * Gets the number of books dropped by the revalidations.
+	 *
+	 * @return the number of invalidations
+	 */
+	public long getNumInvalidations() {
+		return numInvalidations.get();
+	}
+
+	/**
+	 * Gets the number of revalidations.
+	 *
+	 * @return the number of revalidations
+	 */
+	public long getNumRevalidations() {
+		return numRevalidations.get();
+	}
+
+	/**
+	 * Gets the mean staleness of the books read from the cache, the time
+	 * since the revalidation they were read after.
+	 *
+	 * @return the mean staleness in milliseconds
+	 */
+	public double getMeanStalenessMillis() {
+		long hits = numHits.get();
+		return hits == 0 ? 0 : totalStalenessNanos.get() / 1e6 / hits;
+	}
+
+	/**
+	 * Gets the max staleness of a book read from the cache.
+	 *
+	 * @return the max staleness in milliseconds
+	 */
+	public double getMaxStalenessMillis() {
+		return maxObservedStalenessNanos.get() / 1e6;
+	}
+
+	/**
+	 * Gets the number of books cached.
+	 *
+	 * @return the number of books
+	 */
+	public int size() {
+		synchronized (books) {
+			return books.size();
+		}
+	}
+
+	/**
+	 * Gets a one-line report of the cache, in the format of the lock metrics.
+	 *
+	 * @return the report
+	 */
+	public String getReport() {
+		return String.format(
+				"# Read cache (hits=%d, misses=%d, hitRate=%.3f, invalidations=%d, revalidations=%d, "
+						+ "meanStalenessMs=%.3f, maxStalenessMs=%.3f, entries=%d)%n",
+				getNumHits(), getNumMisses(), getHitRate(), getNumInvalidations(), getNumRevalidations(),
+				getMeanStalenessMillis(), getMaxStalenessMillis(), size());
+	}
+}
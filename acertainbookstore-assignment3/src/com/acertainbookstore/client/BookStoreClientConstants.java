@@ -17,6 +17,21 @@ public final class BookStoreClientConstants {
 	/** The Constant CLIENT_MAX_TIMEOUT_MILLISECS. */
 	public static final int CLIENT_MAX_TIMEOUT_MILLISECS = 30000;
 
+	/** The Constant CLIENT_MAX_QUEUED_REQUESTS bounds the in-flight requests per destination. */
+	public static final int CLIENT_MAX_QUEUED_REQUESTS = 65536;
+
+	/** The Constant CLIENT_MAX_RESPONSE_BUFFER_BYTES bounds asynchronously buffered responses. */
+	public static final int CLIENT_MAX_RESPONSE_BUFFER_BYTES = 64 * 1024 * 1024;
+
+	/** The Constant CLIENT_TCP_CONNECTIONS sets the connections the TCP proxies pipeline their requests on. */
+	public static final int CLIENT_TCP_CONNECTIONS = 4;
+
+	/** The Constant CLIENT_BUY_BATCH_SIZE is the default max buy books calls of a batch. */
+	public static final int CLIENT_BUY_BATCH_SIZE = 64;
+
+	/** The Constant CLIENT_READ_CACHE_STALENESS is the default max staleness of the cached books, in milliseconds. */
+	public static final long CLIENT_READ_CACHE_STALENESS = 100;
+
 	/** The Constant strERR_CLIENT_REQUEST_SENDING. */
 	public static final String STR_ERR_CLIENT_REQUEST_SENDING = "ERR_CLIENT_REQUEST_SENDING";
 
@@ -5,31 +5,36 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.interfaces.AsyncBookStore;
 import com.acertainbookstore.interfaces.BookStore;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
+import com.acertainbookstore.utils.BookStoreCachedResponse;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreRequest;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
 import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * {@link BookStoreHTTPProxy} implements the client level synchronous
- * {@link CertainBookStore} API declared in the {@link BookStore} class.
+ * {@link CertainBookStore} API declared in the {@link BookStore} class, and its
+ * non-blocking counterpart declared in the {@link AsyncBookStore} class.
  * 
  * @see BookStore
+ * @see AsyncBookStore
  * @see CertainBookStore
  */
-public class BookStoreHTTPProxy implements BookStore {
+public class BookStoreHTTPProxy implements BookStore, AsyncBookStore {
 
 	/** The client. */
 	protected HttpClient client;
@@ -38,7 +43,13 @@ public class BookStoreHTTPProxy implements BookStore {
 	protected String serverAddress;
 
 	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	private final BookStoreSerializer serializer;
+
+	/** The batcher of the buy books calls, null unless batching is enabled. */
+	private volatile BuyBooksBatcher buyBooksBatcher = null;
+
+	/** The cache of the books read, null unless caching is enabled. */
+	private volatile BookReadCache readCache = null;
 
 	/**
 	 * Initializes a new {@link BookStoreHTTPProxy}.
@@ -49,19 +60,50 @@ public class BookStoreHTTPProxy implements BookStore {
 	 *             the exception
 	 */
 	public BookStoreHTTPProxy(String serverAddress) throws Exception {
+		this(serverAddress, BookStoreClientConstants.CLIENT_MAX_CONNECTION_ADDRESS);
+	}
 
-		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
-		}
+	/**
+	 * Initializes a new {@link BookStoreHTTPProxy} opening up to the given
+	 * number of connections to the server.
+	 *
+	 * @param serverAddress
+	 *            the server address
+	 * @param maxConnections
+	 *            the max number of connections
+	 * @throws Exception
+	 *             the exception
+	 */
+	public BookStoreHTTPProxy(String serverAddress, int maxConnections) throws Exception {
+		this(serverAddress, maxConnections, System.getProperty(BookStoreConstants.PROPERTY_KEY_CONTENT_TYPE));
+	}
+
+	/**
+	 * Initializes a new {@link BookStoreHTTPProxy} speaking the codec of a
+	 * content type.
+	 *
+	 * @param serverAddress
+	 *            the server address
+	 * @param maxConnections
+	 *            the max number of connections
+	 * @param contentType
+	 *            the content type of the codec, null for the default one
+	 * @throws Exception
+	 *             the exception
+	 */
+	public BookStoreHTTPProxy(String serverAddress, int maxConnections, String contentType) throws Exception {
+
+		// Setup the type of serializer, pooled rather than per thread.
+		serializer = BookStoreSerializerRegistry.newSerializer(contentType);
 
 		setServerAddress(serverAddress);
 		client = new HttpClient();
 
 		// Max concurrent connections to every address.
-		client.setMaxConnectionsPerDestination(BookStoreClientConstants.CLIENT_MAX_CONNECTION_ADDRESS);
+		client.setMaxConnectionsPerDestination(maxConnections);
+
+		// Max requests waiting for a connection, bounds the asynchronous calls.
+		client.setMaxRequestsQueuedPerDestination(BookStoreClientConstants.CLIENT_MAX_QUEUED_REQUESTS);
 
 		// Max number of threads.
 		client.setExecutor(new QueuedThreadPool(BookStoreClientConstants.CLIENT_MAX_THREADSPOOL_THREADS));
@@ -97,25 +139,155 @@ public class BookStoreHTTPProxy implements BookStore {
 	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
 	 */
 	public void buyBooks(Set<BookCopy> isbnSet) throws BookStoreException {
+		if (buyBooksBatcher != null) {
+			BookStoreUtility.await(buyBooksBatcher.buyBooks(isbnSet));
+			return;
+		}
+
 		String urlString = serverAddress + "/" + BookStoreMessageTag.BUYBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStore#buyBooksBatch(java.util.List)
 	 */
+	@Override
 	@SuppressWarnings("unchecked")
+	public List<BookStoreException> buyBooksBatch(List<Set<BookCopy>> orders) throws BookStoreException {
+		return (List<BookStoreException>) BookStoreUtility.await(sendBuyBooksBatch(orders));
+	}
+
+	/**
+	 * Enables the batching of the buy books calls: the calls issued within a
+	 * window of each other are sent as one
+	 * {@link BookStoreMessageTag#BATCHBUYBOOKS} request, which the server
+	 * applies order by order. Each call still fails only with the exception of
+	 * its own order.
+	 *
+	 * @param windowMicros
+	 *            the window of a batch in microseconds
+	 * @param maxBatchSize
+	 *            the max number of calls in a batch
+	 */
+	public void enableBuyBooksBatching(long windowMicros, int maxBatchSize) {
+		buyBooksBatcher = new BuyBooksBatcher(this::sendBuyBooksBatch, windowMicros, maxBatchSize);
+	}
+
+	/**
+	 * Enables the batching of the buy books calls if the
+	 * {@link BookStoreConstants#PROPERTY_KEY_BUY_BATCH_WINDOW} property is set.
+	 */
+	public void enableBuyBooksBatchingFromProperties() {
+		long windowMicros = Long.getLong(BookStoreConstants.PROPERTY_KEY_BUY_BATCH_WINDOW, 0);
+
+		if (windowMicros > 0) {
+			enableBuyBooksBatching(windowMicros, Integer.getInteger(BookStoreConstants.PROPERTY_KEY_BUY_BATCH_SIZE,
+					BookStoreClientConstants.CLIENT_BUY_BATCH_SIZE));
+		}
+	}
+
+	/**
+	 * Enables the cache of the books read by {@link #getBooks(Set)}: the
+	 * cached books are revalidated against the books the server reports
+	 * changed, once the last revalidation is older than the max staleness.
+	 * The asynchronous reads are not cached.
+	 *
+	 * @param maxEntries
+	 *            the max number of books cached
+	 * @param maxStalenessMillis
+	 *            the max staleness of a cached book in milliseconds
+	 */
+	public void enableReadCache(int maxEntries, long maxStalenessMillis) {
+		readCache = new BookReadCache(this::sendGetBooks, this::sendGetBookChanges, maxEntries, maxStalenessMillis);
+	}
+
+	/**
+	 * Enables the cache of the books read if the
+	 * {@link BookStoreConstants#PROPERTY_KEY_READ_CACHE_SIZE} property is set.
+	 */
+	public void enableReadCacheFromProperties() {
+		int maxEntries = Integer.getInteger(BookStoreConstants.PROPERTY_KEY_READ_CACHE_SIZE, 0);
+
+		if (maxEntries > 0) {
+			enableReadCache(maxEntries, Long.getLong(BookStoreConstants.PROPERTY_KEY_READ_CACHE_STALENESS,
+					BookStoreClientConstants.CLIENT_READ_CACHE_STALENESS));
+		}
+	}
+
+	/**
+	 * Gets the cache of the books read.
+	 *
+	 * @return the read cache, null unless caching is enabled
+	 */
+	public BookReadCache getReadCache() {
+		return readCache;
+	}
+
+	/**
+	 * Sends a batch of buy books orders.
+	 *
+	 * @param orders
+	 *            the orders
+	 * @return the future of the exception of each order, null for the orders
+	 *         bought
+	 */
+	private CompletableFuture<List<?>> sendBuyBooksBatch(List<Set<BookCopy>> orders) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.BATCHBUYBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, orders);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(BookStoreResponse::getList);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 */
 	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		BookReadCache cache = readCache;
+		return cache == null ? sendGetBooks(isbnSet) : cache.getBooks(isbnSet);
+	}
+
+	/**
+	 * Reads books from the server.
+	 *
+	 * @param isbnSet
+	 *            the ISBNs of the books
+	 * @return the books
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@SuppressWarnings("unchecked")
+	private List<Book> sendGetBooks(Set<Integer> isbnSet) throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.GETBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
 		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
+				serializer);
 		return (List<Book>) bookStoreResponse.getList();
 	}
 
+	/**
+	 * Reads the books changed since the last revalidation of the read cache.
+	 *
+	 * @param lastChanges
+	 *            the response of the last revalidation, null if none
+	 * @return the same response if the catalog did not change, otherwise the
+	 *         ISBNs of the books changed, or none if any book may have
+	 *         changed
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private BookStoreCachedResponse sendGetBookChanges(BookStoreCachedResponse lastChanges)
+			throws BookStoreException {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETBOOKCHANGES;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		return BookStoreUtility.performConditionalHttpExchange(client, bookStoreRequest, serializer, lastChanges);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -132,14 +304,94 @@ public class BookStoreHTTPProxy implements BookStore {
 
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
 		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
+				serializer);
 		return (List<Book>) bookStoreResponse.getList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#buyBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> buyBooksAsync(Set<BookCopy> isbnSet) {
+		if (buyBooksBatcher != null) {
+			return buyBooksBatcher.buyBooks(isbnSet);
+		}
+
+		String urlString = serverAddress + "/" + BookStoreMessageTag.BUYBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getBooksAsync(Set<Integer> isbnSet) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getEditorPicksAsync(int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getEditorPicksAsync(int numBooks) {
+		String urlEncodedNumBooks = URLEncoder.encode(Integer.toString(numBooks), StandardCharsets.UTF_8);
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETEDITORPICKS + "?"
+				+ BookStoreConstants.BOOK_NUM_PARAM + "=" + urlEncodedNumBooks;
+
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#rateBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> rateBooksAsync(Set<BookRating> bookRating) {
+		return CompletableFuture.failedFuture(new BookStoreException());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getTopRatedBooksAsync(int)
+	 */
+	@Override
+	public CompletableFuture<List<Book>> getTopRatedBooksAsync(int numBooks) {
+		return CompletableFuture.failedFuture(new BookStoreException());
+	}
+
 	/**
 	 * Stops the proxy.
 	 */
 	public void stop() {
+		if (buyBooksBatcher != null) {
+			buyBooksBatcher.stop();
+		}
+
 		try {
 			client.stop();
 		} catch (Exception ex) {
@@ -0,0 +1,300 @@
+package com.acertainbookstore.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+import com.acertainbookstore.utils.BookStoreBinaryProtocol;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreBufferPool;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerPool;
+import com.acertainbookstore.utils.BookStoreUtility;
+
+/**
+ * {@link BookStoreTCPClient} sends requests to a
+ * {@link com.acertainbookstore.server.BookStoreTCPServer} over the binary TCP
+ * transport. The requests are spread round-robin over a few connections and
+ * pipelined: a request is written as soon as it is issued, without waiting
+ * for the responses of the requests before it, and a reader thread per
+ * connection completes the future of each response by its request id.
+ *
+ * @see BookStoreBinaryProtocol
+ * @see BookStoreTCPProxy
+ * @see StockManagerTCPProxy
+ */
+public class BookStoreTCPClient {
+
+	/** The connections. */
+	private final Connection[] connections;
+
+	/** The index of the next connection to use. */
+	private final AtomicInteger nextConnection = new AtomicInteger();
+
+	/** The id of the next request. */
+	private final AtomicLong nextRequestId = new AtomicLong();
+
+	/** The serializer. */
+	private final BookStoreSerializer serializer = BookStoreSerializerPool.newDefaultPool();
+
+	/** The buffers the request frames are encoded into. */
+	private final BookStoreBufferPool buffers = new BookStoreBufferPool();
+
+	/**
+	 * {@link Connection} is a connection to the server and the requests
+	 * awaiting their response on it.
+	 */
+	private final class Connection implements Runnable {
+
+		/** The channel, in blocking mode. */
+		private final SocketChannel channel;
+
+		/** The futures of the requests awaiting their response. */
+		private final ConcurrentHashMap<Long, CompletableFuture<BookStoreResponse>> outstanding = new ConcurrentHashMap<>();
+
+		/** The lock serializing the frame writes. */
+		private final Object writeLock = new Object();
+
+		/** The failure which closed the connection, or null. */
+		private volatile BookStoreException failure = null;
+
+		/**
+		 * Opens a new {@link Connection} and starts its reader thread.
+		 *
+		 * @param address
+		 *            the server address
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private Connection(InetSocketAddress address) throws IOException {
+			channel = SocketChannel.open(address);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			Thread reader = new Thread(this, "bookstore-tcp-reader");
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		/**
+		 * Sends a request frame.
+		 *
+		 * @param requestId
+		 *            the request id
+		 * @param frame
+		 *            the frame
+		 * @param future
+		 *            the future completed by the response
+		 */
+		private void send(long requestId, ByteBuffer frame, CompletableFuture<BookStoreResponse> future) {
+			outstanding.put(requestId, future);
+
+			try {
+				synchronized (writeLock) {
+					while (frame.hasRemaining()) {
+						channel.write(frame);
+					}
+				}
+			} catch (IOException ex) {
+				fail(new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_SENDING, ex));
+			}
+
+			// The reader may have failed the outstanding requests before this
+			// one was registered.
+			if (failure != null && outstanding.remove(requestId) != null) {
+				future.completeExceptionally(failure);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.Runnable#run()
+		 */
+		@Override
+		public void run() {
+			ByteBuffer buffer = ByteBuffer.allocate(BookStoreBinaryProtocol.READ_BUFFER_SIZE);
+
+			try {
+				while (true) {
+					if (channel.read(buffer) < 0) {
+						throw new EOFException("Connection closed by the server");
+					}
+
+					buffer.flip();
+					int frameLength;
+
+					while ((frameLength = BookStoreBinaryProtocol.nextFrameLength(buffer,
+							BookStoreBinaryProtocol.RESPONSE_HEADER_SIZE)) >= 0) {
+						buffer.getInt();
+						long requestId = buffer.getLong();
+						// The payload is de-serialized in place, before the buffer
+						// is compacted.
+						int payloadLength = frameLength - BookStoreBinaryProtocol.RESPONSE_HEADER_SIZE;
+						complete(outstanding.remove(requestId), buffer.array(),
+								buffer.arrayOffset() + buffer.position(), payloadLength);
+						buffer.position(buffer.position() + payloadLength);
+					}
+
+					buffer = BookStoreBinaryProtocol.compact(buffer);
+				}
+			} catch (IOException ex) {
+				fail(new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex));
+			} catch (BookStoreException ex) {
+				fail(ex);
+			}
+		}
+
+		/**
+		 * Closes the connection and fails the requests awaiting their
+		 * response.
+		 *
+		 * @param ex
+		 *            the failure
+		 */
+		private void fail(BookStoreException ex) {
+			if (failure == null) {
+				failure = ex;
+			}
+
+			close();
+
+			for (Long requestId : outstanding.keySet()) {
+				CompletableFuture<BookStoreResponse> future = outstanding.remove(requestId);
+
+				if (future != null) {
+					future.completeExceptionally(failure);
+				}
+			}
+		}
+
+		/**
+		 * Closes the channel, which stops the reader thread.
+		 */
+		private void close() {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				System.err.println(ex);
+			}
+		}
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreTCPClient}.
+	 *
+	 * @param serverAddress
+	 *            the server address, as host:port
+	 * @param numConnections
+	 *            the number of connections
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public BookStoreTCPClient(String serverAddress, int numConnections) throws IOException {
+		int separator = serverAddress.lastIndexOf(':');
+		InetSocketAddress address = new InetSocketAddress(serverAddress.substring(0, separator),
+				Integer.parseInt(serverAddress.substring(separator + 1)));
+
+		connections = new Connection[numConnections];
+		for (int i = 0; i < numConnections; i++) {
+			connections[i] = new Connection(address);
+		}
+	}
+
+	/**
+	 * Sends a request without blocking on its response. The input value is
+	 * serialized on the calling thread into a pooled buffer, which is released
+	 * once the frame is written; the response is de-serialized on the reader
+	 * thread of the connection.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the input value, null if the method takes none
+	 * @return the future of the book store response, completed exceptionally
+	 *         with a {@link BookStoreException} on failure or with the
+	 *         exception carried by the response
+	 */
+	public CompletableFuture<BookStoreResponse> sendAsync(BookStoreMessageTag messageTag, Object inputValue) {
+		CompletableFuture<BookStoreResponse> future = new CompletableFuture<>();
+		Connection connection = connections[Math.floorMod(nextConnection.getAndIncrement(), connections.length)];
+		long requestId = nextRequestId.getAndIncrement();
+		BookStoreBuffer buffer = buffers.acquire();
+
+		try {
+			connection.send(requestId,
+					BookStoreBinaryProtocol.encodeRequest(buffer, requestId, messageTag, inputValue, serializer),
+					future);
+		} catch (IOException ex) {
+			future.completeExceptionally(new BookStoreException("Serialization error", ex));
+		} finally {
+			buffers.release(buffer);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Sends a request and waits for its response.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the input value, null if the method takes none
+	 * @return the book store response
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public BookStoreResponse send(BookStoreMessageTag messageTag, Object inputValue) throws BookStoreException {
+		return BookStoreUtility.await(sendAsync(messageTag, inputValue));
+	}
+
+	/**
+	 * Closes the connections.
+	 */
+	public void stop() {
+		for (Connection connection : connections) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * De-serializes a response and completes its future.
+	 *
+	 * @param future
+	 *            the future, null if the request is unknown
+	 * @param bytes
+	 *            the bytes holding the serialized response
+	 * @param offset
+	 *            the offset of the serialized response
+	 * @param length
+	 *            the length of the serialized response
+	 */
+	private void complete(CompletableFuture<BookStoreResponse> future, byte[] bytes, int offset, int length) {
+		if (future == null) {
+			System.err.println("Response to an unknown request");
+			return;
+		}
+
+		try {
+			BookStoreResponse bookStoreResponse = (BookStoreResponse) serializer.deserialize(bytes, offset, length);
+
+			if (bookStoreResponse.getException() != null) {
+				future.completeExceptionally(bookStoreResponse.getException());
+			} else {
+				future.complete(bookStoreResponse);
+			}
+		} catch (IOException | RuntimeException ex) {
+			future.completeExceptionally(new BookStoreException("Deserialization error", ex));
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.acertainbookstore.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link BookStoreTCPProxy} implements the client level synchronous
+ * {@link CertainBookStore} API declared in the {@link BookStore} class, and its
+ * non-blocking counterpart declared in the {@link AsyncBookStore} class. Uses
+ * the binary TCP transport for communication with the server.
+ *
+ * @see BookStore
+ * @see AsyncBookStore
+ * @see BookStoreTCPClient
+ */
+public class BookStoreTCPProxy implements BookStore, AsyncBookStore {
+
+	/** The client. */
+	private final BookStoreTCPClient client;
+
+	/**
+	 * Initializes a new {@link BookStoreTCPProxy}.
+	 *
+	 * @param serverAddress
+	 *            the server address, as host:port
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public BookStoreTCPProxy(String serverAddress) throws IOException {
+		this(serverAddress, BookStoreClientConstants.CLIENT_TCP_CONNECTIONS);
+	}
+
+	/**
+	 * Initializes a new {@link BookStoreTCPProxy} pipelining its requests on
+	 * the given number of connections.
+	 *
+	 * @param serverAddress
+	 *            the server address, as host:port
+	 * @param numConnections
+	 *            the number of connections
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public BookStoreTCPProxy(String serverAddress, int numConnections) throws IOException {
+		client = new BookStoreTCPClient(serverAddress, numConnections);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 */
+	public void buyBooks(Set<BookCopy> isbnSet) throws BookStoreException {
+		client.send(BookStoreMessageTag.BUYBOOKS, isbnSet);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		return (List<Book>) client.send(BookStoreMessageTag.GETBOOKS, isbnSet).getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		return (List<Book>) client.send(BookStoreMessageTag.GETEDITORPICKS, numBooks).getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#rateBooks(java.util.Set)
+	 */
+	@Override
+	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
+		throw new BookStoreException();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStore#getTopRatedBooks(int)
+	 */
+	@Override
+	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
+		throw new BookStoreException();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#buyBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> buyBooksAsync(Set<BookCopy> isbnSet) {
+		return client.sendAsync(BookStoreMessageTag.BUYBOOKS, isbnSet).thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getBooksAsync(Set<Integer> isbnSet) {
+		return client.sendAsync(BookStoreMessageTag.GETBOOKS, isbnSet)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getEditorPicksAsync(int)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<Book>> getEditorPicksAsync(int numBooks) {
+		return client.sendAsync(BookStoreMessageTag.GETEDITORPICKS, numBooks)
+				.thenApply(bookStoreResponse -> (List<Book>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#rateBooksAsync(java.util.
+	 * Set)
+	 */
+	@Override
+	public CompletableFuture<Void> rateBooksAsync(Set<BookRating> bookRating) {
+		return CompletableFuture.failedFuture(new BookStoreException());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncBookStore#getTopRatedBooksAsync(int)
+	 */
+	@Override
+	public CompletableFuture<List<Book>> getTopRatedBooksAsync(int numBooks) {
+		return CompletableFuture.failedFuture(new BookStoreException());
+	}
+
+	/**
+	 * Stops the proxy.
+	 */
+	public void stop() {
+		client.stop();
+	}
+}
@@ -0,0 +1,217 @@
+package com.acertainbookstore.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link BuyBooksBatcher} coalesces the buy books orders issued concurrently
+ * through a proxy into batches sent as one request. A batch is sent when it
+ * reaches the max batch size, or when the window opened by its first order
+ * expires. The server applies each order of a batch on its own, so every
+ * caller gets the result of its order only.
+ *
+ * @see BookStoreHTTPProxy#enableBuyBooksBatching(long, int)
+ */
+public class BuyBooksBatcher {
+
+	/** The message of the failure of the orders of an invalid batch response. */
+	private static final String INVALID_BATCH_RESPONSE = "Invalid batch response";
+
+	/** The function sending a batch and returning the failure of each order. */
+	private final Function<List<Set<BookCopy>>, CompletableFuture<List<?>>> sender;
+
+	/** The window of a batch in microseconds. */
+	private final long windowMicros;
+
+	/** The max number of orders in a batch. */
+	private final int maxBatchSize;
+
+	/** The scheduler of the window expirations. */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "bookstore-buy-batcher");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** The batch collecting the orders, null if none is open. */
+	private Batch openBatch = null;
+
+	/** Whether the batcher is stopped, and takes no more orders. */
+	private boolean stopped = false;
+
+	/**
+	 * {@link Batch} holds the orders of a batch and the futures of their
+	 * callers.
+	 */
+	private static final class Batch {
+
+		/** The orders. */
+		private final List<Set<BookCopy>> orders = new ArrayList<>();
+
+		/** The futures of the orders. */
+		private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+	}
+
+	/**
+	 * Instantiates a new {@link BuyBooksBatcher}.
+	 *
+	 * @param sender
+	 *            the function sending a batch; its future completes with the
+	 *            exception of each order, null for the orders bought
+	 * @param windowMicros
+	 *            the window of a batch in microseconds
+	 * @param maxBatchSize
+	 *            the max number of orders in a batch
+	 */
+	public BuyBooksBatcher(Function<List<Set<BookCopy>>, CompletableFuture<List<?>>> sender, long windowMicros,
+			int maxBatchSize) {
+		this.sender = sender;
+		this.windowMicros = windowMicros;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Adds an order to the open batch, opening one if needed.
+	 *
+	 * @param booksToBuy
+	 *            the books to buy
+	 * @return the future completed when the order is bought, or exceptionally
+	 *         with the {@link BookStoreException} of the order, or with one if
+	 *         the batcher is stopped
+	 */
+	public CompletableFuture<Void> buyBooks(Set<BookCopy> booksToBuy) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		Batch fullBatch = null;
+
+		synchronized (this) {
+			if (stopped) {
+				future.completeExceptionally(new BookStoreException(BookStoreConstants.BATCHER_STOPPED));
+				return future;
+			}
+
+			if (openBatch == null) {
+				Batch batch = new Batch();
+				openBatch = batch;
+				scheduler.schedule(() -> flush(batch), windowMicros, TimeUnit.MICROSECONDS);
+			}
+
+			openBatch.orders.add(booksToBuy);
+			openBatch.futures.add(future);
+
+			if (openBatch.orders.size() >= maxBatchSize) {
+				fullBatch = openBatch;
+				openBatch = null;
+			}
+		}
+
+		if (fullBatch != null) {
+			send(fullBatch);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Stops the scheduler. The orders of the open batch are sent first, and
+	 * the orders added afterwards fail.
+	 */
+	public void stop() {
+		Batch batch;
+
+		synchronized (this) {
+			stopped = true;
+			batch = openBatch;
+			openBatch = null;
+		}
+
+		if (batch != null) {
+			send(batch);
+		}
+
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Sends a batch when its window expires, unless it was already sent full.
+	 *
+	 * @param batch
+	 *            the batch
+	 */
+	private void flush(Batch batch) {
+		synchronized (this) {
+			if (openBatch != batch) {
+				return;
+			}
+
+			openBatch = null;
+		}
+
+		send(batch);
+	}
+
+	/**
+	 * Sends a batch and completes the future of each order with its result.
+	 *
+	 * @param batch
+	 *            the batch
+	 */
+	private void send(Batch batch) {
+		try {
+			sender.apply(batch.orders).whenComplete((results, ex) -> complete(batch, results, ex));
+		} catch (RuntimeException ex) {
+			complete(batch, null, ex);
+		}
+	}
+
+	/**
+	 * Completes the future of each order of a batch. Every future completes,
+	 * exceptionally with a {@link BookStoreException} unless the order was
+	 * bought, whatever the sender returned.
+	 *
+	 * @param batch
+	 *            the batch
+	 * @param results
+	 *            the failure of each order, null for the orders bought
+	 * @param ex
+	 *            the failure of the whole batch, null if it was sent
+	 */
+	private static void complete(Batch batch, List<?> results, Throwable ex) {
+		Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+		BookStoreException batchFailure = null;
+
+		if (cause instanceof BookStoreException) {
+			batchFailure = (BookStoreException) cause;
+		} else if (cause != null) {
+			batchFailure = new BookStoreException(cause);
+		} else if (results == null || results.size() != batch.futures.size()) {
+			batchFailure = new BookStoreException(INVALID_BATCH_RESPONSE);
+		}
+
+		for (int i = 0; i < batch.futures.size(); i++) {
+			CompletableFuture<Void> future = batch.futures.get(i);
+			// The whole batch failed, so did each of its orders.
+			Object result = (batchFailure != null) ? batchFailure : results.get(i);
+
+			if (result == null) {
+				future.complete(null);
+			} else if (result instanceof BookStoreException) {
+				future.completeExceptionally((BookStoreException) result);
+			} else if (result instanceof Throwable) {
+				future.completeExceptionally(new BookStoreException((Throwable) result));
+			} else {
+				future.completeExceptionally(new BookStoreException(INVALID_BATCH_RESPONSE));
+			}
+		}
+	}
+}
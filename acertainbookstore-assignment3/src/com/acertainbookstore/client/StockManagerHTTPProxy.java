@@ -1,7 +1,9 @@
 package com.acertainbookstore.client;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
@@ -9,26 +11,33 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookEditorPick;
 import com.acertainbookstore.business.StockBook;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
+import com.acertainbookstore.interfaces.AsyncStockManager;
+import com.acertainbookstore.interfaces.BatchExecutor;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
 import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreBatch;
+import com.acertainbookstore.utils.BookStoreCachedResponse;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreOperation;
 import com.acertainbookstore.utils.BookStoreRequest;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
 import com.acertainbookstore.utils.BookStoreUtility;
 
 /**
  * {@link StockManagerHTTPProxy} implements the client level synchronous
- * {@link CertainBookStore} API declared in the {@link StockManager} class. Uses
- * the HTTP protocol for communication with the server.
+ * {@link CertainBookStore} API declared in the {@link StockManager} class, and
+ * its non-blocking counterpart declared in the {@link AsyncStockManager} class.
+ * Uses the HTTP protocol for communication with the server.
  * 
  * @see CertainBookStore
  * @see StockManager
+ * @see AsyncStockManager
+ * @see BatchExecutor
  */
-public class StockManagerHTTPProxy implements StockManager {
+public class StockManagerHTTPProxy implements StockManager, AsyncStockManager, BatchExecutor {
 
 	/** The client. */
 	protected HttpClient client;
@@ -37,7 +46,10 @@ public class StockManagerHTTPProxy implements StockManager {
 	protected String serverAddress;
 
 	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	private final BookStoreSerializer serializer;
+
+	/** The last catalog listing, revalidated by the next one. */
+	private volatile BookStoreCachedResponse lastListing;
 
 	/**
 	 * Initializes a new {@link StockManagerHTTPProxy}.
@@ -48,13 +60,24 @@ public class StockManagerHTTPProxy implements StockManager {
 	 *             the exception
 	 */
 	public StockManagerHTTPProxy(String serverAddress) throws Exception {
+		this(serverAddress, System.getProperty(BookStoreConstants.PROPERTY_KEY_CONTENT_TYPE));
+	}
 
-		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
-		}
+	/**
+	 * Initializes a new {@link StockManagerHTTPProxy} speaking the codec of a
+	 * content type.
+	 *
+	 * @param serverAddress
+	 *            the server address
+	 * @param contentType
+	 *            the content type of the codec, null for the default one
+	 * @throws Exception
+	 *             the exception
+	 */
+	public StockManagerHTTPProxy(String serverAddress, String contentType) throws Exception {
+
+		// Setup the type of serializer, pooled rather than per thread.
+		serializer = BookStoreSerializerRegistry.newSerializer(contentType);
 
 		setServerAddress(serverAddress);
 		client = new HttpClient();
@@ -62,6 +85,9 @@ public class StockManagerHTTPProxy implements StockManager {
 		// Max concurrent connections to every address.
 		client.setMaxConnectionsPerDestination(BookStoreClientConstants.CLIENT_MAX_CONNECTION_ADDRESS);
 
+		// Max requests waiting for a connection, bounds the asynchronous calls.
+		client.setMaxRequestsQueuedPerDestination(BookStoreClientConstants.CLIENT_MAX_QUEUED_REQUESTS);
+
 		// Max number of threads.
 		client.setExecutor(new QueuedThreadPool(BookStoreClientConstants.CLIENT_MAX_THREADSPOOL_THREADS));
 
@@ -99,7 +125,7 @@ public class StockManagerHTTPProxy implements StockManager {
 	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
@@ -111,7 +137,7 @@ public class StockManagerHTTPProxy implements StockManager {
 	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDCOPIES;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookCopiesSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
@@ -123,9 +149,13 @@ public class StockManagerHTTPProxy implements StockManager {
 	public List<StockBook> getBooks() throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.LISTBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
-		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
-		return (List<StockBook>) bookStoreResponse.getList();
+
+		// The last listing is revalidated, and downloaded again only if the
+		// catalog changed; the callers get their own copy of it.
+		BookStoreCachedResponse listing = BookStoreUtility.performConditionalHttpExchange(client,
+				bookStoreRequest, serializer, lastListing);
+		lastListing = listing;
+		return new ArrayList<>((List<StockBook>) listing.getResponse().getList());
 	}
 
 	/*
@@ -138,7 +168,7 @@ public class StockManagerHTTPProxy implements StockManager {
 	public void updateEditorPicks(Set<BookEditorPick> editorPicksValues) throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.UPDATEEDITORPICKS + "?";
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, editorPicksValues);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
@@ -163,7 +193,7 @@ public class StockManagerHTTPProxy implements StockManager {
 		// need to send any data; this request is just a signal to remove all
 		// books.
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, "");
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
@@ -175,7 +205,7 @@ public class StockManagerHTTPProxy implements StockManager {
 	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.REMOVEBOOKS;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
-		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer.get());
+		BookStoreUtility.performHttpExchange(client, bookStoreRequest, serializer);
 	}
 
 	/*
@@ -190,10 +220,144 @@ public class StockManagerHTTPProxy implements StockManager {
 		String urlString = serverAddress + "/" + BookStoreMessageTag.GETSTOCKBOOKSBYISBN;
 		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbns);
 		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
-				serializer.get());
+				serializer);
 		return (List<StockBook>) bookStoreResponse.getList();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BatchExecutor#executeBatch(java.util.
+	 * List, boolean)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<BookStoreResponse> executeBatch(List<BookStoreOperation> operations, boolean atomic)
+			throws BookStoreException {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.EXECUTEBATCH;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString,
+				new BookStoreBatch(operations, atomic));
+		BookStoreResponse bookStoreResponse = BookStoreUtility.performHttpExchange(client, bookStoreRequest,
+				serializer);
+		return (List<BookStoreResponse>) bookStoreResponse.getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addBooksAsync(Set<StockBook> bookSet) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookSet);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addCopiesAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addCopiesAsync(Set<BookCopy> bookCopiesSet) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.ADDCOPIES;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, bookCopiesSet);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.AsyncStockManager#getBooksAsync()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<StockBook>> getBooksAsync() {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.LISTBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newGetRequest(urlString);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> (List<StockBook>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksByISBNAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<StockBook>> getBooksByISBNAsync(Set<Integer> isbns) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.GETSTOCKBOOKSBYISBN;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbns);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> (List<StockBook>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksInDemandAsync()
+	 */
+	@Override
+	public CompletableFuture<List<StockBook>> getBooksInDemandAsync() {
+		return CompletableFuture.failedFuture(new BookStoreException("Not implemented"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#updateEditorPicksAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> updateEditorPicksAsync(Set<BookEditorPick> editorPicksValues) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.UPDATEEDITORPICKS + "?";
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, editorPicksValues);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeAllBooksAsync()
+	 */
+	@Override
+	public CompletableFuture<Void> removeAllBooksAsync() {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.REMOVEALLBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, "");
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> removeBooksAsync(Set<Integer> isbnSet) {
+		String urlString = serverAddress + "/" + BookStoreMessageTag.REMOVEBOOKS;
+		BookStoreRequest bookStoreRequest = BookStoreRequest.newPostRequest(urlString, isbnSet);
+		return BookStoreUtility.performHttpExchangeAsync(client, bookStoreRequest, serializer)
+				.thenApply(bookStoreResponse -> null);
+	}
+
 	/**
 	 * Stops the proxy.
 	 */
@@ -0,0 +1,248 @@
+package com.acertainbookstore.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.AsyncStockManager;
+import com.acertainbookstore.interfaces.BatchExecutor;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreBatch;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreOperation;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link StockManagerTCPProxy} implements the client level synchronous
+ * {@link CertainBookStore} API declared in the {@link StockManager} class, and
+ * its non-blocking counterpart declared in the {@link AsyncStockManager} class.
+ * Uses the binary TCP transport for communication with the server.
+ *
+ * @see StockManager
+ * @see AsyncStockManager
+ * @see BatchExecutor
+ * @see BookStoreTCPClient
+ */
+public class StockManagerTCPProxy implements StockManager, AsyncStockManager, BatchExecutor {
+
+	/** The client. */
+	private final BookStoreTCPClient client;
+
+	/**
+	 * Initializes a new {@link StockManagerTCPProxy}.
+	 *
+	 * @param serverAddress
+	 *            the server address, as host:port
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public StockManagerTCPProxy(String serverAddress) throws IOException {
+		client = new BookStoreTCPClient(serverAddress, BookStoreClientConstants.CLIENT_TCP_CONNECTIONS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
+	 */
+	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		client.send(BookStoreMessageTag.ADDBOOKS, bookSet);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
+	 */
+	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		client.send(BookStoreMessageTag.ADDCOPIES, bookCopiesSet);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
+	 */
+	@SuppressWarnings("unchecked")
+	public List<StockBook> getBooks() throws BookStoreException {
+		return (List<StockBook>) client.send(BookStoreMessageTag.LISTBOOKS, null).getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#updateEditorPicks(java.util
+	 * .Set)
+	 */
+	public void updateEditorPicks(Set<BookEditorPick> editorPicksValues) throws BookStoreException {
+		client.send(BookStoreMessageTag.UPDATEEDITORPICKS, editorPicksValues);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand()
+	 */
+	@Override
+	public List<StockBook> getBooksInDemand() throws BookStoreException {
+		throw new BookStoreException("Not implemented");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
+	 */
+	public void removeAllBooks() throws BookStoreException {
+		client.send(BookStoreMessageTag.REMOVEALLBOOKS, null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
+	 */
+	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		client.send(BookStoreMessageTag.REMOVEBOOKS, isbnSet);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.
+	 * Set)
+	 */
+	@SuppressWarnings("unchecked")
+	public List<StockBook> getBooksByISBN(Set<Integer> isbns) throws BookStoreException {
+		return (List<StockBook>) client.send(BookStoreMessageTag.GETSTOCKBOOKSBYISBN, isbns).getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BatchExecutor#executeBatch(java.util.
+	 * List, boolean)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public List<BookStoreResponse> executeBatch(List<BookStoreOperation> operations, boolean atomic)
+			throws BookStoreException {
+		return (List<BookStoreResponse>) client
+				.send(BookStoreMessageTag.EXECUTEBATCH, new BookStoreBatch(operations, atomic)).getList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addBooksAsync(Set<StockBook> bookSet) {
+		return client.sendAsync(BookStoreMessageTag.ADDBOOKS, bookSet).thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#addCopiesAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> addCopiesAsync(Set<BookCopy> bookCopiesSet) {
+		return client.sendAsync(BookStoreMessageTag.ADDCOPIES, bookCopiesSet).thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.AsyncStockManager#getBooksAsync()
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<StockBook>> getBooksAsync() {
+		return client.sendAsync(BookStoreMessageTag.LISTBOOKS, null)
+				.thenApply(bookStoreResponse -> (List<StockBook>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksByISBNAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public CompletableFuture<List<StockBook>> getBooksByISBNAsync(Set<Integer> isbns) {
+		return client.sendAsync(BookStoreMessageTag.GETSTOCKBOOKSBYISBN, isbns)
+				.thenApply(bookStoreResponse -> (List<StockBook>) bookStoreResponse.getList());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#getBooksInDemandAsync()
+	 */
+	@Override
+	public CompletableFuture<List<StockBook>> getBooksInDemandAsync() {
+		return CompletableFuture.failedFuture(new BookStoreException("Not implemented"));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#updateEditorPicksAsync(
+	 * java.util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> updateEditorPicksAsync(Set<BookEditorPick> editorPicksValues) {
+		return client.sendAsync(BookStoreMessageTag.UPDATEEDITORPICKS, editorPicksValues)
+				.thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeAllBooksAsync()
+	 */
+	@Override
+	public CompletableFuture<Void> removeAllBooksAsync() {
+		return client.sendAsync(BookStoreMessageTag.REMOVEALLBOOKS, null).thenApply(bookStoreResponse -> null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.AsyncStockManager#removeBooksAsync(java.
+	 * util.Set)
+	 */
+	@Override
+	public CompletableFuture<Void> removeBooksAsync(Set<Integer> isbnSet) {
+		return client.sendAsync(BookStoreMessageTag.REMOVEBOOKS, isbnSet).thenApply(bookStoreResponse -> null);
+	}
+
+	/**
+	 * Stops the proxy.
+	 */
+	public void stop() {
+		client.stop();
+	}
+}
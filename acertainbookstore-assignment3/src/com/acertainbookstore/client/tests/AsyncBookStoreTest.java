@@ -0,0 +1,169 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.AsyncBookStoreAdapter;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link AsyncBookStoreTest} tests the {@link AsyncBookStore} and
+ * {@link AsyncStockManager} interfaces.
+ *
+ * @see AsyncBookStore
+ * @see AsyncStockManager
+ */
+public class AsyncBookStoreTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 1000;
+
+	/** The Constant NUM_OUTSTANDING_REQUESTS. */
+	private static final int NUM_OUTSTANDING_REQUESTS = 500;
+
+	/** The local test. */
+	private static boolean localTest = true;
+
+	/** The store manager. */
+	private static AsyncStockManager storeManager;
+
+	/** The client. */
+	private static AsyncBookStore client;
+
+	/**
+	 * Sets the up before class.
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		try {
+			String localTestProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCAL_TEST);
+			localTest = (localTestProperty != null) ? Boolean.parseBoolean(localTestProperty) : localTest;
+
+			if (localTest) {
+				CertainBookStore store = new CertainBookStore();
+				AsyncBookStoreAdapter adapter = new AsyncBookStoreAdapter(store, store);
+				storeManager = adapter;
+				client = adapter;
+			} else {
+				storeManager = new StockManagerHTTPProxy("http://localhost:8081/stock");
+				client = new BookStoreHTTPProxy("http://localhost:8081");
+			}
+
+			storeManager.removeAllBooksAsync().join();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method to add a book, executed before every test case is run.
+	 */
+	@Before
+	public void initializeBooks() {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES,
+				0, 0, 0, true));
+		storeManager.addBooksAsync(booksToAdd).join();
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 */
+	@After
+	public void cleanupBooks() {
+		storeManager.removeAllBooksAsync().join();
+	}
+
+	/**
+	 * Tests that many requests issued from a single thread without waiting
+	 * for their replies are all applied.
+	 */
+	@Test
+	public void testManyOutstandingBuys() {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		for (int i = 0; i < NUM_OUTSTANDING_REQUESTS; i++) {
+			futures.add(client.buyBooksAsync(Collections.singleton(new BookCopy(TEST_ISBN, 1))));
+		}
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+		List<StockBook> books = storeManager.getBooksByISBNAsync(Collections.singleton(TEST_ISBN)).join();
+		assertEquals(NUM_COPIES - NUM_OUTSTANDING_REQUESTS, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that reads can be chained on the futures.
+	 */
+	@Test
+	public void testChainedReads() {
+		List<Book> books = client.getEditorPicksAsync(1)
+				.thenCompose(editorPicks -> client.getBooksAsync(Collections.singleton(editorPicks.get(0).getISBN())))
+				.join();
+
+		assertEquals(1, books.size());
+		assertEquals(TEST_ISBN, books.get(0).getISBN());
+	}
+
+	/**
+	 * Tests that a failing call completes its future with the
+	 * {@link BookStoreException} of the store.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void testFailureCompletesExceptionally() throws InterruptedException {
+		CompletableFuture<Void> future = client.buyBooksAsync(Collections.singleton(new BookCopy(-1, 1)));
+
+		try {
+			future.get();
+			fail();
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof BookStoreException);
+		}
+
+		// The failed buy must not have changed the stock.
+		List<StockBook> books = storeManager.getBooksAsync().join();
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tear down after class.
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() {
+		storeManager.removeAllBooksAsync().join();
+
+		if (!localTest) {
+			((BookStoreHTTPProxy) client).stop();
+			((StockManagerHTTPProxy) storeManager).stop();
+		}
+	}
+}
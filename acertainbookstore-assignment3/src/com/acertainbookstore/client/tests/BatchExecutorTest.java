@@ -0,0 +1,275 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.interfaces.BatchExecutor;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.server.BookStoreDispatcher;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreOperation;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link BatchExecutorTest} tests the batches of operations executed through
+ * the {@link BatchExecutor} interface.
+ *
+ * @see BatchExecutor
+ */
+public class BatchExecutorTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NEW_ISBN. */
+	private static final int NEW_ISBN = 3044561;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 5;
+
+	/** The local test. */
+	private static boolean localTest = true;
+
+	/** The store manager. */
+	private static StockManager storeManager;
+
+	/** The batch executor. */
+	private static BatchExecutor batchExecutor;
+
+	/**
+	 * Sets the up before class.
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		try {
+			String localTestProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCAL_TEST);
+			localTest = (localTestProperty != null) ? Boolean.parseBoolean(localTestProperty) : localTest;
+
+			if (localTest) {
+				CertainBookStore store = new CertainBookStore();
+				storeManager = store;
+				batchExecutor = new BookStoreDispatcher(store, store);
+			} else {
+				StockManagerHTTPProxy proxy = new StockManagerHTTPProxy("http://localhost:8081/stock");
+				storeManager = proxy;
+				batchExecutor = proxy;
+			}
+
+			storeManager.removeAllBooks();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method to add a book, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void initializeBooks() throws BookStoreException {
+		storeManager.addBooks(Collections.singleton(newBook(TEST_ISBN)));
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		storeManager.removeAllBooks();
+	}
+
+	/**
+	 * Creates a stock book.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @return the stock book
+	 */
+	private static StockBook newBook(int isbn) {
+		return new ImmutableStockBook(isbn, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES, 0, 0, 0,
+				false);
+	}
+
+	/**
+	 * Gets the back-office job of the tests: adds a book, adds copies, picks
+	 * it and reads it back.
+	 *
+	 * @param copiesIsbn
+	 *            the ISBN of the book to add copies to
+	 * @return the operations
+	 */
+	private static List<BookStoreOperation> addAndReadBack(int copiesIsbn) {
+		Set<StockBook> booksToAdd = Collections.singleton(newBook(NEW_ISBN));
+		Set<BookCopy> copiesToAdd = Collections.singleton(new BookCopy(copiesIsbn, 1));
+		Set<BookEditorPick> editorPicks = Collections.singleton(new BookEditorPick(NEW_ISBN, true));
+		Set<Integer> isbns = new HashSet<>(Arrays.asList(TEST_ISBN, NEW_ISBN));
+
+		return Arrays.asList(BookStoreOperation.addBooks(booksToAdd), BookStoreOperation.addCopies(copiesToAdd),
+				BookStoreOperation.updateEditorPicks(editorPicks), BookStoreOperation.getBooksByISBN(isbns));
+	}
+
+	/**
+	 * Tests that the steps of a non-atomic batch succeed or fail on their own.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testIndependentSteps() throws BookStoreException {
+		List<BookStoreResponse> responses = batchExecutor.executeBatch(addAndReadBack(-1), false);
+
+		assertEquals(4, responses.size());
+		assertNull(responses.get(0).getException());
+		assertNotNull(responses.get(1).getException());
+		assertNull(responses.get(2).getException());
+		assertNull(responses.get(3).getException());
+		assertEquals(2, responses.get(3).getList().size());
+
+		List<StockBook> books = storeManager.getBooksByISBN(Collections.singleton(NEW_ISBN));
+		assertTrue(books.get(0).isEditorPick());
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that an atomic batch applies all its operations.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testAtomicBatchCommits() throws BookStoreException {
+		List<BookStoreResponse> responses = batchExecutor.executeBatch(addAndReadBack(TEST_ISBN), true);
+
+		assertEquals(4, responses.size());
+		assertEquals(2, responses.get(3).getList().size());
+		assertEquals(2, storeManager.getBooks().size());
+		assertEquals(NUM_COPIES + 1,
+				storeManager.getBooksByISBN(Collections.singleton(TEST_ISBN)).get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that a failing atomic batch leaves no change.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testAtomicBatchRollsBack() throws BookStoreException {
+		List<BookStoreOperation> operations = Arrays.asList(
+				BookStoreOperation.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 2))),
+				BookStoreOperation.addBooks(Collections.singleton(newBook(NEW_ISBN))),
+				BookStoreOperation.removeBooks(Collections.singleton(NEW_ISBN + 1)));
+
+		try {
+			batchExecutor.executeBatch(operations, true);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(1, books.size());
+		assertEquals(TEST_ISBN, books.get(0).getISBN());
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that a failing atomic batch which removed all the books restores
+	 * them, and that locally the restored books are the very ones the store
+	 * handed out before the batch, at the same catalog version.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testAtomicBatchRestoresRemovedBooks() throws BookStoreException {
+		StockBook before = storeManager.getBooks().get(0);
+		long version = localTest ? ((CertainBookStore) storeManager).getCatalogVersion() : 0;
+		List<BookStoreOperation> operations = Arrays.asList(
+				BookStoreOperation.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 2))),
+				new BookStoreOperation(BookStoreMessageTag.REMOVEALLBOOKS, null),
+				BookStoreOperation.addBooks(Collections.singleton(newBook(NEW_ISBN))),
+				BookStoreOperation.removeBooks(Collections.singleton(NEW_ISBN + 1)));
+
+		try {
+			batchExecutor.executeBatch(operations, true);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(1, books.size());
+		assertEquals(TEST_ISBN, books.get(0).getISBN());
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+
+		if (localTest) {
+			assertSame(before, books.get(0));
+			// The books are as they were, so is the catalog version.
+			assertEquals(version, ((CertainBookStore) storeManager).getCatalogVersion());
+		}
+	}
+
+	/**
+	 * Tests that a step missing its input fails on its own in a non-atomic
+	 * batch, and fails an atomic batch with a {@link BookStoreException}.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testMissingStepInput() throws BookStoreException {
+		List<BookStoreOperation> operations = Arrays.asList(
+				new BookStoreOperation(BookStoreMessageTag.GETEDITORPICKS, null), BookStoreOperation.listBooks());
+
+		List<BookStoreResponse> responses = batchExecutor.executeBatch(operations, false);
+		assertNotNull(responses.get(0).getException());
+		assertEquals(1, responses.get(1).getList().size());
+
+		try {
+			batchExecutor.executeBatch(operations, true);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws BookStoreException {
+		storeManager.removeAllBooks();
+
+		if (!localTest) {
+			((StockManagerHTTPProxy) storeManager).stop();
+		}
+	}
+}
@@ -22,6 +22,7 @@ public class BookSetGeneratorTest {
     }
 
     @Test
+    @SuppressWarnings("deprecation")
     public void shouldReturnRandomISBNS() {
         Set<Integer> isbns = IntStream.rangeClosed(1, 9000).boxed().collect(Collectors.toSet());
         assertEquals(30,bookSetGenerator.sampleFromSetOfISBNs(isbns,30).size());
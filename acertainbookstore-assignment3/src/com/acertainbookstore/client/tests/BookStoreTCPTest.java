@@ -0,0 +1,271 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreTCPClient;
+import com.acertainbookstore.client.BookStoreTCPProxy;
+import com.acertainbookstore.client.StockManagerTCPProxy;
+import com.acertainbookstore.server.BookStoreTCPServer;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link BookStoreTCPTest} tests the binary TCP transport: the
+ * {@link BookStoreTCPServer} and the {@link BookStoreTCPProxy} and
+ * {@link StockManagerTCPProxy} clients.
+ *
+ * @see BookStoreTCPServer
+ */
+public class BookStoreTCPTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 1000;
+
+	/** The Constant NUM_PIPELINED_REQUESTS. */
+	private static final int NUM_PIPELINED_REQUESTS = 500;
+
+	/**
+	 * The Constant NUM_HELD_BACK_REQUESTS, more than the server lets pend on
+	 * a connection.
+	 */
+	private static final int NUM_HELD_BACK_REQUESTS = 2000;
+
+	/** The latch blocking the editor picks of the store while it is closed. */
+	private static volatile CountDownLatch editorPicksLatch = new CountDownLatch(0);
+
+	/** The worker executor. */
+	private static ExecutorService workerExecutor;
+
+	/** The server. */
+	private static BookStoreTCPServer server;
+
+	/** The store manager. */
+	private static StockManagerTCPProxy storeManager;
+
+	/** The client, with a single connection. */
+	private static BookStoreTCPProxy client;
+
+	/**
+	 * Sets the up before class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		CertainBookStore store = new CertainBookStore() {
+
+			@Override
+			public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+				try {
+					editorPicksLatch.await();
+				} catch (InterruptedException ex) {
+					throw new BookStoreException(ex);
+				}
+
+				return super.getEditorPicks(numBooks);
+			}
+		};
+
+		workerExecutor = Executors.newFixedThreadPool(4);
+		server = new BookStoreTCPServer(store, store, workerExecutor);
+		server.start(0);
+
+		String serverAddress = "localhost:" + server.getPort();
+		storeManager = new StockManagerTCPProxy(serverAddress);
+		client = new BookStoreTCPProxy(serverAddress, 1);
+	}
+
+	/**
+	 * Method to add a book, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void initializeBooks() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES,
+				0, 0, 0, true));
+		storeManager.addBooks(booksToAdd);
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		storeManager.removeAllBooks();
+	}
+
+	/**
+	 * Tests that many requests pipelined on a single connection are all
+	 * applied.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testPipelinedBuys() throws BookStoreException {
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		for (int i = 0; i < NUM_PIPELINED_REQUESTS; i++) {
+			futures.add(client.buyBooksAsync(Collections.singleton(new BookCopy(TEST_ISBN, 1))));
+		}
+
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+		List<StockBook> books = storeManager.getBooksByISBN(Collections.singleton(TEST_ISBN));
+		assertEquals(NUM_COPIES - NUM_PIPELINED_REQUESTS, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that a slow request does not hold back the responses of the
+	 * requests pipelined after it on the same connection.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testOutOfOrderResponses() throws Exception {
+		editorPicksLatch = new CountDownLatch(1);
+
+		try {
+			CompletableFuture<List<Book>> editorPicks = client.getEditorPicksAsync(1);
+			List<Book> books = client.getBooks(Collections.singleton(TEST_ISBN));
+
+			assertEquals(TEST_ISBN, books.get(0).getISBN());
+			assertFalse(editorPicks.isDone());
+
+			editorPicksLatch.countDown();
+			assertEquals(TEST_ISBN, editorPicks.get().get(0).getISBN());
+		} finally {
+			editorPicksLatch.countDown();
+		}
+	}
+
+	/**
+	 * Tests that the exceptions of the store are propagated to the synchronous
+	 * and asynchronous calls.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFailures() throws Exception {
+		try {
+			client.buyBooks(Collections.singleton(new BookCopy(-1, 1)));
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		try {
+			client.buyBooksAsync(Collections.singleton(new BookCopy(TEST_ISBN, NUM_COPIES + 1))).get();
+			fail();
+		} catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof BookStoreException);
+		}
+
+		// The failed buys must not have changed the stock.
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(NUM_COPIES, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that a request the store fails on with an unchecked exception is
+	 * answered with a {@link BookStoreException} rather than never answered.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(timeout = 10000)
+	public void testUncheckedFailure() throws Exception {
+		BookStoreTCPClient rawClient = new BookStoreTCPClient("localhost:" + server.getPort(), 1);
+
+		try {
+			// The number of editor picks is missing from the payload.
+			rawClient.send(BookStoreMessageTag.GETEDITORPICKS, null);
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		} finally {
+			rawClient.stop();
+		}
+	}
+
+	/**
+	 * Tests that the server stops reading a connection while too many of its
+	 * requests are pending, and resumes once their responses are written.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testHeldBackRequests() throws Exception {
+		editorPicksLatch = new CountDownLatch(1);
+		List<CompletableFuture<List<Book>>> futures = new ArrayList<>();
+		CompletableFuture<List<Book>> books;
+
+		try {
+			for (int i = 0; i < NUM_HELD_BACK_REQUESTS; i++) {
+				futures.add(client.getEditorPicksAsync(1));
+			}
+
+			// The request is held back behind the pending editor picks.
+			books = client.getBooksAsync(Collections.singleton(TEST_ISBN));
+			Thread.sleep(100);
+			assertFalse(books.isDone());
+		} finally {
+			editorPicksLatch.countDown();
+		}
+
+		for (CompletableFuture<List<Book>> future : futures) {
+			assertEquals(TEST_ISBN, future.get().get(0).getISBN());
+		}
+
+		assertEquals(TEST_ISBN, books.get().get(0).getISBN());
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		client.stop();
+		storeManager.stop();
+		server.stop();
+		workerExecutor.shutdown();
+	}
+}
@@ -0,0 +1,175 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+import com.acertainbookstore.utils.BookStoreBinaryProtocol;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreBufferPool;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerPool;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
+
+/**
+ * {@link BufferPoolTest} tests the {@link BookStoreBufferPool} and the
+ * serializers writing into and reading from the buffers of their callers.
+ *
+ * @see BookStoreBuffer
+ * @see BookStoreSerializer#serialize(Object, BookStoreBuffer)
+ * @see BookStoreSerializer#deserialize(byte[], int, int)
+ */
+public class BufferPoolTest {
+
+	/** The Constant HEADER_SIZE, the room left before the payloads. */
+	private static final int HEADER_SIZE = BookStoreBinaryProtocol.LENGTH_FIELD_SIZE
+			+ BookStoreBinaryProtocol.REQUEST_HEADER_SIZE;
+
+	/**
+	 * Builds a buyBooks request.
+	 *
+	 * @return the request
+	 */
+	private static Set<BookCopy> buyBooksRequest() {
+		Set<BookCopy> request = new HashSet<>();
+
+		for (int isbn = 1; isbn <= 5; isbn++) {
+			request.add(new BookCopy(isbn, 1));
+		}
+
+		return request;
+	}
+
+	/**
+	 * Gets the serializers of each codec, plain and pooled.
+	 *
+	 * @return the serializers
+	 */
+	private static List<BookStoreSerializer> serializers() {
+		List<BookStoreSerializer> serializers = new ArrayList<>(
+				BookStoreSerializerRegistry.newDefaultRegistry().getSerializers());
+		serializers.add(BookStoreSerializerPool.newDefaultPool());
+		return serializers;
+	}
+
+	/**
+	 * Tests that each codec writes the same payload into a buffer, after the
+	 * bytes it holds, as into an array, and reads it back in place.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testSerializeAfterHeader() throws IOException {
+		Set<BookCopy> request = buyBooksRequest();
+
+		for (BookStoreSerializer serializer : serializers()) {
+			BookStoreBuffer buffer = new BookStoreBuffer(64);
+			buffer.setSize(HEADER_SIZE);
+			serializer.serialize(request, buffer);
+
+			byte[] payload = serializer.serialize(request);
+			assertEquals(serializer.getContentType(), HEADER_SIZE + payload.length, buffer.size());
+			assertArrayEquals(serializer.getContentType(), payload,
+					Arrays.copyOfRange(buffer.getArray(), HEADER_SIZE, buffer.size()));
+			assertEquals(serializer.getContentType(), request,
+					serializer.deserialize(buffer.getArray(), HEADER_SIZE, buffer.size() - HEADER_SIZE));
+		}
+	}
+
+	/**
+	 * Tests that a buffer too small for a response grows, and that a reused
+	 * buffer holds the last payload only.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testBufferGrowsAndResets() throws IOException {
+		List<Book> books = new ArrayList<>();
+
+		for (int isbn = 1; isbn <= 100; isbn++) {
+			books.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, 5, 0, 0, 0, false));
+		}
+
+		for (BookStoreSerializer serializer : serializers()) {
+			BookStoreBuffer buffer = new BookStoreBuffer(4);
+			serializer.serialize(new BookStoreResponse(null, books), buffer);
+			BookStoreResponse response = (BookStoreResponse) serializer.deserialize(buffer.getArray(), 0,
+					buffer.size());
+			assertEquals(serializer.getContentType(), books, response.getList());
+
+			buffer.reset();
+			serializer.serialize(buyBooksRequest(), buffer);
+			assertEquals(serializer.getContentType(), buyBooksRequest(),
+					serializer.deserialize(buffer.toByteArray()));
+		}
+	}
+
+	/**
+	 * Tests that the pool lends its idle buffers again, empty, and drops the
+	 * buffers grown too large and those beyond its max idle.
+	 */
+	@Test
+	public void testPoolReusesBuffers() {
+		BookStoreBufferPool pool = new BookStoreBufferPool(16, 64, 1);
+		BookStoreBuffer buffer = pool.acquire();
+		buffer.write(1);
+		pool.release(buffer);
+		assertEquals(1, pool.getNumIdle());
+
+		BookStoreBuffer reused = pool.acquire();
+		assertSame(buffer, reused);
+		assertEquals(0, reused.size());
+		assertEquals(0, pool.getNumIdle());
+
+		reused.ensureCapacity(65);
+		pool.release(reused);
+		assertEquals(0, pool.getNumIdle());
+
+		pool.release(new BookStoreBuffer(16));
+		pool.release(new BookStoreBuffer(16));
+		assertEquals(1, pool.getNumIdle());
+	}
+
+	/**
+	 * Tests that a request frame encoded in place carries its header in front
+	 * of the payload.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testEncodeRequestInPlace() throws Exception {
+		BookStoreSerializer serializer = BookStoreSerializerPool.newDefaultPool();
+		BookStoreBuffer buffer = new BookStoreBuffer(8);
+		ByteBuffer frame = BookStoreBinaryProtocol.encodeRequest(buffer, 42, BookStoreMessageTag.BUYBOOKS,
+				buyBooksRequest(), serializer);
+
+		int frameLength = BookStoreBinaryProtocol.nextFrameLength(frame, BookStoreBinaryProtocol.REQUEST_HEADER_SIZE);
+		assertEquals(buffer.size() - BookStoreBinaryProtocol.LENGTH_FIELD_SIZE, frameLength);
+		assertEquals(42, frame.getLong(BookStoreBinaryProtocol.LENGTH_FIELD_SIZE));
+		assertEquals(BookStoreMessageTag.BUYBOOKS,
+				BookStoreBinaryProtocol.fromOpcode(frame.get(BookStoreBinaryProtocol.LENGTH_FIELD_SIZE + Long.BYTES)));
+		assertEquals(buyBooksRequest(),
+				serializer.deserialize(buffer.getArray(), HEADER_SIZE, buffer.size() - HEADER_SIZE));
+
+		buffer.reset();
+		frame = BookStoreBinaryProtocol.encodeRequest(buffer, 43, BookStoreMessageTag.LISTBOOKS, null, serializer);
+		assertEquals(HEADER_SIZE, frame.remaining());
+		assertEquals(0, frame.position());
+	}
+}
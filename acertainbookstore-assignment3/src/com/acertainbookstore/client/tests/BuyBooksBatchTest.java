@@ -0,0 +1,281 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.BuyBooksBatcher;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link BuyBooksBatchTest} tests the batches of buy books orders: the
+ * {@link BookStore#buyBooksBatch(List)} method and the {@link BuyBooksBatcher}
+ * coalescing the concurrent buy books calls.
+ *
+ * @see BuyBooksBatcher
+ */
+public class BuyBooksBatchTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 1000;
+
+	/** The Constant NUM_CONCURRENT_BUYS. */
+	private static final int NUM_CONCURRENT_BUYS = 500;
+
+	/** The Constant BATCH_WINDOW_MICROS. */
+	private static final long BATCH_WINDOW_MICROS = 2000;
+
+	/** The Constant MAX_BATCH_SIZE. */
+	private static final int MAX_BATCH_SIZE = 64;
+
+	/** The Constant BATCH_WAIT_SECONDS. */
+	private static final long BATCH_WAIT_SECONDS = 10;
+
+	/** The local test. */
+	private static boolean localTest = true;
+
+	/** The store manager. */
+	private static StockManager storeManager;
+
+	/** The client. */
+	private static BookStore client;
+
+	/** The batched buy books call. */
+	private static Function<Set<BookCopy>, CompletableFuture<Void>> batchedBuyBooks;
+
+	/** The batcher of the local test. */
+	private static BuyBooksBatcher localBatcher;
+
+	/** The number of batches sent by the local test. */
+	private static final AtomicInteger numBatches = new AtomicInteger();
+
+	/**
+	 * Sets the up before class.
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		try {
+			String localTestProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCAL_TEST);
+			localTest = (localTestProperty != null) ? Boolean.parseBoolean(localTestProperty) : localTest;
+
+			if (localTest) {
+				CertainBookStore store = new CertainBookStore();
+				storeManager = store;
+				client = store;
+				localBatcher = new BuyBooksBatcher(orders -> {
+					numBatches.incrementAndGet();
+					return CompletableFuture.supplyAsync(() -> {
+						try {
+							return store.buyBooksBatch(orders);
+						} catch (BookStoreException ex) {
+							throw new CompletionException(ex);
+						}
+					});
+				}, BATCH_WINDOW_MICROS, MAX_BATCH_SIZE);
+				batchedBuyBooks = localBatcher::buyBooks;
+			} else {
+				storeManager = new StockManagerHTTPProxy("http://localhost:8081/stock");
+				BookStoreHTTPProxy proxy = new BookStoreHTTPProxy("http://localhost:8081");
+				proxy.enableBuyBooksBatching(BATCH_WINDOW_MICROS, MAX_BATCH_SIZE);
+				client = proxy;
+				batchedBuyBooks = proxy::buyBooksAsync;
+			}
+
+			storeManager.removeAllBooks();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method to add a book, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void initializeBooks() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES,
+				0, 0, 0, true));
+		storeManager.addBooks(booksToAdd);
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		storeManager.removeAllBooks();
+	}
+
+	/**
+	 * Tests that the orders of a batch are applied independently, each of
+	 * them all or nothing.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testOrdersAreIndependent() throws BookStoreException {
+		Set<BookCopy> validOrder = Collections.singleton(new BookCopy(TEST_ISBN, 1));
+		Set<BookCopy> invalidOrder = new HashSet<>(
+				Arrays.asList(new BookCopy(TEST_ISBN, 1), new BookCopy(TEST_ISBN + 1, 1)));
+		Set<BookCopy> tooLargeOrder = Collections.singleton(new BookCopy(TEST_ISBN, NUM_COPIES));
+
+		List<BookStoreException> results = client
+				.buyBooksBatch(Arrays.asList(validOrder, invalidOrder, tooLargeOrder, validOrder));
+
+		assertEquals(4, results.size());
+		assertNull(results.get(0));
+		assertNotNull(results.get(1));
+		assertNotNull(results.get(2));
+		assertNull(results.get(3));
+
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(NUM_COPIES - 2, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that concurrent buys are coalesced and that every caller gets the
+	 * result of its own order.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testConcurrentBuysAreDemultiplexed() throws BookStoreException {
+		numBatches.set(0);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+		for (int i = 0; i < NUM_CONCURRENT_BUYS; i++) {
+			// Every tenth order asks for a book which is not in the store.
+			int isbn = (i % 10 == 0) ? TEST_ISBN + 1 : TEST_ISBN;
+			futures.add(batchedBuyBooks.apply(Collections.singleton(new BookCopy(isbn, 1))));
+		}
+
+		int numFailed = 0;
+
+		for (CompletableFuture<Void> future : futures) {
+			try {
+				future.join();
+			} catch (CompletionException ex) {
+				assertTrue(ex.getCause() instanceof BookStoreException);
+				numFailed++;
+			}
+		}
+
+		assertEquals(NUM_CONCURRENT_BUYS / 10, numFailed);
+
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(NUM_COPIES - (NUM_CONCURRENT_BUYS - numFailed), books.get(0).getNumCopies());
+
+		if (localTest) {
+			assertTrue(numBatches.get() < NUM_CONCURRENT_BUYS);
+		}
+	}
+
+	/**
+	 * Tests that the orders added once the batcher is stopped fail with a
+	 * {@link BookStoreException} rather than an unchecked exception.
+	 */
+	@Test
+	public void testOrdersFailOnceStopped() {
+		BuyBooksBatcher batcher = new BuyBooksBatcher(orders -> {
+			throw new AssertionError("A stopped batcher sent a batch");
+		}, BATCH_WINDOW_MICROS, MAX_BATCH_SIZE);
+		batcher.stop();
+
+		try {
+			batcher.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 1))).join();
+			fail();
+		} catch (CompletionException ex) {
+			assertTrue(ex.getCause() instanceof BookStoreException);
+		}
+	}
+
+	/**
+	 * Tests that every order of a batch fails with a
+	 * {@link BookStoreException} when the sender throws or returns results
+	 * that are not the failures of the orders.
+	 */
+	@Test
+	public void testInvalidBatchResponses() {
+		List<Function<List<Set<BookCopy>>, CompletableFuture<List<?>>>> senders = Arrays.asList(orders -> {
+			throw new IllegalStateException();
+		}, orders -> CompletableFuture.completedFuture(Arrays.asList("Not a failure", new IllegalStateException())),
+				orders -> CompletableFuture.completedFuture(Collections.singletonList(null)),
+				orders -> CompletableFuture.failedFuture(new IllegalStateException()));
+
+		for (Function<List<Set<BookCopy>>, CompletableFuture<List<?>>> sender : senders) {
+			BuyBooksBatcher batcher = new BuyBooksBatcher(sender, BATCH_WINDOW_MICROS, 2);
+			List<CompletableFuture<Void>> futures = Arrays.asList(
+					batcher.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 1))),
+					batcher.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 1))));
+
+			for (CompletableFuture<Void> future : futures) {
+				try {
+					future.get(BATCH_WAIT_SECONDS, TimeUnit.SECONDS);
+					fail();
+				} catch (ExecutionException ex) {
+					assertTrue(ex.getCause() instanceof BookStoreException);
+				} catch (InterruptedException | TimeoutException ex) {
+					fail("The order was not completed");
+				}
+			}
+
+			batcher.stop();
+		}
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws BookStoreException {
+		storeManager.removeAllBooks();
+
+		if (localTest) {
+			localBatcher.stop();
+		} else {
+			((BookStoreHTTPProxy) client).stop();
+			((StockManagerHTTPProxy) storeManager).stop();
+		}
+	}
+}
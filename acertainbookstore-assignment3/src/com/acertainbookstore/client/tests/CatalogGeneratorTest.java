@@ -0,0 +1,75 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.workloads.CatalogGenerator;
+
+/**
+ * {@link CatalogGeneratorTest} tests that the generated catalogs have distinct
+ * isbns and are the same for the same seed, however they are chunked and
+ * streamed into the store.
+ *
+ * @see CatalogGenerator
+ */
+public class CatalogGeneratorTest {
+
+	/** The Constant NUM_BOOKS. */
+	private static final int NUM_BOOKS = 100000;
+
+	/** The Constant SEED. */
+	private static final long SEED = 42;
+
+	/**
+	 * Tests that the isbns are distinct valid isbns, also above the range of
+	 * the 7-digit isbns.
+	 */
+	@Test
+	public void testDistinctISBNs() {
+		CatalogGenerator generator = new CatalogGenerator(SEED);
+		assertEquals(NUM_BOOKS, generator.generate(NUM_BOOKS).size());
+
+		int numBooks = 10000000;
+		Set<Integer> isbns = new HashSet<>();
+		for (int i = 0; i < numBooks; i += 7) {
+			int isbn = generator.isbn(numBooks, i);
+			assertTrue(isbn >= 1000000);
+			assertTrue(isbns.add(isbn));
+		}
+	}
+
+	/**
+	 * Tests that the same seed generates the same catalog, another seed
+	 * another one.
+	 */
+	@Test
+	public void testDeterministic() {
+		List<StockBook> chunk = new CatalogGenerator(SEED).generateChunk(NUM_BOOKS, 500, 600);
+		assertEquals(chunk, new CatalogGenerator(SEED).generateChunk(NUM_BOOKS, 500, 600));
+		assertEquals(chunk.subList(10, 20), new CatalogGenerator(SEED).generateChunk(NUM_BOOKS, 510, 520));
+		assertNotEquals(chunk, new CatalogGenerator(SEED + 1).generateChunk(NUM_BOOKS, 500, 600));
+	}
+
+	/**
+	 * Tests that the catalog streamed into a store in parallel chunks is the
+	 * catalog generated in memory.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testGenerateInto() throws Exception {
+		CatalogGenerator generator = new CatalogGenerator(SEED);
+		CertainBookStore store = new CertainBookStore();
+		generator.generateInto(store, NUM_BOOKS, 7000, 4);
+
+		assertEquals(generator.generate(NUM_BOOKS), new HashSet<>(store.getBooks()));
+	}
+}
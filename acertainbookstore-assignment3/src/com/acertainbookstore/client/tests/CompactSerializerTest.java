@@ -0,0 +1,220 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.utils.BookStoreBatch;
+import com.acertainbookstore.utils.BookStoreCompactSerializer;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreKryoSerializer;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreOperation;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link CompactSerializerTest} tests the round trips of the domain types
+ * through the {@link BookStoreCompactSerializer}, and its rejection of
+ * malformed payloads.
+ *
+ * @see BookStoreCompactSerializer
+ */
+public class CompactSerializerTest {
+
+	/** The serializer. */
+	private final BookStoreCompactSerializer serializer = new BookStoreCompactSerializer();
+
+	/**
+	 * Serializes and de-serializes a value.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the de-serialized value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private Object roundTrip(Object value) throws IOException {
+		return serializer.deserialize(serializer.serialize(value));
+	}
+
+	/**
+	 * Tests the round trips of the request values.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testRequestValues() throws IOException {
+		Set<Integer> isbns = new HashSet<>(Arrays.asList(1, -2, Integer.MAX_VALUE, Integer.MIN_VALUE));
+		assertEquals(isbns, roundTrip(isbns));
+		assertEquals(Collections.emptySet(), roundTrip(Collections.emptySet()));
+		assertEquals(7, roundTrip(7));
+		assertEquals("", roundTrip(""));
+		assertNull(roundTrip(null));
+
+		BookCopy copy = (BookCopy) ((Set<?>) roundTrip(Collections.singleton(new BookCopy(3044560, 5)))).iterator()
+				.next();
+		assertEquals(3044560, copy.getISBN());
+		assertEquals(5, copy.getNumCopies());
+
+		BookRating rating = (BookRating) roundTrip(new BookRating(12, 4));
+		assertEquals(12, rating.getISBN());
+		assertEquals(4, rating.getRating());
+
+		BookEditorPick pick = (BookEditorPick) roundTrip(new BookEditorPick(13, true));
+		assertEquals(13, pick.getISBN());
+		assertTrue(pick.isEditorPick());
+	}
+
+	/**
+	 * Tests the round trips of the books, with non-ASCII and null strings.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testBooks() throws IOException {
+		StockBook stockBook = new ImmutableStockBook(3044560, "Harry Potter och JUnit \u00e5\u00e4\u00f6 \u6f22",
+				"JK Unit", 10.5f, 7, 3, 2, 9, true);
+		List<StockBook> stockBooks = new ArrayList<>();
+		stockBooks.add(stockBook);
+
+		StockBook stockCopy = (StockBook) ((List<?>) roundTrip(stockBooks)).get(0);
+		assertEquals(stockBook, stockCopy);
+		assertEquals(stockBook.getTitle(), stockCopy.getTitle());
+		assertEquals(7, stockCopy.getNumCopies());
+		assertEquals(3, stockCopy.getNumSaleMisses());
+		assertEquals(2, stockCopy.getNumTimesRated());
+		assertEquals(9, stockCopy.getTotalRating());
+		assertTrue(stockCopy.isEditorPick());
+
+		Book book = (Book) roundTrip(new ImmutableBook(1, "Title", null, 3.25f));
+		assertFalse(book instanceof StockBook);
+		assertNull(book.getAuthor());
+		assertEquals(3.25f, book.getPrice(), 0f);
+	}
+
+	/**
+	 * Tests the round trips of the responses and of the batches, whose lists
+	 * mix values and nulls.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testResponsesAndBatches() throws IOException {
+		BookStoreResponse failed = (BookStoreResponse) roundTrip(
+				new BookStoreResponse(new BookStoreException("The ISBN: 3 is not available"), null));
+		assertEquals("The ISBN: 3 is not available", failed.getException().getMessage());
+		assertNull(failed.getList());
+
+		BookStoreResponse results = new BookStoreResponse();
+		results.setList(Arrays.asList(null, new BookStoreException("failed"), null));
+		List<?> list = ((BookStoreResponse) roundTrip(results)).getList();
+		assertEquals(3, list.size());
+		assertNull(list.get(0));
+		assertEquals("failed", ((BookStoreException) list.get(1)).getMessage());
+
+		BookStoreBatch batch = (BookStoreBatch) roundTrip(new BookStoreBatch(
+				Arrays.asList(BookStoreOperation.listBooks(), BookStoreOperation.removeBooks(Collections.singleton(4))),
+				true));
+		assertTrue(batch.isAtomic());
+		assertEquals(BookStoreMessageTag.LISTBOOKS, batch.getOperations().get(0).getMessageTag());
+		assertNull(batch.getOperations().get(0).getInputValue());
+		assertEquals(Collections.singleton(4), batch.getOperations().get(1).getInputValue());
+	}
+
+	/**
+	 * Tests that the compact payloads are smaller than the Kryo ones.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testSmallerThanKryo() throws IOException {
+		List<Book> books = new ArrayList<>();
+
+		for (int isbn = 1; isbn <= 100; isbn++) {
+			books.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, 5, 0, 0, 0, false));
+		}
+
+		BookStoreResponse response = new BookStoreResponse(null, books);
+		BookStoreKryoSerializer kryo = new BookStoreKryoSerializer();
+		assertTrue(serializer.serialize(response).length < kryo.serialize(response).length);
+
+		Set<BookCopy> request = Collections.singleton(new BookCopy(3044560, 1));
+		assertTrue(serializer.serialize(request).length < kryo.serialize(request).length);
+	}
+
+	/**
+	 * Tests that the malformed payloads are rejected.
+	 */
+	@Test
+	public void testMalformedPayloads() {
+		byte[][] payloads = { {}, { 2, 0 }, { 1, 100 }, { 1, 2, 5 }, { 1, 1, 2, 0 }, { 1, 3, 127, 1 } };
+
+		for (byte[] payload : payloads) {
+			try {
+				serializer.deserialize(payload);
+				fail(Arrays.toString(payload));
+			} catch (IOException ex) {
+				;
+			}
+		}
+	}
+
+	/**
+	 * Tests that the string lengths a payload announces are bounded before
+	 * they are allocated, from an array and from a stream.
+	 */
+	@Test
+	public void testMalformedStringLengths() {
+		// A string of about 2 GB, then one of a negative length other than null
+		byte[][] payloads = { { 1, 13, (byte) 0xF0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 },
+				{ 1, 13, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F },
+				{ 1, 13, (byte) 0x81, (byte) 0x80, (byte) 0x80, 0x04, 'a' } };
+
+		for (byte[] payload : payloads) {
+			try {
+				serializer.deserialize(payload);
+				fail(Arrays.toString(payload));
+			} catch (IOException ex) {
+				;
+			}
+
+			try {
+				serializer.deserialize(new ByteArrayInputStream(payload));
+				fail(Arrays.toString(payload));
+			} catch (IOException ex) {
+				;
+			}
+		}
+	}
+
+	/**
+	 * Tests that the types without an encoder are rejected.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test(expected = IOException.class)
+	public void testUnsupportedType() throws IOException {
+		serializer.serialize(new StringBuilder("not a domain type"));
+	}
+}
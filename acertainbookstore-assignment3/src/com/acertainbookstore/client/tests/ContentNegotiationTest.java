@@ -0,0 +1,190 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreClientConstants;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
+
+/**
+ * {@link ContentNegotiationTest} tests that clients speaking different codecs
+ * share one server, which selects the serializer of each request by its
+ * content type.
+ *
+ * @see BookStoreSerializerRegistry
+ * @see BookStoreHTTPMessageHandler
+ */
+public class ContentNegotiationTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 5;
+
+	/** The server. */
+	private static Server server;
+
+	/** The server address. */
+	private static String serverAddress;
+
+	/** The store manager speaking XStream. */
+	private static StockManagerHTTPProxy xmlStoreManager;
+
+	/** The client speaking Kryo. */
+	private static BookStoreHTTPProxy binaryClient;
+
+	/**
+	 * Starts a server on an ephemeral port and a client of each codec.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		server = new Server(0);
+		server.setHandler(new BookStoreHTTPMessageHandler(new CertainBookStore()));
+		server.start();
+		serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+		xmlStoreManager = new StockManagerHTTPProxy(serverAddress + "/stock", BookStoreConstants.CONTENT_TYPE_XSTREAM);
+		binaryClient = new BookStoreHTTPProxy(serverAddress, BookStoreClientConstants.CLIENT_MAX_CONNECTION_ADDRESS,
+				BookStoreConstants.CONTENT_TYPE_KRYO);
+	}
+
+	/**
+	 * Method to add a book, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void initializeBooks() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+		booksToAdd.add(new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES,
+				0, 0, 0, false));
+		xmlStoreManager.addBooks(booksToAdd);
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		xmlStoreManager.removeAllBooks();
+	}
+
+	/**
+	 * Tests that the books added by an XML client are bought by a binary
+	 * client, and that each gets its answers in its own codec.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testCodecsShareOneStore() throws BookStoreException {
+		binaryClient.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 2)));
+		assertEquals(1, binaryClient.getBooks(Collections.singleton(TEST_ISBN)).size());
+
+		List<StockBook> books = xmlStoreManager.getBooks();
+		assertEquals(1, books.size());
+		assertEquals(NUM_COPIES - 2, books.get(0).getNumCopies());
+	}
+
+	/**
+	 * Tests that the failures are answered in the codec of the request.
+	 */
+	@Test
+	public void testExceptionInClientCodec() {
+		try {
+			binaryClient.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN + 1, 1)));
+			fail();
+		} catch (BookStoreException ex) {
+			assertTrue(ex.getMessage().contains(Integer.toString(TEST_ISBN + 1)));
+		}
+	}
+
+	/**
+	 * Tests that a request without a content type is answered with the
+	 * default serializer, and that an unknown content type is rejected.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testDefaultAndUnsupportedContentTypes() throws Exception {
+		HttpClient client = new HttpClient();
+		client.start();
+
+		try {
+			ContentResponse response = client.GET(serverAddress + "/stock/listbooks");
+			BookStoreResponse bookStoreResponse = (BookStoreResponse) BookStoreSerializerRegistry.newDefaultRegistry()
+					.getDefault().deserialize(response.getContent());
+			assertEquals(1, bookStoreResponse.getList().size());
+			assertEquals(BookStoreSerializerRegistry.newDefaultRegistry().getDefault().getContentType(),
+					response.getHeaders().get(HttpHeader.CONTENT_TYPE));
+
+			response = client.POST(serverAddress + "/stock/removebooks")
+					.content(new BytesContentProvider("application/x-unknown", new byte[] { 1 })).send();
+			assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE_415, response.getStatus());
+		} finally {
+			client.stop();
+		}
+
+		assertEquals(1, xmlStoreManager.getBooks().size());
+	}
+
+	/**
+	 * Tests that a proxy cannot declare an unregistered codec.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test(expected = BookStoreException.class)
+	public void testUnknownProxyCodec() throws Exception {
+		new StockManagerHTTPProxy(serverAddress + "/stock", "application/x-unknown");
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		binaryClient.stop();
+		xmlStoreManager.stop();
+		server.stop();
+	}
+}
@@ -0,0 +1,175 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreFlightRecorder;
+import com.acertainbookstore.utils.LockWaitEvent;
+import com.acertainbookstore.utils.StoreOperationEvent;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * {@link FlightRecorderEventsTest} tests that the store operations, lock
+ * waits and request phases are emitted as flight recorder events while a
+ * recording is running, and only then.
+ *
+ * @see BookStoreFlightRecorder
+ */
+public class FlightRecorderEventsTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The server. */
+	private static Server server;
+
+	/** The client. */
+	private static BookStoreHTTPProxy client;
+
+	/** The store manager. */
+	private static StockManagerHTTPProxy storeManager;
+
+	/**
+	 * Starts a server on an ephemeral port and adds a book.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		server = new Server(0);
+		server.setHandler(new BookStoreHTTPMessageHandler(new CertainBookStore()));
+		server.start();
+
+		String serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+		client = new BookStoreHTTPProxy(serverAddress);
+		storeManager = new StockManagerHTTPProxy(serverAddress + "/stock");
+		storeManager.addBooks(Collections.singleton(
+				new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, 100, 0, 0, 0, false)));
+	}
+
+	/**
+	 * Tests that the requests handled during a recording are recorded with
+	 * their store operation, lock wait and phases.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testEventsRecorded() throws Exception {
+		assertFalse(BookStoreFlightRecorder.isRecording());
+		Path file = Files.createTempFile("bookstore", ".jfr");
+		Set<BookCopy> booksToBuy = Collections.singleton(new BookCopy(TEST_ISBN, 1));
+
+		try (Recording recording = new Recording()) {
+			recording.enable(StoreOperationEvent.class);
+			recording.enable(LockWaitEvent.class).withThreshold(Duration.ZERO);
+			recording.enable("com.acertainbookstore.RequestPhase");
+			recording.start();
+			assertTrue(BookStoreFlightRecorder.isRecording());
+
+			client.buyBooks(booksToBuy);
+
+			try {
+				client.buyBooks(Collections.singleton(new BookCopy(-1, 1)));
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+
+			recording.stop();
+			recording.dump(file);
+		}
+
+		assertFalse(BookStoreFlightRecorder.isRecording());
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		Files.delete(file);
+
+		List<RecordedEvent> operations = events.stream()
+				.filter(event -> event.getEventType().getName().equals("com.acertainbookstore.StoreOperation"))
+				.sorted(Comparator.comparing(RecordedEvent::getStartTime)).collect(Collectors.toList());
+		assertEquals(2, operations.size());
+		assertEquals("BUYBOOKS", operations.get(0).getString("operation"));
+		assertEquals(1, operations.get(0).getInt("isbnCount"));
+		assertEquals(StoreOperationEvent.OK, operations.get(0).getString("outcome"));
+		assertNotEquals(StoreOperationEvent.OK, operations.get(1).getString("outcome"));
+
+		assertTrue(events.stream().anyMatch(event -> event.getEventType().getName()
+				.equals("com.acertainbookstore.LockWait") && event.getString("operation").equals("BUYBOOKS")));
+		assertEquals(2, events.stream()
+				.filter(event -> event.getEventType().getName().equals("com.acertainbookstore.RequestPhase")
+						&& event.getString("phase").equals("STORE"))
+				.count());
+	}
+
+	/**
+	 * Tests that a recording started with the virtual machine, before the
+	 * class was loaded, is seen as running.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRecordingStartedWithVirtualMachine() throws Exception {
+		Path file = Files.createTempFile("bookstore", ".jfr");
+		Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+				"-XX:StartFlightRecording=filename=" + file, "-cp", System.getProperty("java.class.path"),
+				FlightRecorderEventsTest.class.getName()).redirectErrorStream(true).start();
+		process.getInputStream().transferTo(OutputStream.nullOutputStream());
+
+		assertEquals(0, process.waitFor());
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Exits with 0 if a recording is seen as running, for the virtual machine
+	 * started with a recording by
+	 * {@link #testRecordingStartedWithVirtualMachine()}.
+	 *
+	 * @param args
+	 *            the arguments
+	 */
+	public static void main(String[] args) {
+		System.exit(BookStoreFlightRecorder.isRecording() ? 0 : 1);
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		storeManager.removeAllBooks();
+		client.stop();
+		storeManager.stop();
+		server.stop();
+	}
+}
@@ -0,0 +1,230 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookStoreBook;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreCompactSerializer;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreFragmentCache;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link FragmentCacheTest} tests that the compact serializer assembles the
+ * listings from the cached fragments of the unchanged books, byte for byte as
+ * it encodes them, and encodes the changed books again.
+ *
+ * @see BookStoreFragmentCache
+ * @see BookStoreBook#immutableStockBook()
+ */
+public class FragmentCacheTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_BOOKS. */
+	private static final int NUM_BOOKS = 10;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 5;
+
+	/** The store. */
+	private CertainBookStore store;
+
+	/** The fragment cache. */
+	private BookStoreFragmentCache fragments;
+
+	/** The serializer copying the cached fragments. */
+	private BookStoreCompactSerializer cached;
+
+	/** The serializer encoding every book. */
+	private BookStoreCompactSerializer plain;
+
+	/**
+	 * Fills a new store, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void setUp() throws BookStoreException {
+		store = new CertainBookStore();
+		fragments = new BookStoreFragmentCache(BookStoreFragmentCache.DEFAULT_MAX_ENTRIES);
+		cached = new BookStoreCompactSerializer(fragments);
+		plain = new BookStoreCompactSerializer();
+
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+
+		for (int i = 0; i < NUM_BOOKS; i++) {
+			booksToAdd.add(new ImmutableStockBook(TEST_ISBN + i, "Harry Potter and JUnit " + i, "JK Unit", (float) 10,
+					NUM_COPIES, 0, 0, 0, false));
+		}
+
+		store.addBooks(booksToAdd);
+	}
+
+	/**
+	 * Wraps books in a response.
+	 *
+	 * @param books
+	 *            the books
+	 * @return the response
+	 */
+	private static BookStoreResponse listing(List<? extends Book> books) {
+		BookStoreResponse response = new BookStoreResponse();
+		response.setList(books);
+		return response;
+	}
+
+	/**
+	 * Tests that the store hands out the same snapshots of its books until
+	 * they change.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testSnapshotsKeptUntilChange() throws BookStoreException {
+		List<StockBook> before = store.getBooks();
+		store.addCopies(Collections.singleton(new BookCopy(TEST_ISBN, 1)));
+		List<StockBook> after = store.getBooks();
+
+		for (StockBook book : before) {
+			StockBook same = after.get(after.indexOf(book));
+
+			if (book.getISBN() == TEST_ISBN) {
+				assertNotSame(book, same);
+				assertEquals(NUM_COPIES + 1, same.getNumCopies());
+			} else {
+				assertSame(book, same);
+			}
+		}
+	}
+
+	/**
+	 * Tests that a listing assembled from the fragments is the listing encoded
+	 * book by book, in each way of writing.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testFragmentsMatchEncoding() throws IOException, BookStoreException {
+		BookStoreResponse listing = listing(store.getBooks());
+		byte[] expected = plain.serialize(listing);
+
+		assertArrayEquals(expected, cached.serialize(listing));
+		assertEquals(0, fragments.getNumHits());
+		assertEquals(NUM_BOOKS, fragments.getNumMisses());
+
+		BookStoreBuffer buffer = new BookStoreBuffer(8);
+		cached.serialize(listing(store.getBooks()), buffer);
+		assertArrayEquals(expected, buffer.toByteArray());
+
+		buffer.reset();
+		cached.serialize(listing(store.getBooks()), (OutputStream) buffer);
+		assertArrayEquals(expected, buffer.toByteArray());
+		assertEquals(2 * NUM_BOOKS, fragments.getNumHits());
+		assertEquals(NUM_BOOKS, fragments.getNumMisses());
+
+		Set<Integer> isbns = Collections.singleton(TEST_ISBN);
+		BookStoreResponse books = listing(store.getBooks(isbns));
+		assertArrayEquals(plain.serialize(books), cached.serialize(books));
+		assertArrayEquals(plain.serialize(books), cached.serialize(listing(store.getBooks(isbns))));
+	}
+
+	/**
+	 * Tests that only the changed books are encoded again.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testChangedBookEncodedAgain() throws IOException, BookStoreException {
+		cached.serialize(listing(store.getBooks()));
+		store.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN + 1, 2)));
+
+		BookStoreResponse listing = listing(store.getBooks());
+		byte[] bytes = cached.serialize(listing);
+		assertEquals(NUM_BOOKS + 1, fragments.getNumMisses());
+		assertEquals(NUM_BOOKS - 1, fragments.getNumHits());
+		assertArrayEquals(plain.serialize(listing), bytes);
+
+		for (Object book : ((BookStoreResponse) cached.deserialize(bytes)).getList()) {
+			StockBook stockBook = (StockBook) book;
+			assertEquals(stockBook.getISBN() == TEST_ISBN + 1 ? NUM_COPIES - 2 : NUM_COPIES,
+					stockBook.getNumCopies());
+		}
+	}
+
+	/**
+	 * Tests that a mutable book is encoded each time, as it may change under
+	 * the same identity.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testMutableBookNotCached() throws IOException {
+		BookStoreBook book = new BookStoreBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, NUM_COPIES);
+		List<Book> books = Collections.singletonList(book);
+
+		assertArrayEquals(plain.serialize(books), cached.serialize(books));
+		assertArrayEquals(plain.serialize(books), cached.serialize(books));
+		assertEquals(0, fragments.getNumHits() + fragments.getNumMisses());
+	}
+
+	/**
+	 * Tests that a full cache keeps its fragments rather than being cleared
+	 * by the books it does not hold, and that the fragments of the removed
+	 * books are dropped.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFullCacheKeptAndRemovedBooksDropped() throws Exception {
+		fragments = new BookStoreFragmentCache(NUM_BOOKS / 2);
+		cached = new BookStoreCompactSerializer(fragments);
+
+		for (int i = 0; i < 3; i++) {
+			BookStoreResponse listing = listing(store.getBooks());
+			assertArrayEquals(plain.serialize(listing), cached.serialize(listing));
+		}
+		assertEquals(NUM_BOOKS / 2, fragments.getNumEntries());
+		assertEquals(NUM_BOOKS, fragments.getNumHits());
+		assertEquals(2 * NUM_BOOKS, fragments.getNumMisses());
+
+		// The removed books are dropped once their snapshots are collected,
+		// making room for the books added afterwards
+		store.removeAllBooks();
+		store.addBooks(Collections.singleton(
+				new ImmutableStockBook(TEST_ISBN - 1, "Harry Potter and JUnit", "JK Unit", (float) 10, 1, 0, 0, 0, false)));
+
+		for (int i = 0; i < 100 && fragments.getNumEntries() != 1; i++) {
+			System.gc();
+			Thread.sleep(10);
+			cached.serialize(listing(store.getBooks()));
+		}
+		assertEquals(1, fragments.getNumEntries());
+	}
+}
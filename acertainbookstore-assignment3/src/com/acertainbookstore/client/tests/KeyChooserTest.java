@@ -0,0 +1,152 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import com.acertainbookstore.client.workloads.BookSetGenerator;
+import com.acertainbookstore.client.workloads.HotspotKeyChooser;
+import com.acertainbookstore.client.workloads.KeyChooser;
+import com.acertainbookstore.client.workloads.LatestKeyChooser;
+import com.acertainbookstore.client.workloads.UniformKeyChooser;
+import com.acertainbookstore.client.workloads.ZipfianKeyChooser;
+
+/**
+ * {@link KeyChooserTest} tests that the key choosers draw the keys with the
+ * skew they are configured with, and that the book set generator samples
+ * distinct isbns with them.
+ *
+ * @see KeyChooser
+ */
+public class KeyChooserTest {
+
+	/** The Constant NUM_KEYS. */
+	private static final int NUM_KEYS = 1000;
+
+	/** The Constant NUM_DRAWS. */
+	private static final int NUM_DRAWS = 200000;
+
+	/**
+	 * Draws keys and counts the draws of each.
+	 *
+	 * @param chooser
+	 *            the chooser
+	 * @param numKeys
+	 *            the number of keys
+	 * @return the fraction of the draws of each key
+	 */
+	private static double[] frequencies(KeyChooser chooser, int numKeys) {
+		double[] frequencies = new double[numKeys];
+		for (int i = 0; i < NUM_DRAWS; i++) {
+			int index = chooser.nextIndex(numKeys);
+			assertTrue(index >= 0 && index < numKeys);
+			frequencies[index] += 1.0 / NUM_DRAWS;
+		}
+		return frequencies;
+	}
+
+	/**
+	 * Computes the zeta constant, the normalization of the Zipfian
+	 * distribution.
+	 *
+	 * @param numKeys
+	 *            the number of keys
+	 * @param theta
+	 *            the skew
+	 * @return the zeta constant
+	 */
+	private static double zeta(int numKeys, double theta) {
+		double zeta = 0;
+		for (int i = 1; i <= numKeys; i++) {
+			zeta += 1 / Math.pow(i, theta);
+		}
+		return zeta;
+	}
+
+	/**
+	 * Tests that the uniform chooser draws every key.
+	 */
+	@Test
+	public void testUniform() {
+		double[] frequencies = frequencies(new UniformKeyChooser(), NUM_KEYS);
+		for (double frequency : frequencies) {
+			assertEquals(1.0 / NUM_KEYS, frequency, 0.5 / NUM_KEYS);
+		}
+	}
+
+	/**
+	 * Tests that the Zipfian chooser draws the first ranks with their
+	 * probability, also after the keys grew or shrank.
+	 */
+	@Test
+	public void testZipfian() {
+		double theta = 0.99;
+		ZipfianKeyChooser chooser = new ZipfianKeyChooser(theta);
+
+		for (int numKeys : new int[] { NUM_KEYS, 2 * NUM_KEYS, NUM_KEYS / 2 }) {
+			double[] frequencies = frequencies(chooser, numKeys);
+			double zeta = zeta(numKeys, theta);
+			assertEquals(1 / zeta, frequencies[0], 0.01);
+			assertEquals(1 / Math.pow(2, theta) / zeta, frequencies[1], 0.01);
+			assertTrue(frequencies[0] > 10 * frequencies[numKeys / 2]);
+		}
+
+		assertEquals(0, chooser.nextIndex(1));
+	}
+
+	/**
+	 * Tests that the hotspot chooser sends the configured fraction of the
+	 * accesses to the hot keys.
+	 */
+	@Test
+	public void testHotspot() {
+		double[] frequencies = frequencies(new HotspotKeyChooser(0.2, 0.8), NUM_KEYS);
+		double hot = 0;
+		for (int i = 0; i < NUM_KEYS / 5; i++) {
+			hot += frequencies[i];
+		}
+		assertEquals(0.8, hot, 0.01);
+
+		try {
+			new HotspotKeyChooser(0, 0.8);
+			fail();
+		} catch (IllegalArgumentException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Tests that the latest chooser favours the keys added last.
+	 */
+	@Test
+	public void testLatest() {
+		double[] frequencies = frequencies(new LatestKeyChooser(0.99), NUM_KEYS);
+		assertEquals(1 / zeta(NUM_KEYS, 0.99), frequencies[NUM_KEYS - 1], 0.01);
+		assertTrue(frequencies[NUM_KEYS - 1] > 10 * frequencies[0]);
+	}
+
+	/**
+	 * Tests that the generator samples distinct isbns of the list, all of them
+	 * if fewer than requested.
+	 */
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testSampleFromListOfISBNs() {
+		BookSetGenerator bookSetGenerator = new BookSetGenerator();
+		bookSetGenerator.setKeyChooser(new ZipfianKeyChooser(0.99));
+		List<Integer> isbns = IntStream.rangeClosed(1, NUM_KEYS).boxed().collect(Collectors.toList());
+
+		Set<Integer> sample = bookSetGenerator.sampleFromListOfISBNs(isbns, 30);
+		assertEquals(30, sample.size());
+		assertTrue(isbns.containsAll(sample));
+
+		assertEquals(3, bookSetGenerator.sampleFromListOfISBNs(new ArrayList<>(isbns.subList(0, 3)), 5).size());
+		assertEquals(5, bookSetGenerator.sampleFromSetOfISBNs(isbns.stream().collect(Collectors.toSet()), 5).size());
+	}
+}
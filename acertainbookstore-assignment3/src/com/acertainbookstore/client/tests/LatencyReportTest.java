@@ -0,0 +1,80 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.client.workloads.CertainWorkload;
+import com.acertainbookstore.client.workloads.InteractionType;
+import com.acertainbookstore.client.workloads.LatencyReport;
+import com.acertainbookstore.client.workloads.Worker;
+import com.acertainbookstore.client.workloads.WorkerRunResult;
+import com.acertainbookstore.client.workloads.WorkloadConfiguration;
+
+/**
+ * {@link LatencyReportTest} tests that the workers record the latency of every
+ * interaction per interaction type, and the confidence intervals reported over
+ * the trials.
+ *
+ * @see LatencyReport
+ */
+public class LatencyReportTest {
+
+	/** The Constant NUM_RUNS. */
+	private static final int NUM_RUNS = 200;
+
+	/** The Constant DELTA. */
+	private static final double DELTA = 1e-3;
+
+	/**
+	 * Tests that every interaction is recorded once, in the histogram of its
+	 * type, and that the warm-up runs are not.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLatenciesPerInteractionType() throws Exception {
+		CertainBookStore store = new CertainBookStore();
+		CertainWorkload.initializeBookStoreData(store, store);
+		WorkloadConfiguration config = new WorkloadConfiguration(store, store);
+		config.setNumActualRuns(NUM_RUNS);
+
+		WorkerRunResult result = new Worker(config).call();
+		assertEquals(NUM_RUNS, result.getLatencies().getCount());
+
+		long count = 0;
+		for (InteractionType interactionType : InteractionType.values()) {
+			count += result.getLatencies(interactionType).getCount();
+		}
+		assertEquals(NUM_RUNS, count);
+		assertEquals(result.getTotalFrequentBookStoreInteractionRuns(),
+				result.getLatencies(InteractionType.FREQUENT_BOOK_STORE).getCount());
+		assertTrue(result.getLatencies(InteractionType.FREQUENT_STOCK_MANAGER).getCount() > 0);
+	}
+
+	/**
+	 * Tests the mean and the half width of the 95% confidence interval.
+	 */
+	@Test
+	public void testConfidenceInterval() {
+		assertEquals(20.0, LatencyReport.mean(Arrays.asList(10.0, 20.0, 30.0)), DELTA);
+
+		// s = 10, t(0.975, 2) = 4.303
+		assertEquals(4.303 * 10 / Math.sqrt(3), LatencyReport.confidenceHalfWidth(Arrays.asList(10.0, 20.0, 30.0)),
+				DELTA);
+		assertEquals(0.0, LatencyReport.confidenceHalfWidth(Collections.nCopies(5, 7.0)), DELTA);
+
+		// Above the table the normal quantile is used
+		Double[] samples = new Double[100];
+		for (int i = 0; i < samples.length; i++) {
+			samples[i] = (double) (i % 2);
+		}
+		double standardDeviation = Math.sqrt(25.0 / 99);
+		assertEquals(1.96 * standardDeviation / 10, LatencyReport.confidenceHalfWidth(Arrays.asList(samples)), DELTA);
+	}
+}
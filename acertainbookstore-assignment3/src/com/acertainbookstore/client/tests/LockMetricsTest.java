@@ -0,0 +1,105 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.ConcurrentHistogram;
+import com.acertainbookstore.utils.LockMetrics;
+
+/**
+ * {@link LockMetricsTest} tests the {@link LockMetrics} and
+ * {@link ConcurrentHistogram} instrumentation.
+ *
+ * @see LockMetrics
+ */
+public class LockMetricsTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The store. */
+	private CertainBookStore store;
+
+	/**
+	 * Creates a store holding a single book.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void setUp() throws BookStoreException {
+		store = new CertainBookStore();
+		Set<StockBook> books = new HashSet<>();
+		books.add(new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, 5, 0, 0, 0,
+				false));
+		store.addBooks(books);
+	}
+
+	/**
+	 * Tests that the histogram percentiles stay within the bucket precision.
+	 */
+	@Test
+	public void testHistogramPercentiles() {
+		ConcurrentHistogram histogram = new ConcurrentHistogram();
+
+		for (int i = 1; i <= 10000; i++) {
+			histogram.record(i * 1000L);
+		}
+
+		assertEquals(10000, histogram.getCount());
+		assertEquals(10000000L, histogram.getMax());
+		assertEquals(5000000.0, histogram.getValueAtPercentile(50), 5000000.0 * 0.04);
+		assertEquals(9900000.0, histogram.getValueAtPercentile(99), 9900000.0 * 0.04);
+		assertTrue(histogram.getValueAtPercentile(100) <= histogram.getMax());
+	}
+
+	/**
+	 * Tests that nothing is recorded while the instrumentation is disabled.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testDisabledRecordsNothing() throws BookStoreException {
+		store.getLockMetrics().setEnabled(false);
+		store.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 1)));
+		assertEquals(0, store.getLockMetrics().getTotalAcquisitions());
+	}
+
+	/**
+	 * Tests that the wait and hold times are recorded per operation.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testEnabledRecordsPerOperation() throws BookStoreException {
+		LockMetrics lockMetrics = store.getLockMetrics();
+		lockMetrics.setEnabled(true);
+
+		store.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 1)));
+		store.getBooks(Collections.singleton(TEST_ISBN));
+		store.getBooks(Collections.singleton(TEST_ISBN));
+
+		assertEquals(1, lockMetrics.getWaitTime(BookStoreMessageTag.BUYBOOKS).getCount());
+		assertEquals(1, lockMetrics.getHoldTime(BookStoreMessageTag.BUYBOOKS).getCount());
+		assertEquals(2, lockMetrics.getWaitTime(BookStoreMessageTag.GETBOOKS).getCount());
+		assertTrue(lockMetrics.getReport().contains(BookStoreMessageTag.BUYBOOKS.toString()));
+
+		lockMetrics.reset();
+		assertEquals(0, lockMetrics.getTotalAcquisitions());
+	}
+}
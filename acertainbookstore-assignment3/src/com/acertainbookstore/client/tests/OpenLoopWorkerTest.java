@@ -0,0 +1,148 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.workloads.CertainWorkload;
+import com.acertainbookstore.client.workloads.Worker;
+import com.acertainbookstore.client.workloads.WorkerRunResult;
+import com.acertainbookstore.client.workloads.WorkloadConfiguration;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link OpenLoopWorkerTest} tests that the open-loop workers issue their
+ * interactions on schedule and measure their latency from the intended start,
+ * and that the saturation knee of a sweep is found.
+ *
+ * @see Worker
+ */
+public class OpenLoopWorkerTest {
+
+	/** The Constant NUM_RUNS. */
+	private static final int NUM_RUNS = 50;
+
+	/** The Constant SERVICE_TIME_MILLIS is the time a slow store takes per interaction. */
+	private static final long SERVICE_TIME_MILLIS = 5;
+
+	/**
+	 * {@link SlowBookStore} takes the service time to answer the editor picks.
+	 */
+	private static class SlowBookStore extends CertainBookStore {
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see
+		 * com.acertainbookstore.business.CertainBookStore#getEditorPicks(int)
+		 */
+		@Override
+		public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+			try {
+				Thread.sleep(SERVICE_TIME_MILLIS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+
+			return super.getEditorPicks(numBooks);
+		}
+	}
+
+	/**
+	 * Builds the configuration of a worker running the bookstore interaction
+	 * only.
+	 *
+	 * @param store
+	 *            the store
+	 * @return the configuration
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static WorkloadConfiguration configuration(CertainBookStore store) throws Exception {
+		CertainWorkload.initializeBookStoreData(store, store);
+
+		// The catalog has as few as one copy of a book, so every book gets a
+		// copy per run for no purchase to fail.
+		Set<BookCopy> copies = new HashSet<>();
+		for (StockBook book : store.getBooks()) {
+			copies.add(new BookCopy(book.getISBN(), NUM_RUNS));
+		}
+		store.addCopies(copies);
+
+		WorkloadConfiguration config = new WorkloadConfiguration(store, store);
+		config.setPercentRareStockManagerInteraction(0);
+		config.setPercentFrequentStockManagerInteraction(0);
+		config.setWarmUpRuns(0);
+		config.setNumActualRuns(NUM_RUNS);
+		return config;
+	}
+
+	/**
+	 * Tests that an open-loop worker below saturation keeps its schedule.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testScheduleKept() throws Exception {
+		WorkloadConfiguration config = configuration(new CertainBookStore());
+		config.setOpenLoop(500);
+
+		WorkerRunResult result = new Worker(config).call();
+		assertEquals(NUM_RUNS, result.getSuccessfulInteractions());
+		assertEquals(NUM_RUNS, result.getLatencies().getCount());
+		assertTrue(result.getElapsedTimeInNanoSecs() >= TimeUnit.MILLISECONDS.toNanos(2 * (NUM_RUNS - 1)));
+	}
+
+	/**
+	 * Tests that the interactions delayed behind the slow ones are charged
+	 * for the delay in the open-loop mode, and not in the closed-loop mode.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testLatencyFromIntendedStart() throws Exception {
+		long serviceTime = TimeUnit.MILLISECONDS.toNanos(SERVICE_TIME_MILLIS);
+
+		WorkloadConfiguration closedLoop = configuration(new SlowBookStore());
+		WorkerRunResult closedLoopResult = new Worker(closedLoop).call();
+		assertTrue(closedLoopResult.getLatencies().getValueAtPercentile(50) >= serviceTime);
+		assertTrue(closedLoopResult.getLatencies().getValueAtPercentile(50) < 4 * serviceTime);
+
+		// The offered load is five times what the store can serve, the last
+		// interactions wait for most of the run.
+		WorkloadConfiguration openLoop = configuration(new SlowBookStore());
+		openLoop.setOpenLoop(1000);
+		WorkerRunResult openLoopResult = new Worker(openLoop).call();
+		assertEquals(NUM_RUNS, openLoopResult.getLatencies().getCount());
+		assertTrue(openLoopResult.getLatencies().getMax() > NUM_RUNS / 2 * serviceTime);
+		assertTrue(openLoopResult.getLatencies().getValueAtPercentile(50) > 10 * serviceTime);
+	}
+
+	/**
+	 * Tests that the knee is the lowest load that is not served in full or
+	 * whose tail latency jumps.
+	 */
+	@Test
+	public void testSaturationKnee() {
+		List<Double> offered = Arrays.asList(100.0, 200.0, 400.0, 800.0);
+
+		assertEquals(-1, CertainWorkload.findSaturationKnee(offered, Arrays.asList(100.0, 199.0, 398.0, 790.0),
+				Arrays.asList(100.0, 110.0, 150.0, 400.0)));
+		assertEquals(3, CertainWorkload.findSaturationKnee(offered, Arrays.asList(100.0, 199.0, 398.0, 600.0),
+				Arrays.asList(100.0, 110.0, 150.0, 400.0)));
+		assertEquals(2, CertainWorkload.findSaturationKnee(offered, Arrays.asList(100.0, 199.0, 398.0, 600.0),
+				Arrays.asList(100.0, 110.0, 5000.0, 90000.0)));
+	}
+}
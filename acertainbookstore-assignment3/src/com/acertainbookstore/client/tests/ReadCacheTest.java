@@ -0,0 +1,269 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookReadCache;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link ReadCacheTest} tests that the books cached by a proxy are read
+ * without a round trip, evicted beyond the max number of books, and dropped
+ * when the server reports them changed.
+ *
+ * @see BookReadCache
+ * @see CertainBookStore#getBooksChangedSince(long)
+ */
+public class ReadCacheTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 5;
+
+	/** The store. */
+	private static CertainBookStore store;
+
+	/** The server. */
+	private static Server server;
+
+	/** The server address. */
+	private static String serverAddress;
+
+	/** The store manager. */
+	private static StockManagerHTTPProxy storeManager;
+
+	/** The client of the test case. */
+	private BookStoreHTTPProxy client;
+
+	/**
+	 * Starts a server on an ephemeral port.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		store = new CertainBookStore();
+		server = new Server(0);
+		server.setHandler(new BookStoreHTTPMessageHandler(store));
+		server.start();
+		serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+		storeManager = new StockManagerHTTPProxy(serverAddress + "/stock");
+	}
+
+	/**
+	 * Adds three books and starts a client, executed before every test case
+	 * is run.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Before
+	public void initializeBooks() throws Exception {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+
+		for (int i = 0; i < 3; i++) {
+			booksToAdd.add(book(TEST_ISBN + i, "Harry Potter and JUnit"));
+		}
+
+		storeManager.addBooks(booksToAdd);
+		client = new BookStoreHTTPProxy(serverAddress);
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		client.stop();
+		storeManager.removeAllBooks();
+	}
+
+	/**
+	 * Builds a book.
+	 *
+	 * @param isbn
+	 *            the ISBN
+	 * @param title
+	 *            the title
+	 * @return the book
+	 */
+	private static StockBook book(int isbn, String title) {
+		return new ImmutableStockBook(isbn, title, "JK Unit", (float) 10, NUM_COPIES, 0, 0, 0, false);
+	}
+
+	/**
+	 * Gets the ISBNs of the test books.
+	 *
+	 * @param offsets
+	 *            the offsets of the ISBNs from the first test ISBN
+	 * @return the ISBNs
+	 */
+	private static Set<Integer> isbns(int... offsets) {
+		Set<Integer> isbns = new HashSet<>();
+
+		for (int offset : offsets) {
+			isbns.add(TEST_ISBN + offset);
+		}
+
+		return isbns;
+	}
+
+	/**
+	 * Tests that the books read again come from the cache, in the order of
+	 * the set, and that only the missing ones are read from the server.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testBooksReadFromCache() throws BookStoreException {
+		client.enableReadCache(10, 60_000);
+		BookReadCache cache = client.getReadCache();
+
+		client.getBooks(isbns(0, 1));
+		assertEquals(2, cache.getNumMisses());
+		assertEquals(0, cache.getNumHits());
+
+		Set<Integer> isbns = isbns(0, 1, 2);
+		List<Book> books = client.getBooks(isbns);
+		assertEquals(3, cache.getNumMisses());
+		assertEquals(2, cache.getNumHits());
+		assertEquals(1, cache.getNumRevalidations());
+		assertEquals(2.0 / 5, cache.getHitRate(), 1e-9);
+
+		int i = 0;
+
+		for (Integer isbn : isbns) {
+			assertEquals((int) isbn, books.get(i++).getISBN());
+		}
+	}
+
+	/**
+	 * Tests that the least recently used books are evicted beyond the max
+	 * number of books.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws BookStoreException {
+		client.enableReadCache(2, 60_000);
+		BookReadCache cache = client.getReadCache();
+
+		client.getBooks(isbns(0));
+		client.getBooks(isbns(1));
+		client.getBooks(isbns(0));
+		client.getBooks(isbns(2));
+		assertEquals(2, cache.size());
+
+		client.getBooks(isbns(0));
+		assertEquals(2, cache.getNumHits());
+		client.getBooks(isbns(1));
+		assertEquals(2, cache.getNumHits());
+	}
+
+	/**
+	 * Tests that a book removed and added again is read again once the cache
+	 * is revalidated, and that a removed book is no longer read.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testChangedBooksDropped() throws BookStoreException {
+		client.enableReadCache(10, 0);
+		BookReadCache cache = client.getReadCache();
+		client.getBooks(isbns(0, 1, 2));
+
+		storeManager.removeBooks(isbns(0, 1));
+		storeManager.addBooks(Collections.singleton(book(TEST_ISBN, "Harry Potter and the Cache")));
+
+		List<Book> books = client.getBooks(isbns(0));
+		assertEquals("Harry Potter and the Cache", books.get(0).getTitle());
+		assertEquals(2, cache.getNumInvalidations());
+		assertEquals(0, cache.getNumHits());
+
+		client.getBooks(isbns(2));
+		assertEquals(1, cache.getNumHits());
+
+		try {
+			client.getBooks(isbns(1));
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		storeManager.removeAllBooks();
+		assertNull(store.getBooksChangedSince(store.getCatalogVersion() - 1));
+
+		try {
+			client.getBooks(isbns(2));
+			fail();
+		} catch (BookStoreException ex) {
+			assertEquals(0, cache.size());
+		}
+	}
+
+	/**
+	 * Tests that the cached books are served while the last revalidation is
+	 * younger than the max staleness, and that the store reports the books
+	 * added or removed since a version.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testStaleBooksWithinBound() throws BookStoreException {
+		client.enableReadCache(10, 60_000);
+		client.getBooks(isbns(0));
+
+		long version = store.getCatalogVersion();
+		storeManager.removeBooks(isbns(0));
+		storeManager.addBooks(Collections.singleton(book(TEST_ISBN, "Harry Potter and the Cache")));
+		storeManager.addCopies(Collections.singleton(new BookCopy(TEST_ISBN + 1, 1)));
+
+		assertEquals("Harry Potter and JUnit", client.getBooks(isbns(0)).get(0).getTitle());
+		assertTrue(client.getReadCache().getMaxStalenessMillis() < 60_000);
+		assertEquals(Arrays.asList(TEST_ISBN), store.getBooksChangedSince(version));
+		assertEquals(Collections.emptyList(), store.getBooksChangedSince(store.getCatalogVersion()));
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		storeManager.stop();
+		server.stop();
+	}
+}
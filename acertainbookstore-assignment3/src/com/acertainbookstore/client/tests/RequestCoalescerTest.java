@@ -0,0 +1,117 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.acertainbookstore.server.BookStoreRequestCoalescer;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link RequestCoalescerTest} tests that the identical reads in flight share
+ * one response, and that the reads of another catalog version or of other
+ * ISBNs do not.
+ *
+ * @see BookStoreRequestCoalescer
+ */
+public class RequestCoalescerTest {
+
+	/** The Constant CONTENT_TYPE. */
+	private static final String CONTENT_TYPE = BookStoreConstants.CONTENT_TYPE_COMPACT;
+
+	/**
+	 * Tests that the keys do not depend on the order of the ISBNs, and depend
+	 * on everything else.
+	 */
+	@Test
+	public void testKeysNormalized() {
+		String key = BookStoreRequestCoalescer.key(BookStoreMessageTag.GETBOOKS, CONTENT_TYPE,
+				new HashSet<>(Arrays.asList(3, 1, 2)), 7);
+		assertEquals(key, BookStoreRequestCoalescer.key(BookStoreMessageTag.GETBOOKS, CONTENT_TYPE,
+				new LinkedHashSet<>(Arrays.asList(2, 3, 1)), 7));
+		assertNotEquals(key, BookStoreRequestCoalescer.key(BookStoreMessageTag.GETBOOKS, CONTENT_TYPE,
+				new HashSet<>(Arrays.asList(1, 2)), 7));
+		assertNotEquals(key, BookStoreRequestCoalescer.key(BookStoreMessageTag.GETBOOKS, CONTENT_TYPE,
+				new HashSet<>(Arrays.asList(1, 2, 3)), 8));
+		assertNotEquals(key, BookStoreRequestCoalescer.key(BookStoreMessageTag.GETSTOCKBOOKSBYISBN, CONTENT_TYPE,
+				new HashSet<>(Arrays.asList(1, 2, 3)), 7));
+		assertNotEquals(BookStoreRequestCoalescer.key(BookStoreMessageTag.GETEDITORPICKS, CONTENT_TYPE, 2, 7),
+				BookStoreRequestCoalescer.key(BookStoreMessageTag.GETEDITORPICKS, CONTENT_TYPE, 3, 7));
+		assertNull(BookStoreRequestCoalescer.key(BookStoreMessageTag.GETBOOKS, CONTENT_TYPE, "1", 7));
+
+		assertTrue(BookStoreRequestCoalescer.isCoalescable(BookStoreMessageTag.LISTBOOKS));
+		assertFalse(BookStoreRequestCoalescer.isCoalescable(BookStoreMessageTag.BUYBOOKS));
+	}
+
+	/**
+	 * Tests that a read arriving while an identical one is computed waits for
+	 * its response rather than computing it again.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testIdenticalReadsShareResponse() throws Exception {
+		BookStoreRequestCoalescer<String> coalescer = new BookStoreRequestCoalescer<>();
+		String key = BookStoreRequestCoalescer.key(BookStoreMessageTag.GETEDITORPICKS, CONTENT_TYPE, 2, 7);
+		CountDownLatch computing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger numComputations = new AtomicInteger();
+
+		CompletableFuture<CompletableFuture<String>> leader = CompletableFuture
+				.supplyAsync(() -> coalescer.coalesce(key, () -> {
+					numComputations.incrementAndGet();
+					computing.countDown();
+					release.await();
+					return "picks";
+				}));
+
+		computing.await();
+		CompletableFuture<String> follower = coalescer.coalesce(key, () -> {
+			numComputations.incrementAndGet();
+			return "again";
+		});
+		CompletableFuture<String> otherVersion = coalescer.coalesce(
+				BookStoreRequestCoalescer.key(BookStoreMessageTag.GETEDITORPICKS, CONTENT_TYPE, 2, 8), () -> "newer");
+
+		assertFalse(follower.isDone());
+		assertEquals("newer", otherVersion.get());
+
+		release.countDown();
+		assertEquals("picks", leader.get().get());
+		assertEquals("picks", follower.get());
+		assertEquals(1, numComputations.get());
+		assertEquals(1, coalescer.getNumJoined());
+		assertEquals(2, coalescer.getNumComputed());
+
+		// The flight is over, the next read computes its own response.
+		assertEquals("later", coalescer.coalesce(key, () -> "later").get());
+	}
+
+	/**
+	 * Tests that a failed computation fails its read only, and is not shared
+	 * with the next ones.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testFailureShared() throws Exception {
+		BookStoreRequestCoalescer<String> coalescer = new BookStoreRequestCoalescer<>();
+		String key = BookStoreRequestCoalescer.key(BookStoreMessageTag.LISTBOOKS, CONTENT_TYPE, null, 1);
+
+		CompletableFuture<String> failed = coalescer.coalesce(key, () -> {
+			throw new IllegalStateException();
+		});
+		assertTrue(failed.isCompletedExceptionally());
+		assertEquals("listing", coalescer.coalesce(key, () -> "listing").get());
+	}
+}
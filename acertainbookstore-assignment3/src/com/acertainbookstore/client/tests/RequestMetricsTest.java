@@ -0,0 +1,207 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.RequestMetrics;
+import com.acertainbookstore.utils.RequestMetrics.Phase;
+
+/**
+ * {@link RequestMetricsTest} tests that the requests are counted per message
+ * tag with their errors and phases, and that a disabled instrumentation
+ * records nothing.
+ *
+ * @see RequestMetrics
+ */
+public class RequestMetricsTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The handler. */
+	private static BookStoreHTTPMessageHandler handler;
+
+	/** The server. */
+	private static Server server;
+
+	/** The client. */
+	private static BookStoreHTTPProxy client;
+
+	/** The store manager. */
+	private static StockManagerHTTPProxy storeManager;
+
+	/**
+	 * Starts a server on an ephemeral port and adds a book.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		handler = new BookStoreHTTPMessageHandler(new CertainBookStore());
+		server = new Server(0);
+		server.setHandler(handler);
+		server.start();
+
+		String serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+		client = new BookStoreHTTPProxy(serverAddress);
+		storeManager = new StockManagerHTTPProxy(serverAddress + "/stock");
+		storeManager.addBooks(Collections.singleton(
+				new ImmutableStockBook(TEST_ISBN, "Harry Potter and JUnit", "JK Unit", (float) 10, 100, 0, 0, 0, false)));
+	}
+
+	/**
+	 * Tests that the time blocked on the timed streams goes to the read and
+	 * write phases rather than to the phases around them.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testStreamsTimedApart() throws Exception {
+		RequestMetrics metrics = new RequestMetrics("test", true);
+		RequestMetrics.Timing timing = metrics.start(BookStoreMessageTag.BUYBOOKS);
+		InputStream in = timing.timeReads(new ByteArrayInputStream(new byte[16]) {
+
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				sleep(20);
+				return super.read(b, off, len);
+			}
+		});
+
+		timing.beginPhase();
+		assertEquals(16, in.read(new byte[16], 0, 16));
+		timing.endPhase(Phase.DESERIALIZE);
+
+		timing.beginPhase();
+		sleep(10);
+		timing.endPhase(Phase.STORE);
+		timing.setFailed();
+		metrics.finish(timing);
+
+		assertEquals(1, metrics.getRequests(BookStoreMessageTag.BUYBOOKS));
+		assertEquals(1, metrics.getErrors(BookStoreMessageTag.BUYBOOKS));
+		assertEquals(1, metrics.getTotalErrors());
+		assertTrue(metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.READ).getMax() >= 20_000_000L);
+		assertTrue(metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.DESERIALIZE).getMax() < 10_000_000L);
+		assertTrue(metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.STORE).getMax() >= 10_000_000L);
+		assertEquals(0, metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.SERIALIZE).getCount());
+		assertTrue(metrics.getLatencyMicros("buybooks", 50) >= 30_000);
+
+		metrics.reset();
+		assertEquals(0, metrics.getTotalRequests());
+	}
+
+	/**
+	 * Tests that a disabled instrumentation records nothing and leaves the
+	 * streams unwrapped.
+	 */
+	@Test
+	public void testDisabledRecordsNothing() {
+		RequestMetrics metrics = new RequestMetrics("test", false);
+		RequestMetrics.Timing timing = metrics.start(BookStoreMessageTag.GETBOOKS);
+		OutputStream out = new ByteArrayOutputStream();
+		assertSame(out, timing.timeWrites(out));
+
+		timing.beginPhase();
+		timing.endPhase(Phase.STORE);
+		metrics.finish(timing);
+		assertEquals(0, metrics.getTotalRequests());
+
+		metrics.setEnabled(true);
+		metrics.finish(metrics.start(BookStoreMessageTag.GETBOOKS));
+		assertEquals(1, metrics.getTotalRequests());
+	}
+
+	/**
+	 * Tests that the server counts its requests per message tag, the failed
+	 * ones as errors, times their phases, and reports them.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testServerRequestsCounted() throws Exception {
+		RequestMetrics metrics = handler.getRequestMetrics();
+		metrics.reset();
+
+		Set<BookCopy> booksToBuy = new HashSet<BookCopy>();
+		booksToBuy.add(new BookCopy(TEST_ISBN, 1));
+
+		for (int i = 0; i < 3; i++) {
+			client.buyBooks(booksToBuy);
+		}
+
+		try {
+			client.buyBooks(Collections.singleton(new BookCopy(-1, 1)));
+			fail();
+		} catch (BookStoreException ex) {
+			;
+		}
+
+		client.getBooks(Collections.singleton(TEST_ISBN));
+
+		assertEquals(4, metrics.getRequests(BookStoreMessageTag.BUYBOOKS));
+		assertEquals(1, metrics.getErrors(BookStoreMessageTag.BUYBOOKS));
+		assertEquals(1, metrics.getRequests(BookStoreMessageTag.GETBOOKS));
+		assertEquals(4, metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.STORE).getCount());
+		assertEquals(4, metrics.getPhase(BookStoreMessageTag.BUYBOOKS, Phase.SERIALIZE).getCount());
+		assertEquals(1, metrics.getPhase(BookStoreMessageTag.GETBOOKS, Phase.STORE).getCount());
+
+		// The rates count the complete seconds only.
+		Thread.sleep(1100);
+		assertEquals(5.0 / 60, metrics.getRatePerSecond("buybooks", 60) + metrics.getRatePerSecond("getbooks", 60),
+				1e-9);
+		assertTrue(metrics.getReport().contains("BUYBOOKS requests=4 errors=1"));
+	}
+
+	/**
+	 * Sleeps without being interrupted.
+	 *
+	 * @param millis
+	 *            the milliseconds to sleep
+	 */
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		storeManager.removeAllBooks();
+		client.stop();
+		storeManager.stop();
+		server.stop();
+	}
+}
@@ -0,0 +1,239 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.server.BookStoreResponseCache;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link ResponseCacheTest} tests that the catalog reads are answered from the
+ * cached responses while the catalog version is unchanged, and revalidated
+ * with 304 Not Modified.
+ *
+ * @see BookStoreResponseCache
+ * @see CertainBookStore#getCatalogVersion()
+ */
+public class ResponseCacheTest {
+
+	/** The Constant TEST_ISBN. */
+	private static final int TEST_ISBN = 3044560;
+
+	/** The Constant NUM_COPIES. */
+	private static final int NUM_COPIES = 5;
+
+	/** The store. */
+	private static CertainBookStore store;
+
+	/** The server. */
+	private static Server server;
+
+	/** The server address. */
+	private static String serverAddress;
+
+	/** The store manager. */
+	private static StockManagerHTTPProxy storeManager;
+
+	/** The HTTP client sending the raw requests. */
+	private static HttpClient client;
+
+	/**
+	 * Starts a server on an ephemeral port.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		store = new CertainBookStore();
+		server = new Server(0);
+		server.setHandler(new BookStoreHTTPMessageHandler(store));
+		server.start();
+		serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+
+		storeManager = new StockManagerHTTPProxy(serverAddress + "/stock", BookStoreConstants.CONTENT_TYPE_KRYO);
+		client = new HttpClient();
+		client.start();
+	}
+
+	/**
+	 * Adds three editor picks, executed before every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Before
+	public void initializeBooks() throws BookStoreException {
+		Set<StockBook> booksToAdd = new HashSet<StockBook>();
+
+		for (int i = 0; i < 3; i++) {
+			booksToAdd.add(new ImmutableStockBook(TEST_ISBN + i, "Harry Potter and JUnit", "JK Unit", (float) 10,
+					NUM_COPIES, 0, 0, 0, true));
+		}
+
+		storeManager.addBooks(booksToAdd);
+	}
+
+	/**
+	 * Method to clean up the book store, execute after every test case is run.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@After
+	public void cleanupBooks() throws BookStoreException {
+		storeManager.removeAllBooks();
+	}
+
+	/**
+	 * Sends a raw catalog read.
+	 *
+	 * @param path
+	 *            the path of the request
+	 * @param eTag
+	 *            the entity tag of the If-None-Match header, null if none
+	 * @return the response
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static ContentResponse get(String path, String eTag) throws Exception {
+		return client.newRequest(serverAddress + path).header(HttpHeader.ACCEPT, BookStoreConstants.CONTENT_TYPE_KRYO)
+				.header(HttpHeader.IF_NONE_MATCH, eTag).send();
+	}
+
+	/**
+	 * Tests that every mutation which changed the books bumps the catalog
+	 * version, even a failed one, and that those which changed nothing do not.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testMutationsBumpVersion() throws BookStoreException {
+		long version = store.getCatalogVersion();
+		storeManager.getBooks();
+		assertEquals(version, store.getCatalogVersion());
+
+		store.addCopies(Collections.singleton(new BookCopy(TEST_ISBN, 1)));
+		assertEquals(version + 1, store.getCatalogVersion());
+
+		try {
+			// The order is rejected before any book changed.
+			store.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN + 100, 1)));
+			fail();
+		} catch (BookStoreException ex) {
+			assertEquals(version + 1, store.getCatalogVersion());
+		}
+
+		try {
+			// The sale miss is recorded, so the catalog changed.
+			store.buyBooks(Collections.singleton(new BookCopy(TEST_ISBN, 100)));
+			fail();
+		} catch (BookStoreException ex) {
+			assertEquals(version + 2, store.getCatalogVersion());
+		}
+	}
+
+	/**
+	 * Tests that the listing is revalidated with 304 Not Modified until the
+	 * catalog changes.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testListingNotModifiedUntilMutation() throws Exception {
+		ContentResponse response = get("/stock/listbooks", null);
+		String eTag = response.getHeaders().get(HttpHeader.ETAG);
+		assertEquals(HttpStatus.OK_200, response.getStatus());
+		assertNotNull(eTag);
+
+		response = get("/stock/listbooks", eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED_304, response.getStatus());
+		assertEquals(0, response.getContent().length);
+		assertEquals(eTag, response.getHeaders().get(HttpHeader.ETAG));
+
+		storeManager.updateEditorPicks(Collections.singleton(new BookEditorPick(TEST_ISBN, false)));
+
+		response = get("/stock/listbooks", eTag);
+		assertEquals(HttpStatus.OK_200, response.getStatus());
+		assertNotEquals(eTag, response.getHeaders().get(HttpHeader.ETAG));
+	}
+
+	/**
+	 * Tests that the proxy revalidates its listing, sees the mutations, and
+	 * hands out its own copy of the books.
+	 *
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	@Test
+	public void testProxyListingSeesMutations() throws BookStoreException {
+		List<StockBook> books = storeManager.getBooks();
+		assertEquals(3, books.size());
+		books.clear();
+
+		assertEquals(3, storeManager.getBooks().size());
+
+		storeManager.addCopies(Collections.singleton(new BookCopy(TEST_ISBN, 2)));
+
+		for (StockBook book : storeManager.getBooks()) {
+			assertEquals(book.getISBN() == TEST_ISBN ? NUM_COPIES + 2 : NUM_COPIES, book.getNumCopies());
+		}
+	}
+
+	/**
+	 * Tests that all the editor picks are cached, and that a random sample of
+	 * them is not.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRandomEditorPicksNotCached() throws Exception {
+		String path = "/getEditorPicks?" + BookStoreConstants.BOOK_NUM_PARAM + "=";
+		String eTag = get(path + 5, null).getHeaders().get(HttpHeader.ETAG);
+		assertNotNull(eTag);
+		assertEquals(HttpStatus.NOT_MODIFIED_304, get(path + 5, eTag).getStatus());
+		assertEquals(HttpStatus.NOT_MODIFIED_304, get(path + 4, eTag).getStatus());
+
+		assertNull(get(path + 2, null).getHeaders().get(HttpHeader.ETAG));
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		client.stop();
+		storeManager.stop();
+		server.stop();
+	}
+}
@@ -0,0 +1,154 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
+
+/**
+ * {@link StreamingSerializationTest} tests the serializers reading and writing
+ * streams, and the HTTP exchanges streaming a response larger than the
+ * buffers of the client.
+ *
+ * @see BookStoreSerializer#serialize(Object, java.io.OutputStream)
+ * @see BookStoreSerializer#deserialize(InputStream)
+ */
+public class StreamingSerializationTest {
+
+	/** The Constant NUM_BOOKS, enough for an XML catalog of several megabytes. */
+	private static final int NUM_BOOKS = 15000;
+
+	/** The server. */
+	private static Server server;
+
+	/** The server address. */
+	private static String serverAddress;
+
+	/** The catalog of the store. */
+	private static Set<StockBook> catalog;
+
+	/**
+	 * Starts a server on an ephemeral port and fills its store.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		CertainBookStore store = new CertainBookStore();
+		catalog = new HashSet<>();
+
+		for (int isbn = 1; isbn <= NUM_BOOKS; isbn++) {
+			catalog.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, 5, 0, 0, 0, false));
+		}
+
+		store.addBooks(catalog);
+
+		server = new Server(0);
+		server.setHandler(new BookStoreHTTPMessageHandler(store));
+		server.start();
+		serverAddress = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+	}
+
+	/**
+	 * {@link TrickleInputStream} returns a few bytes per read, as a network
+	 * stream may.
+	 */
+	private static final class TrickleInputStream extends FilterInputStream {
+
+		/**
+		 * Instantiates a new {@link TrickleInputStream}.
+		 *
+		 * @param in
+		 *            the stream
+		 */
+		private TrickleInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return super.read(b, off, Math.min(len, 7));
+		}
+	}
+
+	/**
+	 * Tests that the stream and the array forms of each codec are the same
+	 * payload.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void testStreamsMatchArrays() throws IOException {
+		List<Book> books = new ArrayList<>(catalog);
+		BookStoreResponse response = new BookStoreResponse(null, books);
+
+		for (BookStoreSerializer serializer : BookStoreSerializerRegistry.newDefaultRegistry().getSerializers()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			serializer.serialize(response, out);
+
+			BookStoreResponse fromStream = (BookStoreResponse) serializer
+					.deserialize(new TrickleInputStream(new ByteArrayInputStream(serializer.serialize(response))));
+			BookStoreResponse fromArray = (BookStoreResponse) serializer.deserialize(out.toByteArray());
+
+			assertEquals(serializer.getContentType(), books, fromStream.getList());
+			assertEquals(serializer.getContentType(), books, fromArray.getList());
+		}
+	}
+
+	/**
+	 * Tests that each codec lists a catalog larger than the response buffer
+	 * of the client.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testListLargeCatalog() throws Exception {
+		for (BookStoreSerializer serializer : BookStoreSerializerRegistry.newDefaultRegistry().getSerializers()) {
+			StockManagerHTTPProxy storeManager = new StockManagerHTTPProxy(serverAddress + "/stock",
+					serializer.getContentType());
+
+			try {
+				assertEquals(serializer.getContentType(), catalog, new HashSet<>(storeManager.getBooks()));
+			} finally {
+				storeManager.stop();
+			}
+		}
+	}
+
+	/**
+	 * Tear down after class.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		server.stop();
+	}
+}
@@ -0,0 +1,95 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import com.acertainbookstore.client.workloads.SweepRunner;
+import com.acertainbookstore.client.workloads.SweepRunner.Result;
+import com.acertainbookstore.client.workloads.WorkloadDefinition;
+
+/**
+ * {@link SweepRunnerTest} tests that a sweep runs every combination of its
+ * matrix the servers of which serve the store, once per codec a transport
+ * speaks, and that its results are written as CSV, quoted where needed, and
+ * JSON.
+ *
+ * @see SweepRunner
+ */
+public class SweepRunnerTest {
+
+	/** The Constant MATRIX of the sweep, named so that CSV must quote it. */
+	private static final String MATRIX = "name: 'tiny, \"quoted\"'\n" + "catalog: {books: 100}\n"
+			+ "runs: {warmUp: 0, actual: 20}\n" + "sweep: {threads: [1, 2]}\n" + "matrix:\n"
+			+ "  stores: [com.acertainbookstore.business.CertainBookStore,"
+			+ " com.acertainbookstore.business.SingleLockConcurrentCertainBookStore]\n"
+			+ "  transports: [inprocess, tcp, http]\n" + "  serializers: [kryo, compact]\n";
+
+	/**
+	 * Tests that the sweep skips the HTTP transport for the stores its handler
+	 * does not serve, runs the in-process and TCP transports once and the HTTP
+	 * one per codec, and writes a row per result.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testSweep() throws Exception {
+		List<Result> results = new SweepRunner(WorkloadDefinition.parse(new StringReader(MATRIX))).run();
+
+		// In-process and TCP for both stores, HTTP with both codecs for one, two
+		// steps each
+		assertEquals(12, results.size());
+		for (Result result : results) {
+			assertTrue(result.toString(), result.getThroughput() > 0);
+			assertTrue(result.getLatencies().getCount() > 0);
+			if (result.getTransport().equals("http")) {
+				assertEquals("CertainBookStore", result.getStore());
+			}
+		}
+		assertEquals("none", results.get(0).getSerializer());
+		assertEquals(1, results.get(0).getNumClients());
+		assertEquals(2, results.get(1).getNumClients());
+		assertEquals(2, results.stream().filter(result -> result.getTransport().equals("http"))
+				.map(Result::getSerializer).distinct().count());
+
+		File directory = Files.createTempDirectory("sweep").toFile();
+		File csv = new File(directory, "sweep.csv");
+		File json = new File(directory, "sweep.json");
+		try {
+			SweepRunner.writeCsv(results, csv);
+			SweepRunner.writeJson(results, json);
+
+			List<String> lines = Files.readAllLines(csv.toPath(), StandardCharsets.UTF_8);
+			assertEquals(13, lines.size());
+			assertTrue(lines.get(0).startsWith("workload,store,transport,serializer,trial,clients"));
+			assertTrue(lines.get(1).startsWith("\"tiny, \"\"quoted\"\"\",CertainBookStore,inprocess,none,1,1,,20,"));
+
+			Yaml yaml = new Yaml(new SafeConstructor(new LoaderOptions()));
+			@SuppressWarnings("unchecked")
+			Map<String, Object> document = (Map<String, Object>) yaml
+					.load(new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8));
+			List<?> rows = (List<?>) document.get("results");
+			assertEquals(12, rows.size());
+			Map<?, ?> row = (Map<?, ?>) rows.get(0);
+			assertEquals("tiny, \"quoted\"", row.get("workload"));
+			assertEquals("CertainBookStore", row.get("store"));
+			assertNull(row.get("offeredRate"));
+			assertEquals(20, row.get("totalRuns"));
+		} finally {
+			csv.delete();
+			json.delete();
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.workloads.CatalogGenerator;
+import com.acertainbookstore.client.workloads.TraceReader;
+import com.acertainbookstore.client.workloads.TraceRecord;
+import com.acertainbookstore.client.workloads.TraceRecord.Operation;
+import com.acertainbookstore.client.workloads.TraceRecorder;
+import com.acertainbookstore.client.workloads.TraceReplayer;
+import com.acertainbookstore.client.workloads.Worker;
+import com.acertainbookstore.client.workloads.WorkerRunResult;
+import com.acertainbookstore.client.workloads.WorkloadConfiguration;
+import com.acertainbookstore.client.workloads.WorkloadDefinition;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link TraceReplayTest} tests that the calls recorded into a trace are read
+ * back with their arguments, times and sessions, and that replaying a trace
+ * against another store reproduces the state of the recorded one.
+ *
+ * @see TraceRecorder
+ * @see TraceReplayer
+ */
+public class TraceReplayTest {
+
+	/** The Constant PAUSE_IN_MILLIS between the recorded calls. */
+	private static final long PAUSE_IN_MILLIS = 200;
+
+	/** The Constant NUM_CLIENTS of the recorded workload. */
+	private static final int NUM_CLIENTS = 4;
+
+	/** The Constant NUM_STEPS of the recorded workload. */
+	private static final int NUM_STEPS = 3;
+
+	/** The Constant NUM_BOOKS of the catalog of the recorded workload. */
+	private static final int NUM_BOOKS = 200;
+
+	/** The Constant CHUNK_SIZE of the catalog loads. */
+	private static final int CHUNK_SIZE = 50;
+
+	/** The Constant NUM_COPIES of the books of the catalog. */
+	private static final int NUM_COPIES = 1000000;
+
+	/**
+	 * Records calls to a store.
+	 *
+	 * @param store
+	 *            the store
+	 * @param pauseInMillis
+	 *            the pause between the stock manager and the customer calls
+	 * @return the trace
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static byte[] record(CertainBookStore store, long pauseInMillis) throws Exception {
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+
+		try (TraceRecorder recorder = new TraceRecorder(store, store, trace)) {
+			Set<StockBook> books = new HashSet<>();
+			for (int isbn = 1; isbn <= 10; isbn++) {
+				books.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author", 10f, 5, 0, 0, 0, false));
+			}
+			recorder.addBooks(books);
+			recorder.updateEditorPicks(new HashSet<>(Arrays.asList(new BookEditorPick(3, true))));
+			Thread.sleep(pauseInMillis);
+
+			recorder.buyBooks(new HashSet<>(Arrays.asList(new BookCopy(3, 2), new BookCopy(4, 5))));
+			recorder.getEditorPicks(1);
+			try {
+				recorder.buyBooks(new HashSet<>(Arrays.asList(new BookCopy(42, 1))));
+				fail();
+			} catch (BookStoreException ex) {
+				;
+			}
+			recorder.addCopies(new HashSet<>(Arrays.asList(new BookCopy(4, 3))));
+			recorder.getBooks();
+		}
+
+		return trace.toByteArray();
+	}
+
+	/**
+	 * Reads the records of a trace.
+	 *
+	 * @param trace
+	 *            the trace
+	 * @return the records
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static List<TraceRecord> read(byte[] trace) throws Exception {
+		List<TraceRecord> records = new ArrayList<>();
+
+		try (TraceReader reader = new TraceReader(new ByteArrayInputStream(trace))) {
+			TraceRecord record;
+			while ((record = reader.read()) != null) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Tests that the records are read back in their order, with their
+	 * arguments and the sessions of their threads.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testRecord() throws Exception {
+		List<TraceRecord> records = read(record(new CertainBookStore(), 0));
+
+		assertEquals(7, records.size());
+		assertEquals(Operation.ADD_BOOKS, records.get(0).getOperation());
+		assertEquals(10, ((Set<?>) records.get(0).getArgument()).size());
+		assertEquals(new HashSet<>(Arrays.asList(new BookCopy(3, 2), new BookCopy(4, 5))),
+				records.get(2).getArgument());
+		assertEquals(1, records.get(3).getArgument());
+		assertEquals(Operation.LIST_BOOKS, records.get(6).getOperation());
+		assertNull(records.get(6).getArgument());
+
+		for (int i = 1; i < records.size(); i++) {
+			assertTrue(records.get(i).getTimeInNanoSecs() >= records.get(i - 1).getTimeInNanoSecs());
+			assertEquals(0, records.get(i).getSession());
+		}
+
+		// Another thread records into a session of its own
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		CertainBookStore store = new CertainBookStore();
+		try (TraceRecorder recorder = new TraceRecorder(store, store, trace)) {
+			recorder.getBooks();
+			Thread thread = new Thread(() -> {
+				try {
+					recorder.getEditorPicks(2);
+				} catch (BookStoreException ex) {
+					;
+				}
+			});
+			thread.start();
+			thread.join();
+		}
+		records = read(trace.toByteArray());
+		assertEquals(0, records.get(0).getSession());
+		assertEquals(1, records.get(1).getSession());
+	}
+
+	/**
+	 * Tests that a record announcing a payload longer than a frame fails to
+	 * be read rather than allocating it.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testInvalidRecordLength() throws Exception {
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(trace);
+		out.writeInt(TraceRecorder.MAGIC);
+		out.writeByte(TraceRecorder.VERSION);
+		out.writeLong(0);
+		// The operation, session and time, then a varint length of 2^31 - 1
+		out.write(new byte[] { 0, 0, 0, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+
+		try (TraceReader reader = new TraceReader(new ByteArrayInputStream(trace.toByteArray()))) {
+			reader.read();
+			fail();
+		} catch (IOException ex) {
+			;
+		}
+	}
+
+	/**
+	 * Tests that replaying a trace against an empty store reproduces the
+	 * recorded store, the failed calls failing again.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testReplay() throws Exception {
+		CertainBookStore recorded = new CertainBookStore();
+		List<TraceRecord> records = read(record(recorded, 0));
+
+		CertainBookStore replayed = new CertainBookStore();
+		List<WorkerRunResult> results = new TraceReplayer(replayed, replayed).replay(records);
+
+		assertEquals(1, results.size());
+		assertEquals(7, results.get(0).getTotalRuns());
+		assertEquals(6, results.get(0).getSuccessfulInteractions());
+		assertEquals(7, results.get(0).getLatencies().getCount());
+		assertEquals(new HashSet<>(recorded.getBooks()), new HashSet<>(replayed.getBooks()));
+	}
+
+	/**
+	 * Tests that the original timing mode keeps the pauses of the trace, sped
+	 * up by the factor, and that the sessions are sharded over the threads.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testTimingAndSharding() throws Exception {
+		List<TraceRecord> records = read(record(new CertainBookStore(), PAUSE_IN_MILLIS));
+
+		CertainBookStore store = new CertainBookStore();
+		TraceReplayer replayer = new TraceReplayer(store, store);
+		replayer.setSpeedUp(2);
+		long startTime = System.nanoTime();
+		replayer.replay(records);
+		assertTrue(System.nanoTime() - startTime >= PAUSE_IN_MILLIS / 2 * 1000000);
+
+		List<TraceRecord> sessions = new ArrayList<>();
+		for (int session = 0; session < 5; session++) {
+			sessions.add(new TraceRecord(Operation.GET_EDITOR_PICKS, session, 0, 1));
+		}
+		replayer.setSpeedUp(TraceReplayer.AS_FAST_AS_POSSIBLE);
+		replayer.setNumThreads(2);
+		List<WorkerRunResult> results = replayer.replay(sessions);
+		assertEquals(2, results.size());
+		assertEquals(3, results.get(0).getTotalRuns());
+		assertEquals(2, results.get(1).getTotalRuns());
+	}
+
+	/**
+	 * Loads a catalog in chunks from several threads, as the workload does,
+	 * each loading thread recording a session of its own. The books have
+	 * copies enough for the purchases of the workload not to run out, which
+	 * would make their failures depend on how the concurrent purchases
+	 * interleave.
+	 *
+	 * @param recorder
+	 *            the recorder
+	 * @param exec
+	 *            the threads the chunks are added from
+	 * @throws Exception
+	 *             the exception
+	 */
+	private static void loadCatalog(TraceRecorder recorder, ExecutorService exec) throws Exception {
+		CatalogGenerator generator = new CatalogGenerator(0);
+		List<Future<Void>> chunks = new ArrayList<>();
+
+		for (int from = 0; from < NUM_BOOKS; from += CHUNK_SIZE) {
+			Set<StockBook> chunk = new HashSet<>();
+			for (StockBook book : generator.generateChunk(NUM_BOOKS, from, Math.min(NUM_BOOKS, from + CHUNK_SIZE))) {
+				chunk.add(new ImmutableStockBook(book.getISBN(), book.getTitle(), book.getAuthor(), book.getPrice(),
+						NUM_COPIES, 0, 0, 0, book.isEditorPick()));
+			}
+			chunks.add(exec.submit(() -> {
+				recorder.addBooks(chunk);
+				return null;
+			}));
+		}
+
+		for (Future<Void> chunk : chunks) {
+			chunk.get();
+		}
+	}
+
+	/**
+	 * Tests that a workload recorded with concurrent clients, a catalog loaded
+	 * by several threads and reset between its steps replays with
+	 * several threads with the calls which failed when recorded failing
+	 * again, and to the recorded store.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testReplayWorkload() throws Exception {
+		CertainBookStore recorded = new CertainBookStore();
+		AtomicInteger recordedFailures = new AtomicInteger();
+		Object counting = Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { BookStore.class, StockManager.class }, (proxy, method, args) -> {
+					try {
+						return method.invoke(recorded, args);
+					} catch (InvocationTargetException ex) {
+						recordedFailures.incrementAndGet();
+						throw ex.getCause();
+					}
+				});
+
+		ByteArrayOutputStream trace = new ByteArrayOutputStream();
+		try (TraceRecorder recorder = new TraceRecorder((BookStore) counting, (StockManager) counting, trace)) {
+			WorkloadDefinition definition = WorkloadDefinition
+					.parse(new StringReader("runs: {warmUp: 0, actual: 100}\n"));
+			ExecutorService exec = Executors.newFixedThreadPool(NUM_CLIENTS);
+
+			try {
+				for (int step = 0; step < NUM_STEPS; step++) {
+					recorder.removeAllBooks();
+					loadCatalog(recorder, exec);
+					List<Future<WorkerRunResult>> futures = new ArrayList<>();
+					for (int i = 0; i < NUM_CLIENTS; i++) {
+						WorkloadConfiguration config = new WorkloadConfiguration(recorder, recorder);
+						definition.configure(config);
+						futures.add(exec.submit(new Worker(config)));
+					}
+					for (Future<WorkerRunResult> future : futures) {
+						future.get();
+					}
+				}
+			} finally {
+				exec.shutdownNow();
+			}
+		}
+
+		List<TraceRecord> records = read(trace.toByteArray());
+		assertTrue(records.size() > NUM_STEPS * NUM_CLIENTS * 100);
+
+		CertainBookStore replayed = new CertainBookStore();
+		TraceReplayer replayer = new TraceReplayer(replayed, replayed);
+		replayer.setNumThreads(NUM_CLIENTS);
+
+		int replayedFailures = 0;
+		for (WorkerRunResult result : replayer.replay(records)) {
+			replayedFailures += result.getTotalRuns() - result.getSuccessfulInteractions();
+		}
+		assertEquals(recordedFailures.get(), replayedFailures);
+		assertEquals(new HashSet<>(recorded.getBooks()), new HashSet<>(replayed.getBooks()));
+	}
+}
@@ -0,0 +1,207 @@
+package com.acertainbookstore.client.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.client.workloads.ParameterDistribution;
+import com.acertainbookstore.client.workloads.Transport;
+import com.acertainbookstore.client.workloads.WorkloadConfiguration;
+import com.acertainbookstore.client.workloads.WorkloadDefinition;
+import com.acertainbookstore.utils.BookStoreConstants;
+
+/**
+ * {@link WorkloadDefinitionTest} tests that the workload definitions are read
+ * from YAML with the defaults of the keys they omit, that malformed ones are
+ * rejected, and that the parameters are drawn from their distributions.
+ *
+ * @see WorkloadDefinition
+ */
+public class WorkloadDefinitionTest {
+
+	/** The Constant NUM_SAMPLES. */
+	private static final int NUM_SAMPLES = 10000;
+
+	/**
+	 * Parses a definition.
+	 *
+	 * @param yaml
+	 *            the yaml
+	 * @return the workload definition
+	 */
+	private static WorkloadDefinition parse(String yaml) {
+		return WorkloadDefinition.parse(new StringReader(yaml));
+	}
+
+	/**
+	 * Tests that every key is read.
+	 */
+	@Test
+	public void testParse() {
+		WorkloadDefinition definition = parse("name: capacity\n" + "catalog: {books: 200, seed: 7}\n"
+				+ "mix: {rareStockManager: 5, frequentStockManager: 15.5}\n"
+				+ "runs: {warmUp: 0, actual: 50, trials: 3}\n"
+				+ "parameters:\n" + "  booksToBuy: {uniform: [1, 4]}\n" + "  bookCopiesToBuy: {poisson: 2.5}\n"
+				+ "  editorPicksToGet: 20\n" + "sweep: {threads: [2, 4], rates: [100, 250.5], outstanding: 8}\n"
+				+ "targets: {local: com.acertainbookstore.business.CertainBookStore, remote: null, trace: results/capacity.trace}\n"
+				+ "output: results/capacity\n");
+
+		assertEquals("capacity", definition.getName());
+		assertEquals(200, definition.getNumBooks());
+		assertEquals(7, definition.getCatalogSeed());
+		assertEquals(5f, definition.getPercentRareStockManagerInteraction(), 0);
+		assertEquals(15.5f, definition.getPercentFrequentStockManagerInteraction(), 0);
+		assertEquals(0, definition.getWarmUpRuns());
+		assertEquals(50, definition.getNumActualRuns());
+		assertEquals(3, definition.getNumTrials());
+		assertEquals("uniform(1, 4)", definition.getNumBooksToBuy().toString());
+		assertEquals(2.5, definition.getNumBookCopiesToBuy().getMean(), 0);
+		assertEquals("20", definition.getNumEditorPicksToGet().toString());
+		assertEquals("10", definition.getNumAddCopies().toString());
+		assertEquals(Arrays.asList(2, 4), definition.getNumClients());
+		assertEquals(4, definition.getMaxClients());
+		assertEquals(Arrays.asList(100.0, 250.5), definition.getOfferedRates());
+		assertTrue(definition.isOpenLoop());
+		assertEquals(8, definition.getMaxOutstandingInteractions());
+		assertNull(definition.getRemoteAddress());
+		assertEquals(new File("results/capacity.trace"), definition.getTraceFile());
+		assertEquals(new File("results/capacity"), definition.getOutputDirectory());
+	}
+
+	/**
+	 * Tests that an empty definition is the default workload, and that a
+	 * client count sweeps from one client.
+	 */
+	@Test
+	public void testDefaults() {
+		WorkloadDefinition definition = parse("");
+		assertEquals(1500, definition.getNumBooks());
+		assertEquals(10f, definition.getPercentRareStockManagerInteraction(), 0);
+		assertEquals(30f, definition.getPercentFrequentStockManagerInteraction(), 0);
+		assertEquals(10, definition.getNumClients().size());
+		assertFalse(definition.isOpenLoop());
+		assertEquals("http://localhost:8081", definition.getRemoteAddress());
+		assertNull(definition.getTraceFile());
+
+		assertEquals(Arrays.asList(1, 2, 3), parse("sweep: {threads: 3}").getNumClients());
+	}
+
+	/**
+	 * Tests that the definitions shipped with the harness are valid.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testShippedDefinitions() throws Exception {
+		WorkloadDefinition definition = WorkloadDefinition.load(Paths.get("workloads", "default.yaml"));
+		assertEquals(10, definition.getNumClients().size());
+		assertEquals(500, definition.getNumActualRuns());
+
+		assertTrue(WorkloadDefinition.load(Paths.get("workloads", "open-loop-capacity.yaml")).isOpenLoop());
+		assertEquals("zipf(0.99)",
+				WorkloadDefinition.load(Paths.get("workloads", "hot-keys.yaml")).getKeyChooser().toString());
+
+		definition = WorkloadDefinition.load(Paths.get("workloads", "matrix.yaml"));
+		assertEquals(3, definition.getMatrixStoreClasses().size());
+		assertEquals(Arrays.asList(Transport.INPROCESS, Transport.HTTP, Transport.TCP),
+				definition.getMatrixTransports());
+		assertEquals(3, definition.getMatrixContentTypes().size());
+	}
+
+	/**
+	 * Tests that the matrix of the sweeps is read, and that it defaults to the
+	 * local store called in-process.
+	 */
+	@Test
+	public void testMatrix() {
+		WorkloadDefinition definition = parse("");
+		assertEquals(Arrays.asList(CertainBookStore.class.getName()), definition.getMatrixStoreClasses());
+		assertEquals(Arrays.asList(Transport.INPROCESS), definition.getMatrixTransports());
+		assertEquals(Arrays.asList(BookStoreConstants.CONTENT_TYPE_KRYO), definition.getMatrixContentTypes());
+
+		definition = parse("matrix: {transports: [HTTP, tcp], serializers: [xstream, compact]}");
+		assertEquals(Arrays.asList(Transport.HTTP, Transport.TCP), definition.getMatrixTransports());
+		assertEquals(Arrays.asList(BookStoreConstants.CONTENT_TYPE_XSTREAM, BookStoreConstants.CONTENT_TYPE_COMPACT),
+				definition.getMatrixContentTypes());
+	}
+
+	/**
+	 * Tests that the key choosers are read, and that the customers buy among
+	 * the editor picks without one.
+	 */
+	@Test
+	public void testKeys() {
+		assertNull(parse("").getKeyChooser());
+		assertEquals("uniform", parse("keys: uniform").getKeyChooser().toString());
+		assertEquals("zipf(0.99)", parse("keys: {zipf: 0.99}").getKeyChooser().toString());
+		assertEquals("hotspot(0.2, 0.8)", parse("keys: {hotspot: [0.2, 0.8]}").getKeyChooser().toString());
+		assertEquals("latest(0.5)", parse("keys: {latest: 0.5}").getKeyChooser().toString());
+	}
+
+	/**
+	 * Tests that malformed definitions are rejected with the key at fault.
+	 */
+	@Test
+	public void testInvalid() {
+		String[] invalid = { "catalog: {books: 0}", "mix: {rareStockManager: 60, frequentStockManager: 50}",
+				"runs: {actual: many}", "parameters: {booksToBuy: {zipf: 1}}", "sweep: {threads: []}",
+				"sweep: {rates: 100}", "catalog: [1500]", "keys: {zipf: 1.5}", "keys: zipf",
+				"matrix: {transports: [udp]}", "matrix: {serializers: [json]}", "matrix: {stores: []}" };
+
+		for (String yaml : invalid) {
+			try {
+				parse(yaml);
+				fail(yaml);
+			} catch (IllegalArgumentException ex) {
+				assertTrue(ex.getMessage(), ex.getMessage().startsWith(yaml.substring(0, yaml.indexOf(':'))));
+			}
+		}
+	}
+
+	/**
+	 * Tests that the configurations draw their parameters from the
+	 * distributions of the definition.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Test
+	public void testDistributions() throws Exception {
+		CertainBookStore store = new CertainBookStore();
+		WorkloadConfiguration config = new WorkloadConfiguration(store, store);
+		parse("parameters: {booksToBuy: {uniform: [2, 4]}, bookCopiesToBuy: {poisson: 3}}").configure(config);
+
+		double sum = 0;
+		for (int i = 0; i < NUM_SAMPLES; i++) {
+			int numBooksToBuy = config.getNumBooksToBuy();
+			assertTrue(numBooksToBuy >= 2 && numBooksToBuy <= 4);
+			sum += config.getNumBookCopiesToBuy();
+		}
+		assertEquals(3, sum / NUM_SAMPLES, 0.1);
+		assertEquals(5, config.getNumBooksWithLeastCopies());
+
+		assertEquals(50.0, mean(ParameterDistribution.poisson(50)), 1);
+	}
+
+	/**
+	 * Computes the mean of samples of a distribution.
+	 *
+	 * @param distribution
+	 *            the distribution
+	 * @return the mean
+	 */
+	private static double mean(ParameterDistribution distribution) {
+		double sum = 0;
+		for (int i = 0; i < NUM_SAMPLES; i++) {
+			sum += distribution.sample();
+		}
+		return sum / NUM_SAMPLES;
+	}
+}
@@ -2,13 +2,10 @@ package com.acertainbookstore.client.workloads;
 
 import com.github.javafaker.Faker;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import com.acertainbookstore.business.ImmutableStockBook;
 import com.acertainbookstore.business.StockBook;
@@ -19,22 +16,67 @@ import com.acertainbookstore.business.StockBook;
  */
 public class BookSetGenerator {
 
+	/**
+	 * The draws allowed per isbn sampled before giving up on finding distinct
+	 * ones, which a heavily skewed chooser may take many draws to find
+	 */
+	private static final int MAX_DRAWS_PER_ISBN = 64;
+
 	Faker faker;
 
+	/** The chooser of the isbns sampled, shared by the workers */
+	private KeyChooser keyChooser = new UniformKeyChooser();
+
 	public BookSetGenerator() {
 		faker = new Faker();
 	}
 
+	public KeyChooser getKeyChooser() {
+		return keyChooser;
+	}
+
+	public void setKeyChooser(KeyChooser keyChooser) {
+		this.keyChooser = keyChooser;
+	}
+
 	/**
 	 * Returns num randomly selected isbns from the input set
 	 * 
 	 * @param num
 	 * @return
+	 * @deprecated copies the whole set on every call, keep the isbns in a list
+	 *             and use {@link #sampleFromListOfISBNs(List, int)} instead
 	 */
+	@Deprecated
 	public Set<Integer> sampleFromSetOfISBNs(Set<Integer> isbns, int num) {
-		List<Integer> tempList = new ArrayList<>(isbns);
-		Collections.shuffle(tempList, new Random());
-		Set<Integer> result = tempList.stream().limit(num).collect(Collectors.toSet());
+		if (num >= isbns.size()) {
+			return new HashSet<>(isbns);
+		}
+		return sampleFromListOfISBNs(Arrays.asList(isbns.toArray(new Integer[0])), num);
+	}
+
+	/**
+	 * Returns num distinct isbns of the input list drawn by the key chooser, in
+	 * time proportional to num rather than to the size of the list. Fewer isbns
+	 * are returned if the chooser is so skewed that num distinct ones are not
+	 * drawn in a bounded number of draws
+	 * 
+	 * @param isbns
+	 *            a list with random access, the positions of which the
+	 *            chooser draws
+	 * @param num
+	 * @return
+	 */
+	public Set<Integer> sampleFromListOfISBNs(List<Integer> isbns, int num) {
+		int numISBNs = isbns.size();
+		if (num >= numISBNs) {
+			return new HashSet<>(isbns);
+		}
+
+		Set<Integer> result = new HashSet<>();
+		for (int draws = 0; result.size() < num && draws < num * MAX_DRAWS_PER_ISBN; draws++) {
+			result.add(isbns.get(keyChooser.nextIndex(numISBNs)));
+		}
 		return result;
 	}
 
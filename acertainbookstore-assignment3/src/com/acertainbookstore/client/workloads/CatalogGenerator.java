@@ -0,0 +1,213 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+import com.github.javafaker.Faker;
+
+/**
+ *
+ * CatalogGenerator generates large synthetic catalogs quickly: the titles and
+ * authors are drawn from dictionaries generated once, the isbns are a
+ * permutation of a range so that they never collide, and the books are
+ * generated in chunks in parallel and streamed into the store. Every book is
+ * seeded from the seed of the catalog and its position, so that a catalog is
+ * the same whatever the chunks and the number of threads generating it
+ *
+ */
+public class CatalogGenerator {
+
+	/** The number of books added to the store per call */
+	public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+	/** The number of titles and of authors of the dictionaries */
+	private static final int DICTIONARY_SIZE = 1024;
+
+	/** The smallest isbn, the isbns have 7 digits up to 9M books */
+	private static final int MIN_ISBN = 1000000;
+
+	/** The size of the range of 7-digit isbns */
+	private static final int ISBN_RANGE = 9000000;
+
+	/** The increment of the seeds of the books, the golden ratio */
+	private static final long BOOK_SEED_INCREMENT = 0x9e3779b97f4a7c15L;
+
+	private final long seed;
+	private final String[] titles = new String[DICTIONARY_SIZE];
+	private final String[] authors = new String[DICTIONARY_SIZE];
+
+	/**
+	 * @param seed
+	 *            the seed of the catalog, the same seed generates the same
+	 *            catalog
+	 */
+	public CatalogGenerator(long seed) {
+		this.seed = seed;
+
+		Faker faker = new Faker(new Random(seed));
+		for (int i = 0; i < DICTIONARY_SIZE; i++) {
+			titles[i] = faker.book().title();
+			authors[i] = faker.book().author();
+		}
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Generates a catalog in memory
+	 *
+	 * @param numBooks
+	 * @return
+	 */
+	public Set<StockBook> generate(int numBooks) {
+		Set<StockBook> catalog = new HashSet<>();
+		for (int from = 0; from < numBooks; from += DEFAULT_CHUNK_SIZE) {
+			catalog.addAll(generateChunk(numBooks, from, Math.min(numBooks, from + DEFAULT_CHUNK_SIZE)));
+		}
+		return catalog;
+	}
+
+	/**
+	 * Generates a catalog into a store, generating and adding up to
+	 * parallelism chunks at a time. The store must accept concurrent additions
+	 *
+	 * @param stockManager
+	 * @param numBooks
+	 * @param chunkSize
+	 *            the number of books added per call
+	 * @param parallelism
+	 *            the number of threads generating and adding the chunks
+	 * @throws BookStoreException
+	 *             the first exception a chunk was added with
+	 */
+	public void generateInto(StockManager stockManager, int numBooks, int chunkSize, int parallelism)
+			throws BookStoreException {
+		ExecutorService exec = Executors.newFixedThreadPool(parallelism);
+		List<Future<Void>> chunks = new ArrayList<>();
+
+		try {
+			for (int from = 0; from < numBooks; from += chunkSize) {
+				int chunkFrom = from;
+				int chunkTo = Math.min(numBooks, from + chunkSize);
+				chunks.add(exec.submit(() -> {
+					stockManager.addBooks(new HashSet<>(generateChunk(numBooks, chunkFrom, chunkTo)));
+					return null;
+				}));
+			}
+
+			for (Future<Void> chunk : chunks) {
+				chunk.get();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new BookStoreException(ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof BookStoreException) {
+				throw (BookStoreException) ex.getCause();
+			}
+			throw new BookStoreException(ex.getCause());
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	/**
+	 * Generates a catalog into a store with a thread per processor
+	 *
+	 * @param stockManager
+	 * @param numBooks
+	 * @throws BookStoreException
+	 */
+	public void generateInto(StockManager stockManager, int numBooks) throws BookStoreException {
+		generateInto(stockManager, numBooks, DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Generates the books of positions [from, to) of a catalog
+	 *
+	 * @param numBooks
+	 *            the number of books of the catalog
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public List<StockBook> generateChunk(int numBooks, int from, int to) {
+		IsbnPermutation isbns = new IsbnPermutation(numBooks);
+		List<StockBook> books = new ArrayList<>(to - from);
+
+		for (int i = from; i < to; i++) {
+			SplittableRandom random = new SplittableRandom(seed + i * BOOK_SEED_INCREMENT);
+			books.add(new ImmutableStockBook(isbns.isbn(i), titles[random.nextInt(DICTIONARY_SIZE)],
+					authors[random.nextInt(DICTIONARY_SIZE)], (float) random.nextInt(1, 100),
+					random.nextInt(1, 1000), random.nextInt(0, 10000), random.nextInt(0, 1000), random.nextInt(0, 5),
+					random.nextBoolean()));
+		}
+
+		return books;
+	}
+
+	/**
+	 * Returns the isbn of the book of a position of a catalog
+	 *
+	 * @param numBooks
+	 *            the number of books of the catalog
+	 * @param index
+	 * @return
+	 */
+	public int isbn(int numBooks, int index) {
+		return new IsbnPermutation(numBooks).isbn(index);
+	}
+
+	/**
+	 * IsbnPermutation maps the positions of a catalog to distinct isbns of the
+	 * range, in a scattered order, with the affine bijection i -> a * i + c
+	 * modulo the size of the range, a being coprime with it
+	 */
+	private final class IsbnPermutation {
+		private final long range;
+		private final long multiplier;
+		private final long increment;
+
+		private IsbnPermutation(int numBooks) {
+			if ((long) MIN_ISBN + numBooks > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException(numBooks + " books exceed the range of the isbns");
+			}
+			range = Math.max(ISBN_RANGE, numBooks);
+
+			SplittableRandom random = new SplittableRandom(seed);
+			long candidate = random.nextLong(range / 2, range) | 1;
+			while (gcd(candidate, range) != 1) {
+				candidate += 2;
+			}
+			multiplier = candidate % range;
+			increment = random.nextLong(range);
+		}
+
+		private int isbn(int index) {
+			return (int) (MIN_ISBN + (multiplier * index + increment) % range);
+		}
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long remainder = a % b;
+			a = b;
+			b = remainder;
+		}
+		return a;
+	}
+}
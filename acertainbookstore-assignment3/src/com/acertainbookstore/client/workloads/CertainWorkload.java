@@ -5,13 +5,16 @@ package com.acertainbookstore.client.workloads;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import jdk.jfr.Recording;
+
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
@@ -20,14 +23,18 @@ import org.jfree.data.xy.XYDataset;
 import org.jfree.data.xy.XYSeries;
 import org.jfree.data.xy.XYSeriesCollection;
 
-import com.acertainbookstore.business.CertainBookStore;
 import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.AsyncBookStoreAdapter;
 import com.acertainbookstore.client.BookStoreHTTPProxy;
 import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreFlightRecorder;
+import com.acertainbookstore.utils.ConcurrentHistogram;
 
 /**
  * 
@@ -37,65 +44,195 @@ import com.acertainbookstore.utils.BookStoreException;
  * 
  */
 public class CertainWorkload {
-	static int numConcurrentWorkloadThreads;
 
 	/**
+	 * The workload run: the mix, the parameters, the sweep of clients or of
+	 * offered loads in the open-loop mode, the number of trials over which
+	 * the latency percentiles are reported, the stores and the output
+	 * directory
+	 */
+	static WorkloadDefinition definition = new WorkloadDefinition();
+
+	/** The generator of the catalog, kept across the steps for its dictionaries */
+	private static CatalogGenerator catalogGenerator;
+
+	/**
+	 * The load is saturated once the achieved throughput falls below this
+	 * fraction of the offered load
+	 */
+	static final double KNEE_THROUGHPUT_RATIO = 0.95;
+
+	/**
+	 * The load is saturated once the 99th percentile latency exceeds this
+	 * factor times the one at the lowest offered load
+	 */
+	static final double KNEE_LATENCY_FACTOR = 10;
+
+	/** Nanoseconds per microsecond, the unit of the reported latencies */
+	static final double NANOS_PER_MICRO = 1000.0;
+
+	/**
+	 * Runs the workload defined by the YAML file named by the first argument,
+	 * or the default one as overridden by the system properties
+	 * 
 	 * @param args
 	 */
 	public static void main(String[] args) throws Exception {
-		numConcurrentWorkloadThreads = 10;
-		String serverAddress = "http://localhost:8081";
-		boolean localTestAndRemote = true;
-
-		// Initialize the RPC interfaces if its not a localTest, the variable is
-		// overriden if the property is set
-		String localTestProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCAL_TEST);
-		localTestAndRemote = (localTestProperty != null) ? Boolean.parseBoolean(localTestProperty) : localTestAndRemote;
-
-		BookStore bookStore = null;
-		StockManager stockManager = null;
-		BookStore bookStoreRemote = null;
-		StockManager stockManagerRemote = null;
-		if (localTestAndRemote) {
-			CertainBookStore store = new CertainBookStore();
-			bookStore = store;
-			stockManager = store;
+		definition = args.length > 0 ? WorkloadDefinition.load(Paths.get(args[0]))
+				: WorkloadDefinition.fromProperties();
+		Recording recording = BookStoreFlightRecorder.startFromProperties(CertainWorkload.class.getSimpleName());
+
+		// The local store is instantiated by name so that any store implementing
+		// both interfaces can be measured
+		Object store = Class.forName(definition.getLocalStoreClass()).getDeclaredConstructor().newInstance();
+		BookStore bookStore = (BookStore) store;
+		StockManager stockManager = (StockManager) store;
+
+		// Record the calls to the local store so that the run can be replayed
+		TraceRecorder traceRecorder = null;
+		if (definition.getTraceFile() != null) {
+			File traceDirectory = definition.getTraceFile().getAbsoluteFile().getParentFile();
+			traceDirectory.mkdirs();
+			traceRecorder = new TraceRecorder(bookStore, stockManager, definition.getTraceFile().toPath());
+			bookStore = traceRecorder;
+			stockManager = traceRecorder;
+		}
+
+		// Initialize the RPC interfaces if a remote store is defined
+		String serverAddress = definition.getRemoteAddress();
+		BookStoreHTTPProxy bookStoreRemote = null;
+		StockManagerHTTPProxy stockManagerRemote = null;
+		if (serverAddress != null) {
 			stockManagerRemote = new StockManagerHTTPProxy(serverAddress + "/stock");
 			bookStoreRemote = new BookStoreHTTPProxy(serverAddress);
-		} else {
-			CertainBookStore store = new CertainBookStore();
-			bookStore = store;
-			stockManager = store;
+			bookStoreRemote.enableBuyBooksBatchingFromProperties();
+			bookStoreRemote.enableReadCacheFromProperties();
 		}
 
 		// Generate data in the bookstore before running the workload
-		List<List<WorkerRunResult>> localResults = getWorkersRunResult(bookStore, stockManager);
+		AsyncBookStoreAdapter asyncStore = new AsyncBookStoreAdapter(bookStore, stockManager);
+		List<List<List<WorkerRunResult>>> localTrials = new ArrayList<>();
+		List<List<List<WorkerRunResult>>> remoteTrials = new ArrayList<>();
 
-		List<List<WorkerRunResult>> remoteResults = getWorkersRunResult(bookStoreRemote, stockManagerRemote);
+		for (int trial = 0; trial < definition.getNumTrials(); trial++) {
+			localTrials.add(getWorkersRunResult(definition, bookStore, stockManager, asyncStore, asyncStore));
 
-//		 Finished initialization, stop the clients if not localTest
-		if (localTestAndRemote) {
-			((BookStoreHTTPProxy) bookStoreRemote).stop();
-			((StockManagerHTTPProxy) stockManagerRemote).stop();
+			if (bookStoreRemote != null) {
+				remoteTrials.add(
+						getWorkersRunResult(definition, bookStoreRemote, stockManagerRemote, bookStoreRemote,
+								stockManagerRemote));
+			}
 		}
 
-		reportMetric(localResults, remoteResults);
+		if (traceRecorder != null) {
+			traceRecorder.close();
+		}
+
+		// Finished the runs, stop the clients of the remote store
+		if (bookStoreRemote != null) {
+			if (bookStoreRemote.getReadCache() != null) {
+				System.out.print(bookStoreRemote.getReadCache().getReport());
+			}
+
+			bookStoreRemote.stop();
+			stockManagerRemote.stop();
+		}
+
+		BookStoreFlightRecorder.stop(recording);
+		definition.getOutputDirectory().mkdirs();
+
+		// The average charts plot the first trial, the percentiles report the
+		// spread over all of them
+		List<List<WorkerRunResult>> remoteResults = remoteTrials.isEmpty() ? new ArrayList<>() : remoteTrials.get(0);
+		if (!definition.isOpenLoop()) {
+			reportMetric(localTrials.get(0), remoteResults);
+
+			List<Double> numClients = new ArrayList<>();
+			for (int numWorkers : definition.getNumClients()) {
+				numClients.add((double) numWorkers);
+			}
+			LatencyReport.report(localTrials, remoteTrials, numClients, "Number of clients",
+					definition.getOutputDirectory());
+		} else {
+			reportOpenLoop(localTrials.get(0), remoteResults);
+			LatencyReport.report(localTrials, remoteTrials, definition.getOfferedRates(),
+					"Offered load (interactions/s)", definition.getOutputDirectory());
+		}
 	}
 
-	private static List<List<WorkerRunResult>> getWorkersRunResult(BookStore bookStore, StockManager stockManager)
+	/**
+	 * Parses a comma separated list of offered loads
+	 * 
+	 * @param rates
+	 * @return the offered loads, in interactions per second
+	 */
+	static List<Double> parseRates(String rates) {
+		List<Double> parsedRates = new ArrayList<>();
+
+		for (String rate : rates.split(",")) {
+			if (!rate.trim().isEmpty()) {
+				parsedRates.add(Double.parseDouble(rate.trim()));
+			}
+		}
+
+		return parsedRates;
+	}
+
+	/**
+	 * Runs the steps of the sweep of a workload against a store, each from the
+	 * catalog of the workload
+	 * 
+	 * @param workload
+	 * @param bookStore
+	 * @param stockManager
+	 * @param asyncBookStore
+	 * @param asyncStockManager
+	 * @return the results of the workers of each step
+	 * @throws Exception
+	 */
+	static List<List<WorkerRunResult>> getWorkersRunResult(WorkloadDefinition workload, BookStore bookStore,
+			StockManager stockManager, AsyncBookStore asyncBookStore, AsyncStockManager asyncStockManager)
 			throws Exception {
 		List<List<WorkerRunResult>> workersRunResults = new ArrayList<>();
 
-		initializeBookStoreData(bookStore, stockManager);
+		ExecutorService exec;
+		if (Boolean.getBoolean(BookStoreConstants.PROPERTY_KEY_VIRTUAL_THREADS)) {
+			exec = Executors.newVirtualThreadPerTaskExecutor();
+		} else {
+			exec = Executors.newFixedThreadPool(workload.getMaxClients());
+		}
 
-		ExecutorService exec = Executors.newFixedThreadPool(numConcurrentWorkloadThreads);
+		// In closed loop the number of clients is swept, in open loop the
+		// offered load is swept with all the clients
+		List<Double> offeredRates = workload.getOfferedRates();
+		int numSteps = offeredRates.isEmpty() ? workload.getNumClients().size() : offeredRates.size();
 
-		for (int i = 0; i < numConcurrentWorkloadThreads; i++) {
+		for (int i = 0; i < numSteps; i++) {
 			List<Future<WorkerRunResult>> runResults = new ArrayList<>();
 			List<WorkerRunResult> workerRunResults = new ArrayList<>();
+			int numWorkers = offeredRates.isEmpty() ? workload.getNumClients().get(i) : workload.getMaxClients();
+
+			// Every step starts from the same catalog
+			initializeBookStoreData(stockManager, workload.getNumBooks(), workload.getCatalogSeed());
+			List<Integer> catalogISBNs = null;
+			if (workload.getKeyChooser() != null) {
+				// Appended to by the workers, the appends are rare
+				catalogISBNs = Collections.synchronizedList(new ArrayList<>());
+				for (StockBook book : stockManager.getBooks()) {
+					catalogISBNs.add(book.getISBN());
+				}
+			}
 
-			for (int j = 0; j <= i; j++) {
+			for (int j = 0; j < numWorkers; j++) {
 				WorkloadConfiguration config = new WorkloadConfiguration(bookStore, stockManager);
+				workload.configure(config);
+				config.setCatalogISBNs(catalogISBNs);
+				if (workload.getMaxOutstandingInteractions() > 0) {
+					config.setAsync(asyncBookStore, asyncStockManager, workload.getMaxOutstandingInteractions());
+				}
+				if (!offeredRates.isEmpty()) {
+					config.setOpenLoop(offeredRates.get(i) / numWorkers);
+				}
 				Worker workerTask = new Worker(config);
 
 				runResults.add(exec.submit(workerTask));
@@ -115,20 +252,24 @@ public class CertainWorkload {
 	}
 
 	private static JFreeChart createChart(XYDataset dataset, String title, String y) {
-		JFreeChart chart = ChartFactory.createXYLineChart(title, "Number of clients", y, dataset,
+		return createChart(dataset, title, "Number of clients", y);
+	}
+
+	private static JFreeChart createChart(XYDataset dataset, String title, String x, String y) {
+		JFreeChart chart = ChartFactory.createXYLineChart(title, x, y, dataset,
 				PlotOrientation.VERTICAL, true, true, false);
 		return chart;
 	}
 
-	private static XYDataset createDataset(List<Double> localList, List<Double> remoteList) {
+	private static XYDataset createDataset(List<Double> xList, List<Double> localList, List<Double> remoteList) {
 		XYSeries series1 = new XYSeries("Local");
 		for (int i = 0; i < localList.size(); i++) {
-			series1.add(i, localList.get(i));
+			series1.add(xList.get(i), localList.get(i));
 		}
 
 		XYSeries series2 = new XYSeries("Remote");
 		for (int i = 0; i < remoteList.size(); i++) {
-			series2.add(i, remoteList.get(i));
+			series2.add(xList.get(i), remoteList.get(i));
 		}
 
 		XYSeriesCollection dataset = new XYSeriesCollection();
@@ -173,21 +314,154 @@ public class CertainWorkload {
 		localLatency = calculateLatency(workerRunResults);
 		remoteLatency = calculateLatency(workerRunResults1);
 
-		XYDataset datasetLatency = createDataset(localLatency, remoteLatency);
+		List<Double> numClients = new ArrayList<>();
+		for (int numWorkers : definition.getNumClients()) {
+			numClients.add((double) numWorkers);
+		}
+
+		XYDataset datasetLatency = createDataset(numClients, localLatency, remoteLatency);
 
 		JFreeChart latencyChart = createChart(datasetLatency, "LocalvsRemote Latency", "Latency");
-		ChartUtilities.saveChartAsPNG(new File("latencyChart.png"), latencyChart, 500, 300);
+		ChartUtilities.saveChartAsPNG(new File(definition.getOutputDirectory(), "latencyChart.png"), latencyChart,
+				500, 300);
 
 		List<Double> localThroughput = new ArrayList<>();
 		List<Double> remoteThroughput = new ArrayList<>();
 		localThroughput = calculateThroughput(workerRunResults);
 		remoteThroughput = calculateThroughput(workerRunResults1);
 
-		XYDataset datasetThroughput = createDataset(localThroughput, remoteThroughput);
+		XYDataset datasetThroughput = createDataset(numClients, localThroughput, remoteThroughput);
 
 		JFreeChart throughputChart = createChart(datasetThroughput, "LocalvsRemote Throughput", "Throughput");
-		ChartUtilities.saveChartAsPNG(new File("throughputChart.png"), throughputChart, 500, 300);
+		ChartUtilities.saveChartAsPNG(new File(definition.getOutputDirectory(), "throughputChart.png"),
+				throughputChart, 500, 300);
+
+	}
+
+	/**
+	 * Prints the achieved throughput and the latency percentiles of the
+	 * open-loop runs at each offered load, with the saturation knee of the
+	 * local store and of the remote one, and plots the 99th percentile latency
+	 * and the achieved throughput against the offered load
+	 * 
+	 * @param localResults
+	 * @param remoteResults
+	 * @throws IOException
+	 */
+	public static void reportOpenLoop(List<List<WorkerRunResult>> localResults,
+			List<List<WorkerRunResult>> remoteResults) throws IOException {
+		List<Double> offeredRates = definition.getOfferedRates();
+		List<Double> localLatency = reportOpenLoop("Local", localResults);
+		List<Double> remoteLatency = remoteResults.isEmpty() ? new ArrayList<>()
+				: reportOpenLoop("Remote", remoteResults);
+
+		XYDataset datasetLatency = createDataset(offeredRates, localLatency, remoteLatency);
+		JFreeChart latencyChart = createChart(datasetLatency, "LocalvsRemote Open Loop p99 Latency",
+				"Offered load (interactions/s)", "p99 latency (us)");
+		ChartUtilities.saveChartAsPNG(new File(definition.getOutputDirectory(), "openLoopLatencyChart.png"),
+				latencyChart, 500, 300);
+
+		List<Double> localThroughput = new ArrayList<>();
+		List<Double> remoteThroughput = new ArrayList<>();
+		for (List<WorkerRunResult> workerRunResults : localResults) {
+			localThroughput.add(calculateAchievedThroughput(workerRunResults));
+		}
+		for (List<WorkerRunResult> workerRunResults : remoteResults) {
+			remoteThroughput.add(calculateAchievedThroughput(workerRunResults));
+		}
+
+		XYDataset datasetThroughput = createDataset(offeredRates, localThroughput, remoteThroughput);
+		JFreeChart throughputChart = createChart(datasetThroughput, "LocalvsRemote Open Loop Throughput",
+				"Offered load (interactions/s)", "Achieved throughput (interactions/s)");
+		ChartUtilities.saveChartAsPNG(new File(definition.getOutputDirectory(), "openLoopThroughputChart.png"),
+				throughputChart, 500, 300);
+	}
+
+	/**
+	 * Prints the open-loop results of a store
+	 * 
+	 * @param storeName
+	 * @param workerRunResultsLists
+	 *            the results at each offered load
+	 * @return the 99th percentile latencies in microseconds
+	 */
+	private static List<Double> reportOpenLoop(String storeName, List<List<WorkerRunResult>> workerRunResultsLists) {
+		List<Double> offeredRates = definition.getOfferedRates();
+		List<Double> achievedThroughput = new ArrayList<>();
+		List<Double> p99Latency = new ArrayList<>();
+
+		System.out.println("# Open loop " + storeName
+				+ " (offered/s, achieved/s, p50 us, p90 us, p99 us, p99.9 us, max us)");
+
+		for (int i = 0; i < workerRunResultsLists.size(); i++) {
+			ConcurrentHistogram latencies = mergeLatencies(workerRunResultsLists.get(i));
+			double throughput = calculateAchievedThroughput(workerRunResultsLists.get(i));
+			achievedThroughput.add(throughput);
+			p99Latency.add(latencies.getValueAtPercentile(99) / NANOS_PER_MICRO);
+
+			System.out.println(String.format("%.1f %.1f %.1f %.1f %.1f %.1f %.1f", offeredRates.get(i), throughput,
+					latencies.getValueAtPercentile(50) / NANOS_PER_MICRO,
+					latencies.getValueAtPercentile(90) / NANOS_PER_MICRO,
+					latencies.getValueAtPercentile(99) / NANOS_PER_MICRO,
+					latencies.getValueAtPercentile(99.9) / NANOS_PER_MICRO, latencies.getMax() / NANOS_PER_MICRO));
+		}
+
+		int knee = findSaturationKnee(offeredRates, achievedThroughput, p99Latency);
+		System.out.println("Saturation knee " + storeName + ": "
+				+ (knee < 0 ? "not reached" : offeredRates.get(knee) + " interactions/s"));
+		return p99Latency;
+	}
 
+	/**
+	 * Merges the latencies of the workers of a run
+	 * 
+	 * @param workerRunResults
+	 * @return
+	 */
+	static ConcurrentHistogram mergeLatencies(List<WorkerRunResult> workerRunResults) {
+		return LatencyReport.mergeLatencies(workerRunResults, null);
+	}
+
+	/**
+	 * Computes the throughput the workers of a run achieved together, in
+	 * successful interactions per second
+	 * 
+	 * @param workerRunResults
+	 * @return
+	 */
+	static double calculateAchievedThroughput(List<WorkerRunResult> workerRunResults) {
+		long elapsedTime = 0;
+		double totalSuccessfulInteractions = 0;
+		for (WorkerRunResult workerRunResult : workerRunResults) {
+			// The workers run concurrently, the run lasts as long as the
+			// slowest one
+			elapsedTime = Math.max(elapsedTime, workerRunResult.getElapsedTimeInNanoSecs());
+			totalSuccessfulInteractions += workerRunResult.getSuccessfulInteractions();
+		}
+		return elapsedTime == 0 ? 0 : totalSuccessfulInteractions / (elapsedTime / 1e9);
+	}
+
+	/**
+	 * Finds the saturation knee of a sweep of offered loads: the lowest load
+	 * whose achieved throughput falls below {@link #KNEE_THROUGHPUT_RATIO} of
+	 * the offered load, or whose 99th percentile latency exceeds
+	 * {@link #KNEE_LATENCY_FACTOR} times the one at the lowest load
+	 * 
+	 * @param offeredRates
+	 *            the offered loads, in increasing order
+	 * @param achievedThroughput
+	 * @param p99Latency
+	 * @return the index of the knee, -1 if no load saturated the store
+	 */
+	public static int findSaturationKnee(List<Double> offeredRates, List<Double> achievedThroughput,
+			List<Double> p99Latency) {
+		for (int i = 0; i < offeredRates.size(); i++) {
+			if (achievedThroughput.get(i) < KNEE_THROUGHPUT_RATIO * offeredRates.get(i)
+					|| p99Latency.get(i) > KNEE_LATENCY_FACTOR * p99Latency.get(0)) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	/**
@@ -238,11 +512,47 @@ public class CertainWorkload {
 	 */
 	public static void initializeBookStoreData(BookStore bookStore, StockManager stockManager)
 			throws BookStoreException {
+		initializeBookStoreData(bookStore, stockManager, definition.getNumBooks());
+	}
 
-		BookSetGenerator bookSetGenerator = new BookSetGenerator();
-		Set<StockBook> stockBookSet = bookSetGenerator.nextSetOfStockBooks(1500);
+	/**
+	 * Generate a catalog of numBooks books in bookstore before the workload
+	 * interactions are run, the same one for the same seed of the catalog
+	 * 
+	 * @param bookStore
+	 * @param stockManager
+	 * @param numBooks
+	 * @throws BookStoreException
+	 */
+	public static void initializeBookStoreData(BookStore bookStore, StockManager stockManager, int numBooks)
+			throws BookStoreException {
+		initializeBookStoreData(stockManager, numBooks, definition.getCatalogSeed());
+	}
 
+	/**
+	 * Generates the catalog of a seed in the store
+	 * 
+	 * @param stockManager
+	 * @param numBooks
+	 * @param catalogSeed
+	 * @throws BookStoreException
+	 */
+	static void initializeBookStoreData(StockManager stockManager, int numBooks, long catalogSeed)
+			throws BookStoreException {
 		stockManager.removeAllBooks();
-		stockManager.addBooks(stockBookSet);
+		catalogGenerator(catalogSeed).generateInto(stockManager, numBooks);
+	}
+
+	/**
+	 * Returns the generator of the catalog of a seed
+	 * 
+	 * @param catalogSeed
+	 * @return
+	 */
+	private static synchronized CatalogGenerator catalogGenerator(long catalogSeed) {
+		if (catalogGenerator == null || catalogGenerator.getSeed() != catalogSeed) {
+			catalogGenerator = new CatalogGenerator(catalogSeed);
+		}
+		return catalogGenerator;
 	}
 }
@@ -0,0 +1,270 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.BookStoreTCPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.client.StockManagerTCPProxy;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.ConcurrentHistogram;
+
+/**
+ *
+ * ConnectionsBenchmark drives a running server with a large number of
+ * concurrent connections, each of them a closed loop of customer requests,
+ * and reports the throughput, the latency percentiles and the client memory.
+ * It is used to compare the synchronous, asynchronous (-Dasynchandler=n) and
+ * virtual thread (-Dvirtualthreads=true) modes of the server.
+ *
+ * The clients are either issued through the asynchronous API from the client
+ * threads (async), or run as blocking loops on one platform thread each
+ * (platform) or one virtual thread each (virtual).
+ *
+ * A server address of the form tcp://host:port selects the binary TCP
+ * transport of BookStoreTCPServer instead of HTTP; the clients are then
+ * pipelined over a few TCP connections. With -Dbuybatchwindow=micros the
+ * HTTP buys are coalesced into batches of up to -Dbuybatchsize orders.
+ *
+ * Usage: ConnectionsBenchmark [serverAddress] [connections] [seconds]
+ * [buyPercent] [numBooks] [async|platform|virtual]
+ *
+ */
+public class ConnectionsBenchmark {
+	private static final int WARMUP_SECONDS = 5;
+	private static final String TCP_SCHEME = "tcp://";
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) throws Exception {
+		String serverAddress = args.length > 0 ? args[0] : "http://localhost:8081";
+		int numConnections = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int numSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+		int buyPercent = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+		int numBooks = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+		String clientMode = args.length > 5 ? args[5] : "async";
+
+		BookStore bookStore;
+		AsyncBookStore asyncBookStore;
+		StockManager stockManager;
+		Runnable stopProxies;
+
+		if (serverAddress.startsWith(TCP_SCHEME)) {
+			BookStoreTCPProxy tcpBookStore = new BookStoreTCPProxy(serverAddress.substring(TCP_SCHEME.length()));
+			StockManagerTCPProxy tcpStockManager = new StockManagerTCPProxy(
+					serverAddress.substring(TCP_SCHEME.length()));
+			bookStore = tcpBookStore;
+			asyncBookStore = tcpBookStore;
+			stockManager = tcpStockManager;
+			stopProxies = () -> {
+				tcpBookStore.stop();
+				tcpStockManager.stop();
+			};
+		} else {
+			BookStoreHTTPProxy httpBookStore = new BookStoreHTTPProxy(serverAddress, numConnections);
+			httpBookStore.enableBuyBooksBatchingFromProperties();
+			httpBookStore.enableReadCacheFromProperties();
+			StockManagerHTTPProxy httpStockManager = new StockManagerHTTPProxy(serverAddress + "/stock");
+			bookStore = httpBookStore;
+			asyncBookStore = httpBookStore;
+			stockManager = httpStockManager;
+			stopProxies = () -> {
+				httpBookStore.stop();
+				httpStockManager.stop();
+			};
+		}
+
+		Set<StockBook> books = new HashSet<>();
+		for (int isbn = 1; isbn <= numBooks; isbn++) {
+			books.add(new ImmutableStockBook(isbn, "Title " + isbn, "Author " + isbn, 10, Integer.MAX_VALUE / 2, 0, 0,
+					0, false));
+		}
+		stockManager.removeAllBooks();
+		stockManager.addBooks(books);
+
+		ConcurrentHistogram latencies = new ConcurrentHistogram();
+		AtomicLong numFailures = new AtomicLong();
+		long startTimeInNanoSecs = System.nanoTime();
+		long measureStartInNanoSecs = startTimeInNanoSecs + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS);
+		long endTimeInNanoSecs = measureStartInNanoSecs + TimeUnit.SECONDS.toNanos(numSeconds);
+		CountDownLatch connectionsDone = new CountDownLatch(numConnections);
+
+		// Every connection is a closed loop: the next request is issued when
+		// the previous reply arrives
+		for (int i = 0; i < numConnections; i++) {
+			if (clientMode.equals("async")) {
+				runLoop(asyncBookStore, buyPercent, numBooks, latencies, numFailures, measureStartInNanoSecs,
+						endTimeInNanoSecs, connectionsDone);
+			} else {
+				Runnable blockingLoop = () -> runBlockingLoop(bookStore, buyPercent, numBooks, latencies, numFailures,
+						measureStartInNanoSecs, endTimeInNanoSecs, connectionsDone);
+				Thread thread = clientMode.equals("virtual") ? Thread.ofVirtual().unstarted(blockingLoop)
+						: Thread.ofPlatform().daemon().unstarted(blockingLoop);
+				thread.start();
+			}
+		}
+
+		// Sample the memory in the middle of the run, while all clients are
+		// active
+		Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(endTimeInNanoSecs - System.nanoTime()) / 2));
+		String memoryReport = reportMemory();
+
+		connectionsDone.await();
+		double elapsedSecs = numSeconds;
+
+		System.out.println("Server: " + serverAddress);
+		System.out.println("Client mode: " + clientMode);
+		System.out.println("Connections: " + numConnections);
+		System.out.println("Buy percent: " + buyPercent);
+		System.out.println("Successful requests: " + latencies.getCount());
+		System.out.println("Failed requests: " + numFailures.get());
+		System.out.printf("Throughput: %.1f requests/s%n", latencies.getCount() / elapsedSecs);
+		System.out.println("Latency (ms): " + latencies.toSummaryString(1e6));
+		System.out.println(memoryReport);
+
+		stockManager.removeAllBooks();
+		stopProxies.run();
+	}
+
+	/**
+	 * Runs the requests of a connection as a blocking loop on the current
+	 * thread
+	 *
+	 * @param bookStore
+	 * @param buyPercent
+	 * @param numBooks
+	 * @param latencies
+	 * @param numFailures
+	 * @param measureStartInNanoSecs
+	 * @param endTimeInNanoSecs
+	 * @param connectionsDone
+	 */
+	private static void runBlockingLoop(BookStore bookStore, int buyPercent, int numBooks,
+			ConcurrentHistogram latencies, AtomicLong numFailures, long measureStartInNanoSecs,
+			long endTimeInNanoSecs, CountDownLatch connectionsDone) {
+		long requestStartInNanoSecs;
+
+		while ((requestStartInNanoSecs = System.nanoTime()) < endTimeInNanoSecs) {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int isbn = 1 + random.nextInt(numBooks);
+			boolean successful = true;
+
+			try {
+				if (random.nextInt(100) < buyPercent) {
+					bookStore.buyBooks(Collections.singleton(new BookCopy(isbn, 1)));
+				} else {
+					bookStore.getBooks(Collections.singleton(isbn));
+				}
+			} catch (BookStoreException ex) {
+				successful = false;
+			}
+
+			if (requestStartInNanoSecs >= measureStartInNanoSecs) {
+				if (successful) {
+					latencies.record(System.nanoTime() - requestStartInNanoSecs);
+				} else {
+					numFailures.incrementAndGet();
+				}
+			}
+		}
+
+		connectionsDone.countDown();
+	}
+
+	/**
+	 * Returns the heap, thread and resident memory usage of the client
+	 *
+	 * @return the memory report
+	 * @throws IOException
+	 */
+	private static String reportMemory() throws IOException {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		StringBuilder report = new StringBuilder();
+
+		report.append(String.format("Heap used: %.1f MB%n", memory.getHeapMemoryUsage().getUsed() / 1e6));
+		report.append(String.format("Non-heap used: %.1f MB%n", memory.getNonHeapMemoryUsage().getUsed() / 1e6));
+		report.append("Platform threads: " + threads.getThreadCount() + " (peak " + threads.getPeakThreadCount()
+				+ ")");
+
+		// The resident set includes the native stacks of the platform threads
+		Path status = Paths.get("/proc/self/status");
+		if (Files.exists(status)) {
+			for (String line : Files.readAllLines(status)) {
+				if (line.startsWith("VmRSS:")) {
+					report.append(String.format("%nResident memory: %s", line.substring(6).trim()));
+				}
+			}
+		}
+
+		return report.toString();
+	}
+
+	/**
+	 * Issues the next request of a connection and schedules the following one
+	 * on its completion
+	 *
+	 * @param bookStore
+	 * @param buyPercent
+	 * @param numBooks
+	 * @param latencies
+	 * @param numFailures
+	 * @param measureStartInNanoSecs
+	 * @param endTimeInNanoSecs
+	 * @param connectionsDone
+	 */
+	private static void runLoop(AsyncBookStore bookStore, int buyPercent, int numBooks,
+			ConcurrentHistogram latencies, AtomicLong numFailures, long measureStartInNanoSecs,
+			long endTimeInNanoSecs, CountDownLatch connectionsDone) {
+		long requestStartInNanoSecs = System.nanoTime();
+
+		if (requestStartInNanoSecs >= endTimeInNanoSecs) {
+			connectionsDone.countDown();
+			return;
+		}
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int isbn = 1 + random.nextInt(numBooks);
+		CompletableFuture<?> request;
+
+		if (random.nextInt(100) < buyPercent) {
+			request = bookStore.buyBooksAsync(Collections.singleton(new BookCopy(isbn, 1)));
+		} else {
+			request = bookStore.getBooksAsync(Collections.singleton(isbn));
+		}
+
+		request.whenComplete((result, ex) -> {
+			if (requestStartInNanoSecs >= measureStartInNanoSecs) {
+				if (ex == null) {
+					latencies.record(System.nanoTime() - requestStartInNanoSecs);
+				} else {
+					numFailures.incrementAndGet();
+				}
+			}
+
+			runLoop(bookStore, buyPercent, numBooks, latencies, numFailures, measureStartInNanoSecs,
+					endTimeInNanoSecs, connectionsDone);
+		});
+	}
+}
@@ -0,0 +1,56 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * HotspotKeyChooser sends a fraction of the accesses to a fraction of the
+ * keys, the first ones, and spreads both the hot and the cold accesses
+ * uniformly, e.g. 80% of the accesses to 20% of the keys
+ *
+ */
+public class HotspotKeyChooser implements KeyChooser {
+	private final double hotKeyFraction;
+	private final double hotAccessFraction;
+
+	/**
+	 * @param hotKeyFraction
+	 *            the fraction of the keys which are hot, in (0, 1]
+	 * @param hotAccessFraction
+	 *            the fraction of the accesses to the hot keys, in [0, 1]
+	 */
+	public HotspotKeyChooser(double hotKeyFraction, double hotAccessFraction) {
+		if (hotKeyFraction <= 0 || hotKeyFraction > 1 || hotAccessFraction < 0 || hotAccessFraction > 1) {
+			throw new IllegalArgumentException(
+					"hotspot fractions " + hotKeyFraction + ", " + hotAccessFraction + " out of range");
+		}
+		this.hotKeyFraction = hotKeyFraction;
+		this.hotAccessFraction = hotAccessFraction;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.client.workloads.KeyChooser#nextIndex(int)
+	 */
+	@Override
+	public int nextIndex(int numKeys) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int numHotKeys = Math.max(1, (int) (numKeys * hotKeyFraction));
+
+		if (numHotKeys == numKeys || random.nextDouble() < hotAccessFraction) {
+			return random.nextInt(numHotKeys);
+		}
+		return random.nextInt(numHotKeys, numKeys);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "hotspot(" + hotKeyFraction + ", " + hotAccessFraction + ")";
+	}
+}
@@ -0,0 +1,19 @@
+package com.acertainbookstore.client.workloads;
+
+/**
+ *
+ * InteractionType enumerates the interactions a worker runs, whose latencies
+ * are reported apart
+ *
+ */
+public enum InteractionType {
+
+	/** The new stock acquisition interaction of the stock manager */
+	RARE_STOCK_MANAGER,
+
+	/** The stock replenishment interaction of the stock manager */
+	FREQUENT_STOCK_MANAGER,
+
+	/** The customer interaction of the bookstore */
+	FREQUENT_BOOK_STORE;
+}
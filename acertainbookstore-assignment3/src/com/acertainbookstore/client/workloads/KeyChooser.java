@@ -0,0 +1,21 @@
+package com.acertainbookstore.client.workloads;
+
+/**
+ *
+ * KeyChooser draws the keys accessed by the workload as positions in a list of
+ * keys, so that the access distribution can be swapped without changing the
+ * interactions. Choosers precompute whatever they need for a number of keys
+ * once, draw in constant time, and are shared by the workers
+ *
+ */
+public interface KeyChooser {
+
+	/**
+	 * Draws the position of a key
+	 *
+	 * @param numKeys
+	 *            the number of keys, at least one
+	 * @return a position in [0, numKeys)
+	 */
+	int nextIndex(int numKeys);
+}
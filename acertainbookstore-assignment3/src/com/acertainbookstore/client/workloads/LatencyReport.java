@@ -0,0 +1,259 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.LogAxis;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
+
+import com.acertainbookstore.utils.ConcurrentHistogram;
+
+/**
+ *
+ * LatencyReport reports the latency percentiles of the workload per
+ * interaction type, with their 95% confidence intervals over the repeated
+ * trials, and plots the latency CDF and the percentiles against the load
+ *
+ */
+public class LatencyReport {
+
+	/** The percentiles reported, the max is reported after them */
+	static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	/** The percentiles plotted against the load */
+	static final double[] PLOTTED_PERCENTILES = { 50, 99, 99.9 };
+
+	/**
+	 * The 0.975 quantiles of the Student t distribution for 1 to 30 degrees of
+	 * freedom, the normal quantile is used above
+	 */
+	private static final double[] T_QUANTILES = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262,
+			2.228, 2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064,
+			2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+	/** The 0.975 quantile of the normal distribution */
+	private static final double NORMAL_QUANTILE = 1.96;
+
+	/** The number of points of the plotted CDF */
+	private static final int CDF_POINTS = 200;
+
+	/** The number of nines the plotted CDF reaches, i.e. up to p99.99 */
+	private static final int CDF_NINES = 4;
+
+	/** Nanoseconds per microsecond, the unit of the reported latencies */
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	private LatencyReport() {
+		// Static utility class
+	}
+
+	/**
+	 * Prints the latency percentiles of the local and remote stores at each
+	 * step of the sweep, and saves latencyCdfChart.png and
+	 * latencyPercentilesChart.png
+	 *
+	 * @param localTrials
+	 *            the results of each trial at each step
+	 * @param remoteTrials
+	 * @param steps
+	 *            the number of clients or the offered load of each step
+	 * @param stepLabel
+	 * @param outputDirectory
+	 * @throws IOException
+	 */
+	public static void report(List<List<List<WorkerRunResult>>> localTrials,
+			List<List<List<WorkerRunResult>>> remoteTrials, List<Double> steps, String stepLabel,
+			File outputDirectory) throws IOException {
+		XYSeriesCollection percentilesDataset = new XYSeriesCollection();
+		XYSeriesCollection cdfDataset = new XYSeriesCollection();
+
+		report("Local", localTrials, steps, stepLabel, percentilesDataset, cdfDataset);
+		report("Remote", remoteTrials, steps, stepLabel, percentilesDataset, cdfDataset);
+
+		JFreeChart percentilesChart = ChartFactory.createXYLineChart("LocalvsRemote Latency Percentiles", stepLabel,
+				"Latency (us)", percentilesDataset, PlotOrientation.VERTICAL, true, true, false);
+		percentilesChart.getXYPlot().setRangeAxis(new LogAxis("Latency (us)"));
+		ChartUtilities.saveChartAsPNG(new File(outputDirectory, "latencyPercentilesChart.png"), percentilesChart, 500, 300);
+
+		String cdfTitle = "LocalvsRemote Latency CDF (" + stepLabel + " " + format(steps.get(steps.size() - 1)) + ")";
+		JFreeChart cdfChart = ChartFactory.createXYLineChart(cdfTitle, "Latency (us)", "Fraction of interactions",
+				cdfDataset, PlotOrientation.VERTICAL, true, true, false);
+		cdfChart.getXYPlot().setDomainAxis(new LogAxis("Latency (us)"));
+		ChartUtilities.saveChartAsPNG(new File(outputDirectory, "latencyCdfChart.png"), cdfChart, 500, 300);
+	}
+
+	/**
+	 * Prints the latency percentiles of a store, all interactions first, then
+	 * per interaction type, and adds its series to the charts
+	 *
+	 * @param storeName
+	 * @param trials
+	 * @param steps
+	 * @param stepLabel
+	 * @param percentilesDataset
+	 * @param cdfDataset
+	 */
+	private static void report(String storeName, List<List<List<WorkerRunResult>>> trials, List<Double> steps,
+			String stepLabel, XYSeriesCollection percentilesDataset, XYSeriesCollection cdfDataset) {
+		if (trials.isEmpty()) {
+			return;
+		}
+
+		List<XYSeries> percentileSeries = new ArrayList<>();
+		for (double percentile : PLOTTED_PERCENTILES) {
+			percentileSeries.add(new XYSeries(storeName + " p" + format(percentile)));
+		}
+
+		for (int type = -1; type < InteractionType.values().length; type++) {
+			InteractionType interactionType = type < 0 ? null : InteractionType.values()[type];
+			System.out.println("# Latency " + storeName + " " + (interactionType == null ? "ALL" : interactionType)
+					+ " (" + stepLabel + ", count, p50 us, p90 us, p99 us, p99.9 us, max us; mean+-95% CI over "
+					+ trials.size() + " trials)");
+
+			for (int i = 0; i < steps.size(); i++) {
+				List<ConcurrentHistogram> trialLatencies = new ArrayList<>();
+				for (List<List<WorkerRunResult>> trial : trials) {
+					trialLatencies.add(mergeLatencies(trial.get(i), interactionType));
+				}
+
+				StringBuilder row = new StringBuilder(String.format("%.1f", steps.get(i)));
+				long count = 0;
+				for (ConcurrentHistogram latencies : trialLatencies) {
+					count += latencies.getCount();
+				}
+				row.append(' ').append(count);
+
+				for (int p = 0; p <= PERCENTILES.length; p++) {
+					List<Double> samples = new ArrayList<>();
+					for (ConcurrentHistogram latencies : trialLatencies) {
+						samples.add((p < PERCENTILES.length ? latencies.getValueAtPercentile(PERCENTILES[p])
+								: latencies.getMax()) / NANOS_PER_MICRO);
+					}
+					double mean = mean(samples);
+					row.append(String.format(" %.1f", mean));
+					if (samples.size() > 1) {
+						row.append(String.format("+-%.1f", confidenceHalfWidth(samples)));
+					}
+
+					if (interactionType == null) {
+						for (int plotted = 0; plotted < PLOTTED_PERCENTILES.length; plotted++) {
+							if (p < PERCENTILES.length && PERCENTILES[p] == PLOTTED_PERCENTILES[plotted] && mean > 0) {
+								percentileSeries.get(plotted).add(steps.get(i).doubleValue(), mean);
+							}
+						}
+					}
+				}
+
+				System.out.println(row);
+			}
+		}
+
+		for (XYSeries series : percentileSeries) {
+			percentilesDataset.addSeries(series);
+		}
+
+		// The CDF pools the trials of the heaviest step
+		ConcurrentHistogram pooled = new ConcurrentHistogram();
+		for (List<List<WorkerRunResult>> trial : trials) {
+			pooled.add(mergeLatencies(trial.get(steps.size() - 1), null));
+		}
+		cdfDataset.addSeries(createCdfSeries(storeName, pooled));
+	}
+
+	/**
+	 * Samples the CDF of the latencies, densely towards the tail
+	 *
+	 * @param name
+	 * @param latencies
+	 * @return the series of latencies in microseconds against the fraction of
+	 *         interactions at most as slow
+	 */
+	static XYSeries createCdfSeries(String name, ConcurrentHistogram latencies) {
+		XYSeries series = new XYSeries(name);
+
+		if (latencies.getCount() == 0) {
+			return series;
+		}
+
+		for (int i = 0; i <= CDF_POINTS; i++) {
+			double fraction = 1 - Math.pow(10, -(double) CDF_NINES * i / CDF_POINTS);
+			double latency = latencies.getValueAtPercentile(100 * fraction) / NANOS_PER_MICRO;
+			if (latency > 0) {
+				series.add(latency, fraction);
+			}
+		}
+		series.add(latencies.getMax() / NANOS_PER_MICRO, 1.0);
+
+		return series;
+	}
+
+	/**
+	 * Merges the latencies of the workers of a run
+	 *
+	 * @param workerRunResults
+	 * @param interactionType
+	 *            the type of the interactions merged, null merges them all
+	 * @return
+	 */
+	static ConcurrentHistogram mergeLatencies(List<WorkerRunResult> workerRunResults,
+			InteractionType interactionType) {
+		ConcurrentHistogram latencies = new ConcurrentHistogram();
+		for (WorkerRunResult workerRunResult : workerRunResults) {
+			latencies.add(interactionType == null ? workerRunResult.getLatencies()
+					: workerRunResult.getLatencies(interactionType));
+		}
+		return latencies;
+	}
+
+	/**
+	 * Computes the mean of samples
+	 *
+	 * @param samples
+	 * @return
+	 */
+	public static double mean(List<Double> samples) {
+		double sum = 0;
+		for (double sample : samples) {
+			sum += sample;
+		}
+		return samples.isEmpty() ? 0 : sum / samples.size();
+	}
+
+	/**
+	 * Computes the half width of the 95% confidence interval of the mean of
+	 * samples, using the Student t distribution
+	 *
+	 * @param samples
+	 *            at least two samples
+	 * @return
+	 */
+	public static double confidenceHalfWidth(List<Double> samples) {
+		int n = samples.size();
+		double mean = mean(samples);
+		double squares = 0;
+		for (double sample : samples) {
+			squares += (sample - mean) * (sample - mean);
+		}
+
+		double standardDeviation = Math.sqrt(squares / (n - 1));
+		double quantile = n - 1 <= T_QUANTILES.length ? T_QUANTILES[n - 2] : NORMAL_QUANTILE;
+		return quantile * standardDeviation / Math.sqrt(n);
+	}
+
+	/**
+	 * Formats a percentile or a step without a trailing zero fraction
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static String format(double value) {
+		return value == Math.rint(value) ? String.valueOf((long) value) : String.valueOf(value);
+	}
+}
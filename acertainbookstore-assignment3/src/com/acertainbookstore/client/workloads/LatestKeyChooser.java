@@ -0,0 +1,41 @@
+package com.acertainbookstore.client.workloads;
+
+/**
+ *
+ * LatestKeyChooser favours the keys added last, the last ones in the list of
+ * keys, with a Zipfian skew over their recency
+ *
+ */
+public class LatestKeyChooser implements KeyChooser {
+	private final double theta;
+	private final ZipfianKeyChooser recency;
+
+	/**
+	 * @param theta
+	 *            the skew in (0, 1)
+	 */
+	public LatestKeyChooser(double theta) {
+		this.theta = theta;
+		recency = new ZipfianKeyChooser(theta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.client.workloads.KeyChooser#nextIndex(int)
+	 */
+	@Override
+	public int nextIndex(int numKeys) {
+		return numKeys - 1 - recency.nextIndex(numKeys);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "latest(" + theta + ")";
+	}
+}
@@ -0,0 +1,119 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * ParameterDistribution is the distribution from which an interaction
+ * parameter, such as the number of books to buy, is drawn at each interaction
+ *
+ */
+public final class ParameterDistribution {
+
+	/** The mean above which the Poisson distribution is approximated */
+	private static final double POISSON_NORMAL_APPROXIMATION_MEAN = 30;
+
+	private enum Kind {
+		CONSTANT, UNIFORM, POISSON
+	}
+
+	private final Kind kind;
+	private final int min;
+	private final int max;
+	private final double mean;
+
+	private ParameterDistribution(Kind kind, int min, int max, double mean) {
+		this.kind = kind;
+		this.min = min;
+		this.max = max;
+		this.mean = mean;
+	}
+
+	/**
+	 * Returns the distribution always drawing value
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static ParameterDistribution constant(int value) {
+		return new ParameterDistribution(Kind.CONSTANT, value, value, value);
+	}
+
+	/**
+	 * Returns the uniform distribution over [min, max]
+	 *
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public static ParameterDistribution uniform(int min, int max) {
+		if (min > max) {
+			throw new IllegalArgumentException("uniform min " + min + " above max " + max);
+		}
+		return new ParameterDistribution(Kind.UNIFORM, min, max, (min + max) / 2.0);
+	}
+
+	/**
+	 * Returns the Poisson distribution of the given mean
+	 *
+	 * @param mean
+	 * @return
+	 */
+	public static ParameterDistribution poisson(double mean) {
+		if (mean <= 0) {
+			throw new IllegalArgumentException("poisson mean " + mean + " is not positive");
+		}
+		return new ParameterDistribution(Kind.POISSON, 0, Integer.MAX_VALUE, mean);
+	}
+
+	/**
+	 * Draws a value, the workers draw concurrently
+	 *
+	 * @return
+	 */
+	public int sample() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		switch (kind) {
+		case UNIFORM:
+			return random.nextInt(min, max + 1);
+		case POISSON:
+			if (mean > POISSON_NORMAL_APPROXIMATION_MEAN) {
+				return (int) Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+			}
+
+			// Knuth's method, multiplying uniforms until below e^-mean
+			double limit = Math.exp(-mean);
+			double product = random.nextDouble();
+			int value = 0;
+			while (product > limit) {
+				product *= random.nextDouble();
+				value++;
+			}
+			return value;
+		default:
+			return min;
+		}
+	}
+
+	public double getMean() {
+		return mean;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		switch (kind) {
+		case UNIFORM:
+			return "uniform(" + min + ", " + max + ")";
+		case POISSON:
+			return "poisson(" + mean + ")";
+		default:
+			return String.valueOf(min);
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+import com.acertainbookstore.client.workloads.Transport.Connection;
+import com.acertainbookstore.utils.ConcurrentHistogram;
+
+/**
+ *
+ * SweepRunner runs the workload of a definition over every combination of
+ * its matrix: the store classes, the transports, the codecs and the steps of
+ * its sweep of clients or of offered loads. The servers of the transports
+ * are started on ephemeral ports of the local host for each trial, with a
+ * fresh store. A transport runs once per codec it speaks, so the in-process
+ * store and the TCP transport do not multiply with the codecs, and the
+ * combinations the server of a transport cannot serve are skipped. The
+ * results are written to sweep.csv and sweep.json in the output directory
+ * of the definition, a row per trial and step, so that runs can be diffed
+ * and tracked over time
+ *
+ */
+public class SweepRunner {
+
+	/** The codec column of the calls which are not serialized */
+	private static final String NO_SERIALIZER = "none";
+
+	/** The columns of the results, in the CSV and JSON files */
+	private static final String[] COLUMNS = { "workload", "store", "transport", "serializer", "trial", "clients",
+			"offeredRate", "totalRuns", "successfulInteractions", "throughput", "meanLatencyUs", "p50LatencyUs",
+			"p90LatencyUs", "p99LatencyUs", "p999LatencyUs", "maxLatencyUs" };
+
+	private final WorkloadDefinition definition;
+
+	/**
+	 * @param definition
+	 *            the workload and its matrix
+	 */
+	public SweepRunner(WorkloadDefinition definition) {
+		this.definition = definition;
+	}
+
+	/**
+	 * Runs every combination of the matrix
+	 *
+	 * @return the result of each trial and step of each combination
+	 * @throws Exception
+	 */
+	public List<Result> run() throws Exception {
+		List<Result> results = new ArrayList<>();
+
+		for (String storeClassName : definition.getMatrixStoreClasses()) {
+			Class<?> storeClass = Class.forName(storeClassName);
+
+			for (Transport transport : definition.getMatrixTransports()) {
+				if (!transport.serves(storeClass)) {
+					System.err.println("Skipping " + storeClass.getSimpleName() + " over " + transport.getName()
+							+ ", its server does not serve this store");
+					continue;
+				}
+
+				List<String> contentTypes = definition.getMatrixContentTypes().stream()
+						.map(transport::getContentType).distinct().collect(Collectors.toList());
+
+				for (String contentType : contentTypes) {
+					for (int trial = 1; trial <= definition.getNumTrials(); trial++) {
+						results.addAll(runTrial(storeClass, transport, contentType, trial));
+					}
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Runs the steps of the sweep against a fresh store
+	 *
+	 * @param storeClass
+	 * @param transport
+	 * @param contentType
+	 * @param trial
+	 * @return the result of each step
+	 * @throws Exception
+	 */
+	private List<Result> runTrial(Class<?> storeClass, Transport transport, String contentType, int trial)
+			throws Exception {
+		Object store = storeClass.getDeclaredConstructor().newInstance();
+		List<List<WorkerRunResult>> steps;
+
+		try (Connection connection = transport.connect(store, contentType)) {
+			steps = CertainWorkload.getWorkersRunResult(definition, connection.getBookStore(),
+					connection.getStockManager(), connection.getAsyncBookStore(), connection.getAsyncStockManager());
+		}
+
+		List<Result> results = new ArrayList<>();
+		List<Double> offeredRates = definition.getOfferedRates();
+
+		for (int i = 0; i < steps.size(); i++) {
+			Result result = new Result(definition.getName(), storeClass.getSimpleName(), transport.getName(),
+					contentType == null ? NO_SERIALIZER : contentType, trial,
+					offeredRates.isEmpty() ? definition.getNumClients().get(i) : definition.getMaxClients(),
+					offeredRates.isEmpty() ? null : offeredRates.get(i), steps.get(i));
+			System.out.println("# Sweep " + result);
+			results.add(result);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Writes the results as CSV, a header then a line per result, the fields
+	 * quoted as in RFC 4180
+	 *
+	 * @param results
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void writeCsv(List<Result> results, File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			out.println(String.join(",", COLUMNS));
+
+			for (Result result : results) {
+				List<String> values = new ArrayList<>();
+				for (Object value : result.values()) {
+					values.add(value == null ? "" : csvField(format(value)));
+				}
+				out.println(String.join(",", values));
+			}
+		}
+	}
+
+	/**
+	 * Writes the results as JSON, with when and where they were run
+	 *
+	 * @param results
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void writeJson(List<Result> results, File file) throws IOException {
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+			out.println("{");
+			out.println("  \"date\": " + quote(Instant.now().toString()) + ",");
+			out.println("  \"java\": " + quote(System.getProperty("java.version")) + ",");
+			out.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+			out.println("  \"results\": [");
+
+			for (int i = 0; i < results.size(); i++) {
+				Object[] values = results.get(i).values();
+				List<String> fields = new ArrayList<>();
+				for (int c = 0; c < COLUMNS.length; c++) {
+					String value = values[c] == null ? "null"
+							: values[c] instanceof String ? quote((String) values[c]) : format(values[c]);
+					fields.add(quote(COLUMNS[c]) + ": " + value);
+				}
+				out.println("    {" + String.join(", ", fields) + "}" + (i + 1 < results.size() ? "," : ""));
+			}
+
+			out.println("  ]");
+			out.println("}");
+		}
+	}
+
+	private static String format(Object value) {
+		return value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : value.toString();
+	}
+
+	/**
+	 * Quotes a CSV field which holds a comma, a quote or a line break,
+	 * doubling its quotes
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static String csvField(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0) {
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String quote(String value) {
+		return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+	/**
+	 * Result is the throughput and the latencies of a step of a combination
+	 */
+	public static final class Result {
+		private final String workload;
+		private final String store;
+		private final String transport;
+		private final String serializer;
+		private final int trial;
+		private final int numClients;
+		private final Double offeredRate;
+		private final int totalRuns;
+		private final int successfulInteractions;
+		private final double throughput;
+		private final ConcurrentHistogram latencies;
+
+		private Result(String workload, String store, String transport, String serializer, int trial,
+				int numClients, Double offeredRate, List<WorkerRunResult> workerRunResults) {
+			this.workload = workload;
+			this.store = store;
+			this.transport = transport;
+			this.serializer = serializer;
+			this.trial = trial;
+			this.numClients = numClients;
+			this.offeredRate = offeredRate;
+
+			int runs = 0;
+			int successful = 0;
+			for (WorkerRunResult workerRunResult : workerRunResults) {
+				runs += workerRunResult.getTotalRuns();
+				successful += workerRunResult.getSuccessfulInteractions();
+			}
+			this.totalRuns = runs;
+			this.successfulInteractions = successful;
+			this.throughput = CertainWorkload.calculateAchievedThroughput(workerRunResults);
+			this.latencies = CertainWorkload.mergeLatencies(workerRunResults);
+		}
+
+		public String getStore() {
+			return store;
+		}
+
+		public String getTransport() {
+			return transport;
+		}
+
+		public String getSerializer() {
+			return serializer;
+		}
+
+		public int getNumClients() {
+			return numClients;
+		}
+
+		public double getThroughput() {
+			return throughput;
+		}
+
+		public ConcurrentHistogram getLatencies() {
+			return latencies;
+		}
+
+		/**
+		 * Returns the values of the columns
+		 *
+		 * @return
+		 */
+		private Object[] values() {
+			double micros = CertainWorkload.NANOS_PER_MICRO;
+			return new Object[] { workload, store, transport, serializer, trial, numClients, offeredRate, totalRuns,
+					successfulInteractions, throughput, latencies.getMean() / micros,
+					latencies.getValueAtPercentile(50) / micros, latencies.getValueAtPercentile(90) / micros,
+					latencies.getValueAtPercentile(99) / micros, latencies.getValueAtPercentile(99.9) / micros,
+					latencies.getMax() / micros };
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s %s %s trial %d: %d clients %.2f/s p99 %.1fus", store, transport,
+					serializer, trial, numClients, throughput,
+					latencies.getValueAtPercentile(99) / CertainWorkload.NANOS_PER_MICRO);
+		}
+	}
+
+	/**
+	 * Runs the matrix of the workload defined by the YAML file named by the
+	 * first argument, or the default one as overridden by the system
+	 * properties
+	 *
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		WorkloadDefinition definition = args.length > 0 ? WorkloadDefinition.load(Paths.get(args[0]))
+				: WorkloadDefinition.fromProperties();
+
+		List<Result> results = new SweepRunner(definition).run();
+
+		definition.getOutputDirectory().mkdirs();
+		writeCsv(results, new File(definition.getOutputDirectory(), "sweep.csv"));
+		writeJson(results, new File(definition.getOutputDirectory(), "sweep.json"));
+	}
+}
@@ -0,0 +1,148 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.acertainbookstore.client.workloads.TraceRecord.Operation;
+import com.acertainbookstore.utils.BookStoreBinaryProtocol;
+import com.acertainbookstore.utils.BookStoreCompactSerializer;
+import com.acertainbookstore.utils.BookStoreConstants;
+
+/**
+ *
+ * TraceReader reads the records of a trace written by a TraceRecorder, in the
+ * order they were recorded
+ *
+ */
+public class TraceReader implements Closeable {
+
+	private static final Operation[] OPERATIONS = Operation.values();
+
+	private final DataInputStream in;
+	private final BookStoreCompactSerializer serializer = new BookStoreCompactSerializer();
+	private final long startTimeInMillis;
+	private long timeInNanoSecs = 0;
+
+	/**
+	 * @param in
+	 *            the stream the trace is read from, closed with the reader
+	 * @throws IOException
+	 *             if the stream is not a trace of a version this reader reads
+	 */
+	public TraceReader(InputStream in) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(in, BookStoreConstants.STREAM_BUFFER_SIZE));
+
+		if (this.in.readInt() != TraceRecorder.MAGIC) {
+			throw new IOException("Not a book store trace");
+		}
+		int version = this.in.readUnsignedByte();
+		if (version > TraceRecorder.VERSION) {
+			throw new IOException("Unsupported trace version " + version);
+		}
+		startTimeInMillis = this.in.readLong();
+	}
+
+	/**
+	 * @param path
+	 *            the file the trace is read from
+	 * @throws IOException
+	 */
+	public TraceReader(Path path) throws IOException {
+		this(Files.newInputStream(path));
+	}
+
+	/**
+	 * Returns the wall clock time of the start of the recording
+	 *
+	 * @return
+	 */
+	public long getStartTimeInMillis() {
+		return startTimeInMillis;
+	}
+
+	/**
+	 * Reads the next record
+	 *
+	 * @return the record, null at the end of the trace
+	 * @throws IOException
+	 */
+	public TraceRecord read() throws IOException {
+		int code = in.read();
+		if (code < 0) {
+			return null;
+		}
+		if (code >= OPERATIONS.length) {
+			throw new IOException("Unsupported operation code " + code);
+		}
+
+		int session = (int) readVarLong(in);
+		timeInNanoSecs += readVarLong(in);
+		long length = readVarLong(in);
+		// A corrupt length must not allocate an arbitrary amount of memory
+		if (length < 0 || length > BookStoreBinaryProtocol.MAX_FRAME_LENGTH) {
+			throw new IOException("Trace record of invalid length " + length);
+		}
+		byte[] payload = new byte[(int) length];
+		in.readFully(payload);
+
+		return new TraceRecord(OPERATIONS[code], session, timeInNanoSecs, serializer.deserialize(payload));
+	}
+
+	/**
+	 * Reads the records of a trace file
+	 *
+	 * @param path
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<TraceRecord> readAll(Path path) throws IOException {
+		List<TraceRecord> records = new ArrayList<>();
+
+		try (TraceReader reader = new TraceReader(path)) {
+			TraceRecord record;
+			while ((record = reader.read()) != null) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Reads a varint written by TraceRecorder
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Truncated trace record");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,159 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ *
+ * TraceRecord is a call to a BookStore or a StockManager recorded in a trace
+ * by a TraceRecorder: the operation, its argument, the session of the thread
+ * which called it and when it was called since the start of the recording
+ *
+ */
+public final class TraceRecord {
+
+	/**
+	 * The operations of the BookStore and StockManager APIs, their ordinal is
+	 * the code of the operation in the trace files so new ones are only added
+	 * at the end
+	 */
+	public enum Operation {
+		BUY_BOOKS, BUY_BOOKS_BATCH, RATE_BOOKS, GET_BOOKS, GET_TOP_RATED_BOOKS, GET_EDITOR_PICKS, ADD_BOOKS,
+		ADD_COPIES, LIST_BOOKS, GET_BOOKS_BY_ISBN, GET_BOOKS_IN_DEMAND, UPDATE_EDITOR_PICKS, REMOVE_ALL_BOOKS,
+		REMOVE_BOOKS
+	}
+
+	private final Operation operation;
+	private final int session;
+	private final long timeInNanoSecs;
+	private final Object argument;
+
+	/**
+	 * @param operation
+	 * @param session
+	 *            the session of the thread which called the operation
+	 * @param timeInNanoSecs
+	 *            when the operation was called since the start of the
+	 *            recording
+	 * @param argument
+	 *            the argument of the operation, null if it takes none
+	 */
+	public TraceRecord(Operation operation, int session, long timeInNanoSecs, Object argument) {
+		this.operation = operation;
+		this.session = session;
+		this.timeInNanoSecs = timeInNanoSecs;
+		this.argument = argument;
+	}
+
+	public Operation getOperation() {
+		return operation;
+	}
+
+	public int getSession() {
+		return session;
+	}
+
+	public long getTimeInNanoSecs() {
+		return timeInNanoSecs;
+	}
+
+	public Object getArgument() {
+		return argument;
+	}
+
+	/**
+	 * Calls the operation of the record with its argument
+	 *
+	 * @param bookStore
+	 * @param stockManager
+	 * @throws BookStoreException
+	 *             the exception the call failed with
+	 */
+	@SuppressWarnings("unchecked")
+	public void replay(BookStore bookStore, StockManager stockManager) throws BookStoreException {
+		switch (operation) {
+		case BUY_BOOKS:
+			bookStore.buyBooks((Set<BookCopy>) argument);
+			break;
+		case BUY_BOOKS_BATCH:
+			bookStore.buyBooksBatch((List<Set<BookCopy>>) argument);
+			break;
+		case RATE_BOOKS:
+			bookStore.rateBooks((Set<BookRating>) argument);
+			break;
+		case GET_BOOKS:
+			bookStore.getBooks((Set<Integer>) argument);
+			break;
+		case GET_TOP_RATED_BOOKS:
+			bookStore.getTopRatedBooks((Integer) argument);
+			break;
+		case GET_EDITOR_PICKS:
+			bookStore.getEditorPicks((Integer) argument);
+			break;
+		case ADD_BOOKS:
+			stockManager.addBooks((Set<StockBook>) argument);
+			break;
+		case ADD_COPIES:
+			stockManager.addCopies((Set<BookCopy>) argument);
+			break;
+		case LIST_BOOKS:
+			stockManager.getBooks();
+			break;
+		case GET_BOOKS_BY_ISBN:
+			stockManager.getBooksByISBN((Set<Integer>) argument);
+			break;
+		case GET_BOOKS_IN_DEMAND:
+			stockManager.getBooksInDemand();
+			break;
+		case UPDATE_EDITOR_PICKS:
+			stockManager.updateEditorPicks((Set<BookEditorPick>) argument);
+			break;
+		case REMOVE_ALL_BOOKS:
+			stockManager.removeAllBooks();
+			break;
+		case REMOVE_BOOKS:
+			stockManager.removeBooks((Set<Integer>) argument);
+			break;
+		default:
+			throw new BookStoreException("Unsupported operation " + operation);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TraceRecord)) {
+			return false;
+		}
+		TraceRecord other = (TraceRecord) obj;
+		return operation == other.operation && session == other.session && timeInNanoSecs == other.timeInNanoSecs
+				&& Objects.equals(argument, other.argument);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return Objects.hash(operation, session, timeInNanoSecs, argument);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return timeInNanoSecs + " " + session + " " + operation + " " + argument;
+	}
+}
@@ -0,0 +1,274 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.client.workloads.TraceRecord.Operation;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreCompactSerializer;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ *
+ * TraceRecorder records the calls to a BookStore and a StockManager, local
+ * stores or remote proxies, into a trace which TraceReplayer replays. The
+ * trace starts with a header of {@link #MAGIC}, {@link #VERSION} and the wall
+ * clock time of the start of the recording in milliseconds, followed by a
+ * record per call: the code of the operation, the session of the calling
+ * thread, the nanoseconds since the previous record and the argument as a
+ * length-prefixed payload of the BookStoreCompactSerializer, all the integers
+ * being varints. Every thread calling the recorder is a session of its own.
+ * The calls are recorded before they run, whether they then fail or not
+ *
+ */
+public class TraceRecorder implements BookStore, StockManager, Closeable {
+
+	/** The magic number the traces start with, "BSTR" */
+	public static final int MAGIC = 0x42535452;
+
+	/** The version of the format of the traces */
+	public static final int VERSION = 1;
+
+	private final BookStore bookStore;
+	private final StockManager stockManager;
+	private final DataOutputStream out;
+	private final BookStoreCompactSerializer serializer = new BookStoreCompactSerializer();
+	private final long startTimeInNanoSecs;
+	private long lastTimeInNanoSecs = 0;
+
+	private final AtomicInteger nextSession = new AtomicInteger();
+	private final ThreadLocal<Integer> session = ThreadLocal.withInitial(nextSession::getAndIncrement);
+
+	/**
+	 * @param bookStore
+	 * @param stockManager
+	 * @param out
+	 *            the stream the trace is written to, closed with the recorder
+	 * @throws IOException
+	 */
+	public TraceRecorder(BookStore bookStore, StockManager stockManager, OutputStream out) throws IOException {
+		this.bookStore = bookStore;
+		this.stockManager = stockManager;
+		this.out = new DataOutputStream(new BufferedOutputStream(out, BookStoreConstants.STREAM_BUFFER_SIZE));
+
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+		this.out.writeLong(System.currentTimeMillis());
+		startTimeInNanoSecs = System.nanoTime();
+	}
+
+	/**
+	 * @param bookStore
+	 * @param stockManager
+	 * @param path
+	 *            the file the trace is written to
+	 * @throws IOException
+	 */
+	public TraceRecorder(BookStore bookStore, StockManager stockManager, Path path) throws IOException {
+		this(bookStore, stockManager, Files.newOutputStream(path));
+	}
+
+	/**
+	 * Appends the record of a call to the trace
+	 *
+	 * @param operation
+	 * @param argument
+	 * @throws BookStoreException
+	 *             if the trace could not be written
+	 */
+	private void record(Operation operation, Object argument) throws BookStoreException {
+		int sessionId = session.get();
+
+		try {
+			byte[] payload = serializer.serialize(argument);
+
+			// The time is read under the lock so that the records are in the
+			// order of their times and the deltas are never negative
+			synchronized (this) {
+				long timeInNanoSecs = System.nanoTime() - startTimeInNanoSecs;
+				out.writeByte(operation.ordinal());
+				writeVarLong(out, sessionId);
+				writeVarLong(out, timeInNanoSecs - lastTimeInNanoSecs);
+				writeVarLong(out, payload.length);
+				out.write(payload);
+				lastTimeInNanoSecs = timeInNanoSecs;
+			}
+		} catch (IOException ex) {
+			throw new BookStoreException("Could not record " + operation, ex);
+		}
+	}
+
+	/**
+	 * Writes a non-negative value as a varint, seven bits per byte starting
+	 * with the lowest ones
+	 *
+	 * @param out
+	 * @param value
+	 * @throws IOException
+	 */
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Writes the records buffered so far to the trace
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		out.flush();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.io.Closeable#close()
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		out.close();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooks(java.util.Set)
+	 */
+	@Override
+	public void buyBooks(Set<BookCopy> booksToBuy) throws BookStoreException {
+		record(Operation.BUY_BOOKS, booksToBuy);
+		bookStore.buyBooks(booksToBuy);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#buyBooksBatch(java.util.List)
+	 */
+	@Override
+	public List<BookStoreException> buyBooksBatch(List<Set<BookCopy>> orders) throws BookStoreException {
+		record(Operation.BUY_BOOKS_BATCH, orders);
+		return bookStore.buyBooksBatch(orders);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#rateBooks(java.util.Set)
+	 */
+	@Override
+	public void rateBooks(Set<BookRating> bookRating) throws BookStoreException {
+		record(Operation.RATE_BOOKS, bookRating);
+		bookStore.rateBooks(bookRating);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#getBooks(java.util.Set)
+	 */
+	@Override
+	public List<Book> getBooks(Set<Integer> isbnSet) throws BookStoreException {
+		record(Operation.GET_BOOKS, isbnSet);
+		return bookStore.getBooks(isbnSet);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#getTopRatedBooks(int)
+	 */
+	@Override
+	public List<Book> getTopRatedBooks(int numBooks) throws BookStoreException {
+		record(Operation.GET_TOP_RATED_BOOKS, numBooks);
+		return bookStore.getTopRatedBooks(numBooks);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.BookStore#getEditorPicks(int)
+	 */
+	@Override
+	public List<Book> getEditorPicks(int numBooks) throws BookStoreException {
+		record(Operation.GET_EDITOR_PICKS, numBooks);
+		return bookStore.getEditorPicks(numBooks);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#addBooks(java.util.Set)
+	 */
+	@Override
+	public void addBooks(Set<StockBook> bookSet) throws BookStoreException {
+		record(Operation.ADD_BOOKS, bookSet);
+		stockManager.addBooks(bookSet);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#addCopies(java.util.Set)
+	 */
+	@Override
+	public void addCopies(Set<BookCopy> bookCopiesSet) throws BookStoreException {
+		record(Operation.ADD_COPIES, bookCopiesSet);
+		stockManager.addCopies(bookCopiesSet);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooks()
+	 */
+	@Override
+	public List<StockBook> getBooks() throws BookStoreException {
+		record(Operation.LIST_BOOKS, null);
+		return stockManager.getBooks();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksByISBN(java.util.Set)
+	 */
+	@Override
+	public List<StockBook> getBooksByISBN(Set<Integer> isbns) throws BookStoreException {
+		record(Operation.GET_BOOKS_BY_ISBN, isbns);
+		return stockManager.getBooksByISBN(isbns);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#getBooksInDemand()
+	 */
+	@Override
+	public List<StockBook> getBooksInDemand() throws BookStoreException {
+		record(Operation.GET_BOOKS_IN_DEMAND, null);
+		return stockManager.getBooksInDemand();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#updateEditorPicks(java.util.Set)
+	 */
+	@Override
+	public void updateEditorPicks(Set<BookEditorPick> editorPicks) throws BookStoreException {
+		record(Operation.UPDATE_EDITOR_PICKS, editorPicks);
+		stockManager.updateEditorPicks(editorPicks);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#removeAllBooks()
+	 */
+	@Override
+	public void removeAllBooks() throws BookStoreException {
+		record(Operation.REMOVE_ALL_BOOKS, null);
+		stockManager.removeAllBooks();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.acertainbookstore.interfaces.StockManager#removeBooks(java.util.Set)
+	 */
+	@Override
+	public void removeBooks(Set<Integer> isbnSet) throws BookStoreException {
+		record(Operation.REMOVE_BOOKS, isbnSet);
+		stockManager.removeBooks(isbnSet);
+	}
+}
@@ -0,0 +1,294 @@
+package com.acertainbookstore.client.workloads;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.client.workloads.TraceRecord.Operation;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.ConcurrentHistogram;
+
+/**
+ *
+ * TraceReplayer replays a trace recorded by a TraceRecorder against a
+ * BookStore and a StockManager, local stores or remote proxies. The sessions
+ * of the trace are sharded over the replaying threads by their number, so
+ * that the calls of a session are replayed in their order by one thread,
+ * and the calls adding or removing books are replayed alone, in their order
+ * among the calls of all the sessions. The
+ * calls are replayed as fast as possible, or at the times they were recorded
+ * divided by a speed-up factor, their latencies then being measured from
+ * those times so that a replay falling behind the trace shows in them
+ *
+ */
+public class TraceReplayer {
+
+	/** The speed-up factor of the as fast as possible mode */
+	public static final double AS_FAST_AS_POSSIBLE = 0;
+
+	private final BookStore bookStore;
+	private final StockManager stockManager;
+	private int numThreads = 1;
+	private double speedUp = AS_FAST_AS_POSSIBLE;
+
+	/**
+	 * @param bookStore
+	 * @param stockManager
+	 */
+	public TraceReplayer(BookStore bookStore, StockManager stockManager) {
+		this.bookStore = bookStore;
+		this.stockManager = stockManager;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Sets the number of threads the sessions are sharded over
+	 *
+	 * @param numThreads
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive, got " + numThreads);
+		}
+		this.numThreads = numThreads;
+	}
+
+	public double getSpeedUp() {
+		return speedUp;
+	}
+
+	/**
+	 * Sets the speed-up factor of the replay: 1 replays the calls at their
+	 * original times, 2 twice as fast, and {@link #AS_FAST_AS_POSSIBLE} as
+	 * fast as possible
+	 *
+	 * @param speedUp
+	 */
+	public void setSpeedUp(double speedUp) {
+		if (!(speedUp >= 0)) {
+			throw new IllegalArgumentException("The speed-up factor must not be negative, got " + speedUp);
+		}
+		this.speedUp = speedUp;
+	}
+
+	/**
+	 * Replays the records of a trace. The calls changing the catalog as a
+	 * whole are barriers: the calls recorded before one are all replayed
+	 * before it, by every thread, and those recorded after it after it, so
+	 * that the catalog the other sessions call is the recorded one
+	 *
+	 * @param records
+	 *            the records, in the order they were recorded
+	 * @return the result of each replaying thread, the successful
+	 *         interactions being the calls which did not fail
+	 * @throws Exception
+	 */
+	public List<WorkerRunResult> replay(List<TraceRecord> records) throws Exception {
+		List<Shard> shards = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			shards.add(new Shard());
+		}
+
+		ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+		long startTimeInNanoSecs = System.nanoTime();
+
+		try {
+			for (TraceRecord record : records) {
+				Shard shard = shards.get(Math.floorMod(record.getSession(), numThreads));
+
+				if (isBarrier(record.getOperation())) {
+					replayPending(exec, shards, startTimeInNanoSecs);
+					replayRecord(record, shard, startTimeInNanoSecs);
+				} else {
+					shard.pending.add(record);
+				}
+			}
+			replayPending(exec, shards, startTimeInNanoSecs);
+		} finally {
+			exec.shutdownNow();
+		}
+
+		long elapsedTimeInNanoSecs = System.nanoTime() - startTimeInNanoSecs;
+		List<WorkerRunResult> results = new ArrayList<>();
+		for (Shard shard : shards) {
+			WorkerRunResult result = new WorkerRunResult(shard.successfulCalls, elapsedTimeInNanoSecs, shard.calls,
+					0, 0);
+			result.setLatencies(shard.latencies);
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns whether an operation changes the catalog as a whole, and thus
+	 * orders the calls of every session around it
+	 *
+	 * @param operation
+	 * @return
+	 */
+	static boolean isBarrier(Operation operation) {
+		return operation == Operation.ADD_BOOKS || operation == Operation.REMOVE_ALL_BOOKS
+				|| operation == Operation.REMOVE_BOOKS;
+	}
+
+	/**
+	 * Replays the records pending in the shards since the last barrier, each
+	 * shard by a thread, and waits for them
+	 *
+	 * @param exec
+	 * @param shards
+	 * @param startTimeInNanoSecs
+	 *            the start of the replay
+	 * @throws Exception
+	 */
+	private void replayPending(ExecutorService exec, List<Shard> shards, long startTimeInNanoSecs)
+			throws Exception {
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (Shard shard : shards) {
+			if (!shard.pending.isEmpty()) {
+				futures.add(exec.submit(() -> {
+					for (TraceRecord record : shard.pending) {
+						replayRecord(record, shard, startTimeInNanoSecs);
+					}
+					return null;
+				}));
+			}
+		}
+
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		for (Shard shard : shards) {
+			shard.pending.clear();
+		}
+	}
+
+	/**
+	 * Replays a record, at its time unless as fast as possible
+	 *
+	 * @param record
+	 * @param shard
+	 *            the shard the record is accounted to
+	 * @param startTimeInNanoSecs
+	 *            the start of the replay
+	 * @throws InterruptedException
+	 */
+	private void replayRecord(TraceRecord record, Shard shard, long startTimeInNanoSecs)
+			throws InterruptedException {
+		long intendedStartTimeInNanoSecs = System.nanoTime();
+
+		if (speedUp > 0) {
+			intendedStartTimeInNanoSecs = startTimeInNanoSecs + (long) (record.getTimeInNanoSecs() / speedUp);
+			waitUntil(intendedStartTimeInNanoSecs);
+		}
+
+		try {
+			record.replay(bookStore, stockManager);
+			shard.successfulCalls++;
+		} catch (BookStoreException ex) {
+			// A call which failed when it was recorded fails again, the
+			// catalog being changed in its recorded order
+		}
+		shard.calls++;
+		shard.latencies.record(System.nanoTime() - intendedStartTimeInNanoSecs);
+	}
+
+	/**
+	 * Shard holds the records a thread replays between two barriers, and what
+	 * it measured of all the records of its sessions. It is only accessed by
+	 * a thread at a time, the barriers ordering the accesses
+	 */
+	private static final class Shard {
+		private final List<TraceRecord> pending = new ArrayList<>();
+		private final ConcurrentHistogram latencies = new ConcurrentHistogram();
+		private int successfulCalls = 0;
+		private int calls = 0;
+	}
+
+	/**
+	 * Waits until the intended start time of the next call, returning at once
+	 * if it is already past
+	 *
+	 * @param intendedStartTimeInNanoSecs
+	 * @throws InterruptedException
+	 */
+	private static void waitUntil(long intendedStartTimeInNanoSecs) throws InterruptedException {
+		long remainingTimeInNanoSecs;
+
+		while ((remainingTimeInNanoSecs = intendedStartTimeInNanoSecs - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remainingTimeInNanoSecs);
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Replays a trace file against a store, arguments: the trace, the class of
+	 * a local store or the address of a remote one (CertainBookStore by
+	 * default), the speed-up factor (0, as fast as possible, by default) and
+	 * the number of threads (1 by default)
+	 *
+	 * @param args
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: TraceReplayer <trace> [store class | http://host:port] [speed-up] [threads]");
+			System.exit(1);
+		}
+
+		String target = args.length > 1 ? args[1] : "com.acertainbookstore.business.CertainBookStore";
+		BookStore bookStore;
+		StockManager stockManager;
+		BookStoreHTTPProxy bookStoreRemote = null;
+		StockManagerHTTPProxy stockManagerRemote = null;
+
+		if (target.startsWith("http://")) {
+			bookStore = bookStoreRemote = new BookStoreHTTPProxy(target);
+			stockManager = stockManagerRemote = new StockManagerHTTPProxy(target + "/stock");
+		} else {
+			Object store = Class.forName(target).getDeclaredConstructor().newInstance();
+			bookStore = (BookStore) store;
+			stockManager = (StockManager) store;
+		}
+
+		TraceReplayer replayer = new TraceReplayer(bookStore, stockManager);
+		if (args.length > 2) {
+			replayer.setSpeedUp(Double.parseDouble(args[2]));
+		}
+		if (args.length > 3) {
+			replayer.setNumThreads(Integer.parseInt(args[3]));
+		}
+
+		List<TraceRecord> records = TraceReader.readAll(Paths.get(args[0]));
+		List<WorkerRunResult> results = replayer.replay(records);
+
+		int successfulCalls = 0;
+		for (WorkerRunResult result : results) {
+			successfulCalls += result.getSuccessfulInteractions();
+		}
+		System.out.println(String.format("# Replay %s (calls=%d failed=%d throughput=%.2f/s)", args[0],
+				records.size(), records.size() - successfulCalls,
+				CertainWorkload.calculateAchievedThroughput(results)));
+		System.out.println("# Latency (ms) " + CertainWorkload.mergeLatencies(results).toSummaryString(1e6));
+
+		if (bookStoreRemote != null) {
+			bookStoreRemote.stop();
+			stockManagerRemote.stop();
+		}
+	}
+}
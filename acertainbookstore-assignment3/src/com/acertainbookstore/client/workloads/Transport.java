@@ -0,0 +1,226 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.client.AsyncBookStoreAdapter;
+import com.acertainbookstore.client.BookStoreClientConstants;
+import com.acertainbookstore.client.BookStoreHTTPProxy;
+import com.acertainbookstore.client.BookStoreTCPProxy;
+import com.acertainbookstore.client.StockManagerHTTPProxy;
+import com.acertainbookstore.client.StockManagerTCPProxy;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.server.BookStoreHTTPMessageHandler;
+import com.acertainbookstore.server.BookStoreTCPServer;
+import com.acertainbookstore.utils.BookStoreSerializerPool;
+
+/**
+ *
+ * Transport is how the clients of a sweep reach a store: in-process, or
+ * through a server started on an ephemeral port of the local host for the
+ * sweep and the proxies of its transport. A new transport is measured by the
+ * sweeps once it is added here
+ *
+ */
+public enum Transport {
+
+	/** The store is called directly, without serialization */
+	INPROCESS {
+		@Override
+		public Connection connect(Object store, String contentType) {
+			AsyncBookStoreAdapter async = new AsyncBookStoreAdapter((BookStore) store, (StockManager) store);
+			return new Connection((BookStore) store, (StockManager) store, async, async, () -> {
+			});
+		}
+
+		@Override
+		public String getContentType(String contentType) {
+			return null;
+		}
+	},
+
+	/** A BookStoreHTTPServer, the proxies speaking the codec of the sweep */
+	HTTP {
+		@Override
+		public Connection connect(Object store, String contentType) throws Exception {
+			Server server = new Server();
+			ServerConnector connector = new ServerConnector(server);
+			connector.setPort(0);
+			server.addConnector(connector);
+			server.setHandler(new BookStoreHTTPMessageHandler((CertainBookStore) store));
+			server.start();
+
+			String address = "http://localhost:" + connector.getLocalPort();
+			BookStoreHTTPProxy bookStore = new BookStoreHTTPProxy(address,
+					BookStoreClientConstants.CLIENT_MAX_CONNECTION_ADDRESS, contentType);
+			StockManagerHTTPProxy stockManager = new StockManagerHTTPProxy(address + "/stock", contentType);
+
+			return new Connection(bookStore, stockManager, bookStore, stockManager, () -> {
+				bookStore.stop();
+				stockManager.stop();
+				server.stop();
+			});
+		}
+
+		@Override
+		public boolean serves(Class<?> storeClass) {
+			// The handler reads the catalog version of the store for its caches
+			return CertainBookStore.class.isAssignableFrom(storeClass);
+		}
+	},
+
+	/** A BookStoreTCPServer, which speaks the default codec only */
+	TCP {
+		@Override
+		public Connection connect(Object store, String contentType) throws Exception {
+			ExecutorService workerExecutor = Executors.newCachedThreadPool();
+			BookStoreTCPServer server = new BookStoreTCPServer((BookStore) store, (StockManager) store,
+					workerExecutor);
+			server.start(0);
+
+			String address = "localhost:" + server.getPort();
+			BookStoreTCPProxy bookStore = new BookStoreTCPProxy(address);
+			StockManagerTCPProxy stockManager = new StockManagerTCPProxy(address);
+
+			return new Connection(bookStore, stockManager, bookStore, stockManager, () -> {
+				bookStore.stop();
+				stockManager.stop();
+				server.stop();
+			});
+		}
+
+		@Override
+		public String getContentType(String contentType) {
+			return BookStoreSerializerPool.newDefaultPool().getContentType();
+		}
+	};
+
+	/**
+	 * Connects to a store, starting its server if any
+	 *
+	 * @param store
+	 *            the store, a BookStore and a StockManager
+	 * @param contentType
+	 *            the codec of the proxies, as returned by
+	 *            {@link #getContentType(String)}
+	 * @return
+	 * @throws Exception
+	 */
+	public abstract Connection connect(Object store, String contentType) throws Exception;
+
+	/**
+	 * Returns the codec the transport speaks when asked for one, so that the
+	 * sweeps run a transport once per codec it actually speaks
+	 *
+	 * @param contentType
+	 * @return the codec, null if the calls are not serialized
+	 */
+	public String getContentType(String contentType) {
+		return contentType;
+	}
+
+	/**
+	 * Returns whether the server of the transport can serve a store class
+	 *
+	 * @param storeClass
+	 * @return
+	 */
+	public boolean serves(Class<?> storeClass) {
+		return true;
+	}
+
+	/**
+	 * Returns the transport of a name of the workload definitions
+	 *
+	 * @param name
+	 * @return
+	 */
+	public static Transport fromName(String name) {
+		return valueOf(name.toUpperCase(Locale.ROOT));
+	}
+
+	/**
+	 * Returns the name of the transport in the workload definitions
+	 *
+	 * @return
+	 */
+	public String getName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Stops what a connection started
+	 */
+	@FunctionalInterface
+	interface Closer {
+		void close() throws Exception;
+	}
+
+	/**
+	 * Connection holds the clients of a store reached through a transport
+	 */
+	public static final class Connection implements AutoCloseable {
+		private final BookStore bookStore;
+		private final StockManager stockManager;
+		private final AsyncBookStore asyncBookStore;
+		private final AsyncStockManager asyncStockManager;
+		private final Closer closer;
+
+		private Connection(BookStore bookStore, StockManager stockManager, AsyncBookStore asyncBookStore,
+				AsyncStockManager asyncStockManager, Closer closer) {
+			this.bookStore = bookStore;
+			this.stockManager = stockManager;
+			this.asyncBookStore = asyncBookStore;
+			this.asyncStockManager = asyncStockManager;
+			this.closer = closer;
+		}
+
+		public BookStore getBookStore() {
+			return bookStore;
+		}
+
+		public StockManager getStockManager() {
+			return stockManager;
+		}
+
+		public AsyncBookStore getAsyncBookStore() {
+			return asyncBookStore;
+		}
+
+		public AsyncStockManager getAsyncStockManager() {
+			return asyncStockManager;
+		}
+
+		/**
+		 * Stops the clients and the server of the connection. It throws
+		 * neither Exception nor InterruptedException, so that closing it from
+		 * a try-with-resources statement does not swallow an interrupt
+		 *
+		 * @throws IOException
+		 *             if the server failed to stop, or was interrupted
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				closer.close();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while stopping the server");
+			} catch (IOException | RuntimeException ex) {
+				throw ex;
+			} catch (Exception ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * UniformKeyChooser draws every key with the same probability
+ *
+ */
+public class UniformKeyChooser implements KeyChooser {
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.client.workloads.KeyChooser#nextIndex(int)
+	 */
+	@Override
+	public int nextIndex(int numKeys) {
+		return ThreadLocalRandom.current().nextInt(numKeys);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "uniform";
+	}
+}
@@ -10,14 +10,22 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 import java.util.stream.Collectors;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.ConcurrentHistogram;
 
 /**
  * 
@@ -27,37 +35,84 @@ import com.acertainbookstore.utils.BookStoreException;
  */
 public class Worker implements Callable<WorkerRunResult> {
     private WorkloadConfiguration configuration = null;
-    private int numSuccessfulFrequentBookStoreInteraction = 0;
-    private int numTotalFrequentBookStoreInteraction = 0;
+    // Atomic since the asynchronous interactions complete on client threads
+    private final AtomicInteger numSuccessfulFrequentBookStoreInteraction = new AtomicInteger();
+    private final AtomicInteger numTotalFrequentBookStoreInteraction = new AtomicInteger();
+    // The latencies of the actual runs, from their intended start in the open-loop mode
+    private final ConcurrentHistogram latencies = new ConcurrentHistogram();
+    // The latencies of the actual runs per interaction type
+    private final ConcurrentHistogram[] interactionLatencies = new ConcurrentHistogram[InteractionType.values().length];
 
     public Worker(WorkloadConfiguration config) {
 	configuration = config;
+	for (int i = 0; i < interactionLatencies.length; i++) {
+	    interactionLatencies[i] = new ConcurrentHistogram();
+	}
+    }
+
+    /**
+     * Chooses the interaction to run according to the configured distributions
+     * 
+     * @param chooseInteraction
+     *            a uniform random number in [0, 100)
+     * @return
+     */
+    private InteractionType chooseInteractionType(float chooseInteraction) {
+	float percentRareStockManagerInteraction = configuration.getPercentRareStockManagerInteraction();
+	float percentFrequentStockManagerInteraction = configuration.getPercentFrequentStockManagerInteraction();
+
+	if (chooseInteraction < percentRareStockManagerInteraction) {
+	    return InteractionType.RARE_STOCK_MANAGER;
+	} else if (chooseInteraction < percentRareStockManagerInteraction + percentFrequentStockManagerInteraction) {
+	    return InteractionType.FREQUENT_STOCK_MANAGER;
+	} else {
+	    return InteractionType.FREQUENT_BOOK_STORE;
+	}
     }
 
     /**
-     * Run the appropriate interaction while trying to maintain the configured
-     * distributions
+     * Records the latency of an interaction, in nanoseconds
+     * 
+     * @param interactionType
+     * @param latencyInNanoSecs
+     */
+    private void recordLatency(InteractionType interactionType, long latencyInNanoSecs) {
+	latencies.record(latencyInNanoSecs);
+	interactionLatencies[interactionType.ordinal()].record(latencyInNanoSecs);
+    }
+
+    /**
+     * Resets the latencies recorded by the warmup runs
+     */
+    private void resetLatencies() {
+	latencies.reset();
+	for (ConcurrentHistogram histogram : interactionLatencies) {
+	    histogram.reset();
+	}
+    }
+
+    /**
+     * Run the appropriate interaction
      * 
      * Updates the counts of total runs and successful runs for customer
      * interaction
      * 
-     * @param chooseInteraction
+     * @param interactionType
      * @return
      */
-    private boolean runInteraction(float chooseInteraction) {
+    private boolean runInteraction(InteractionType interactionType) {
 	try {
-	    float percentRareStockManagerInteraction = configuration.getPercentRareStockManagerInteraction();
-	    float percentFrequentStockManagerInteraction = configuration.getPercentFrequentStockManagerInteraction();
-
-	    if (chooseInteraction < percentRareStockManagerInteraction) {
+	    switch (interactionType) {
+	    case RARE_STOCK_MANAGER:
 		runRareStockManagerInteraction();
-	    } else if (chooseInteraction < percentRareStockManagerInteraction
-		    + percentFrequentStockManagerInteraction) {
+		break;
+	    case FREQUENT_STOCK_MANAGER:
 		runFrequentStockManagerInteraction();
-	    } else {
-		numTotalFrequentBookStoreInteraction++;
+		break;
+	    default:
+		numTotalFrequentBookStoreInteraction.incrementAndGet();
 		runFrequentBookStoreInteraction();
-		numSuccessfulFrequentBookStoreInteraction++;
+		numSuccessfulFrequentBookStoreInteraction.incrementAndGet();
 	    }
 	} catch (BookStoreException ex) {
 	    return false;
@@ -70,6 +125,14 @@ public class Worker implements Callable<WorkerRunResult> {
      * and return result in the end
      */
     public WorkerRunResult call() throws Exception {
+	if (configuration.isOpenLoop()) {
+	    return callOpenLoop();
+	}
+
+	if (configuration.isAsync()) {
+	    return callAsync();
+	}
+
 	int count = 1;
 	long startTimeInNanoSecs = 0;
 	long endTimeInNanoSecs = 0;
@@ -82,27 +145,227 @@ public class Worker implements Callable<WorkerRunResult> {
 	// Perform the warmup runs
 	while (count++ <= configuration.getWarmUpRuns()) {
 	    chooseInteraction = rand.nextFloat() * 100f;
-	    runInteraction(chooseInteraction);
+	    runInteraction(chooseInteractionType(chooseInteraction));
 	}
 
 	count = 1;
-	numTotalFrequentBookStoreInteraction = 0;
-	numSuccessfulFrequentBookStoreInteraction = 0;
+	numTotalFrequentBookStoreInteraction.set(0);
+	numSuccessfulFrequentBookStoreInteraction.set(0);
 
 	// Perform the actual runs
 	startTimeInNanoSecs = System.nanoTime();
 	while (count++ <= configuration.getNumActualRuns()) {
 	    chooseInteraction = rand.nextFloat() * 100f;
-	    if (runInteraction(chooseInteraction)) {
+	    InteractionType interactionType = chooseInteractionType(chooseInteraction);
+	    long interactionStartTimeInNanoSecs = System.nanoTime();
+	    if (runInteraction(interactionType)) {
 		successfulInteractions++;
 	    }
+	    recordLatency(interactionType, System.nanoTime() - interactionStartTimeInNanoSecs);
 	}
 	endTimeInNanoSecs = System.nanoTime();
 	timeForRunsInNanoSecs += (endTimeInNanoSecs - startTimeInNanoSecs);
-	return new WorkerRunResult(successfulInteractions, timeForRunsInNanoSecs, configuration.getNumActualRuns(),
-		numSuccessfulFrequentBookStoreInteraction, numTotalFrequentBookStoreInteraction);
+	return result(successfulInteractions, timeForRunsInNanoSecs);
     }
 
+	/**
+	 * Builds the result of the actual runs
+	 * 
+	 * @param successfulInteractions
+	 * @param timeForRunsInNanoSecs
+	 * @return
+	 */
+	private WorkerRunResult result(int successfulInteractions, long timeForRunsInNanoSecs) {
+		WorkerRunResult result = new WorkerRunResult(successfulInteractions, timeForRunsInNanoSecs,
+				configuration.getNumActualRuns(), numSuccessfulFrequentBookStoreInteraction.get(),
+				numTotalFrequentBookStoreInteraction.get());
+		result.setLatencies(latencies);
+		result.setInteractionLatencies(interactionLatencies);
+		return result;
+	}
+
+	/**
+	 * Runs the workloads in the open-loop mode: the interactions are issued on
+	 * a fixed schedule at the configured rate, whether the previous ones
+	 * completed or not, and their latency is measured from the time they were
+	 * scheduled rather than from the time they could start. An interaction
+	 * delayed behind a slow one is thus charged for the delay, which a
+	 * closed-loop worker would omit by issuing fewer interactions while the
+	 * store is slow
+	 * 
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private WorkerRunResult callOpenLoop() throws InterruptedException {
+		Random rand = new Random();
+		long intervalInNanoSecs = (long) (TimeUnit.SECONDS.toNanos(1) / configuration.getInteractionsPerSecond());
+
+		// Perform the warmup runs, on the same schedule
+		runInteractionsOpenLoop(rand, configuration.getWarmUpRuns(), intervalInNanoSecs);
+
+		numTotalFrequentBookStoreInteraction.set(0);
+		numSuccessfulFrequentBookStoreInteraction.set(0);
+		resetLatencies();
+
+		// Perform the actual runs
+		long startTimeInNanoSecs = System.nanoTime();
+		int successfulInteractions = runInteractionsOpenLoop(rand, configuration.getNumActualRuns(),
+				intervalInNanoSecs);
+		long timeForRunsInNanoSecs = System.nanoTime() - startTimeInNanoSecs;
+
+		return result(successfulInteractions, timeForRunsInNanoSecs);
+	}
+
+	/**
+	 * Issues numRuns interactions one interval apart, and waits until all of
+	 * them completed. In the asynchronous mode the interactions are issued
+	 * without waiting for the previous ones, up to the maximum number of
+	 * outstanding interactions; otherwise an interaction issued late, behind a
+	 * slow one, starts as soon as the slow one completes
+	 * 
+	 * @param rand
+	 * @param numRuns
+	 * @param intervalInNanoSecs
+	 * @return the number of successful interactions
+	 * @throws InterruptedException
+	 */
+	private int runInteractionsOpenLoop(Random rand, int numRuns, long intervalInNanoSecs)
+			throws InterruptedException {
+		int maxOutstandingInteractions = configuration.getMaxOutstandingInteractions();
+		Semaphore outstandingInteractions = new Semaphore(maxOutstandingInteractions);
+		AtomicInteger successfulInteractions = new AtomicInteger();
+
+		// Start at a random phase so that the workers do not issue their
+		// interactions in lockstep
+		long intendedStartTimeInNanoSecs = System.nanoTime() + (long) (rand.nextDouble() * intervalInNanoSecs);
+
+		for (int count = 1; count <= numRuns; count++, intendedStartTimeInNanoSecs += intervalInNanoSecs) {
+			waitUntil(intendedStartTimeInNanoSecs);
+			InteractionType interactionType = chooseInteractionType(rand.nextFloat() * 100f);
+
+			if (!configuration.isAsync()) {
+				if (runInteraction(interactionType)) {
+					successfulInteractions.incrementAndGet();
+				}
+				recordLatency(interactionType, System.nanoTime() - intendedStartTimeInNanoSecs);
+				continue;
+			}
+
+			long scheduledAt = intendedStartTimeInNanoSecs;
+			outstandingInteractions.acquire();
+			runInteractionAsync(interactionType).whenComplete((result, ex) -> {
+				recordLatency(interactionType, System.nanoTime() - scheduledAt);
+				if (ex == null) {
+					successfulInteractions.incrementAndGet();
+				}
+
+				outstandingInteractions.release();
+			});
+		}
+
+		// Wait for the interactions still in flight
+		outstandingInteractions.acquire(maxOutstandingInteractions);
+		return successfulInteractions.get();
+	}
+
+	/**
+	 * Waits until the intended start time of the next interaction, returning
+	 * at once if it is already past
+	 * 
+	 * @param intendedStartTimeInNanoSecs
+	 * @throws InterruptedException
+	 */
+	private static void waitUntil(long intendedStartTimeInNanoSecs) throws InterruptedException {
+		long remainingTimeInNanoSecs;
+
+		while ((remainingTimeInNanoSecs = intendedStartTimeInNanoSecs - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remainingTimeInNanoSecs);
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Runs the workloads in the asynchronous mode: the interactions are issued
+	 * from this thread only, with up to the configured number of interactions
+	 * in flight at any time
+	 * 
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private WorkerRunResult callAsync() throws InterruptedException {
+		Random rand = new Random();
+
+		// Perform the warmup runs
+		runInteractionsAsync(rand, configuration.getWarmUpRuns());
+
+		numTotalFrequentBookStoreInteraction.set(0);
+		numSuccessfulFrequentBookStoreInteraction.set(0);
+		resetLatencies();
+
+		// Perform the actual runs
+		long startTimeInNanoSecs = System.nanoTime();
+		int successfulInteractions = runInteractionsAsync(rand, configuration.getNumActualRuns());
+		long timeForRunsInNanoSecs = System.nanoTime() - startTimeInNanoSecs;
+
+		return result(successfulInteractions, timeForRunsInNanoSecs);
+	}
+
+	/**
+	 * Issues numRuns interactions without waiting for their replies, bounded by
+	 * the maximum number of outstanding interactions, and waits until all of
+	 * them completed
+	 * 
+	 * @param rand
+	 * @param numRuns
+	 * @return the number of successful interactions
+	 * @throws InterruptedException
+	 */
+	private int runInteractionsAsync(Random rand, int numRuns) throws InterruptedException {
+		int maxOutstandingInteractions = configuration.getMaxOutstandingInteractions();
+		Semaphore outstandingInteractions = new Semaphore(maxOutstandingInteractions);
+		AtomicInteger successfulInteractions = new AtomicInteger();
+
+		for (int count = 1; count <= numRuns; count++) {
+			outstandingInteractions.acquire();
+			InteractionType interactionType = chooseInteractionType(rand.nextFloat() * 100f);
+			long interactionStartTimeInNanoSecs = System.nanoTime();
+			runInteractionAsync(interactionType).whenComplete((result, ex) -> {
+				recordLatency(interactionType, System.nanoTime() - interactionStartTimeInNanoSecs);
+				if (ex == null) {
+					successfulInteractions.incrementAndGet();
+				}
+
+				outstandingInteractions.release();
+			});
+		}
+
+		// Wait for the interactions still in flight
+		outstandingInteractions.acquire(maxOutstandingInteractions);
+		return successfulInteractions.get();
+	}
+
+	/**
+	 * Starts the appropriate interaction asynchronously
+	 * 
+	 * @param interactionType
+	 * @return the future completed when the interaction completes
+	 */
+	private CompletableFuture<Void> runInteractionAsync(InteractionType interactionType) {
+		switch (interactionType) {
+		case RARE_STOCK_MANAGER:
+			return runRareStockManagerInteractionAsync();
+		case FREQUENT_STOCK_MANAGER:
+			return runFrequentStockManagerInteractionAsync();
+		default:
+			numTotalFrequentBookStoreInteraction.incrementAndGet();
+			return runFrequentBookStoreInteractionAsync()
+					.thenRun(numSuccessfulFrequentBookStoreInteraction::incrementAndGet);
+		}
+	}
+
     /**
      * Runs the new stock acquisition interaction
      * 
@@ -117,14 +380,59 @@ public class Worker implements Callable<WorkerRunResult> {
 		List<StockBook> newBooks = new ArrayList<>(
 				bookSetGenerator.nextSetOfStockBooks(configuration.getNumBooksToAdd()));
 
+		Set<StockBook> booksMissing = booksMissing(stockBookList, newBooks);
+		stockManager.addBooks(booksMissing);
+		addToCatalog(booksMissing);
+	}
+
+	/**
+	 * Runs the new stock acquisition interaction asynchronously. The candidate
+	 * books are generated on the calling thread since the generator is not
+	 * thread-safe
+	 * 
+	 * @return
+	 */
+	private CompletableFuture<Void> runRareStockManagerInteractionAsync() {
+		AsyncStockManager stockManager = configuration.getAsyncStockManager();
+		BookSetGenerator bookSetGenerator = configuration.getBookSetGenerator();
+
+		List<StockBook> newBooks = new ArrayList<>(
+				bookSetGenerator.nextSetOfStockBooks(configuration.getNumBooksToAdd()));
+
+		return stockManager.getBooksAsync().thenCompose(stockBookList -> {
+			Set<StockBook> booksMissing = booksMissing(stockBookList, newBooks);
+			return stockManager.addBooksAsync(booksMissing).thenRun(() -> addToCatalog(booksMissing));
+		});
+	}
+
+	/**
+	 * Appends the books added to the catalog the customers buy from, if any,
+	 * so that the latest ones can be favoured
+	 * 
+	 * @param booksAdded
+	 */
+	private void addToCatalog(Set<StockBook> booksAdded) {
+		List<Integer> catalogISBNs = configuration.getCatalogISBNs();
+		if (catalogISBNs != null) {
+			catalogISBNs.addAll(booksAdded.stream().map(StockBook::getISBN).collect(Collectors.toList()));
+		}
+	}
+
+	/**
+	 * Returns the new books which are not in the stock yet
+	 * 
+	 * @param stockBookList
+	 * @param newBooks
+	 * @return
+	 */
+	private static Set<StockBook> booksMissing(List<StockBook> stockBookList, List<StockBook> newBooks) {
 		Set<StockBook> booksMissing = new HashSet<>();
 		for (StockBook book : newBooks) {
 			if (!stockBookList.contains(book)) {
 				booksMissing.add(book);
 			}
 		}
-
-		stockManager.addBooks(booksMissing);
+		return booksMissing;
 	}
 
     /**
@@ -134,9 +442,30 @@ public class Worker implements Callable<WorkerRunResult> {
      */
 	private void runFrequentStockManagerInteraction() throws BookStoreException {
 		StockManager stockManager = configuration.getStockManager();
+		stockManager.addCopies(copiesToAdd(stockManager.getBooks()));
+	}
+
+	/**
+	 * Runs the stock replenishment interaction asynchronously
+	 * 
+	 * @return
+	 */
+	private CompletableFuture<Void> runFrequentStockManagerInteractionAsync() {
+		AsyncStockManager stockManager = configuration.getAsyncStockManager();
+		return stockManager.getBooksAsync()
+				.thenCompose(stockBookList -> stockManager.addCopiesAsync(copiesToAdd(stockBookList)));
+	}
+
+	/**
+	 * Returns the copies to add to the books selected for replenishment
+	 * 
+	 * @param stockBookList
+	 * @return
+	 */
+	private Set<BookCopy> copiesToAdd(List<StockBook> stockBookList) {
 		Set<BookCopy> bookCopies = new HashSet<>();
 
-		List<StockBook> sortedBooks = stockManager.getBooks().stream()
+		List<StockBook> sortedBooks = stockBookList.stream()
 				.sorted(Comparator.comparing(StockBook::getNumCopies).reversed())
 				.limit(configuration.getNumBooksWithLeastCopies()).collect(Collectors.toList());
 
@@ -144,7 +473,7 @@ public class Worker implements Callable<WorkerRunResult> {
 			bookCopies.add(new BookCopy(stockBook.getISBN(), configuration.getNumAddCopies()));
 		}
 
-		stockManager.addCopies(bookCopies);
+		return bookCopies;
 	}
 
     /**
@@ -154,21 +483,45 @@ public class Worker implements Callable<WorkerRunResult> {
      */
 	private void runFrequentBookStoreInteraction() throws BookStoreException {
 		BookStore bookStore = configuration.getBookStore();
-		BookSetGenerator bookSetGenerator = configuration.getBookSetGenerator();
+		int numEditorPicksToGet = configuration.getNumEditorPicksToGet();
+		bookStore.buyBooks(booksToBuy(bookStore.getEditorPicks(numEditorPicksToGet)));
+	}
 
+	/**
+	 * Runs the customer interaction asynchronously
+	 * 
+	 * @return
+	 */
+	private CompletableFuture<Void> runFrequentBookStoreInteractionAsync() {
+		AsyncBookStore bookStore = configuration.getAsyncBookStore();
 		int numEditorPicksToGet = configuration.getNumEditorPicksToGet();
-		Set<Integer> editorPicksISBN = bookStore.getEditorPicks(numEditorPicksToGet).stream().map(Book::getISBN)
-				.collect(Collectors.toSet());
+		return bookStore.getEditorPicksAsync(numEditorPicksToGet)
+				.thenCompose(editorPicks -> bookStore.buyBooksAsync(booksToBuy(editorPicks)));
+	}
+
+	/**
+	 * Returns the copies to buy among the editor picks, or among the catalog
+	 * if the customers buy from it
+	 * 
+	 * @param editorPicks
+	 * @return
+	 */
+	private Set<BookCopy> booksToBuy(List<Book> editorPicks) {
+		BookSetGenerator bookSetGenerator = configuration.getBookSetGenerator();
+		List<Integer> isbns = configuration.getCatalogISBNs();
+		if (isbns == null) {
+			isbns = editorPicks.stream().map(Book::getISBN).distinct().collect(Collectors.toList());
+		}
 
 		int numBooksToBuy = configuration.getNumBooksToBuy();
-		Set<Integer> bookISBNsToBuy = bookSetGenerator.sampleFromSetOfISBNs(editorPicksISBN, numBooksToBuy);
+		Set<Integer> bookISBNsToBuy = bookSetGenerator.sampleFromListOfISBNs(isbns, numBooksToBuy);
 		Set<BookCopy> booksToBuy = new HashSet<>();
 		for (int isbn : bookISBNsToBuy) {
 			int numBookCopiesToBuy = configuration.getNumBookCopiesToBuy();
 			booksToBuy.add(new BookCopy(isbn, numBookCopiesToBuy));
 		}
 
-		bookStore.buyBooks(booksToBuy);
+		return booksToBuy;
 	}
 
 }
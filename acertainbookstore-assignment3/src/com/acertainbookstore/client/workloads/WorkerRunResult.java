@@ -1,5 +1,7 @@
 package com.acertainbookstore.client.workloads;
 
+import com.acertainbookstore.utils.ConcurrentHistogram;
+
 /**
  * 
  * WorkerRunResult class represents the result returned by a worker class after
@@ -19,6 +21,10 @@ public class WorkerRunResult {
 	private int totalFrequentBookStoreInteractionRuns; // total number of
 														// bookstore interaction
 														// runs
+	private ConcurrentHistogram latencies = new ConcurrentHistogram(); // latencies
+																		// of the
+																		// interactions
+	private ConcurrentHistogram[] interactionLatencies = new ConcurrentHistogram[InteractionType.values().length];
 
 	public WorkerRunResult(int successfulInteractions, long elapsedTimeInNanoSecs,
 			int totalRuns, int successfulFrequentBookStoreInteractionRuns,
@@ -28,6 +34,9 @@ public class WorkerRunResult {
 		this.setTotalRuns(totalRuns);
 		this.setSuccessfulFrequentBookStoreInteractionRuns(successfulFrequentBookStoreInteractionRuns);
 		this.setTotalFrequentBookStoreInteractionRuns(totalFrequentBookStoreInteractionRuns);
+		for (int i = 0; i < interactionLatencies.length; i++) {
+			interactionLatencies[i] = new ConcurrentHistogram();
+		}
 	}
 
 	public int getTotalRuns() {
@@ -72,4 +81,32 @@ public class WorkerRunResult {
 		this.totalFrequentBookStoreInteractionRuns = totalFrequentBookStoreInteractionRuns;
 	}
 
+	/**
+	 * Returns the latencies of the interactions in nanoseconds, measured from
+	 * their intended start in the open-loop mode
+	 * 
+	 * @return
+	 */
+	public ConcurrentHistogram getLatencies() {
+		return latencies;
+	}
+
+	public void setLatencies(ConcurrentHistogram latencies) {
+		this.latencies = latencies;
+	}
+
+	/**
+	 * Returns the latencies of the interactions of a type in nanoseconds
+	 * 
+	 * @param interactionType
+	 * @return
+	 */
+	public ConcurrentHistogram getLatencies(InteractionType interactionType) {
+		return interactionLatencies[interactionType.ordinal()];
+	}
+
+	public void setInteractionLatencies(ConcurrentHistogram[] interactionLatencies) {
+		this.interactionLatencies = interactionLatencies;
+	}
+
 }
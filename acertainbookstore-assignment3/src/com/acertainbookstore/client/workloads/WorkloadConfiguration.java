@@ -1,5 +1,9 @@
 package com.acertainbookstore.client.workloads;
 
+import java.util.List;
+
+import com.acertainbookstore.interfaces.AsyncBookStore;
+import com.acertainbookstore.interfaces.AsyncStockManager;
 import com.acertainbookstore.interfaces.BookStore;
 import com.acertainbookstore.interfaces.StockManager;
 
@@ -10,12 +14,13 @@ import com.acertainbookstore.interfaces.StockManager;
  * 
  */
 public class WorkloadConfiguration {
-	private int numBooksToBuy = 5;
-	private int numBookCopiesToBuy = 1;
-	private int numEditorPicksToGet = 10;
-	private int numAddCopies = 10;
-	private int numBooksToAdd = 5;
-	private int numBooksWithLeastCopies = 5;
+	// The parameters of the interactions are drawn at each interaction
+	private ParameterDistribution numBooksToBuy = ParameterDistribution.constant(5);
+	private ParameterDistribution numBookCopiesToBuy = ParameterDistribution.constant(1);
+	private ParameterDistribution numEditorPicksToGet = ParameterDistribution.constant(10);
+	private ParameterDistribution numAddCopies = ParameterDistribution.constant(10);
+	private ParameterDistribution numBooksToAdd = ParameterDistribution.constant(5);
+	private ParameterDistribution numBooksWithLeastCopies = ParameterDistribution.constant(5);
 	private int warmUpRuns = 100;
 	private int numActualRuns = 500;
 	private float percentRareStockManagerInteraction = 10f;
@@ -23,6 +28,11 @@ public class WorkloadConfiguration {
 	private BookSetGenerator bookSetGenerator = null;
 	private StockManager stockManager = null;
 	private BookStore bookStore = null;
+	private AsyncStockManager asyncStockManager = null;
+	private AsyncBookStore asyncBookStore = null;
+	private int maxOutstandingInteractions = 1;
+	private double interactionsPerSecond = 0; // zero runs the workers in closed loop
+	private List<Integer> catalogISBNs = null; // null buys among the editor picks
 
 	public WorkloadConfiguration(BookStore bookStore, StockManager stockManager) throws Exception {
 		// Create a new one so that it is not shared
@@ -32,34 +42,50 @@ public class WorkloadConfiguration {
 	}
 
 	public int getNumBooksToBuy() {
-		return numBooksToBuy;
+		return numBooksToBuy.sample();
 	}
 
 	public void setNumBooksToBuy(int numBooksToBuy) {
+		this.numBooksToBuy = ParameterDistribution.constant(numBooksToBuy);
+	}
+
+	public void setNumBooksToBuy(ParameterDistribution numBooksToBuy) {
 		this.numBooksToBuy = numBooksToBuy;
 	}
 
 	public int getNumBookCopiesToBuy() {
-		return numBookCopiesToBuy;
+		return numBookCopiesToBuy.sample();
 	}
 
 	public void setNumBookCopiesToBuy(int numBookCopiesToBuy) {
+		this.numBookCopiesToBuy = ParameterDistribution.constant(numBookCopiesToBuy);
+	}
+
+	public void setNumBookCopiesToBuy(ParameterDistribution numBookCopiesToBuy) {
 		this.numBookCopiesToBuy = numBookCopiesToBuy;
 	}
 
 	public int getNumBooksToAdd() {
-		return numBooksToAdd;
+		return numBooksToAdd.sample();
 	}
 
 	public void setNumBooksToAdd(int numBooksToAdd) {
+		this.numBooksToAdd = ParameterDistribution.constant(numBooksToAdd);
+	}
+
+	public void setNumBooksToAdd(ParameterDistribution numBooksToAdd) {
 		this.numBooksToAdd = numBooksToAdd;
 	}
 
 	public int getNumBooksWithLeastCopies() {
-		return numBooksWithLeastCopies;
+		return numBooksWithLeastCopies.sample();
 	}
 
 	public void setNumBooksWithLeastCopies(int numBooksWithLeastCopies) {
+		this.numBooksWithLeastCopies = ParameterDistribution.constant(numBooksWithLeastCopies);
+	}
+
+	public void setNumBooksWithLeastCopies(ParameterDistribution numBooksWithLeastCopies) {
 		this.numBooksWithLeastCopies = numBooksWithLeastCopies;
 	}
 	
@@ -79,6 +105,74 @@ public class WorkloadConfiguration {
 		this.bookStore = bookStore;
 	}
 
+	public AsyncStockManager getAsyncStockManager() {
+		return asyncStockManager;
+	}
+
+	public AsyncBookStore getAsyncBookStore() {
+		return asyncBookStore;
+	}
+
+	/**
+	 * Switches the workers to the asynchronous mode, in which each worker
+	 * keeps up to maxOutstandingInteractions interactions in flight from a
+	 * single thread
+	 * 
+	 * @param asyncBookStore
+	 * @param asyncStockManager
+	 * @param maxOutstandingInteractions
+	 */
+	public void setAsync(AsyncBookStore asyncBookStore, AsyncStockManager asyncStockManager,
+			int maxOutstandingInteractions) {
+		this.asyncBookStore = asyncBookStore;
+		this.asyncStockManager = asyncStockManager;
+		this.maxOutstandingInteractions = maxOutstandingInteractions;
+	}
+
+	public boolean isAsync() {
+		return asyncBookStore != null && asyncStockManager != null;
+	}
+
+	public int getMaxOutstandingInteractions() {
+		return maxOutstandingInteractions;
+	}
+
+	/**
+	 * Switches the workers to the open-loop mode, in which each worker issues
+	 * its interactions on a fixed schedule at the given rate rather than each
+	 * one after the previous one completed
+	 * 
+	 * @param interactionsPerSecond
+	 */
+	public void setOpenLoop(double interactionsPerSecond) {
+		this.interactionsPerSecond = interactionsPerSecond;
+	}
+
+	public boolean isOpenLoop() {
+		return interactionsPerSecond > 0;
+	}
+
+	public double getInteractionsPerSecond() {
+		return interactionsPerSecond;
+	}
+
+	/**
+	 * Makes the customers buy books of the catalog drawn by the key chooser of
+	 * the book set generator, rather than among the editor picks, so that the
+	 * skew of the accesses can be controlled. The books the stock manager adds
+	 * are appended to the catalog, the list is thus shared by the workers and
+	 * must be safe for concurrent appends and reads
+	 * 
+	 * @param catalogISBNs
+	 */
+	public void setCatalogISBNs(List<Integer> catalogISBNs) {
+		this.catalogISBNs = catalogISBNs;
+	}
+
+	public List<Integer> getCatalogISBNs() {
+		return catalogISBNs;
+	}
+
 	public float getPercentRareStockManagerInteraction() {
 		return percentRareStockManagerInteraction;
 	}
@@ -114,18 +208,26 @@ public class WorkloadConfiguration {
 	}
 
 	public int getNumEditorPicksToGet() {
-		return numEditorPicksToGet;
+		return numEditorPicksToGet.sample();
 	}
 
 	public void setNumEditorPicksToGet(int numEditorPicksToGet) {
+		this.numEditorPicksToGet = ParameterDistribution.constant(numEditorPicksToGet);
+	}
+
+	public void setNumEditorPicksToGet(ParameterDistribution numEditorPicksToGet) {
 		this.numEditorPicksToGet = numEditorPicksToGet;
 	}
 
 	public int getNumAddCopies() {
-		return numAddCopies;
+		return numAddCopies.sample();
 	}
 
 	public void setNumAddCopies(int numAddCopies) {
+		this.numAddCopies = ParameterDistribution.constant(numAddCopies);
+	}
+
+	public void setNumAddCopies(ParameterDistribution numAddCopies) {
 		this.numAddCopies = numAddCopies;
 	}
 
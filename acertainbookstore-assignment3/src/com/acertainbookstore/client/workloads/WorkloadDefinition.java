@@ -0,0 +1,559 @@
+package com.acertainbookstore.client.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.utils.BookStoreConstants;
+
+/**
+ *
+ * WorkloadDefinition describes a workload run by CertainWorkload: the
+ * interaction mix, the distributions of the interaction parameters, the
+ * sweep of clients or offered loads, the catalog size, the stores to run
+ * against and where to write the report. Definitions are read from YAML
+ * files, for instance
+ *
+ * <pre>
+ * name: editor-picks-heavy
+ * catalog:
+ *   books: 5000
+ *   seed: 1                   # the same seed generates the same catalog
+ * mix:                        # percent, the bookstore interaction takes the rest
+ *   rareStockManager: 5
+ *   frequentStockManager: 15
+ * runs:
+ *   warmUp: 100
+ *   actual: 1000
+ *   trials: 3
+ * keys: {zipf: 0.99}          # uniform, {zipf: theta}, {hotspot: [keys, accesses]} or {latest: theta}
+ * parameters:                 # an integer, {uniform: [min, max]} or {poisson: mean}
+ *   booksToBuy: {uniform: [1, 5]}
+ *   bookCopiesToBuy: {poisson: 1.5}
+ *   editorPicksToGet: 10
+ *   addCopies: 10
+ *   booksToAdd: 5
+ *   booksWithLeastCopies: 5
+ * sweep:
+ *   threads: [1, 2, 4, 8, 16] # a list of client counts, or n for 1 to n
+ *   rates: []                 # offered loads of the open-loop mode, interactions/s
+ *   outstanding: 0            # interactions in flight per client, 0 runs synchronously
+ * targets:
+ *   local: com.acertainbookstore.business.CertainBookStore
+ *   remote: http://localhost:8081  # null runs the local store only
+ *   trace: results/editor-picks-heavy.trace  # records the calls to the local store
+ * matrix:                     # swept by SweepRunner, every combination of
+ *   stores: [com.acertainbookstore.business.CertainBookStore]  # the local store by default
+ *   transports: [inprocess, http, tcp]
+ *   serializers: [kryo, xstream, compact]
+ * output: results/editor-picks-heavy
+ * </pre>
+ *
+ * Every key is optional and defaults to the workload CertainWorkload runs
+ * without a definition. The customers buy among the editor picks unless keys
+ * sets how they choose the books of the catalog they buy, the hotspot
+ * fractions being those of the hot keys and of the accesses to them.
+ *
+ */
+public class WorkloadDefinition {
+
+	/** The codecs of the matrix by their names in the definitions */
+	private static final Map<String, String> SERIALIZERS = new LinkedHashMap<>();
+
+	static {
+		SERIALIZERS.put("kryo", BookStoreConstants.CONTENT_TYPE_KRYO);
+		SERIALIZERS.put("xstream", BookStoreConstants.CONTENT_TYPE_XSTREAM);
+		SERIALIZERS.put("compact", BookStoreConstants.CONTENT_TYPE_COMPACT);
+	}
+	private String name = "default";
+	private int numBooks = 1500;
+	private long catalogSeed = 1;
+	private float percentRareStockManagerInteraction = 10f;
+	private float percentFrequentStockManagerInteraction = 30f;
+	private int warmUpRuns = 100;
+	private int numActualRuns = 500;
+	private int numTrials = 1;
+	private KeyChooser keyChooser = null; // null buys among the editor picks
+	private ParameterDistribution numBooksToBuy = ParameterDistribution.constant(5);
+	private ParameterDistribution numBookCopiesToBuy = ParameterDistribution.constant(1);
+	private ParameterDistribution numEditorPicksToGet = ParameterDistribution.constant(10);
+	private ParameterDistribution numAddCopies = ParameterDistribution.constant(10);
+	private ParameterDistribution numBooksToAdd = ParameterDistribution.constant(5);
+	private ParameterDistribution numBooksWithLeastCopies = ParameterDistribution.constant(5);
+	private List<Integer> numClients = rangeOfClients(10);
+	private List<Double> offeredRates = new ArrayList<>();
+	private int maxOutstandingInteractions = 0;
+	private String localStoreClass = CertainBookStore.class.getName();
+	private String remoteAddress = "http://localhost:8081"; // null runs the local store only
+	private File traceFile = null;
+	private List<String> matrixStoreClasses = null; // null sweeps the local store
+	private List<Transport> matrixTransports = Arrays.asList(Transport.INPROCESS);
+	private List<String> matrixContentTypes = Arrays.asList(BookStoreConstants.CONTENT_TYPE_KRYO);
+	private File outputDirectory = new File(".");
+
+	/**
+	 * Returns the workload CertainWorkload runs without a definition, as
+	 * overridden by the system properties
+	 *
+	 * @return
+	 */
+	public static WorkloadDefinition fromProperties() {
+		WorkloadDefinition definition = new WorkloadDefinition();
+
+		String localTestProperty = System.getProperty(BookStoreConstants.PROPERTY_KEY_LOCAL_TEST);
+		if (localTestProperty != null && !Boolean.parseBoolean(localTestProperty)) {
+			definition.remoteAddress = null;
+		}
+
+		definition.maxOutstandingInteractions = Integer.getInteger(BookStoreConstants.PROPERTY_KEY_ASYNC_WORKLOAD, 0);
+		definition.offeredRates = CertainWorkload
+				.parseRates(System.getProperty(BookStoreConstants.PROPERTY_KEY_OPEN_LOOP_RATES, ""));
+		definition.numTrials = Math.max(1, Integer.getInteger(BookStoreConstants.PROPERTY_KEY_WORKLOAD_TRIALS, 1));
+		return definition;
+	}
+
+	/**
+	 * Reads a definition from a YAML file
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static WorkloadDefinition load(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return parse(reader);
+		}
+	}
+
+	/**
+	 * Reads a definition from a YAML document
+	 *
+	 * @param reader
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if a key holds a value of the wrong type or out of range
+	 */
+	public static WorkloadDefinition parse(Reader reader) {
+		// The safe constructor only builds maps, lists and scalars
+		Object document = new Yaml(new SafeConstructor(new LoaderOptions())).load(reader);
+		WorkloadDefinition definition = new WorkloadDefinition();
+
+		if (document == null) {
+			return definition;
+		}
+
+		Map<String, Object> root = asMap("workload", document);
+		definition.name = asString("name", root.getOrDefault("name", definition.name));
+
+		Map<String, Object> catalog = section(root, "catalog");
+		definition.numBooks = asInt("catalog.books", catalog.getOrDefault("books", definition.numBooks), 1);
+		Object seed = catalog.getOrDefault("seed", definition.catalogSeed);
+		if (!(seed instanceof Number) || seed instanceof Double) {
+			throw new IllegalArgumentException("catalog.seed: expected an integer, got " + seed);
+		}
+		definition.catalogSeed = ((Number) seed).longValue();
+
+		Map<String, Object> mix = section(root, "mix");
+		definition.percentRareStockManagerInteraction = asPercent("mix.rareStockManager",
+				mix.getOrDefault("rareStockManager", definition.percentRareStockManagerInteraction));
+		definition.percentFrequentStockManagerInteraction = asPercent("mix.frequentStockManager",
+				mix.getOrDefault("frequentStockManager", definition.percentFrequentStockManagerInteraction));
+		if (definition.percentRareStockManagerInteraction + definition.percentFrequentStockManagerInteraction > 100) {
+			throw new IllegalArgumentException("mix: the stock manager interactions exceed 100 percent");
+		}
+
+		Map<String, Object> runs = section(root, "runs");
+		definition.warmUpRuns = asInt("runs.warmUp", runs.getOrDefault("warmUp", definition.warmUpRuns), 0);
+		definition.numActualRuns = asInt("runs.actual", runs.getOrDefault("actual", definition.numActualRuns), 1);
+		definition.numTrials = asInt("runs.trials", runs.getOrDefault("trials", definition.numTrials), 1);
+
+		if (root.get("keys") != null) {
+			definition.keyChooser = asKeyChooser("keys", root.get("keys"));
+		}
+
+		Map<String, Object> parameters = section(root, "parameters");
+		definition.numBooksToBuy = asDistribution("parameters.booksToBuy",
+				parameters.getOrDefault("booksToBuy", definition.numBooksToBuy));
+		definition.numBookCopiesToBuy = asDistribution("parameters.bookCopiesToBuy",
+				parameters.getOrDefault("bookCopiesToBuy", definition.numBookCopiesToBuy));
+		definition.numEditorPicksToGet = asDistribution("parameters.editorPicksToGet",
+				parameters.getOrDefault("editorPicksToGet", definition.numEditorPicksToGet));
+		definition.numAddCopies = asDistribution("parameters.addCopies",
+				parameters.getOrDefault("addCopies", definition.numAddCopies));
+		definition.numBooksToAdd = asDistribution("parameters.booksToAdd",
+				parameters.getOrDefault("booksToAdd", definition.numBooksToAdd));
+		definition.numBooksWithLeastCopies = asDistribution("parameters.booksWithLeastCopies",
+				parameters.getOrDefault("booksWithLeastCopies", definition.numBooksWithLeastCopies));
+
+		Map<String, Object> sweep = section(root, "sweep");
+		Object threads = sweep.get("threads");
+		if (threads instanceof List) {
+			definition.numClients = new ArrayList<>();
+			for (Object numClients : (List<?>) threads) {
+				definition.numClients.add(asInt("sweep.threads", numClients, 1));
+			}
+			if (definition.numClients.isEmpty()) {
+				throw new IllegalArgumentException("sweep.threads: no client count");
+			}
+		} else if (threads != null) {
+			definition.numClients = rangeOfClients(asInt("sweep.threads", threads, 1));
+		}
+
+		Object rates = sweep.get("rates");
+		if (rates != null) {
+			if (!(rates instanceof List)) {
+				throw new IllegalArgumentException("sweep.rates: expected a list of offered loads, got " + rates);
+			}
+			definition.offeredRates = new ArrayList<>();
+			for (Object rate : (List<?>) rates) {
+				definition.offeredRates.add(asPositiveDouble("sweep.rates", rate));
+			}
+		}
+		definition.maxOutstandingInteractions = asInt("sweep.outstanding",
+				sweep.getOrDefault("outstanding", definition.maxOutstandingInteractions), 0);
+
+		Map<String, Object> targets = section(root, "targets");
+		definition.localStoreClass = asString("targets.local",
+				targets.getOrDefault("local", definition.localStoreClass));
+		if (targets.containsKey("remote")) {
+			// A null remote runs the local store only
+			Object remote = targets.get("remote");
+			definition.remoteAddress = remote == null ? null : asString("targets.remote", remote);
+		}
+		if (targets.get("trace") != null) {
+			definition.traceFile = new File(asString("targets.trace", targets.get("trace")));
+		}
+
+		Map<String, Object> matrix = section(root, "matrix");
+		if (matrix.containsKey("stores")) {
+			definition.matrixStoreClasses = new ArrayList<>();
+			for (Object store : asNonEmptyList("matrix.stores", matrix.get("stores"))) {
+				definition.matrixStoreClasses.add(asString("matrix.stores", store));
+			}
+		}
+		if (matrix.containsKey("transports")) {
+			definition.matrixTransports = new ArrayList<>();
+			for (Object transport : asNonEmptyList("matrix.transports", matrix.get("transports"))) {
+				try {
+					definition.matrixTransports.add(Transport.fromName(asString("matrix.transports", transport)));
+				} catch (IllegalArgumentException ex) {
+					throw new IllegalArgumentException("matrix.transports: unknown transport " + transport
+							+ ", expected one of " + Arrays.toString(Transport.values()).toLowerCase(Locale.ROOT));
+				}
+			}
+		}
+		if (matrix.containsKey("serializers")) {
+			definition.matrixContentTypes = new ArrayList<>();
+			for (Object serializer : asNonEmptyList("matrix.serializers", matrix.get("serializers"))) {
+				String contentType = SERIALIZERS.get(asString("matrix.serializers", serializer));
+				if (contentType == null) {
+					throw new IllegalArgumentException("matrix.serializers: unknown serializer " + serializer
+							+ ", expected one of " + SERIALIZERS.keySet());
+				}
+				definition.matrixContentTypes.add(contentType);
+			}
+		}
+
+		if (root.containsKey("output")) {
+			definition.outputDirectory = new File(asString("output", root.get("output")));
+		}
+
+		return definition;
+	}
+
+	/**
+	 * Applies the mix, the runs and the parameters of the definition to the
+	 * configuration of a worker
+	 *
+	 * @param config
+	 */
+	public void configure(WorkloadConfiguration config) {
+		config.setPercentRareStockManagerInteraction(percentRareStockManagerInteraction);
+		config.setPercentFrequentStockManagerInteraction(percentFrequentStockManagerInteraction);
+		config.setWarmUpRuns(warmUpRuns);
+		config.setNumActualRuns(numActualRuns);
+		config.setNumBooksToBuy(numBooksToBuy);
+		config.setNumBookCopiesToBuy(numBookCopiesToBuy);
+		config.setNumEditorPicksToGet(numEditorPicksToGet);
+		config.setNumAddCopies(numAddCopies);
+		config.setNumBooksToAdd(numBooksToAdd);
+		config.setNumBooksWithLeastCopies(numBooksWithLeastCopies);
+		if (keyChooser != null) {
+			config.getBookSetGenerator().setKeyChooser(keyChooser);
+		}
+	}
+
+	/**
+	 * Returns the largest number of clients of the sweep, which the open-loop
+	 * mode runs at every offered load
+	 *
+	 * @return
+	 */
+	public int getMaxClients() {
+		return Collections.max(numClients);
+	}
+
+	public boolean isOpenLoop() {
+		return !offeredRates.isEmpty();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getNumBooks() {
+		return numBooks;
+	}
+
+	public long getCatalogSeed() {
+		return catalogSeed;
+	}
+
+	public float getPercentRareStockManagerInteraction() {
+		return percentRareStockManagerInteraction;
+	}
+
+	public float getPercentFrequentStockManagerInteraction() {
+		return percentFrequentStockManagerInteraction;
+	}
+
+	public int getWarmUpRuns() {
+		return warmUpRuns;
+	}
+
+	public int getNumActualRuns() {
+		return numActualRuns;
+	}
+
+	public int getNumTrials() {
+		return numTrials;
+	}
+
+	public KeyChooser getKeyChooser() {
+		return keyChooser;
+	}
+
+	public ParameterDistribution getNumBooksToBuy() {
+		return numBooksToBuy;
+	}
+
+	public ParameterDistribution getNumBookCopiesToBuy() {
+		return numBookCopiesToBuy;
+	}
+
+	public ParameterDistribution getNumEditorPicksToGet() {
+		return numEditorPicksToGet;
+	}
+
+	public ParameterDistribution getNumAddCopies() {
+		return numAddCopies;
+	}
+
+	public ParameterDistribution getNumBooksToAdd() {
+		return numBooksToAdd;
+	}
+
+	public ParameterDistribution getNumBooksWithLeastCopies() {
+		return numBooksWithLeastCopies;
+	}
+
+	public List<Integer> getNumClients() {
+		return numClients;
+	}
+
+	public List<Double> getOfferedRates() {
+		return offeredRates;
+	}
+
+	public int getMaxOutstandingInteractions() {
+		return maxOutstandingInteractions;
+	}
+
+	public String getLocalStoreClass() {
+		return localStoreClass;
+	}
+
+	public String getRemoteAddress() {
+		return remoteAddress;
+	}
+
+	/**
+	 * Returns the file the calls to the local store are recorded to, null if
+	 * they are not recorded
+	 *
+	 * @return
+	 */
+	public File getTraceFile() {
+		return traceFile;
+	}
+
+	public File getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/**
+	 * Returns the store classes swept by SweepRunner
+	 *
+	 * @return
+	 */
+	public List<String> getMatrixStoreClasses() {
+		return matrixStoreClasses == null ? Collections.singletonList(localStoreClass) : matrixStoreClasses;
+	}
+
+	public List<Transport> getMatrixTransports() {
+		return matrixTransports;
+	}
+
+	/**
+	 * Returns the content types of the codecs swept by SweepRunner
+	 *
+	 * @return
+	 */
+	public List<String> getMatrixContentTypes() {
+		return matrixContentTypes;
+	}
+
+	/**
+	 * Returns the client counts from 1 to n
+	 *
+	 * @param n
+	 * @return
+	 */
+	private static List<Integer> rangeOfClients(int n) {
+		List<Integer> numClients = new ArrayList<>();
+		for (int i = 1; i <= n; i++) {
+			numClients.add(i);
+		}
+		return numClients;
+	}
+
+	private static Map<String, Object> section(Map<String, Object> root, String key) {
+		Object section = root.get(key);
+		return section == null ? Collections.emptyMap() : asMap(key, section);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> asMap(String key, Object value) {
+		if (!(value instanceof Map)) {
+			throw new IllegalArgumentException(key + ": expected a mapping, got " + value);
+		}
+		return (Map<String, Object>) value;
+	}
+
+	private static List<?> asNonEmptyList(String key, Object value) {
+		if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+			throw new IllegalArgumentException(key + ": expected a non-empty list, got " + value);
+		}
+		return (List<?>) value;
+	}
+
+	private static String asString(String key, Object value) {
+		if (!(value instanceof String)) {
+			throw new IllegalArgumentException(key + ": expected a string, got " + value);
+		}
+		return (String) value;
+	}
+
+	private static int asInt(String key, Object value, int min) {
+		if (!(value instanceof Integer) || (Integer) value < min) {
+			throw new IllegalArgumentException(key + ": expected an integer of at least " + min + ", got " + value);
+		}
+		return (Integer) value;
+	}
+
+	private static float asPercent(String key, Object value) {
+		if (!(value instanceof Number) || ((Number) value).floatValue() < 0 || ((Number) value).floatValue() > 100) {
+			throw new IllegalArgumentException(key + ": expected a percentage, got " + value);
+		}
+		return ((Number) value).floatValue();
+	}
+
+	private static double asPositiveDouble(String key, Object value) {
+		if (!(value instanceof Number) || ((Number) value).doubleValue() <= 0) {
+			throw new IllegalArgumentException(key + ": expected a positive number, got " + value);
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Reads a key chooser: uniform, {zipf: theta}, {hotspot: [hot key
+	 * fraction, hot access fraction]} or {latest: theta}
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	private static KeyChooser asKeyChooser(String key, Object value) {
+		if ("uniform".equals(value)) {
+			return new UniformKeyChooser();
+		} else if (value instanceof Map && ((Map<?, ?>) value).size() == 1) {
+			Map<String, Object> chooser = asMap(key, value);
+
+			try {
+				if (chooser.get("zipf") instanceof Number) {
+					return new ZipfianKeyChooser(((Number) chooser.get("zipf")).doubleValue());
+				} else if (chooser.get("latest") instanceof Number) {
+					return new LatestKeyChooser(((Number) chooser.get("latest")).doubleValue());
+				} else if (chooser.get("hotspot") instanceof List && ((List<?>) chooser.get("hotspot")).size() == 2) {
+					List<?> fractions = (List<?>) chooser.get("hotspot");
+					return new HotspotKeyChooser(asFraction(key, fractions.get(0)), asFraction(key, fractions.get(1)));
+				}
+			} catch (IllegalArgumentException ex) {
+				throw new IllegalArgumentException(key + ": " + ex.getMessage(), ex);
+			}
+		}
+
+		throw new IllegalArgumentException(key
+				+ ": expected uniform, {zipf: theta}, {hotspot: [keys, accesses]} or {latest: theta}, got " + value);
+	}
+
+	private static double asFraction(String key, Object value) {
+		if (!(value instanceof Number)) {
+			throw new IllegalArgumentException(key + ": expected a fraction, got " + value);
+		}
+		return ((Number) value).doubleValue();
+	}
+
+	/**
+	 * Reads a distribution: an integer, {uniform: [min, max]} or {poisson:
+	 * mean}
+	 *
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	private static ParameterDistribution asDistribution(String key, Object value) {
+		if (value instanceof ParameterDistribution) {
+			return (ParameterDistribution) value;
+		} else if (value instanceof Integer) {
+			return ParameterDistribution.constant(asInt(key, value, 0));
+		}
+
+		Map<String, Object> distribution = asMap(key, value);
+		if (distribution.size() == 1 && distribution.get("uniform") instanceof List
+				&& ((List<?>) distribution.get("uniform")).size() == 2) {
+			List<?> bounds = (List<?>) distribution.get("uniform");
+			return ParameterDistribution.uniform(asInt(key, bounds.get(0), 0), asInt(key, bounds.get(1), 0));
+		} else if (distribution.size() == 1 && distribution.containsKey("poisson")) {
+			return ParameterDistribution.poisson(asPositiveDouble(key, distribution.get("poisson")));
+		}
+
+		throw new IllegalArgumentException(
+				key + ": expected an integer, {uniform: [min, max]} or {poisson: mean}, got " + value);
+	}
+}
@@ -0,0 +1,135 @@
+package com.acertainbookstore.client.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ *
+ * ZipfianKeyChooser draws the key of rank i, the first key being of rank 0,
+ * with a probability proportional to 1 / (i + 1)^theta, following Gray et al.,
+ * "Quickly Generating Billion-Record Synthetic Databases". The zeta constant
+ * of the largest number of keys drawn from is computed once and extended
+ * incrementally as the keys grow, a draw then costs a single power. Fewer keys
+ * are drawn from the distribution over the largest number by redrawing the
+ * ranks past them, which leaves the probabilities of the others proportional
+ *
+ */
+public class ZipfianKeyChooser implements KeyChooser {
+
+	/**
+	 * The constants of the distribution over a number of keys, replaced as a
+	 * whole so that the workers draw without locking
+	 */
+	private static final class Constants {
+		private final int numKeys;
+		private final double zetaN;
+		private final double eta;
+
+		private Constants(int numKeys, double zetaN, double eta) {
+			this.numKeys = numKeys;
+			this.zetaN = zetaN;
+			this.eta = eta;
+		}
+	}
+
+	/**
+	 * The max number of redraws of a rank past the number of keys, after
+	 * which it is clamped to the last key
+	 */
+	private static final int MAX_REDRAWS = 64;
+
+	private final double theta;
+	private final double alpha;
+	private final double zeta2;
+	private volatile Constants constants;
+
+	/**
+	 * @param theta
+	 *            the skew in (0, 1), YCSB uses 0.99
+	 */
+	public ZipfianKeyChooser(double theta) {
+		if (theta <= 0 || theta >= 1) {
+			throw new IllegalArgumentException("zipf theta " + theta + " out of (0, 1)");
+		}
+		this.theta = theta;
+		this.alpha = 1 / (1 - theta);
+		this.zeta2 = 1 + Math.pow(0.5, theta);
+		this.constants = constants(1, 1);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.client.workloads.KeyChooser#nextIndex(int)
+	 */
+	@Override
+	public int nextIndex(int numKeys) {
+		Constants current = constants;
+		if (current.numKeys < numKeys) {
+			current = constantsFor(numKeys);
+		}
+
+		int index = draw(current);
+		for (int i = 0; index >= numKeys && i < MAX_REDRAWS; i++) {
+			index = draw(current);
+		}
+
+		return Math.min(index, numKeys - 1);
+	}
+
+	/**
+	 * Draws a rank over the number of keys of the constants
+	 *
+	 * @param current
+	 * @return
+	 */
+	private int draw(Constants current) {
+		double u = ThreadLocalRandom.current().nextDouble();
+		double uz = u * current.zetaN;
+
+		if (uz < 1) {
+			return 0;
+		} else if (uz < zeta2) {
+			return Math.min(1, current.numKeys - 1);
+		}
+
+		int index = (int) (current.numKeys * Math.pow(current.eta * u - current.eta + 1, alpha));
+		return Math.min(index, current.numKeys - 1);
+	}
+
+	/**
+	 * Computes the constants of a number of keys larger than the current one,
+	 * extending the zeta constant of the current number of keys
+	 *
+	 * @param numKeys
+	 * @return
+	 */
+	private synchronized Constants constantsFor(int numKeys) {
+		Constants current = constants;
+		if (current.numKeys >= numKeys) {
+			return current;
+		}
+
+		double zetaN = current.zetaN;
+		for (int i = current.numKeys + 1; i <= numKeys; i++) {
+			zetaN += 1 / Math.pow(i, theta);
+		}
+
+		constants = constants(numKeys, zetaN);
+		return constants;
+	}
+
+	private Constants constants(int numKeys, double zetaN) {
+		double eta = numKeys < 2 ? 0 : (1 - Math.pow(2.0 / numKeys, 1 - theta)) / (1 - zeta2 / zetaN);
+		return new Constants(numKeys, zetaN, eta);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "zipf(" + theta + ")";
+	}
+}
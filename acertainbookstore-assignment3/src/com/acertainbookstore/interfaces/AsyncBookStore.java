@@ -0,0 +1,67 @@
+package com.acertainbookstore.interfaces;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookRating;
+
+/**
+ * {@link AsyncBookStore} declares the non-blocking counterpart of the
+ * {@link BookStore} methods. Every method returns immediately, the returned
+ * future completes with the result or exceptionally with the
+ * {@link com.acertainbookstore.utils.BookStoreException} the synchronous method
+ * would have thrown.
+ *
+ * @see BookStore
+ */
+public interface AsyncBookStore {
+
+	/**
+	 * Buys the sets of books specified.
+	 *
+	 * @param booksToBuy
+	 *            the books to buy
+	 * @return the future completed when the books are bought
+	 */
+	public CompletableFuture<Void> buyBooksAsync(Set<BookCopy> booksToBuy);
+
+	/**
+	 * Applies the BookRatings in the set, i.e. rates each book with their
+	 * respective rating.
+	 *
+	 * @param bookRating
+	 *            the book rating
+	 * @return the future completed when the books are rated
+	 */
+	public CompletableFuture<Void> rateBooksAsync(Set<BookRating> bookRating);
+
+	/**
+	 * Gets the list of books corresponding to the set of ISBNs.
+	 *
+	 * @param ISBNList
+	 *            the ISBN list
+	 * @return the future of the books
+	 */
+	public CompletableFuture<List<Book>> getBooksAsync(Set<Integer> ISBNList);
+
+	/**
+	 * Gets a list of top rated numBooks books.
+	 *
+	 * @param numBooks
+	 *            the number of books
+	 * @return the future of the top rated books
+	 */
+	public CompletableFuture<List<Book>> getTopRatedBooksAsync(int numBooks);
+
+	/**
+	 * Gets the list of books containing numBooks editor picks.
+	 *
+	 * @param numBooks
+	 *            the number of books
+	 * @return the future of the editor picks
+	 */
+	public CompletableFuture<List<Book>> getEditorPicksAsync(int numBooks);
+}
@@ -0,0 +1,87 @@
+package com.acertainbookstore.interfaces;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.StockBook;
+
+/**
+ * {@link AsyncStockManager} declares the non-blocking counterpart of the
+ * {@link StockManager} methods. Every method returns immediately, the returned
+ * future completes with the result or exceptionally with the
+ * {@link com.acertainbookstore.utils.BookStoreException} the synchronous method
+ * would have thrown.
+ *
+ * @see StockManager
+ */
+public interface AsyncStockManager {
+
+	/**
+	 * Adds the books in bookSet to the stock.
+	 *
+	 * @param bookSet
+	 *            the book set
+	 * @return the future completed when the books are added
+	 */
+	public CompletableFuture<Void> addBooksAsync(Set<StockBook> bookSet);
+
+	/**
+	 * Adds copies of books already in the stock.
+	 *
+	 * @param bookCopiesSet
+	 *            the book copies set
+	 * @return the future completed when the copies are added
+	 */
+	public CompletableFuture<Void> addCopiesAsync(Set<BookCopy> bookCopiesSet);
+
+	/**
+	 * Gets the list of books in the bookstore.
+	 *
+	 * @return the future of the books
+	 */
+	public CompletableFuture<List<StockBook>> getBooksAsync();
+
+	/**
+	 * Gets the books matching the set of ISBNs given.
+	 *
+	 * @param isbns
+	 *            the ISBNs
+	 * @return the future of the books by ISBN
+	 */
+	public CompletableFuture<List<StockBook>> getBooksByISBNAsync(Set<Integer> isbns);
+
+	/**
+	 * Gets the list of books which has sale miss.
+	 *
+	 * @return the future of the books in demand
+	 */
+	public CompletableFuture<List<StockBook>> getBooksInDemandAsync();
+
+	/**
+	 * Updates the books by mark/unmark them as editor pick.
+	 *
+	 * @param editorPicks
+	 *            the editor picks
+	 * @return the future completed when the editor picks are updated
+	 */
+	public CompletableFuture<Void> updateEditorPicksAsync(Set<BookEditorPick> editorPicks);
+
+	/**
+	 * Cleans up the bookstore - remove all the books and the associated data.
+	 *
+	 * @return the future completed when the books are removed
+	 */
+	public CompletableFuture<Void> removeAllBooksAsync();
+
+	/**
+	 * Cleans up the bookstore selectively for the list of provided ISBNs.
+	 *
+	 * @param isbnSet
+	 *            the ISBN set
+	 * @return the future completed when the books are removed
+	 */
+	public CompletableFuture<Void> removeBooksAsync(Set<Integer> isbnSet);
+}
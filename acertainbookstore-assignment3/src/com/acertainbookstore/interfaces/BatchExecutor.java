@@ -0,0 +1,33 @@
+package com.acertainbookstore.interfaces;
+
+import java.util.List;
+
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreOperation;
+import com.acertainbookstore.utils.BookStoreResponse;
+
+/**
+ * {@link BatchExecutor} declares the execution of an ordered list of
+ * {@link BookStore} and {@link StockManager} operations in one call, which
+ * saves a round trip and a serialization per operation to the clients.
+ */
+public interface BatchExecutor {
+
+	/**
+	 * Executes the operations in order. An atomic batch is one transaction:
+	 * it stops at the first failing operation and none of its changes
+	 * remain. The operations of a non-atomic batch are independent steps,
+	 * each of which succeeds or fails on its own.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @param atomic
+	 *            whether the batch is one transaction
+	 * @return the response of each operation, in order; the responses of a
+	 *         non-atomic batch carry the exception of the failed steps
+	 * @throws BookStoreException
+	 *             if the batch is invalid, or if an atomic batch failed
+	 */
+	public List<BookStoreResponse> executeBatch(List<BookStoreOperation> operations, boolean atomic)
+			throws BookStoreException;
+}
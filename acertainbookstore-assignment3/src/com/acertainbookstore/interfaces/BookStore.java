@@ -1,11 +1,13 @@
 package com.acertainbookstore.interfaces;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 import com.acertainbookstore.business.Book;
 import com.acertainbookstore.business.BookCopy;
 import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 
 /**
@@ -24,6 +26,36 @@ public interface BookStore {
 	 */
 	public void buyBooks(Set<BookCopy> booksToBuy) throws BookStoreException;
 
+	/**
+	 * Buys several independent orders. Each order is applied all-or-nothing as
+	 * by {@link #buyBooks(Set)}, and a failed order does not prevent the
+	 * others from being bought.
+	 *
+	 * @param orders
+	 *            the orders, each a set of books to buy
+	 * @return the exception of each order, null for the orders bought
+	 * @throws BookStoreException
+	 *             if the orders are null
+	 */
+	public default List<BookStoreException> buyBooksBatch(List<Set<BookCopy>> orders) throws BookStoreException {
+		if (orders == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		List<BookStoreException> results = new ArrayList<>(orders.size());
+
+		for (Set<BookCopy> order : orders) {
+			try {
+				buyBooks(order);
+				results.add(null);
+			} catch (BookStoreException ex) {
+				results.add(ex);
+			}
+		}
+
+		return results;
+	}
+
 	/**
 	 * Applies the BookRatings in the set, i.e. rates each book with their
 	 * respective rating.
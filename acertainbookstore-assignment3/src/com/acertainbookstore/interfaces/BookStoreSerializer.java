@@ -1,6 +1,11 @@
 package com.acertainbookstore.interfaces;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.acertainbookstore.utils.BookStoreBuffer;
 
 /**
  * {@link BookStoreSerializer} specifies the serialization and de-serialization
@@ -29,4 +34,78 @@ public interface BookStoreSerializer {
 	 *             Signals that an I/O exception has occurred.
 	 */
 	Object deserialize(byte[] bytes) throws IOException;
+
+	/**
+	 * Serializes an object into a stream, through a buffer of a bounded size
+	 * rather than into an array of all the bytes. The stream is flushed but
+	 * not closed.
+	 *
+	 * @param object
+	 *            the object
+	 * @param out
+	 *            the output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	default void serialize(Object object, OutputStream out) throws IOException {
+		out.write(serialize(object));
+		out.flush();
+	}
+
+	/**
+	 * De-serializes an object from a stream, through a buffer of a bounded
+	 * size rather than from an array of all the bytes. The stream is not
+	 * closed.
+	 *
+	 * @param in
+	 *            the input stream
+	 * @return the object
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	default Object deserialize(InputStream in) throws IOException {
+		return deserialize(in.readAllBytes());
+	}
+
+	/**
+	 * Serializes an object into a buffer supplied by the caller, after the
+	 * bytes it already holds, such as the header of a frame. A buffer reused
+	 * from a request to the next spares the allocation of an array per call.
+	 *
+	 * @param object
+	 *            the object
+	 * @param buffer
+	 *            the buffer
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	default void serialize(Object object, BookStoreBuffer buffer) throws IOException {
+		serialize(object, (OutputStream) buffer);
+	}
+
+	/**
+	 * De-serializes a range of an array of bytes, such as the payload of a
+	 * frame in a read buffer, without copying it out first.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param offset
+	 *            the offset of the first byte
+	 * @param length
+	 *            the number of bytes
+	 * @return the object
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	default Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+		return deserialize(Arrays.copyOfRange(bytes, offset, offset + length));
+	}
+
+	/**
+	 * Gets the content type of the serialized bytes, which selects the
+	 * serializer of a HTTP request.
+	 *
+	 * @return the content type
+	 */
+	String getContentType();
 }
@@ -0,0 +1,43 @@
+package com.acertainbookstore.interfaces;
+
+import com.acertainbookstore.utils.BookStoreException;
+
+/**
+ * {@link TransactionalStore} declares the stores which can run a sequence of
+ * their own operations as one transaction.
+ */
+public interface TransactionalStore {
+
+	/**
+	 * {@link Transaction} is a sequence of operations on the store.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 */
+	@FunctionalInterface
+	public interface Transaction<T> {
+
+		/**
+		 * Runs the operations.
+		 *
+		 * @return the result
+		 * @throws BookStoreException
+		 *             the book store exception
+		 */
+		public T run() throws BookStoreException;
+	}
+
+	/**
+	 * Runs a transaction atomically: no other operation on the store
+	 * interleaves with it, and if it throws none of its changes remain.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 * @param transaction
+	 *            the transaction
+	 * @return the result of the transaction
+	 * @throws BookStoreException
+	 *             the exception thrown by the transaction
+	 */
+	public <T> T runAtomically(Transaction<T> transaction) throws BookStoreException;
+}
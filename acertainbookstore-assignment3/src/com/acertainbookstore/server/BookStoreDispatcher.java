@@ -0,0 +1,263 @@
+package com.acertainbookstore.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.BatchExecutor;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.interfaces.TransactionalStore;
+import com.acertainbookstore.utils.BookStoreBatch;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreFlightRecorder;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreOperation;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.StoreOperationEvent;
+
+/**
+ * {@link BookStoreDispatcher} invokes the {@link BookStore} or
+ * {@link StockManager} method of a message tag on its de-serialized input
+ * value. It is shared by the transports, which only decode the message and
+ * encode the {@link BookStoreResponse}. It also executes the batches of
+ * operations, as a {@link BatchExecutor} local to the store.
+ *
+ * @see BookStoreHTTPMessageHandler
+ * @see BookStoreTCPServer
+ */
+public class BookStoreDispatcher implements BatchExecutor {
+
+	/** The book store. */
+	private final BookStore bookStore;
+
+	/** The stock manager. */
+	private final StockManager stockManager;
+
+	/**
+	 * Instantiates a new {@link BookStoreDispatcher}.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param stockManager
+	 *            the stock manager
+	 */
+	public BookStoreDispatcher(BookStore bookStore, StockManager stockManager) {
+		this.bookStore = bookStore;
+		this.stockManager = stockManager;
+	}
+
+	/**
+	 * Invokes the method of the message tag. The exception thrown by the
+	 * method, if any, is returned in the response.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the de-serialized input value, null if the method takes none
+	 * @return the book store response
+	 */
+	public BookStoreResponse dispatch(BookStoreMessageTag messageTag, Object inputValue) {
+		if (!BookStoreFlightRecorder.isRecording()) {
+			return invoke(messageTag, inputValue);
+		}
+
+		StoreOperationEvent event = new StoreOperationEvent();
+		event.begin();
+		BookStoreResponse bookStoreResponse = invoke(messageTag, inputValue);
+		event.end();
+
+		if (event.shouldCommit()) {
+			event.operation = messageTag.name();
+			event.isbnCount = isbnCount(inputValue);
+			event.outcome = bookStoreResponse.getException() == null ? StoreOperationEvent.OK
+					: bookStoreResponse.getException().getMessage();
+			event.commit();
+		}
+
+		return bookStoreResponse;
+	}
+
+	/**
+	 * Counts the ISBNs an input value names, as recorded in the flight
+	 * recorder events.
+	 *
+	 * @param inputValue
+	 *            the de-serialized input value
+	 * @return the number of books or operations of the input, or the number
+	 *         of books requested
+	 */
+	private static int isbnCount(Object inputValue) {
+		if (inputValue instanceof Collection) {
+			return ((Collection<?>) inputValue).size();
+		} else if (inputValue instanceof Integer) {
+			return (Integer) inputValue;
+		} else if (inputValue instanceof BookStoreBatch && ((BookStoreBatch) inputValue).getOperations() != null) {
+			return ((BookStoreBatch) inputValue).getOperations().size();
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Invokes the method of the message tag. The unchecked exceptions of the
+	 * method are returned as {@link BookStoreException}s.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the de-serialized input value, null if the method takes none
+	 * @return the book store response
+	 */
+	@SuppressWarnings("unchecked")
+	private BookStoreResponse invoke(BookStoreMessageTag messageTag, Object inputValue) {
+		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+
+		try {
+			switch (messageTag) {
+			case REMOVEBOOKS:
+				stockManager.removeBooks((Set<Integer>) inputValue);
+				break;
+
+			case REMOVEALLBOOKS:
+				stockManager.removeAllBooks();
+				break;
+
+			case ADDBOOKS:
+				stockManager.addBooks((Set<StockBook>) inputValue);
+				break;
+
+			case ADDCOPIES:
+				stockManager.addCopies((Set<BookCopy>) inputValue);
+				break;
+
+			case LISTBOOKS:
+				bookStoreResponse.setList(stockManager.getBooks());
+				break;
+
+			case UPDATEEDITORPICKS:
+				stockManager.updateEditorPicks((Set<BookEditorPick>) inputValue);
+				break;
+
+			case BUYBOOKS:
+				bookStore.buyBooks((Set<BookCopy>) inputValue);
+				break;
+
+			case BATCHBUYBOOKS:
+				bookStoreResponse.setList(bookStore.buyBooksBatch((List<Set<BookCopy>>) inputValue));
+				break;
+
+			case EXECUTEBATCH:
+				BookStoreBatch batch = (BookStoreBatch) inputValue;
+
+				if (batch == null) {
+					throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+				}
+
+				bookStoreResponse.setList(executeBatch(batch.getOperations(), batch.isAtomic()));
+				break;
+
+			case GETBOOKS:
+				bookStoreResponse.setList(bookStore.getBooks((Set<Integer>) inputValue));
+				break;
+
+			case GETEDITORPICKS:
+				if (inputValue == null) {
+					throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+				}
+
+				bookStoreResponse.setList(bookStore.getEditorPicks((Integer) inputValue));
+				break;
+
+			case GETSTOCKBOOKSBYISBN:
+				bookStoreResponse.setList(stockManager.getBooksByISBN((Set<Integer>) inputValue));
+				break;
+
+			default:
+				throw new BookStoreException("Unsupported message tag " + messageTag);
+			}
+		} catch (BookStoreException ex) {
+			bookStoreResponse.setException(ex);
+		} catch (ClassCastException ex) {
+			bookStoreResponse.setException(new BookStoreException("Invalid input for " + messageTag, ex));
+		} catch (RuntimeException ex) {
+			// Failed like any other operation, so that a step of a batch fails
+			// rather than the whole batch.
+			bookStoreResponse.setException(new BookStoreException("Error processing " + messageTag, ex));
+		}
+
+		return bookStoreResponse;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BatchExecutor#executeBatch(java.util.
+	 * List, boolean)
+	 */
+	@Override
+	public List<BookStoreResponse> executeBatch(List<BookStoreOperation> operations, boolean atomic)
+			throws BookStoreException {
+		if (operations == null) {
+			throw new BookStoreException(BookStoreConstants.NULL_INPUT);
+		}
+
+		if (!atomic) {
+			return executeSteps(operations, false);
+		}
+
+		if (!(stockManager instanceof TransactionalStore)) {
+			throw new BookStoreException("Atomic batches are not supported by the store");
+		}
+
+		return ((TransactionalStore) stockManager).runAtomically(() -> executeSteps(operations, true));
+	}
+
+	/**
+	 * Executes the operations of a batch in order.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @param stopOnFailure
+	 *            whether to throw the exception of the first failing
+	 *            operation rather than return it in its response
+	 * @return the response of each operation
+	 * @throws BookStoreException
+	 *             the exception of the first failing operation, if
+	 *             stopOnFailure is set
+	 */
+	private List<BookStoreResponse> executeSteps(List<BookStoreOperation> operations, boolean stopOnFailure)
+			throws BookStoreException {
+		List<BookStoreResponse> responses = new ArrayList<>(operations.size());
+
+		for (int step = 0; step < operations.size(); step++) {
+			BookStoreOperation operation = operations.get(step);
+			BookStoreMessageTag messageTag = operation == null ? null : operation.getMessageTag();
+			BookStoreResponse response;
+
+			// The batches are not nested, and the metrics are not a store
+			// operation.
+			if (messageTag == null || messageTag == BookStoreMessageTag.EXECUTEBATCH
+					|| messageTag == BookStoreMessageTag.METRICS) {
+				response = new BookStoreResponse(new BookStoreException("Unsupported operation " + messageTag), null);
+			} else {
+				response = dispatch(messageTag, operation.getInputValue());
+			}
+
+			if (stopOnFailure && response.getException() != null) {
+				throw new BookStoreException("Step " + step + " (" + messageTag + ") failed: "
+						+ response.getException().getMessage(), response.getException());
+			}
+
+			responses.add(response);
+		}
+
+		return responses;
+	}
+}
@@ -1,30 +1,41 @@
 package com.acertainbookstore.server;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
-import com.acertainbookstore.business.BookCopy;
-import com.acertainbookstore.business.BookEditorPick;
 import com.acertainbookstore.business.CertainBookStore;
-import com.acertainbookstore.business.StockBook;
-import com.acertainbookstore.utils.BookStoreKryoSerializer;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
-import com.acertainbookstore.utils.BookStoreXStreamSerializer;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreBufferPool;
+import com.acertainbookstore.utils.BookStoreCompactSerializer;
 import com.acertainbookstore.utils.BookStoreConstants;
 import com.acertainbookstore.utils.BookStoreException;
 import com.acertainbookstore.utils.BookStoreMessageTag;
 import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerRegistry;
 import com.acertainbookstore.utils.BookStoreUtility;
-import com.esotericsoftware.kryo.io.Input;
+import com.acertainbookstore.utils.RequestMetrics;
+import com.acertainbookstore.utils.RequestMetrics.Phase;
 
 /**
  * {@link BookStoreHTTPMessageHandler} implements the message handler class
@@ -41,24 +52,110 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	/** The book store. */
 	private CertainBookStore myBookStore = null;
 
-	/** The serializer. */
-	private static ThreadLocal<BookStoreSerializer> serializer;
+	/** The dispatcher invoking the book store. */
+	private final BookStoreDispatcher dispatcher;
+
+	/** The serializers, selected per request by content type. */
+	private final BookStoreSerializerRegistry serializers;
+
+	/** The executor running the book store calls in the async mode, or null. */
+	private final Executor businessExecutor;
+
+	/** The buffers of the asynchronous requests in flight. */
+	private final BookStoreBufferPool buffers = new BookStoreBufferPool();
+
+	/** The coalescer of the identical reads in flight. */
+	private final BookStoreRequestCoalescer<SharedResponse> coalescer = new BookStoreRequestCoalescer<>();
+
+	/** The metrics of the requests handled. */
+	private final RequestMetrics requestMetrics = new RequestMetrics(
+			BookStoreHTTPMessageHandler.class.getSimpleName());
+
+	/**
+	 * {@link SharedResponse} is the serialized response of a read shared by
+	 * the identical reads, and its cache entry.
+	 */
+	private static final class SharedResponse {
+
+		/** The serialized response, which must not be modified. */
+		private final byte[] bytes;
+
+		/** The cache entry, null if the response is not cached. */
+		private final BookStoreResponseCache.Entry entry;
+
+		/** Whether the response carries an exception. */
+		private final boolean failed;
+
+		/**
+		 * Instantiates a new {@link SharedResponse}.
+		 *
+		 * @param bytes
+		 *            the serialized response
+		 * @param entry
+		 *            the cache entry, null if the response is not cached
+		 * @param failed
+		 *            whether the response carries an exception
+		 */
+		private SharedResponse(byte[] bytes, BookStoreResponseCache.Entry entry, boolean failed) {
+			this.bytes = bytes;
+			this.entry = entry;
+			this.failed = failed;
+		}
+	}
+
+	/** The serialized responses of the catalog reads. */
+	private final BookStoreResponseCache responseCache = new BookStoreResponseCache(
+			BookStoreResponseCache.DEFAULT_MAX_ENTRIES);
 
 	/**
-	 * Instantiates a new {@link BookStoreHTTPMessageHandler}.
+	 * Instantiates a new {@link BookStoreHTTPMessageHandler} which handles the
+	 * requests synchronously on the container threads.
 	 *
 	 * @param bookStore
 	 *            the book store
 	 */
 	public BookStoreHTTPMessageHandler(CertainBookStore bookStore) {
-		myBookStore = bookStore;
+		this(bookStore, null);
+	}
 
-		// Setup the type of serializer.
-		if (BookStoreConstants.BINARY_SERIALIZATION) {
-			serializer = ThreadLocal.withInitial(BookStoreKryoSerializer::new);
-		} else {
-			serializer = ThreadLocal.withInitial(BookStoreXStreamSerializer::new);
-		}
+	/**
+	 * Instantiates a new {@link BookStoreHTTPMessageHandler}. If a business
+	 * executor is given, the requests are handled asynchronously: the container
+	 * threads only perform non-blocking I/O while the book store calls run on
+	 * the executor. A bounded executor should reject work when saturated, the
+	 * rejected requests are answered with 503 Service Unavailable.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param businessExecutor
+	 *            the business executor, or null to handle the requests
+	 *            synchronously
+	 */
+	public BookStoreHTTPMessageHandler(CertainBookStore bookStore, Executor businessExecutor) {
+		this(bookStore, businessExecutor, BookStoreSerializerRegistry.newServerRegistry());
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreHTTPMessageHandler} speaking the
+	 * codecs of a serializer registry. Each request is de-serialized by the
+	 * serializer of its Content-Type header, or of its Accept header if it has
+	 * no content, and answered in the same codec. The requests declaring
+	 * neither use the default serializer of the registry.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param businessExecutor
+	 *            the business executor, or null to handle the requests
+	 *            synchronously
+	 * @param serializers
+	 *            the serializer registry
+	 */
+	public BookStoreHTTPMessageHandler(CertainBookStore bookStore, Executor businessExecutor,
+			BookStoreSerializerRegistry serializers) {
+		myBookStore = bookStore;
+		dispatcher = new BookStoreDispatcher(bookStore, bookStore);
+		this.businessExecutor = businessExecutor;
+		this.serializers = serializers;
 	}
 
 	/*
@@ -71,6 +168,7 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
 			throws IOException, ServletException {
 		BookStoreMessageTag messageTag;
+		BookStoreSerializer serializer;
 		String requestURI;
 
 		response.setStatus(HttpServletResponse.SC_OK);
@@ -89,50 +187,25 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 		if (messageTag == null) {
 			System.err.println("No message tag.");
 		} else {
-			switch (messageTag) {
-			case REMOVEBOOKS:
-				removeBooks(request, response);
-				break;
-
-			case REMOVEALLBOOKS:
-				removeAllBooks(response);
-				break;
-
-			case ADDBOOKS:
-				addBooks(request, response);
-				break;
-
-			case ADDCOPIES:
-				addCopies(request, response);
-				break;
-
-			case LISTBOOKS:
-				listBooks(response);
-				break;
-
-			case UPDATEEDITORPICKS:
-				updateEditorPicks(request, response);
-				break;
-
-			case BUYBOOKS:
-				buyBooks(request, response);
-				break;
-
-			case GETBOOKS:
-				getBooks(request, response);
-				break;
-
-			case GETEDITORPICKS:
-				getEditorPicks(request, response);
-				break;
-
-			case GETSTOCKBOOKSBYISBN:
-				getStockBooksByISBN(request, response);
-				break;
-
-			default:
-				System.err.println("Unsupported message tag.");
-				break;
+			RequestMetrics.Timing timing = requestMetrics.start(messageTag);
+			boolean async = false;
+
+			try {
+				if (messageTag == BookStoreMessageTag.METRICS) {
+					metrics(response);
+				} else if ((serializer = selectSerializer(request)) == null) {
+					unsupportedContentType(request, response);
+				} else {
+					response.setContentType(serializer.getContentType());
+					async = handle(messageTag, serializer, request, response, timing);
+				}
+			} catch (IOException | RuntimeException ex) {
+				timing.setFailed();
+				throw ex;
+			} finally {
+				if (!async) {
+					finish(timing, response);
+				}
 			}
 		}
 
@@ -141,157 +214,308 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	}
 
 	/**
-	 * Gets the stock books by ISBN.
+	 * Handles a request of the book store, timing its phases.
 	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
 	 * @param response
 	 *            the response
+	 * @param timing
+	 *            the timing of the request
+	 * @return true if the request is handled asynchronously, and its timing
+	 *         finished once its response is written
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void getStockBooksByISBN(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private boolean handle(BookStoreMessageTag messageTag, BookStoreSerializer serializer,
+			HttpServletRequest request, HttpServletResponse response, RequestMetrics.Timing timing)
+			throws IOException {
+		if (messageTag == BookStoreMessageTag.GETBOOKCHANGES) {
+			bookChanges(serializer, request, response, timing);
+		} else if (serveFromCache(messageTag, serializer, request, response, timing)) {
+			// Answered with the cached response, or 304 Not Modified.
+		} else if (businessExecutor != null) {
+			handleAsync(messageTag, serializer, request, response, timing);
+			return true;
+		} else if (BookStoreRequestCoalescer.isCoalescable(messageTag)) {
+			// The response is held in full to be shared with the
+			// identical reads, and cached.
+			InputStream requestContent = request.getContentLength() > 0
+					? timing.timeReads(request.getInputStream())
+					: null;
+			SharedResponse sharedResponse;
+
+			try {
+				sharedResponse = processShared(messageTag, serializer, request, requestContent, timing).join();
+			} catch (CompletionException ex) {
+				throw new IOException(ex.getCause());
+			}
 
-		Set<Integer> isbnSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+			if (sharedResponse.failed) {
+				timing.setFailed();
+			}
 
-		try {
-			bookStoreResponse.setList(myBookStore.getBooksByISBN(isbnSet));
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+			if (sharedResponse.entry == null || !isNotModified(sharedResponse.entry, request, response)) {
+				timing.timeWrites(response.getOutputStream()).write(sharedResponse.bytes);
+			}
+		} else {
+			// The request and the response are streamed, so a large
+			// response is never held in full in a byte array.
+			InputStream requestContent = request.getContentLength() > 0
+					? timing.timeReads(request.getInputStream())
+					: null;
+			BookStoreResponse bookStoreResponse = process(messageTag, serializer, request, requestContent, timing);
+			timing.beginPhase();
+			serializer.serialize(bookStoreResponse, timing.timeWrites(response.getOutputStream()));
+			timing.endPhase(Phase.SERIALIZE);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		return false;
 	}
 
 	/**
-	 * Gets the editor picks.
+	 * Records a request in the request metrics, as failed if its status is an
+	 * error.
 	 *
-	 * @param request
-	 *            the request
+	 * @param timing
+	 *            the timing of the request
 	 * @param response
 	 *            the response
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
 	 */
-	private void getEditorPicks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		String numBooksString = URLDecoder.decode(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM), StandardCharsets.UTF_8);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+	private void finish(RequestMetrics.Timing timing, HttpServletResponse response) {
+		if (response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+			timing.setFailed();
+		}
 
-		try {
-			int numBooks = BookStoreUtility.convertStringToInt(numBooksString);
-			bookStoreResponse.setList(myBookStore.getEditorPicks(numBooks));
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+		requestMetrics.finish(timing);
+	}
+
+	/**
+	 * Gets the metrics of the requests handled.
+	 *
+	 * @return the request metrics
+	 */
+	public RequestMetrics getRequestMetrics() {
+		return requestMetrics;
+	}
+
+	/**
+	 * Selects the serializer of a request: the one of its Content-Type header,
+	 * or of the first registered type of its Accept header, or the default
+	 * one.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the serializer, null if the content type is not registered
+	 */
+	private BookStoreSerializer selectSerializer(HttpServletRequest request) {
+		String contentType = request.getContentType();
+
+		if (!BookStoreUtility.isEmpty(contentType)) {
+			return serializers.get(contentType);
+		}
+
+		String accept = request.getHeader(HttpHeader.ACCEPT.asString());
+
+		if (!BookStoreUtility.isEmpty(accept)) {
+			for (String acceptedType : accept.split(",")) {
+				BookStoreSerializer serializer = serializers.get(acceptedType);
+
+				if (serializer != null) {
+					return serializer;
+				}
+			}
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		return serializers.getDefault();
 	}
 
 	/**
-	 * Gets the books.
+	 * Answers a catalog read from the response cache if the catalog has not
+	 * changed since the response was cached.
 	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
 	 * @param response
 	 *            the response
+	 * @param timing
+	 *            the timing of the request
+	 * @return true if the request was answered
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void getBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private boolean serveFromCache(BookStoreMessageTag messageTag, BookStoreSerializer serializer,
+			HttpServletRequest request, HttpServletResponse response, RequestMetrics.Timing timing)
+			throws IOException {
+		if (!BookStoreResponseCache.isCacheable(messageTag)) {
+			return false;
+		}
 
-		Set<Integer> isbnSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+		BookStoreResponseCache.Entry entry = responseCache.get(messageTag, serializer.getContentType(),
+				cacheParameter(messageTag, request), myBookStore.getCatalogVersion());
 
-		try {
-			bookStoreResponse.setList(myBookStore.getBooks(isbnSet));
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+		if (entry == null) {
+			return false;
+		}
+
+		if (!isNotModified(entry, request, response)) {
+			timing.timeWrites(response.getOutputStream()).write(entry.getBytes());
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		return true;
 	}
 
 	/**
-	 * Buys books.
+	 * Caches the response of a catalog read, unless it failed, the catalog
+	 * changed while it was computed, or it is a random sample of the editor
+	 * picks, which must be drawn again on every request.
 	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
-	 * @param response
-	 *            the response
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @param version
+	 *            the catalog version read before computing the response
+	 * @param bookStoreResponse
+	 *            the book store response
+	 * @param serializedResponse
+	 *            the serialized response, which must not be modified
+	 *            afterwards
+	 * @return the cache entry, null if the response is not cached
 	 */
-	@SuppressWarnings("unchecked")
-	private void buyBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private BookStoreResponseCache.Entry cacheResponse(BookStoreMessageTag messageTag,
+			BookStoreSerializer serializer, HttpServletRequest request, long version,
+			BookStoreResponse bookStoreResponse, byte[] serializedResponse) {
+		if (bookStoreResponse.getException() != null || myBookStore.getCatalogVersion() != version) {
+			return null;
+		}
 
-		Set<BookCopy> bookCopiesToBuy = (Set<BookCopy>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+		String parameter = cacheParameter(messageTag, request);
 
-		try {
-			myBookStore.buyBooks(bookCopiesToBuy);
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+		if (messageTag == BookStoreMessageTag.GETEDITORPICKS) {
+			try {
+				if (bookStoreResponse.getList().size() >= BookStoreUtility.convertStringToInt(parameter)) {
+					return null;
+				}
+			} catch (BookStoreException ex) {
+				return null;
+			}
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		return responseCache.put(messageTag, serializer.getContentType(), parameter, version, serializedResponse);
 	}
 
 	/**
-	 * Updates editor picks.
+	 * Answers the ISBNs of the books added or removed since the catalog
+	 * version named by the If-None-Match header of the request, for a client
+	 * revalidating the books it caches. The response carries the current
+	 * version as its ETag, read before the changes so that none is missed;
+	 * it is 304 Not Modified if the catalog did not change at all, and lists
+	 * no ISBNs, telling the client to drop all its books, if the version is
+	 * unknown or too old.
 	 *
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
 	 * @param response
 	 *            the response
+	 * @param timing
+	 *            the timing of the request
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void updateEditorPicks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private void bookChanges(BookStoreSerializer serializer, HttpServletRequest request,
+			HttpServletResponse response, RequestMetrics.Timing timing) throws IOException {
+		String prefix = '"' + responseCache.getEpoch() + '-';
+		String eTag = prefix + myBookStore.getCatalogVersion() + '"';
+		String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+		response.setHeader(HttpHeader.ETAG.asString(), eTag);
+
+		if (eTag.equals(ifNoneMatch)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
 
-		Set<BookEditorPick> mapEditorPicksValues = (Set<BookEditorPick>) serializer.get()
-				.deserialize(serializedRequestContent);
 		BookStoreResponse bookStoreResponse = new BookStoreResponse();
 
-		try {
-			myBookStore.updateEditorPicks(mapEditorPicksValues);
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+		if (ifNoneMatch != null && ifNoneMatch.startsWith(prefix) && ifNoneMatch.endsWith("\"")) {
+			try {
+				long version = Long.parseLong(ifNoneMatch.substring(prefix.length(), ifNoneMatch.length() - 1));
+				timing.beginPhase();
+				bookStoreResponse.setList(myBookStore.getBooksChangedSince(version));
+				timing.endPhase(Phase.STORE);
+			} catch (NumberFormatException ex) {
+				// An unknown version, all the books may have changed.
+			}
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		timing.beginPhase();
+		serializer.serialize(bookStoreResponse, timing.timeWrites(response.getOutputStream()));
+		timing.endPhase(Phase.SERIALIZE);
+	}
+
+	/**
+	 * Gets the request parameter a cached response depends on.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param request
+	 *            the request
+	 * @return the parameter, null if none
+	 */
+	private static String cacheParameter(BookStoreMessageTag messageTag, HttpServletRequest request) {
+		return messageTag == BookStoreMessageTag.GETEDITORPICKS
+				? request.getParameter(BookStoreConstants.BOOK_NUM_PARAM)
+				: null;
 	}
 
 	/**
-	 * Lists the books.
+	 * Sets the ETag of a cached response, and answers 304 Not Modified if the
+	 * If-None-Match header of the request names it.
 	 *
+	 * @param entry
+	 *            the cache entry
+	 * @param request
+	 *            the request
 	 * @param response
 	 *            the response
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @return true if the response is 304 Not Modified, and has no content
 	 */
-	private void listBooks(HttpServletResponse response) throws IOException {
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
-		bookStoreResponse.setList(myBookStore.getBooks());
+	private static boolean isNotModified(BookStoreResponseCache.Entry entry, HttpServletRequest request,
+			HttpServletResponse response) {
+		response.setHeader(HttpHeader.ETAG.asString(), entry.getETag());
+		String ifNoneMatch = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String eTag : ifNoneMatch.split(",")) {
+			eTag = eTag.trim();
+
+			if (eTag.equals("*") || eTag.equals(entry.getETag())) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return true;
+			}
+		}
+
+		return false;
 	}
 
 	/**
-	 * Adds the copies.
+	 * Answers a request whose content type is not registered with 415
+	 * Unsupported Media Type.
 	 *
 	 * @param request
 	 *            the request
@@ -300,109 +524,384 @@ public class BookStoreHTTPMessageHandler extends AbstractHandler {
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void addCopies(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private void unsupportedContentType(HttpServletRequest request, HttpServletResponse response)
+			throws IOException {
+		response.setStatus(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+		response.setContentType("text/plain; charset=utf-8");
+		response.getOutputStream().write((BookStoreConstants.UNSUPPORTED_CONTENT_TYPE + request.getContentType())
+				.getBytes(StandardCharsets.UTF_8));
+	}
 
-		Set<BookCopy> listBookCopies = (Set<BookCopy>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+	/**
+	 * Processes a request: de-serializes its content and invokes the book
+	 * store.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
+	 * @param request
+	 *            the request
+	 * @param requestContent
+	 *            the serialized request content, null if the request has none
+	 * @param timing
+	 *            the timing of the request
+	 * @return the book store response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private BookStoreResponse process(BookStoreMessageTag messageTag, BookStoreSerializer serializer,
+			HttpServletRequest request, InputStream requestContent, RequestMetrics.Timing timing)
+			throws IOException {
+		Object inputValue;
+		timing.beginPhase();
 
 		try {
-			myBookStore.addCopies(listBookCopies);
+			inputValue = decodeInputValue(messageTag, serializer, request, requestContent);
 		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+			timing.setFailed();
+			return new BookStoreResponse(ex, null);
+		} finally {
+			timing.endPhase(Phase.DESERIALIZE);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		timing.beginPhase();
+		BookStoreResponse bookStoreResponse = dispatcher.dispatch(messageTag, inputValue);
+		timing.endPhase(Phase.STORE);
+
+		if (bookStoreResponse.getException() != null) {
+			timing.setFailed();
+		}
+
+		return bookStoreResponse;
 	}
 
 	/**
-	 * Adds the books.
+	 * Processes a read request, sharing its serialized response with the
+	 * identical reads arriving while it is computed, and caches the response
+	 * if it may be.
 	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
-	 * @param response
-	 *            the response
+	 * @param requestContent
+	 *            the serialized request content, null if the request has none
+	 * @param timing
+	 *            the timing of the request, whose store and serialize phases
+	 *            are timed only if it computes the response
+	 * @return the future of the shared response, completed exceptionally if
+	 *         it could not be serialized
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void addBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
-
-		Set<StockBook> newBooks = (Set<StockBook>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+	private CompletableFuture<SharedResponse> processShared(BookStoreMessageTag messageTag,
+			BookStoreSerializer serializer, HttpServletRequest request, InputStream requestContent,
+			RequestMetrics.Timing timing) throws IOException {
+		long version = myBookStore.getCatalogVersion();
+		Object inputValue;
+		timing.beginPhase();
 
 		try {
-			myBookStore.addBooks(newBooks);
+			inputValue = decodeInputValue(messageTag, serializer, request, requestContent);
 		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+			return CompletableFuture.completedFuture(
+					new SharedResponse(serializer.serialize(new BookStoreResponse(ex, null)), null, true));
+		} finally {
+			timing.endPhase(Phase.DESERIALIZE);
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		String key = BookStoreRequestCoalescer.key(messageTag, serializer.getContentType(), inputValue, version);
+		return coalescer.coalesce(key, () -> {
+			timing.beginPhase();
+			BookStoreResponse bookStoreResponse = dispatcher.dispatch(messageTag, inputValue);
+			timing.endPhase(Phase.STORE);
+			timing.beginPhase();
+			byte[] serializedResponse = serializer.serialize(bookStoreResponse);
+			timing.endPhase(Phase.SERIALIZE);
+			BookStoreResponseCache.Entry entry = BookStoreResponseCache.isCacheable(messageTag)
+					? cacheResponse(messageTag, serializer, request, version, bookStoreResponse, serializedResponse)
+					: null;
+			return new SharedResponse(serializedResponse, entry, bookStoreResponse.getException() != null);
+		});
 	}
 
 	/**
-	 * Removes all books.
+	 * Decodes the input value of a request: the number of books parameter of
+	 * the editor picks, the de-serialized content otherwise.
 	 *
-	 * @param response
-	 *            the response
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
+	 * @param request
+	 *            the request
+	 * @param requestContent
+	 *            the serialized request content, null if the request has none
+	 * @return the input value, null if the request has no content
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
+	 * @throws BookStoreException
+	 *             if the number of books parameter is invalid
 	 */
-	private void removeAllBooks(HttpServletResponse response) throws IOException {
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+	private Object decodeInputValue(BookStoreMessageTag messageTag, BookStoreSerializer serializer,
+			HttpServletRequest request, InputStream requestContent) throws IOException, BookStoreException {
+		if (messageTag == BookStoreMessageTag.GETEDITORPICKS) {
+			String numBooksString = URLDecoder.decode(request.getParameter(BookStoreConstants.BOOK_NUM_PARAM),
+					StandardCharsets.UTF_8);
+			return BookStoreUtility.convertStringToInt(numBooksString);
+		}
 
-		try {
-			myBookStore.removeAllBooks();
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+		if (requestContent == null) {
+			return null;
 		}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+		return serializer.deserialize(requestContent);
 	}
 
 	/**
-	 * Removes the books.
+	 * Handles a request asynchronously. The request content is read with
+	 * non-blocking I/O, the request is processed on the business executor and
+	 * the response is written with non-blocking I/O, so the container threads
+	 * are never blocked on the book store. Unlike the synchronous mode, the
+	 * request and the response are buffered in full, since a serializer
+	 * blocks on the streams it reads and writes; both are buffered in one
+	 * pooled buffer, released once the response is written.
 	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
 	 * @param request
 	 *            the request
 	 * @param response
 	 *            the response
+	 * @param timing
+	 *            the timing of the request, whose read phase lasts until the
+	 *            content is read in full
 	 * @throws IOException
 	 *             Signals that an I/O exception has occurred.
 	 */
-	@SuppressWarnings("unchecked")
-	private void removeBooks(HttpServletRequest request, HttpServletResponse response) throws IOException {
-		byte[] serializedRequestContent = getSerializedRequestContent(request);
+	private void handleAsync(BookStoreMessageTag messageTag, BookStoreSerializer serializer,
+			HttpServletRequest request, HttpServletResponse response, RequestMetrics.Timing timing)
+			throws IOException {
+		timing.beginPhase();
+		AsyncContext asyncContext = request.startAsync();
+
+		// The clients enforce their own timeouts.
+		asyncContext.setTimeout(0);
+
+		ServletInputStream input = request.getInputStream();
+		input.setReadListener(new ReadListener() {
+
+			/** The request content read so far. */
+			private final BookStoreBuffer content = buffers.acquire();
+
+			@Override
+			public void onDataAvailable() throws IOException {
+				while (input.isReady()) {
+					content.ensureCapacity(BookStoreConstants.SERVER_READ_BUFFER_SIZE);
+					int length = input.read(content.getArray(), content.size(),
+							content.capacity() - content.size());
+
+					if (length < 0) {
+						return;
+					}
+
+					content.setSize(content.size() + length);
+				}
+			}
 
-		Set<Integer> bookSet = (Set<Integer>) serializer.get().deserialize(serializedRequestContent);
-		BookStoreResponse bookStoreResponse = new BookStoreResponse();
+			@Override
+			public void onAllDataRead() throws IOException {
+				timing.endPhase(Phase.READ);
+
+				try {
+					businessExecutor.execute(() -> processAsync(asyncContext, messageTag, serializer, request,
+							response, content, timing));
+				} catch (RejectedExecutionException ex) {
+					BookStoreResponse bookStoreResponse = new BookStoreResponse(
+							new BookStoreException(BookStoreConstants.SERVER_OVERLOADED), null);
+					response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+					content.reset();
+					serializer.serialize(bookStoreResponse, content);
+					writeAsync(asyncContext, response, content, timing);
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				System.err.println(t);
+				timing.setFailed();
+				finish(timing, response);
+				completeAsync(asyncContext, content);
+			}
+		});
+	}
+
+	/**
+	 * Completes an asynchronous request and returns its buffer to the pool,
+	 * on each of the paths a request ends on, whether it was written or
+	 * failed, so that a failed request does not leak its buffer. The buffer
+	 * must not be used afterwards.
+	 *
+	 * @param asyncContext
+	 *            the async context
+	 * @param content
+	 *            the buffer of the request
+	 */
+	private void completeAsync(AsyncContext asyncContext, BookStoreBuffer content) {
+		asyncContext.complete();
+		buffers.release(content);
+	}
+
+	/**
+	 * Processes a request on the business executor and writes its response.
+	 *
+	 * @param asyncContext
+	 *            the async context
+	 * @param messageTag
+	 *            the message tag
+	 * @param serializer
+	 *            the serializer of the request
+	 * @param request
+	 *            the request
+	 * @param response
+	 *            the response
+	 * @param content
+	 *            the buffer holding the serialized request content, which
+	 *            the serialized response content replaces
+	 * @param timing
+	 *            the timing of the request
+	 */
+	private void processAsync(AsyncContext asyncContext, BookStoreMessageTag messageTag,
+			BookStoreSerializer serializer, HttpServletRequest request, HttpServletResponse response,
+			BookStoreBuffer content, RequestMetrics.Timing timing) {
+		InputStream requestContent = content.size() > 0
+				? new ByteArrayInputStream(content.getArray(), 0, content.size())
+				: null;
 
 		try {
-			myBookStore.removeBooks(bookSet);
-		} catch (BookStoreException ex) {
-			bookStoreResponse.setException(ex);
+			if (BookStoreRequestCoalescer.isCoalescable(messageTag)) {
+				processShared(messageTag, serializer, request, requestContent, timing)
+						.whenComplete((sharedResponse, failure) -> {
+							try {
+								if (failure != null) {
+									throw new IOException(failure);
+								}
+
+								if (sharedResponse.failed) {
+									timing.setFailed();
+								}
+
+								content.reset();
+
+								if (sharedResponse.entry == null
+										|| !isNotModified(sharedResponse.entry, request, response)) {
+									content.write(sharedResponse.bytes, 0, sharedResponse.bytes.length);
+								}
+
+								writeAsync(asyncContext, response, content, timing);
+							} catch (IOException | RuntimeException ex) {
+								System.err.println(ex);
+								response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+								finish(timing, response);
+								completeAsync(asyncContext, content);
+							}
+						});
+				return;
+			}
+
+			BookStoreResponse bookStoreResponse = process(messageTag, serializer, request, requestContent, timing);
+			content.reset();
+			timing.beginPhase();
+			serializer.serialize(bookStoreResponse, content);
+			timing.endPhase(Phase.SERIALIZE);
+			writeAsync(asyncContext, response, content, timing);
+		} catch (IOException | RuntimeException ex) {
+			System.err.println(ex);
+			response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			finish(timing, response);
+			completeAsync(asyncContext, content);
 		}
+	}
+
+	/**
+	 * Writes the response content with non-blocking I/O and completes the
+	 * asynchronous request once it is written or failed, which returns its
+	 * buffer to the pool.
+	 *
+	 * @param asyncContext
+	 *            the async context
+	 * @param response
+	 *            the response
+	 * @param content
+	 *            the buffer holding the serialized response content
+	 * @param timing
+	 *            the timing of the request, finished once the response is
+	 *            written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeAsync(AsyncContext asyncContext, HttpServletResponse response, BookStoreBuffer content,
+			RequestMetrics.Timing timing) throws IOException {
+		timing.beginPhase();
+		ServletOutputStream output = response.getOutputStream();
+		output.setWriteListener(new WriteListener() {
+
+			/** Whether the content has been handed to the output. */
+			private boolean written = false;
+
+			@Override
+			public void onWritePossible() throws IOException {
+				while (output.isReady()) {
+					if (written) {
+						timing.endPhase(Phase.WRITE);
+						finish(timing, response);
+						completeAsync(asyncContext, content);
+						return;
+					}
+
+					output.write(content.getArray(), 0, content.size());
+					written = true;
+				}
+			}
 
-		byte[] serializedResponseContent = serializer.get().serialize(bookStoreResponse);
-		response.getOutputStream().write(serializedResponseContent);
+			@Override
+			public void onError(Throwable t) {
+				System.err.println(t);
+				timing.setFailed();
+				finish(timing, response);
+				completeAsync(asyncContext, content);
+			}
+		});
 	}
 
 	/**
-	 * Gets the serialized request content.
+	 * Writes the lock metrics of the book store, the counters of the response
+	 * and fragment caches and of the coalescer, and the request metrics as
+	 * plain text.
 	 *
-	 * @param request the request
-	 * @return the serialized request content
-	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @param response
+	 *            the response
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	private byte[] getSerializedRequestContent(HttpServletRequest request) throws IOException {
-		Input in = new Input(request.getInputStream());
-		byte[] serializedRequestContent = in.readBytes(request.getContentLength());
-		in.close();
-		return serializedRequestContent;
+	private void metrics(HttpServletResponse response) throws IOException {
+		String report = myBookStore.getLockMetrics().getReport() + responseCache.getReport()
+				+ coalescer.getReport();
+		BookStoreSerializer compact = serializers.get(BookStoreConstants.CONTENT_TYPE_COMPACT);
+
+		if (compact instanceof BookStoreCompactSerializer
+				&& ((BookStoreCompactSerializer) compact).getFragmentCache() != null) {
+			report += ((BookStoreCompactSerializer) compact).getFragmentCache().getReport();
+		}
+
+		report += requestMetrics.getReport();
+
+		response.setContentType("text/plain; charset=utf-8");
+		response.getOutputStream().write(report.getBytes(StandardCharsets.UTF_8));
 	}
 }
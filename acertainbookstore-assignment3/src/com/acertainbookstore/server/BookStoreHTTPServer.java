@@ -1,9 +1,15 @@
 package com.acertainbookstore.server;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 import com.acertainbookstore.business.CertainBookStore;
 import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreFlightRecorder;
 
 /**
  * Starts the {@link BookStoreHTTPServer} that the clients will communicate
@@ -16,6 +22,9 @@ public class BookStoreHTTPServer {
 	private static final int MIN_THREADPOOL_SIZE = 10;
 	private static final int MAX_THREADPOOL_SIZE = 100;
 
+	/** The Constant BUSINESS_QUEUE_SIZE bounds the requests waiting for a business thread. */
+	private static final int BUSINESS_QUEUE_SIZE = 4096;
+
 	/**
 	 * Prevents the instantiation of a new {@link BookStoreHTTPServer}.
 	 */
@@ -30,10 +39,23 @@ public class BookStoreHTTPServer {
 	 *            the arguments
 	 */
 	public static void main(String[] args) {
+		BookStoreFlightRecorder.startFromProperties(BookStoreHTTPServer.class.getSimpleName());
 		CertainBookStore bookStore = new CertainBookStore();
+		bookStore.getLockMetrics().register();
 		int listenOnPort = DEFAULT_PORT;
 
-		BookStoreHTTPMessageHandler handler = new BookStoreHTTPMessageHandler(bookStore);
+		// In the async mode the book store calls run on a bounded business
+		// executor instead of the container threads.
+		int businessThreads = Integer.getInteger(BookStoreConstants.PROPERTY_KEY_ASYNC_HANDLER, 0);
+		ThreadPoolExecutor businessExecutor = null;
+
+		if (businessThreads > 0) {
+			businessExecutor = new ThreadPoolExecutor(businessThreads, businessThreads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(BUSINESS_QUEUE_SIZE));
+		}
+
+		BookStoreHTTPMessageHandler handler = new BookStoreHTTPMessageHandler(bookStore, businessExecutor);
+		handler.getRequestMetrics().register();
 		String serverPortString = System.getProperty(BookStoreConstants.PROPERTY_KEY_SERVER_PORT);
 
 		if (serverPortString != null) {
@@ -44,7 +66,16 @@ public class BookStoreHTTPServer {
 			}
 		}
 
-		QueuedThreadPool threadpool = new QueuedThreadPool(MAX_THREADPOOL_SIZE, MIN_THREADPOOL_SIZE);
+		ThreadPool threadpool;
+
+		// Each request runs on its own virtual thread in the virtual thread
+		// mode, instead of a bounded pool of platform threads.
+		if (Boolean.getBoolean(BookStoreConstants.PROPERTY_KEY_VIRTUAL_THREADS)) {
+			threadpool = new VirtualThreadPool();
+		} else {
+			threadpool = new QueuedThreadPool(MAX_THREADPOOL_SIZE, MIN_THREADPOOL_SIZE);
+		}
+
 		BookStoreHTTPServerUtility.createServer(listenOnPort, handler, threadpool);
 	}
 }
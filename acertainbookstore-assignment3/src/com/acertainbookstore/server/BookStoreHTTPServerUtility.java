@@ -7,13 +7,16 @@ import java.net.UnknownHostException;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
-import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 /**
  * {@link BookStoreHTTPServerUtility} creates Jetty server instances.
  */
 public class BookStoreHTTPServerUtility {
 
+	/** The Constant ACCEPT_QUEUE_SIZE. */
+	static final int ACCEPT_QUEUE_SIZE = 4096;
+
 	/**
 	 * Prevents the instantiation of a new {@link BookStoreHTTPServerUtility}.
 	 */
@@ -28,14 +31,19 @@ public class BookStoreHTTPServerUtility {
 	 *            the port
 	 * @param handler
 	 *            the handler
-	 * @return true, if successful
+	 * @param threadpool
+	 *            the thread pool, or null for the default one
 	 */
-	public static void createServer(int port, AbstractHandler handler, QueuedThreadPool threadpool) {
+	public static void createServer(int port, AbstractHandler handler, ThreadPool threadpool) {
 		Server server = null;
 		if (threadpool != null) {
 			server = new Server(threadpool);
 			ServerConnector myConnector = new ServerConnector(server);
 			myConnector.setPort(port);
+
+			// Let bursts of thousands of clients connecting at once wait in
+			// the backlog instead of timing out.
+			myConnector.setAcceptQueueSize(ACCEPT_QUEUE_SIZE);
 			server.addConnector(myConnector);
 		} else {
 			server = new Server(port);
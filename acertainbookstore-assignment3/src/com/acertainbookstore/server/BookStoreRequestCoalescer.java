@@ -0,0 +1,170 @@
+package com.acertainbookstore.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link BookStoreRequestCoalescer} shares the response of a read request
+ * with the identical reads arriving while it is computed: the first request
+ * of a key computes the response, the others wait for it rather than take
+ * the lock of the store and serialize the same response again.
+ *
+ * The key holds the {@link CertainBookStore#getCatalogVersion() catalog
+ * version} read before the response is computed. A request joins a response
+ * only if it reads the same version when it arrives, so no mutation
+ * completed between the read of the response and the arrival of the
+ * request, which thus sees the catalog as of its own lifetime.
+ *
+ * @param <T>
+ *            the type of the shared responses
+ * @see BookStoreHTTPMessageHandler
+ */
+public final class BookStoreRequestCoalescer<T> {
+
+	/** The responses being computed, by key. */
+	private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+	/** The number of responses computed. */
+	private final AtomicLong numComputed = new AtomicLong();
+
+	/** The number of requests which joined a response being computed. */
+	private final AtomicLong numJoined = new AtomicLong();
+
+	/**
+	 * Checks whether the requests of a message tag may share their responses:
+	 * those of the read requests.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return true if the requests may be coalesced
+	 */
+	public static boolean isCoalescable(BookStoreMessageTag messageTag) {
+		switch (messageTag) {
+		case LISTBOOKS:
+		case GETBOOKS:
+		case GETEDITORPICKS:
+		case GETSTOCKBOOKSBYISBN:
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Builds the key of a request, its input value normalized so that the
+	 * same ISBNs in another order make the same key.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param contentType
+	 *            the content type of the serializer
+	 * @param inputValue
+	 *            the de-serialized input value: null, a number of books or a
+	 *            collection of ISBNs
+	 * @param version
+	 *            the catalog version read when the request arrived
+	 * @return the key, null if the input value cannot be normalized
+	 */
+	public static String key(BookStoreMessageTag messageTag, String contentType, Object inputValue,
+			long version) {
+		StringBuilder key = new StringBuilder().append(messageTag).append(' ').append(contentType).append(' ')
+				.append(version);
+
+		if (inputValue instanceof Integer) {
+			key.append(' ').append(inputValue);
+		} else if (inputValue instanceof Collection) {
+			List<Integer> isbns = new ArrayList<>();
+
+			for (Object isbn : (Collection<?>) inputValue) {
+				if (!(isbn instanceof Integer)) {
+					return null;
+				}
+
+				isbns.add((Integer) isbn);
+			}
+
+			Collections.sort(isbns);
+			key.append(' ').append(isbns);
+		} else if (inputValue != null) {
+			return null;
+		}
+
+		return key.toString();
+	}
+
+	/**
+	 * Joins the response being computed for a key, or computes it on the
+	 * calling thread if none is.
+	 *
+	 * @param key
+	 *            the key, null to compute the response without sharing it
+	 * @param computation
+	 *            the computation of the response
+	 * @return the future of the response, completed exceptionally if the
+	 *         computation failed
+	 */
+	public CompletableFuture<T> coalesce(String key, Callable<T> computation) {
+		CompletableFuture<T> flight = new CompletableFuture<>();
+
+		if (key != null) {
+			CompletableFuture<T> joined = inFlight.putIfAbsent(key, flight);
+
+			if (joined != null) {
+				numJoined.incrementAndGet();
+				return joined;
+			}
+		}
+
+		numComputed.incrementAndGet();
+
+		try {
+			flight.complete(computation.call());
+		} catch (Exception ex) {
+			flight.completeExceptionally(ex);
+		} finally {
+			if (key != null) {
+				inFlight.remove(key, flight);
+			}
+		}
+
+		return flight;
+	}
+
+	/**
+	 * Gets the number of responses computed.
+	 *
+	 * @return the number of responses computed
+	 */
+	public long getNumComputed() {
+		return numComputed.get();
+	}
+
+	/**
+	 * Gets the number of requests which joined a response being computed.
+	 *
+	 * @return the number of requests joined
+	 */
+	public long getNumJoined() {
+		return numJoined.get();
+	}
+
+	/**
+	 * Gets a one-line report of the coalescer, in the format of the lock
+	 * metrics.
+	 *
+	 * @return the report
+	 */
+	public String getReport() {
+		return "# Request coalescing (computed=" + numComputed.get() + ", joined=" + numJoined.get() + ")\n";
+	}
+}
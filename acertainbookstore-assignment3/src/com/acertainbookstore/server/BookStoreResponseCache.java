@@ -0,0 +1,234 @@
+package com.acertainbookstore.server;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+
+/**
+ * {@link BookStoreResponseCache} keeps the serialized responses of the read
+ * requests whose answer depends on the catalog only, keyed by message tag,
+ * content type and request parameter, and stamped with the
+ * {@link CertainBookStore#getCatalogVersion() catalog version} they were
+ * computed at. An entry is served only while the catalog is at its version;
+ * the next response computed for its key replaces it, so the cache holds at
+ * most one entry per key.
+ *
+ * Each entry carries a strong ETag made of an epoch drawn at startup, the
+ * version and the content type, so that a client holding a response of
+ * another server run or of another codec never gets a 304 Not Modified for
+ * it.
+ *
+ * @see BookStoreHTTPMessageHandler
+ */
+public final class BookStoreResponseCache {
+
+	/** The Constant DEFAULT_MAX_ENTRIES. */
+	public static final int DEFAULT_MAX_ENTRIES = 256;
+
+	/**
+	 * {@link Entry} is a serialized response and the catalog version it was
+	 * computed at.
+	 */
+	public static final class Entry {
+
+		/** The catalog version. */
+		private final long version;
+
+		/** The serialized response. */
+		private final byte[] bytes;
+
+		/** The entity tag. */
+		private final String eTag;
+
+		/**
+		 * Instantiates a new {@link Entry}.
+		 *
+		 * @param version
+		 *            the catalog version
+		 * @param bytes
+		 *            the serialized response
+		 * @param eTag
+		 *            the entity tag
+		 */
+		private Entry(long version, byte[] bytes, String eTag) {
+			this.version = version;
+			this.bytes = bytes;
+			this.eTag = eTag;
+		}
+
+		/**
+		 * Gets the catalog version.
+		 *
+		 * @return the version
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Gets the serialized response, which must not be modified.
+		 *
+		 * @return the bytes
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * Gets the entity tag, quoted as in the ETag header.
+		 *
+		 * @return the entity tag
+		 */
+		public String getETag() {
+			return eTag;
+		}
+	}
+
+	/** The entries, by key. */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/** The max number of keys. */
+	private final int maxEntries;
+
+	/** The epoch telling apart the versions of two server runs. */
+	private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+	/** The number of requests served from the cache. */
+	private final AtomicLong numHits = new AtomicLong();
+
+	/** The number of requests which found no response at the current version. */
+	private final AtomicLong numMisses = new AtomicLong();
+
+	/**
+	 * Instantiates a new {@link BookStoreResponseCache}.
+	 *
+	 * @param maxEntries
+	 *            the max number of keys; the responses of the keys beyond it
+	 *            are not cached
+	 */
+	public BookStoreResponseCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Gets the epoch telling apart the catalog versions of two server runs.
+	 *
+	 * @return the epoch
+	 */
+	public String getEpoch() {
+		return epoch;
+	}
+
+	/**
+	 * Checks whether the responses of a message tag may be cached: those of
+	 * the read requests whose answer depends on the catalog only.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return true if the responses may be cached
+	 */
+	public static boolean isCacheable(BookStoreMessageTag messageTag) {
+		return messageTag == BookStoreMessageTag.LISTBOOKS || messageTag == BookStoreMessageTag.GETEDITORPICKS;
+	}
+
+	/**
+	 * Gets the response of a key computed at a catalog version.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param contentType
+	 *            the content type of the serializer
+	 * @param parameter
+	 *            the request parameter, null if none
+	 * @param version
+	 *            the current catalog version
+	 * @return the entry, null if none was computed at the version
+	 */
+	public Entry get(BookStoreMessageTag messageTag, String contentType, String parameter, long version) {
+		Entry entry = entries.get(key(messageTag, contentType, parameter));
+
+		if (entry == null || entry.version != version) {
+			numMisses.incrementAndGet();
+			return null;
+		}
+
+		numHits.incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Caches the response of a key computed at a catalog version.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param contentType
+	 *            the content type of the serializer
+	 * @param parameter
+	 *            the request parameter, null if none
+	 * @param version
+	 *            the catalog version the response was computed at
+	 * @param bytes
+	 *            the serialized response, which must not be modified
+	 *            afterwards
+	 * @return the entry, cached unless the cache is full of other keys
+	 */
+	public Entry put(BookStoreMessageTag messageTag, String contentType, String parameter, long version,
+			byte[] bytes) {
+		String key = key(messageTag, contentType, parameter);
+		Entry entry = new Entry(version, bytes, '"' + epoch + '-' + version + '-' + contentType + '"');
+
+		if (entries.size() < maxEntries || entries.containsKey(key)) {
+			// A late response must not replace a newer one.
+			entries.merge(key, entry, (cached, computed) -> computed.version >= cached.version ? computed : cached);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Gets the number of requests served from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getNumHits() {
+		return numHits.get();
+	}
+
+	/**
+	 * Gets the number of requests which found no response at the current
+	 * version.
+	 *
+	 * @return the number of misses
+	 */
+	public long getNumMisses() {
+		return numMisses.get();
+	}
+
+	/**
+	 * Gets a one-line report of the cache, in the format of the lock metrics.
+	 *
+	 * @return the report
+	 */
+	public String getReport() {
+		return "# Response cache (hits=" + numHits.get() + ", misses=" + numMisses.get() + ", entries="
+				+ entries.size() + ")\n";
+	}
+
+	/**
+	 * Builds the key of a response.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param contentType
+	 *            the content type of the serializer
+	 * @param parameter
+	 *            the request parameter, null if none
+	 * @return the key
+	 */
+	private static String key(BookStoreMessageTag messageTag, String contentType, String parameter) {
+		return parameter == null ? messageTag + " " + contentType : messageTag + " " + contentType + " " + parameter;
+	}
+}
@@ -0,0 +1,534 @@
+package com.acertainbookstore.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.acertainbookstore.business.CertainBookStore;
+import com.acertainbookstore.interfaces.BookStore;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+import com.acertainbookstore.interfaces.StockManager;
+import com.acertainbookstore.utils.BookStoreBinaryProtocol;
+import com.acertainbookstore.utils.BookStoreBuffer;
+import com.acertainbookstore.utils.BookStoreBufferPool;
+import com.acertainbookstore.utils.BookStoreConstants;
+import com.acertainbookstore.utils.BookStoreException;
+import com.acertainbookstore.utils.BookStoreMessageTag;
+import com.acertainbookstore.utils.BookStoreResponse;
+import com.acertainbookstore.utils.BookStoreSerializerPool;
+
+/**
+ * {@link BookStoreTCPServer} serves a {@link BookStore} and a
+ * {@link StockManager} over the binary TCP transport defined by
+ * {@link BookStoreBinaryProtocol}, an alternative to the HTTP transport of
+ * {@link BookStoreHTTPServer}.
+ *
+ * A single selector thread accepts the connections, reads and writes the
+ * frames with non-blocking I/O. The decoded requests are processed on a
+ * worker executor and their responses are queued on the connection as they
+ * complete, so the responses of pipelined requests may be sent out of order.
+ * Each request borrows a pooled buffer, which carries its payload to the
+ * worker, then its response frame back to the selector thread, and returns
+ * to the pool once the frame is written. A connection stops being read while
+ * too many of its requests await their response being written, so that a
+ * client pipelining faster than it reads its responses is held back by TCP
+ * flow control instead of growing the write queue of its connection.
+ *
+ * @see BookStoreBinaryProtocol
+ * @see BookStoreDispatcher
+ */
+public class BookStoreTCPServer {
+
+	/** The Constant DEFAULT_PORT. */
+	private static final int DEFAULT_PORT = 8082;
+
+	/** The Constant WORKER_THREADS. */
+	private static final int WORKER_THREADS = 16;
+
+	/** The Constant WORKER_QUEUE_SIZE bounds the requests waiting for a worker thread. */
+	private static final int WORKER_QUEUE_SIZE = 4096;
+
+	/** The Constant MAX_GATHERED_WRITES bounds the frames written by one call. */
+	private static final int MAX_GATHERED_WRITES = 64;
+
+	/**
+	 * The Constant MAX_PENDING_REQUESTS bounds the requests of a connection
+	 * processed or waiting for their response to be written.
+	 */
+	private static final int MAX_PENDING_REQUESTS = 1024;
+
+	/** The Constant STOP_TIMEOUT_SECONDS bounds the wait for the workers to finish. */
+	private static final long STOP_TIMEOUT_SECONDS = 10;
+
+	/** The dispatcher invoking the book store. */
+	private final BookStoreDispatcher dispatcher;
+
+	/** The executor processing the requests. */
+	private final Executor workerExecutor;
+
+	/** The serializer. */
+	private final BookStoreSerializer serializer = BookStoreSerializerPool.newDefaultPool();
+
+	/** The buffers of the requests in flight. */
+	private final BookStoreBufferPool buffers = new BookStoreBufferPool();
+
+	/** The frames gathered by a write, reused by the selector thread. */
+	private final ByteBuffer[] gatheredFrames = new ByteBuffer[MAX_GATHERED_WRITES];
+
+	/** The connections with responses queued by the workers. */
+	private final ConcurrentLinkedQueue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+	/** The selector. */
+	private Selector selector;
+
+	/** The server channel. */
+	private ServerSocketChannel serverChannel;
+
+	/** The selector thread. */
+	private Thread selectorThread;
+
+	/** Whether the server is running. */
+	private volatile boolean running = false;
+
+	/**
+	 * {@link Connection} holds the state of a client connection.
+	 */
+	private static final class Connection {
+
+		/** The channel. */
+		private final SocketChannel channel;
+
+		/** The selection key. */
+		private SelectionKey key;
+
+		/** The bytes read and not yet decoded. */
+		private ByteBuffer readBuffer = ByteBuffer.allocate(BookStoreBinaryProtocol.READ_BUFFER_SIZE);
+
+		/** The buffers holding the response frames waiting to be written. */
+		private final ConcurrentLinkedQueue<BookStoreBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * The number of requests submitted and whose response is not written
+		 * yet, only accessed by the selector thread.
+		 */
+		private int pendingRequests = 0;
+
+		/**
+		 * Instantiates a new {@link Connection}.
+		 *
+		 * @param channel
+		 *            the channel
+		 */
+		private Connection(SocketChannel channel) {
+			this.channel = channel;
+		}
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreTCPServer}.
+	 *
+	 * @param bookStore
+	 *            the book store
+	 * @param stockManager
+	 *            the stock manager
+	 * @param workerExecutor
+	 *            the executor processing the requests; a bounded executor
+	 *            should reject work when saturated, the rejected requests are
+	 *            answered with {@link BookStoreConstants#SERVER_OVERLOADED};
+	 *            it is shut down when the server stops
+	 */
+	public BookStoreTCPServer(BookStore bookStore, StockManager stockManager, Executor workerExecutor) {
+		this.dispatcher = new BookStoreDispatcher(bookStore, stockManager);
+		this.workerExecutor = workerExecutor;
+	}
+
+	/**
+	 * Binds the server and starts its selector thread.
+	 *
+	 * @param port
+	 *            the port, 0 for an ephemeral port
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public synchronized void start(int port) throws IOException {
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port), BookStoreHTTPServerUtility.ACCEPT_QUEUE_SIZE);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		selectorThread = new Thread(this::runSelector, "bookstore-tcp-selector");
+		selectorThread.start();
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 *
+	 * @return the port
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stops the server, closes its connections and shuts down its worker
+	 * executor.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	public synchronized void stop() throws InterruptedException {
+		running = false;
+		selector.wakeup();
+		selectorThread.join();
+
+		if (workerExecutor instanceof ExecutorService) {
+			ExecutorService executorService = (ExecutorService) workerExecutor;
+			executorService.shutdown();
+
+			if (!executorService.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				executorService.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Runs the selector loop until the server is stopped.
+	 */
+	private void runSelector() {
+		try {
+			while (running) {
+				selector.select();
+
+				Connection connection;
+				while ((connection = pendingWrites.poll()) != null) {
+					write(connection);
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid()) {
+						continue;
+					}
+
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+
+					connection = (Connection) key.attachment();
+
+					if (key.isReadable()) {
+						read(connection);
+					}
+
+					if (key.isValid() && key.isWritable()) {
+						write(connection);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			System.err.println(ex);
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				close(key.channel());
+			}
+
+			close(selector);
+		}
+	}
+
+	/**
+	 * Accepts the pending connections.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+
+		while ((channel = serverChannel.accept()) != null) {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			Connection connection = new Connection(channel);
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		}
+	}
+
+	/**
+	 * Reads the available bytes of a connection and submits the complete
+	 * request frames to the workers.
+	 *
+	 * @param connection
+	 *            the connection
+	 */
+	private void read(Connection connection) {
+		try {
+			if (connection.channel.read(connection.readBuffer) < 0) {
+				close(connection.channel);
+				return;
+			}
+
+			decode(connection);
+			updateInterestOps(connection, (connection.key.interestOps() & SelectionKey.OP_WRITE) != 0);
+		} catch (IOException | BookStoreException ex) {
+			// A broken or malformed stream cannot be resynchronized.
+			System.err.println(ex);
+			close(connection.channel);
+		}
+	}
+
+	/**
+	 * Submits the complete request frames read from a connection to the
+	 * workers, until too many requests of the connection are pending.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @throws BookStoreException
+	 *             if a frame is malformed
+	 */
+	private void decode(Connection connection) throws BookStoreException {
+		ByteBuffer buffer = connection.readBuffer.flip();
+		int frameLength;
+
+		try {
+			while (connection.pendingRequests < MAX_PENDING_REQUESTS && (frameLength = BookStoreBinaryProtocol
+					.nextFrameLength(buffer, BookStoreBinaryProtocol.REQUEST_HEADER_SIZE)) >= 0) {
+				buffer.getInt();
+				long requestId = buffer.getLong();
+				BookStoreMessageTag messageTag = BookStoreBinaryProtocol.fromOpcode(buffer.get());
+				int payloadLength = frameLength - BookStoreBinaryProtocol.REQUEST_HEADER_SIZE;
+				BookStoreBuffer payload = buffers.acquire();
+				payload.write(buffer.array(), buffer.arrayOffset() + buffer.position(), payloadLength);
+				buffer.position(buffer.position() + payloadLength);
+				connection.pendingRequests++;
+				submit(connection, requestId, messageTag, payload);
+			}
+		} finally {
+			connection.readBuffer = BookStoreBinaryProtocol.compact(buffer);
+		}
+	}
+
+	/**
+	 * Updates the operations the selector waits for on a connection. The
+	 * connection is not read while too many of its requests are pending.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param writing
+	 *            whether a response is partially written
+	 */
+	private static void updateInterestOps(Connection connection, boolean writing) {
+		int interestOps = writing ? SelectionKey.OP_WRITE : 0;
+
+		if (connection.pendingRequests < MAX_PENDING_REQUESTS) {
+			interestOps |= SelectionKey.OP_READ;
+		}
+
+		connection.key.interestOps(interestOps);
+	}
+
+	/**
+	 * Submits a request to the workers, or answers it with
+	 * {@link BookStoreConstants#SERVER_OVERLOADED} if they reject it.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param requestId
+	 *            the request id
+	 * @param messageTag
+	 *            the message tag, null if the opcode is unknown
+	 * @param payload
+	 *            the buffer holding the serialized input value
+	 */
+	private void submit(Connection connection, long requestId, BookStoreMessageTag messageTag,
+			BookStoreBuffer payload) {
+		try {
+			workerExecutor.execute(() -> process(connection, requestId, messageTag, payload));
+		} catch (RejectedExecutionException ex) {
+			respond(connection, requestId,
+					new BookStoreResponse(new BookStoreException(BookStoreConstants.SERVER_OVERLOADED), null),
+					payload);
+		}
+	}
+
+	/**
+	 * Processes a request on a worker thread and queues its response.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param requestId
+	 *            the request id
+	 * @param messageTag
+	 *            the message tag, null if the opcode is unknown
+	 * @param payload
+	 *            the buffer holding the serialized input value
+	 */
+	private void process(Connection connection, long requestId, BookStoreMessageTag messageTag,
+			BookStoreBuffer payload) {
+		BookStoreResponse bookStoreResponse;
+
+		if (messageTag == null) {
+			bookStoreResponse = new BookStoreResponse(new BookStoreException("Unsupported message tag"), null);
+		} else {
+			try {
+				Object inputValue = payload.size() == 0 ? null
+						: serializer.deserialize(payload.getArray(), 0, payload.size());
+				bookStoreResponse = dispatcher.dispatch(messageTag, inputValue);
+			} catch (IOException ex) {
+				bookStoreResponse = new BookStoreResponse(new BookStoreException("Deserialization error", ex),
+						null);
+			} catch (RuntimeException ex) {
+				// The request is answered whatever failed, or its client would
+				// wait for it until it times out.
+				System.err.println(ex);
+				bookStoreResponse = new BookStoreResponse(
+						new BookStoreException("Error processing " + messageTag, ex), null);
+			}
+		}
+
+		respond(connection, requestId, bookStoreResponse, payload);
+	}
+
+	/**
+	 * Queues a response on its connection and wakes up the selector thread to
+	 * write it.
+	 *
+	 * @param connection
+	 *            the connection
+	 * @param requestId
+	 *            the request id
+	 * @param bookStoreResponse
+	 *            the book store response
+	 * @param buffer
+	 *            the buffer of the request, which the response frame
+	 *            replaces
+	 */
+	private void respond(Connection connection, long requestId, BookStoreResponse bookStoreResponse,
+			BookStoreBuffer buffer) {
+		buffer.reset();
+
+		try {
+			BookStoreBinaryProtocol.encodeResponse(buffer, requestId, bookStoreResponse, serializer);
+			connection.writeQueue.add(buffer);
+		} catch (IOException | RuntimeException ex) {
+			buffers.release(buffer);
+			System.err.println(ex);
+			close(connection.channel);
+			return;
+		}
+
+		pendingWrites.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * Writes the queued responses of a connection, gathering several frames
+	 * per call, and waits for the channel to be writable again if the socket
+	 * buffer is full.
+	 *
+	 * @param connection
+	 *            the connection
+	 */
+	private void write(Connection connection) {
+		if (!connection.key.isValid()) {
+			return;
+		}
+
+		try {
+			ByteBuffer[] frames = gatheredFrames;
+			boolean partial = false;
+
+			while (!partial && !connection.writeQueue.isEmpty()) {
+				int numFrames = 0;
+
+				for (BookStoreBuffer buffer : connection.writeQueue) {
+					frames[numFrames++] = buffer.getByteBuffer();
+
+					if (numFrames == frames.length) {
+						break;
+					}
+				}
+
+				connection.channel.write(frames, 0, numFrames);
+				partial = frames[numFrames - 1].hasRemaining();
+
+				for (int i = 0; i < numFrames && !frames[i].hasRemaining(); i++) {
+					buffers.release(connection.writeQueue.poll());
+					connection.pendingRequests--;
+				}
+
+				Arrays.fill(frames, 0, numFrames, null);
+			}
+
+			// Resume the requests held back while too many were pending.
+			if (connection.pendingRequests < MAX_PENDING_REQUESTS && connection.readBuffer.position() > 0) {
+				decode(connection);
+			}
+
+			updateInterestOps(connection, partial);
+		} catch (IOException | BookStoreException ex) {
+			close(connection.channel);
+		}
+	}
+
+	/**
+	 * Closes a channel or selector, ignoring the failures.
+	 *
+	 * @param closeable
+	 *            the closeable
+	 */
+	private static void close(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception ex) {
+			System.err.println(ex);
+		}
+	}
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the arguments
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		CertainBookStore bookStore = new CertainBookStore();
+		bookStore.getLockMetrics().register();
+		int listenOnPort = Integer.getInteger(BookStoreConstants.PROPERTY_KEY_SERVER_PORT, DEFAULT_PORT);
+		ExecutorService workerExecutor;
+
+		// Each request runs on its own virtual thread in the virtual thread
+		// mode, instead of a bounded pool of platform threads.
+		if (Boolean.getBoolean(BookStoreConstants.PROPERTY_KEY_VIRTUAL_THREADS)) {
+			workerExecutor = Executors.newVirtualThreadPerTaskExecutor();
+		} else {
+			workerExecutor = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(WORKER_QUEUE_SIZE));
+		}
+
+		new BookStoreTCPServer(bookStore, bookStore, workerExecutor).start(listenOnPort);
+	}
+}
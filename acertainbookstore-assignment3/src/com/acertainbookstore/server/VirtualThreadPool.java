@@ -0,0 +1,99 @@
+package com.acertainbookstore.server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * {@link VirtualThreadPool} is a Jetty {@link ThreadPool} which runs every task
+ * (the selectors, the acceptors and each request) on a new virtual thread.
+ * Requests blocked on the book store lock then only park their virtual
+ * thread, and the number of concurrent requests is not capped by the size of
+ * a platform thread pool.
+ *
+ * @see BookStoreHTTPServer
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+	/** The factory of the virtual threads. */
+	private final ThreadFactory threadFactory = Thread.ofVirtual().name("bookstore-virtual-", 0).factory();
+
+	/** The number of running tasks. */
+	private final AtomicInteger numThreads = new AtomicInteger();
+
+	/** The latch released when the pool stops. */
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.util.concurrent.Executor#execute(java.lang.Runnable)
+	 */
+	@Override
+	public void execute(Runnable task) {
+		threadFactory.newThread(() -> {
+			numThreads.incrementAndGet();
+
+			try {
+				task.run();
+			} finally {
+				numThreads.decrementAndGet();
+			}
+		}).start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jetty.util.thread.ThreadPool#join()
+	 */
+	@Override
+	public void join() throws InterruptedException {
+		stopped.await();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jetty.util.thread.ThreadPool#getThreads()
+	 */
+	@Override
+	public int getThreads() {
+		return numThreads.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jetty.util.thread.ThreadPool#getIdleThreads()
+	 */
+	@Override
+	public int getIdleThreads() {
+		// Virtual threads are never pooled, so none of them is idle.
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jetty.util.thread.ThreadPool#isLowOnThreads()
+	 */
+	@Override
+	public boolean isLowOnThreads() {
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.eclipse.jetty.util.component.AbstractLifeCycle#doStop()
+	 */
+	@Override
+	protected void doStop() throws Exception {
+		stopped.countDown();
+		super.doStop();
+	}
+}
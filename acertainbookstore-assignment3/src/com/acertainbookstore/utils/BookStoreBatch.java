@@ -0,0 +1,50 @@
+package com.acertainbookstore.utils;
+
+import java.util.List;
+
+/**
+ * {@link BookStoreBatch} is the data structure that encapsulates the input
+ * value of an {@link BookStoreMessageTag#EXECUTEBATCH} message: the ordered
+ * operations and whether they run as one transaction.
+ *
+ * @see com.acertainbookstore.interfaces.BatchExecutor
+ */
+public final class BookStoreBatch {
+
+	/** The operations. */
+	private final List<BookStoreOperation> operations;
+
+	/** Whether the batch is one transaction. */
+	private final boolean atomic;
+
+	/**
+	 * Instantiates a new {@link BookStoreBatch}.
+	 *
+	 * @param operations
+	 *            the operations
+	 * @param atomic
+	 *            whether the batch is one transaction
+	 */
+	public BookStoreBatch(List<BookStoreOperation> operations, boolean atomic) {
+		this.operations = operations;
+		this.atomic = atomic;
+	}
+
+	/**
+	 * Gets the operations.
+	 *
+	 * @return the operations
+	 */
+	public List<BookStoreOperation> getOperations() {
+		return operations;
+	}
+
+	/**
+	 * Checks if the batch is one transaction.
+	 *
+	 * @return true, if the batch is atomic
+	 */
+	public boolean isAtomic() {
+		return atomic;
+	}
+}
@@ -0,0 +1,178 @@
+package com.acertainbookstore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreBinaryProtocol} defines the framing of the binary TCP
+ * transport. Every message is a frame prefixed by its length, the length
+ * counting the bytes which follow the length field:
+ *
+ * <pre>
+ * request:  [int length][long requestId][byte opcode][payload]
+ * response: [int length][long requestId][payload]
+ * </pre>
+ *
+ * The payload is the serialized input value of the request, empty if the
+ * method takes none, or the serialized {@link BookStoreResponse}. The request
+ * id is echoed in the response so that a connection can carry many pipelined
+ * requests whose responses arrive in any order. The opcode of a message tag
+ * is its ordinal, so new tags must be appended to {@link BookStoreMessageTag}.
+ */
+public final class BookStoreBinaryProtocol {
+
+	/** The Constant LENGTH_FIELD_SIZE. */
+	public static final int LENGTH_FIELD_SIZE = Integer.BYTES;
+
+	/** The Constant REQUEST_HEADER_SIZE counts the request id and the opcode. */
+	public static final int REQUEST_HEADER_SIZE = Long.BYTES + Byte.BYTES;
+
+	/** The Constant RESPONSE_HEADER_SIZE counts the request id. */
+	public static final int RESPONSE_HEADER_SIZE = Long.BYTES;
+
+	/** The Constant MAX_FRAME_LENGTH bounds the frames a peer may announce. */
+	public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	/** The Constant READ_BUFFER_SIZE. */
+	public static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/** The message tags indexed by opcode. */
+	private static final BookStoreMessageTag[] MESSAGE_TAGS = BookStoreMessageTag.values();
+
+	/**
+	 * Prevents the instantiation of a new {@link BookStoreBinaryProtocol}.
+	 */
+	private BookStoreBinaryProtocol() {
+		// Prevent instantiation.
+	}
+
+	/**
+	 * Gets the opcode of a message tag.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return the opcode
+	 */
+	public static byte toOpcode(BookStoreMessageTag messageTag) {
+		return (byte) messageTag.ordinal();
+	}
+
+	/**
+	 * Gets the message tag of an opcode.
+	 *
+	 * @param opcode
+	 *            the opcode
+	 * @return the message tag, or null if the opcode is unknown
+	 */
+	public static BookStoreMessageTag fromOpcode(byte opcode) {
+		return opcode >= 0 && opcode < MESSAGE_TAGS.length ? MESSAGE_TAGS[opcode] : null;
+	}
+
+	/**
+	 * Encodes a request frame into a buffer: the input value is serialized
+	 * after the room left for the header, which is filled in last, so that
+	 * the payload is not copied.
+	 *
+	 * @param buffer
+	 *            the empty buffer
+	 * @param requestId
+	 *            the request id
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the input value, null if the method takes none
+	 * @param serializer
+	 *            the serializer
+	 * @return the view of the frame in the buffer, ready to be written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ByteBuffer encodeRequest(BookStoreBuffer buffer, long requestId, BookStoreMessageTag messageTag,
+			Object inputValue, BookStoreSerializer serializer) throws IOException {
+		buffer.setSize(LENGTH_FIELD_SIZE + REQUEST_HEADER_SIZE);
+
+		if (inputValue != null) {
+			serializer.serialize(inputValue, buffer);
+		}
+
+		ByteBuffer frame = buffer.toByteBuffer();
+		frame.putInt(0, buffer.size() - LENGTH_FIELD_SIZE).putLong(LENGTH_FIELD_SIZE, requestId)
+				.put(LENGTH_FIELD_SIZE + Long.BYTES, toOpcode(messageTag));
+		return frame;
+	}
+
+	/**
+	 * Encodes a response frame into a buffer, as
+	 * {@link #encodeRequest(BookStoreBuffer, long, BookStoreMessageTag, Object, BookStoreSerializer)}
+	 * does.
+	 *
+	 * @param buffer
+	 *            the empty buffer
+	 * @param requestId
+	 *            the request id
+	 * @param bookStoreResponse
+	 *            the book store response
+	 * @param serializer
+	 *            the serializer
+	 * @return the view of the frame in the buffer, ready to be written
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static ByteBuffer encodeResponse(BookStoreBuffer buffer, long requestId,
+			BookStoreResponse bookStoreResponse, BookStoreSerializer serializer) throws IOException {
+		buffer.setSize(LENGTH_FIELD_SIZE + RESPONSE_HEADER_SIZE);
+		serializer.serialize(bookStoreResponse, buffer);
+
+		ByteBuffer frame = buffer.toByteBuffer();
+		frame.putInt(0, buffer.size() - LENGTH_FIELD_SIZE).putLong(LENGTH_FIELD_SIZE, requestId);
+		return frame;
+	}
+
+	/**
+	 * Gets the length of the next frame of a buffer, or -1 if the buffer does
+	 * not hold the whole frame yet.
+	 *
+	 * @param buffer
+	 *            the buffer, in read mode
+	 * @param headerSize
+	 *            the header size of the frames
+	 * @return the length of the next frame, or -1
+	 * @throws BookStoreException
+	 *             if the announced length is invalid
+	 */
+	public static int nextFrameLength(ByteBuffer buffer, int headerSize) throws BookStoreException {
+		if (buffer.remaining() < LENGTH_FIELD_SIZE) {
+			return -1;
+		}
+
+		int frameLength = buffer.getInt(buffer.position());
+
+		if (frameLength < headerSize || frameLength > MAX_FRAME_LENGTH) {
+			throw new BookStoreException("Invalid frame length " + frameLength);
+		}
+
+		return buffer.remaining() >= LENGTH_FIELD_SIZE + frameLength ? frameLength : -1;
+	}
+
+	/**
+	 * Compacts a buffer after its complete frames are consumed, growing it if
+	 * the partial frame left is larger than the buffer.
+	 *
+	 * @param buffer
+	 *            the buffer, in read mode
+	 * @return the buffer holding the partial frame, in write mode
+	 */
+	public static ByteBuffer compact(ByteBuffer buffer) {
+		if (buffer.remaining() >= LENGTH_FIELD_SIZE) {
+			int frameSize = LENGTH_FIELD_SIZE + buffer.getInt(buffer.position());
+
+			if (frameSize > buffer.capacity()) {
+				return ByteBuffer.allocate(frameSize).put(buffer);
+			}
+		}
+
+		return buffer.compact();
+	}
+}
@@ -0,0 +1,167 @@
+package com.acertainbookstore.utils;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * {@link BookStoreBuffer} is a growable array of bytes which is reused from a
+ * request to the next, unlike a {@link java.io.ByteArrayOutputStream}: its
+ * array is exposed, so that a serializer writes into it and a frame is sent
+ * from it without a copy. It is not thread-safe.
+ *
+ * @see BookStoreBufferPool
+ * @see com.acertainbookstore.interfaces.BookStoreSerializer#serialize(Object,
+ *      BookStoreBuffer)
+ */
+public final class BookStoreBuffer extends OutputStream {
+
+	/** The bytes. */
+	private byte[] array;
+
+	/** The number of bytes written. */
+	private int size = 0;
+
+	/** The view of the bytes, kept until the array changes. */
+	private ByteBuffer view;
+
+	/**
+	 * Instantiates a new {@link BookStoreBuffer}.
+	 *
+	 * @param capacity
+	 *            the initial capacity
+	 */
+	public BookStoreBuffer(int capacity) {
+		array = new byte[capacity];
+	}
+
+	/**
+	 * Gets the array holding the bytes, which is replaced when the buffer
+	 * grows.
+	 *
+	 * @return the array
+	 */
+	public byte[] getArray() {
+		return array;
+	}
+
+	/**
+	 * Gets the number of bytes written.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the capacity of the array.
+	 *
+	 * @return the capacity
+	 */
+	public int capacity() {
+		return array.length;
+	}
+
+	/**
+	 * Sets the number of bytes written, leaving room for a header filled in
+	 * later.
+	 *
+	 * @param size
+	 *            the size
+	 */
+	public void setSize(int size) {
+		ensureCapacity(size - this.size);
+		this.size = size;
+	}
+
+	/**
+	 * Adopts an array which holds the bytes written so far followed by more
+	 * bytes, as a serializer growing the array itself hands it back.
+	 *
+	 * @param array
+	 *            the array
+	 * @param size
+	 *            the number of bytes written
+	 */
+	public void setArray(byte[] array, int size) {
+		this.array = array;
+		this.size = size;
+	}
+
+	/**
+	 * Empties the buffer, keeping its array.
+	 */
+	public void reset() {
+		size = 0;
+	}
+
+	/**
+	 * Makes room for a number of bytes more, doubling the array if needed.
+	 *
+	 * @param length
+	 *            the number of bytes
+	 */
+	public void ensureCapacity(int length) {
+		if (size + length > array.length) {
+			array = Arrays.copyOf(array, Math.max(array.length * 2, size + length));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) {
+		ensureCapacity(1);
+		array[size++] = (byte) b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, array, size, len);
+		size += len;
+	}
+
+	/**
+	 * Gets a copy of the bytes written.
+	 *
+	 * @return the bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(array, size);
+	}
+
+	/**
+	 * Gets a view of the bytes written, positioned at the first one. The view
+	 * object is reused by the calls as long as the array is.
+	 *
+	 * @return the byte buffer
+	 */
+	public ByteBuffer toByteBuffer() {
+		if (view == null || view.array() != array) {
+			view = ByteBuffer.wrap(array);
+		}
+
+		return view.limit(size).rewind();
+	}
+
+	/**
+	 * Gets the view returned by the last call to {@link #toByteBuffer()}, at
+	 * the position it was read up to, as a writer resuming a partial write
+	 * needs it.
+	 *
+	 * @return the byte buffer, or null if no view was taken
+	 */
+	public ByteBuffer getByteBuffer() {
+		return view;
+	}
+}
@@ -0,0 +1,109 @@
+package com.acertainbookstore.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link BookStoreBufferPool} lends {@link BookStoreBuffer}s to the requests,
+ * so that the frames and the payloads of the steady state are written into
+ * arrays allocated once. Like the {@link BookStoreSerializerPool}, it keeps
+ * as many buffers as there are requests in flight rather than one per
+ * thread. A buffer grown past the max retained capacity by a large response
+ * is dropped on release, so that one catalog listing does not pin its
+ * array for the life of the pool.
+ *
+ * @see BookStoreBuffer
+ */
+public final class BookStoreBufferPool {
+
+	/** The Constant DEFAULT_MAX_IDLE. */
+	public static final int DEFAULT_MAX_IDLE = 64;
+
+	/** The Constant DEFAULT_MAX_RETAINED_CAPACITY. */
+	public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+	/** The initial capacity of the buffers. */
+	private final int initialCapacity;
+
+	/** The max capacity of the buffers returned to the pool. */
+	private final int maxRetainedCapacity;
+
+	/** The max number of idle buffers kept in the pool. */
+	private final int maxIdle;
+
+	/** The idle buffers. */
+	private final ConcurrentLinkedQueue<BookStoreBuffer> idle = new ConcurrentLinkedQueue<>();
+
+	/** The number of idle buffers, tracked apart since the queue size is linear. */
+	private final AtomicInteger numIdle = new AtomicInteger();
+
+	/**
+	 * Instantiates a new {@link BookStoreBufferPool}.
+	 *
+	 * @param initialCapacity
+	 *            the initial capacity of the buffers
+	 * @param maxRetainedCapacity
+	 *            the max capacity of the buffers returned to the pool
+	 * @param maxIdle
+	 *            the max number of idle buffers kept in the pool
+	 */
+	public BookStoreBufferPool(int initialCapacity, int maxRetainedCapacity, int maxIdle) {
+		this.initialCapacity = initialCapacity;
+		this.maxRetainedCapacity = maxRetainedCapacity;
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreBufferPool} with the default limits.
+	 */
+	public BookStoreBufferPool() {
+		this(BookStoreConstants.STREAM_BUFFER_SIZE, DEFAULT_MAX_RETAINED_CAPACITY, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Takes an idle buffer from the pool, or creates one if the pool is empty.
+	 * The buffer is empty.
+	 *
+	 * @return the book store buffer
+	 */
+	public BookStoreBuffer acquire() {
+		BookStoreBuffer buffer = idle.poll();
+
+		if (buffer == null) {
+			return new BookStoreBuffer(initialCapacity);
+		}
+
+		numIdle.decrementAndGet();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool, or drops it if the pool is full or the
+	 * buffer too large. The buffer must not be used afterwards.
+	 *
+	 * @param buffer
+	 *            the book store buffer
+	 */
+	public void release(BookStoreBuffer buffer) {
+		if (buffer.capacity() > maxRetainedCapacity) {
+			return;
+		}
+
+		buffer.reset();
+
+		if (numIdle.incrementAndGet() <= maxIdle) {
+			idle.offer(buffer);
+		} else {
+			numIdle.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets the number of idle buffers in the pool.
+	 *
+	 * @return the number of idle buffers
+	 */
+	public int getNumIdle() {
+		return numIdle.get();
+	}
+}
@@ -0,0 +1,50 @@
+package com.acertainbookstore.utils;
+
+/**
+ * {@link BookStoreCachedResponse} is a response kept by a client with the
+ * entity tag the server gave it, so that the client can revalidate it with
+ * a conditional request rather than download it again.
+ *
+ * @see BookStoreUtility#performConditionalHttpExchange(org.eclipse.jetty.client.HttpClient,
+ *      BookStoreRequest, com.acertainbookstore.interfaces.BookStoreSerializer,
+ *      BookStoreCachedResponse)
+ */
+public final class BookStoreCachedResponse {
+
+	/** The entity tag, null if the server gave none. */
+	private final String eTag;
+
+	/** The book store response. */
+	private final BookStoreResponse response;
+
+	/**
+	 * Instantiates a new {@link BookStoreCachedResponse}.
+	 *
+	 * @param eTag
+	 *            the entity tag, null if the server gave none
+	 * @param response
+	 *            the book store response
+	 */
+	public BookStoreCachedResponse(String eTag, BookStoreResponse response) {
+		this.eTag = eTag;
+		this.response = response;
+	}
+
+	/**
+	 * Gets the entity tag.
+	 *
+	 * @return the entity tag, null if the server gave none
+	 */
+	public String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * Gets the book store response.
+	 *
+	 * @return the response
+	 */
+	public BookStoreResponse getResponse() {
+		return response;
+	}
+}
@@ -0,0 +1,1125 @@
+package com.acertainbookstore.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.BookRating;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.business.ImmutableStockBook;
+import com.acertainbookstore.business.StockBook;
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreCompactSerializer} serializes the book store domain types
+ * with hand-written encoders: no class names on the wire and no reflection.
+ * The integers are varints (zig-zag encoded, so small negative values stay
+ * small), the strings are length-prefixed UTF-8 and the elements of a
+ * collection of a single type share one type code.
+ *
+ * A payload starts with the version of the format. A decoder reads the
+ * payloads of its version and of the versions before it, so a new field is
+ * added by bumping {@link #FORMAT_VERSION} and reading it only from the
+ * payloads of the new version.
+ *
+ * The serializer is thread-safe. It may be given a
+ * {@link BookStoreFragmentCache}, so that the books it already encoded are
+ * copied from their cached fragments: the fields of a book in a collection
+ * follow the single type code of the collection with no framing of their
+ * own, so a listing is the concatenation of the fragments of its books under
+ * the header of the collection. The streams are written and
+ * read through a buffer of {@link BookStoreConstants#STREAM_BUFFER_SIZE}
+ * bytes, grown only for a string longer than it. The exceptions cross the
+ * wire as their message only, without their cause or stack trace.
+ *
+ * @see BookStoreSerializer
+ */
+public final class BookStoreCompactSerializer implements BookStoreSerializer {
+
+	/** The Constant FORMAT_VERSION written at the start of each payload. */
+	public static final int FORMAT_VERSION = 1;
+
+	/** The type code of null. */
+	private static final byte TYPE_NULL = 0;
+
+	/** The type code of an integer. */
+	private static final byte TYPE_INTEGER = 1;
+
+	/** The type code of a set. */
+	private static final byte TYPE_SET = 2;
+
+	/** The type code of a list. */
+	private static final byte TYPE_LIST = 3;
+
+	/** The type code of a {@link BookCopy}. */
+	private static final byte TYPE_BOOK_COPY = 4;
+
+	/** The type code of a {@link BookRating}. */
+	private static final byte TYPE_BOOK_RATING = 5;
+
+	/** The type code of a {@link BookEditorPick}. */
+	private static final byte TYPE_BOOK_EDITOR_PICK = 6;
+
+	/** The type code of a {@link Book}, read as an {@link ImmutableBook}. */
+	private static final byte TYPE_BOOK = 7;
+
+	/** The type code of a {@link StockBook}, read as an {@link ImmutableStockBook}. */
+	private static final byte TYPE_STOCK_BOOK = 8;
+
+	/** The type code of a {@link BookStoreResponse}. */
+	private static final byte TYPE_RESPONSE = 9;
+
+	/** The type code of a {@link BookStoreException}. */
+	private static final byte TYPE_EXCEPTION = 10;
+
+	/** The type code of a {@link BookStoreOperation}. */
+	private static final byte TYPE_OPERATION = 11;
+
+	/** The type code of a {@link BookStoreBatch}. */
+	private static final byte TYPE_BATCH = 12;
+
+	/** The type code of a string, such as the empty body of removeAllBooks. */
+	private static final byte TYPE_STRING = 13;
+
+	/** The element type code of a collection whose elements carry their own type code. */
+	private static final byte TYPE_MIXED = -1;
+
+	/** The message tags, indexed by their ordinal. */
+	private static final BookStoreMessageTag[] MESSAGE_TAGS = BookStoreMessageTag.values();
+
+	/** The cache of the encoded books, or null. */
+	private final BookStoreFragmentCache fragments;
+
+	/**
+	 * Instantiates a new {@link BookStoreCompactSerializer} which encodes every
+	 * book.
+	 */
+	public BookStoreCompactSerializer() {
+		this(null);
+	}
+
+	/**
+	 * Instantiates a new {@link BookStoreCompactSerializer} which copies the
+	 * books it already encoded from a fragment cache.
+	 *
+	 * @param fragments
+	 *            the fragment cache, or null to encode every book
+	 */
+	public BookStoreCompactSerializer(BookStoreFragmentCache fragments) {
+		this.fragments = fragments;
+	}
+
+	/**
+	 * Gets the fragment cache.
+	 *
+	 * @return the fragment cache, or null if every book is encoded
+	 */
+	public BookStoreFragmentCache getFragmentCache() {
+		return fragments;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object)
+	 */
+	@Override
+	public byte[] serialize(Object object) throws IOException {
+		Writer out = new Writer(null, fragments);
+		out.writeVarInt(FORMAT_VERSION);
+		out.writeValue(object);
+		return out.toByteArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		Writer writer = new Writer(out, fragments);
+		writer.writeVarInt(FORMAT_VERSION);
+		writer.writeValue(object);
+		writer.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, com.acertainbookstore.utils.BookStoreBuffer)
+	 */
+	@Override
+	public void serialize(Object object, BookStoreBuffer buffer) throws IOException {
+		Writer writer = new Writer(buffer.getArray(), buffer.size(), fragments);
+		writer.writeVarInt(FORMAT_VERSION);
+		writer.writeValue(object);
+		buffer.setArray(writer.buffer, writer.position);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[])
+	 */
+	@Override
+	public Object deserialize(byte[] bytes) throws IOException {
+		return deserialize(bytes, 0, bytes.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[],
+	 * int, int)
+	 */
+	@Override
+	public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+		return read(new Reader(bytes, offset, offset + length, null));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream in) throws IOException {
+		return read(new Reader(new byte[BookStoreConstants.STREAM_BUFFER_SIZE], 0, 0, in));
+	}
+
+	/**
+	 * Reads the version and the value of a payload, which must hold nothing
+	 * else.
+	 *
+	 * @param in
+	 *            the reader of the payload
+	 * @return the value
+	 * @throws IOException
+	 *             if the payload is malformed
+	 */
+	private static Object read(Reader in) throws IOException {
+		int version = in.readVarInt();
+
+		if (version < 1 || version > FORMAT_VERSION) {
+			throw new IOException("Unsupported compact format version " + version);
+		}
+
+		Object object = in.readValue();
+
+		if (!in.isAtEnd()) {
+			throw new IOException("Trailing bytes after the compact payload");
+		}
+
+		return object;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return BookStoreConstants.CONTENT_TYPE_COMPACT;
+	}
+
+	/**
+	 * Gets the type code of a value.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the type code
+	 * @throws IOException
+	 *             if the type has no encoder
+	 */
+	private static byte typeOf(Object value) throws IOException {
+		if (value == null) {
+			return TYPE_NULL;
+		} else if (value instanceof Integer) {
+			return TYPE_INTEGER;
+		} else if (value instanceof BookCopy) {
+			return TYPE_BOOK_COPY;
+		} else if (value instanceof StockBook) {
+			return TYPE_STOCK_BOOK;
+		} else if (value instanceof Book) {
+			return TYPE_BOOK;
+		} else if (value instanceof Set) {
+			return TYPE_SET;
+		} else if (value instanceof List) {
+			return TYPE_LIST;
+		} else if (value instanceof BookStoreResponse) {
+			return TYPE_RESPONSE;
+		} else if (value instanceof BookStoreException) {
+			return TYPE_EXCEPTION;
+		} else if (value instanceof BookEditorPick) {
+			return TYPE_BOOK_EDITOR_PICK;
+		} else if (value instanceof BookRating) {
+			return TYPE_BOOK_RATING;
+		} else if (value instanceof BookStoreOperation) {
+			return TYPE_OPERATION;
+		} else if (value instanceof BookStoreBatch) {
+			return TYPE_BATCH;
+		} else if (value instanceof String) {
+			return TYPE_STRING;
+		}
+
+		throw new IOException("No compact encoder for " + value.getClass().getName());
+	}
+
+	/**
+	 * {@link Writer} encodes the values into a growing array of bytes, which
+	 * may be the array of a caller, or into a stream through a buffer of a
+	 * bounded size.
+	 */
+	private static final class Writer {
+
+		/** The Constant INITIAL_CAPACITY. */
+		private static final int INITIAL_CAPACITY = 256;
+
+		/** The stream the buffer is flushed to when full, or null. */
+		private final OutputStream out;
+
+		/** The bytes written and not flushed yet. */
+		private byte[] buffer;
+
+		/** The number of bytes in the buffer. */
+		private int position;
+
+		/** The cache of the encoded books, or null. */
+		private final BookStoreFragmentCache fragments;
+
+		/** The writer encoding the books missing from the cache, created on the first miss. */
+		private Writer fragmentWriter = null;
+
+		/**
+		 * Instantiates a new {@link Writer}.
+		 *
+		 * @param out
+		 *            the stream to write, or null to write an array
+		 * @param fragments
+		 *            the cache of the encoded books, or null
+		 */
+		private Writer(OutputStream out, BookStoreFragmentCache fragments) {
+			this.out = out;
+			this.fragments = fragments;
+			buffer = new byte[out == null ? INITIAL_CAPACITY : BookStoreConstants.STREAM_BUFFER_SIZE];
+		}
+
+		/**
+		 * Instantiates a new {@link Writer} appending to an array.
+		 *
+		 * @param buffer
+		 *            the array, replaced if it grows
+		 * @param position
+		 *            the number of bytes already in the array
+		 * @param fragments
+		 *            the cache of the encoded books, or null
+		 */
+		private Writer(byte[] buffer, int position, BookStoreFragmentCache fragments) {
+			this.out = null;
+			this.fragments = fragments;
+			this.buffer = buffer;
+			this.position = position;
+		}
+
+		/**
+		 * Writes the buffered bytes to the stream and flushes it.
+		 *
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void flush() throws IOException {
+			out.write(buffer, 0, position);
+			position = 0;
+			out.flush();
+		}
+
+		/**
+		 * Gets a copy of the bytes written.
+		 *
+		 * @return the bytes
+		 */
+		private byte[] toByteArray() {
+			return Arrays.copyOf(buffer, position);
+		}
+
+		/**
+		 * Makes room in the buffer for a number of bytes more: writes the
+		 * buffer to the stream, if any, and grows it if still too small.
+		 *
+		 * @param length
+		 *            the number of bytes
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void ensureCapacity(int length) throws IOException {
+			if (position + length <= buffer.length) {
+				return;
+			}
+
+			if (out != null) {
+				out.write(buffer, 0, position);
+				position = 0;
+			}
+
+			if (position + length > buffer.length) {
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+			}
+		}
+
+		/**
+		 * Writes a byte.
+		 *
+		 * @param value
+		 *            the byte
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeByte(int value) throws IOException {
+			ensureCapacity(1);
+			buffer[position++] = (byte) value;
+		}
+
+		/**
+		 * Writes a non-negative int as a varint of 7 bits per byte.
+		 *
+		 * @param value
+		 *            the int
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeVarInt(int value) throws IOException {
+			ensureCapacity(5);
+
+			while ((value & ~0x7F) != 0) {
+				buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			buffer[position++] = (byte) value;
+		}
+
+		/**
+		 * Writes a non-negative long as a varint of 7 bits per byte.
+		 *
+		 * @param value
+		 *            the long
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeVarLong(long value) throws IOException {
+			ensureCapacity(10);
+
+			while ((value & ~0x7FL) != 0) {
+				buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			buffer[position++] = (byte) value;
+		}
+
+		/**
+		 * Writes an int which may be negative, zig-zag encoded.
+		 *
+		 * @param value
+		 *            the int
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeSignedInt(int value) throws IOException {
+			writeVarInt((value << 1) ^ (value >> 31));
+		}
+
+		/**
+		 * Writes a long which may be negative, zig-zag encoded.
+		 *
+		 * @param value
+		 *            the long
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeSignedLong(long value) throws IOException {
+			writeVarLong((value << 1) ^ (value >> 63));
+		}
+
+		/**
+		 * Writes a float as its four IEEE 754 bytes.
+		 *
+		 * @param value
+		 *            the float
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeFloat(float value) throws IOException {
+			int bits = Float.floatToIntBits(value);
+			ensureCapacity(4);
+			buffer[position++] = (byte) (bits >>> 24);
+			buffer[position++] = (byte) (bits >>> 16);
+			buffer[position++] = (byte) (bits >>> 8);
+			buffer[position++] = (byte) bits;
+		}
+
+		/**
+		 * Writes a string as its UTF-8 length plus one, zero for null, and its
+		 * UTF-8 bytes. The ASCII strings are copied without an intermediate
+		 * array.
+		 *
+		 * @param value
+		 *            the string, may be null
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarInt(0);
+				return;
+			}
+
+			int length = value.length();
+			boolean ascii = true;
+
+			for (int i = 0; i < length && ascii; i++) {
+				ascii = value.charAt(i) < 0x80;
+			}
+
+			if (ascii) {
+				writeVarInt(length + 1);
+				ensureCapacity(length);
+
+				for (int i = 0; i < length; i++) {
+					buffer[position++] = (byte) value.charAt(i);
+				}
+			} else {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				writeVarInt(bytes.length + 1);
+				ensureCapacity(bytes.length);
+				System.arraycopy(bytes, 0, buffer, position, bytes.length);
+				position += bytes.length;
+			}
+		}
+
+		/**
+		 * Writes a value preceded by its type code.
+		 *
+		 * @param value
+		 *            the value, may be null
+		 * @throws IOException
+		 *             if the type has no encoder
+		 */
+		private void writeValue(Object value) throws IOException {
+			byte type = typeOf(value);
+			writeByte(type);
+			writeBody(type, value);
+		}
+
+		/**
+		 * Writes the fields of a value of a known type.
+		 *
+		 * @param type
+		 *            the type code
+		 * @param value
+		 *            the value
+		 * @throws IOException
+		 *             if a nested type has no encoder
+		 */
+		private void writeBody(byte type, Object value) throws IOException {
+			switch (type) {
+			case TYPE_NULL:
+				break;
+
+			case TYPE_INTEGER:
+				writeSignedInt((Integer) value);
+				break;
+
+			case TYPE_SET:
+			case TYPE_LIST:
+				writeCollection((Collection<?>) value);
+				break;
+
+			case TYPE_BOOK_COPY:
+				BookCopy bookCopy = (BookCopy) value;
+				writeSignedInt(bookCopy.getISBN());
+				writeSignedInt(bookCopy.getNumCopies());
+				break;
+
+			case TYPE_BOOK_RATING:
+				BookRating bookRating = (BookRating) value;
+				writeSignedInt(bookRating.getISBN());
+				writeSignedInt(bookRating.getRating());
+				break;
+
+			case TYPE_BOOK_EDITOR_PICK:
+				BookEditorPick editorPick = (BookEditorPick) value;
+				writeSignedInt(editorPick.getISBN());
+				writeByte(editorPick.isEditorPick() ? 1 : 0);
+				break;
+
+			case TYPE_BOOK:
+				writeFragment((Book) value, false);
+				break;
+
+			case TYPE_STOCK_BOOK:
+				writeFragment((Book) value, true);
+				break;
+
+			case TYPE_RESPONSE:
+				BookStoreResponse response = (BookStoreResponse) value;
+				writeValue(response.getException());
+				writeValue(response.getList());
+				break;
+
+			case TYPE_EXCEPTION:
+				writeString(((BookStoreException) value).getMessage());
+				break;
+
+			case TYPE_OPERATION:
+				BookStoreOperation operation = (BookStoreOperation) value;
+				writeVarInt(operation.getMessageTag() == null ? 0 : operation.getMessageTag().ordinal() + 1);
+				writeValue(operation.getInputValue());
+				break;
+
+			case TYPE_BATCH:
+				BookStoreBatch batch = (BookStoreBatch) value;
+				writeByte(batch.isAtomic() ? 1 : 0);
+				writeValue(batch.getOperations());
+				break;
+
+			case TYPE_STRING:
+				writeString((String) value);
+				break;
+
+			default:
+				throw new IOException("Unknown compact type " + type);
+			}
+		}
+
+		/**
+		 * Writes the fields of a book, copied from the fragment cache if it
+		 * holds them.
+		 *
+		 * @param book
+		 *            the book
+		 * @param stockBook
+		 *            whether to write the fields of a stock book
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeFragment(Book book, boolean stockBook) throws IOException {
+			if (fragments == null || !BookStoreFragmentCache.isCacheable(book)) {
+				writeBook(book, stockBook);
+				return;
+			}
+
+			byte[] bytes = fragments.get(book, stockBook);
+
+			if (bytes == null) {
+				if (fragmentWriter == null) {
+					fragmentWriter = new Writer(null, null);
+				}
+
+				fragmentWriter.position = 0;
+				fragmentWriter.writeBook(book, stockBook);
+				bytes = fragmentWriter.toByteArray();
+				fragments.put(book, stockBook, bytes);
+			}
+
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+
+		/**
+		 * Writes the fields of a book, and those of a stock book if asked to.
+		 *
+		 * @param book
+		 *            the book
+		 * @param stockBook
+		 *            whether to write the fields of a stock book
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeBook(Book book, boolean stockBook) throws IOException {
+			writeBook(book);
+
+			if (stockBook) {
+				StockBook stock = (StockBook) book;
+				writeSignedInt(stock.getNumCopies());
+				writeSignedLong(stock.getNumSaleMisses());
+				writeSignedLong(stock.getTotalRating());
+				writeSignedLong(stock.getNumTimesRated());
+				writeByte(stock.isEditorPick() ? 1 : 0);
+			}
+		}
+
+		/**
+		 * Writes the fields of a book.
+		 *
+		 * @param book
+		 *            the book
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private void writeBook(Book book) throws IOException {
+			writeSignedInt(book.getISBN());
+			writeString(book.getTitle());
+			writeString(book.getAuthor());
+			writeFloat(book.getPrice());
+		}
+
+		/**
+		 * Writes the size of a collection and its elements. If the elements
+		 * are non-null values of a single type, its code is written once
+		 * before them, otherwise each element carries its own.
+		 *
+		 * @param collection
+		 *            the collection
+		 * @throws IOException
+		 *             if a type has no encoder
+		 */
+		private void writeCollection(Collection<?> collection) throws IOException {
+			writeVarInt(collection.size());
+
+			if (collection.isEmpty()) {
+				return;
+			}
+
+			byte elementType = TYPE_MIXED;
+
+			for (Object element : collection) {
+				byte type = typeOf(element);
+
+				if (type == TYPE_NULL || (elementType != TYPE_MIXED && type != elementType)) {
+					elementType = TYPE_MIXED;
+					break;
+				}
+
+				elementType = type;
+			}
+
+			writeByte(elementType);
+
+			for (Object element : collection) {
+				if (elementType == TYPE_MIXED) {
+					writeValue(element);
+				} else {
+					writeBody(elementType, element);
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@link Reader} decodes the values from an array of bytes, or from a
+	 * stream through a buffer of a bounded size.
+	 */
+	private static final class Reader {
+
+		/** The Constant MAX_INITIAL_CAPACITY of the collections read from a stream. */
+		private static final int MAX_INITIAL_CAPACITY = 1024;
+
+		/** The stream the buffer is filled from, or null. */
+		private final InputStream in;
+
+		/** The bytes. */
+		private byte[] buffer;
+
+		/** The end of the bytes in the buffer. */
+		private int limit;
+
+		/** The position of the next byte to read. */
+		private int position;
+
+		/**
+		 * Instantiates a new {@link Reader}.
+		 *
+		 * @param buffer
+		 *            the bytes, or the empty buffer of the stream
+		 * @param position
+		 *            the position of the first byte
+		 * @param limit
+		 *            the end of the bytes in the buffer
+		 * @param in
+		 *            the stream to read, or null to read the buffer only
+		 */
+		private Reader(byte[] buffer, int position, int limit, InputStream in) {
+			this.buffer = buffer;
+			this.position = position;
+			this.limit = limit;
+			this.in = in;
+		}
+
+		/**
+		 * Makes a number of bytes available in the buffer, reading them from
+		 * the stream if needed. The buffer grows only if it is smaller than
+		 * the bytes asked for, and only as fast as the bytes arrive, so that a
+		 * length announced by a truncated payload is not allocated.
+		 *
+		 * @param length
+		 *            the number of bytes
+		 * @throws IOException
+		 *             if the payload is truncated
+		 */
+		private void require(int length) throws IOException {
+			if (limit - position >= length) {
+				return;
+			}
+
+			if (in == null) {
+				throw new IOException("Truncated compact payload");
+			}
+
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+
+			while (limit < length) {
+				if (limit == buffer.length) {
+					buffer = Arrays.copyOf(buffer, (int) Math.min(length, 2L * buffer.length));
+				}
+
+				int read = in.read(buffer, limit, buffer.length - limit);
+
+				if (read < 0) {
+					throw new IOException("Truncated compact payload");
+				}
+
+				limit += read;
+			}
+		}
+
+		/**
+		 * Checks whether the whole payload has been read.
+		 *
+		 * @return true if no byte is left
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean isAtEnd() throws IOException {
+			return position == limit && (in == null || in.read() < 0);
+		}
+
+		/**
+		 * Reads a byte.
+		 *
+		 * @return the byte
+		 * @throws IOException
+		 *             if the payload is truncated
+		 */
+		private byte readByte() throws IOException {
+			if (position >= limit) {
+				require(1);
+			}
+
+			return buffer[position++];
+		}
+
+		/**
+		 * Reads a varint.
+		 *
+		 * @return the int
+		 * @throws IOException
+		 *             if the payload is truncated or the varint too long
+		 */
+		private int readVarInt() throws IOException {
+			int value = 0;
+
+			for (int shift = 0; shift < 35; shift += 7) {
+				byte b = readByte();
+				value |= (b & 0x7F) << shift;
+
+				if (b >= 0) {
+					return value;
+				}
+			}
+
+			throw new IOException("Malformed varint");
+		}
+
+		/**
+		 * Reads a varlong.
+		 *
+		 * @return the long
+		 * @throws IOException
+		 *             if the payload is truncated or the varlong too long
+		 */
+		private long readVarLong() throws IOException {
+			long value = 0;
+
+			for (int shift = 0; shift < 70; shift += 7) {
+				byte b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+
+				if (b >= 0) {
+					return value;
+				}
+			}
+
+			throw new IOException("Malformed varlong");
+		}
+
+		/**
+		 * Reads a zig-zag encoded int.
+		 *
+		 * @return the int
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private int readSignedInt() throws IOException {
+			int value = readVarInt();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/**
+		 * Reads a zig-zag encoded long.
+		 *
+		 * @return the long
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private long readSignedLong() throws IOException {
+			long value = readVarLong();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/**
+		 * Reads a boolean byte.
+		 *
+		 * @return the boolean
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private boolean readBoolean() throws IOException {
+			return readByte() != 0;
+		}
+
+		/**
+		 * Reads a float from its four IEEE 754 bytes.
+		 *
+		 * @return the float
+		 * @throws IOException
+		 *             Signals that an I/O exception has occurred.
+		 */
+		private float readFloat() throws IOException {
+			int bits = (readByte() & 0xFF) << 24 | (readByte() & 0xFF) << 16 | (readByte() & 0xFF) << 8
+					| (readByte() & 0xFF);
+			return Float.intBitsToFloat(bits);
+		}
+
+		/**
+		 * Reads a length-prefixed UTF-8 string.
+		 *
+		 * @return the string, may be null
+		 * @throws IOException
+		 *             if the payload is truncated
+		 */
+		private String readString() throws IOException {
+			int length = readVarInt() - 1;
+
+			if (length == -1) {
+				return null;
+			}
+
+			// The length is read before the bytes are, so bound it before the
+			// buffer grows to it
+			if (length < 0 || length > BookStoreBinaryProtocol.MAX_FRAME_LENGTH) {
+				throw new IOException("Invalid compact string length " + length);
+			}
+
+			require(length);
+			String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return value;
+		}
+
+		/**
+		 * Reads a value preceded by its type code.
+		 *
+		 * @return the value, may be null
+		 * @throws IOException
+		 *             if the payload is malformed
+		 */
+		private Object readValue() throws IOException {
+			return readBody(readByte());
+		}
+
+		/**
+		 * Reads the fields of a value of a known type.
+		 *
+		 * @param type
+		 *            the type code
+		 * @return the value
+		 * @throws IOException
+		 *             if the payload is malformed
+		 */
+		private Object readBody(byte type) throws IOException {
+			switch (type) {
+			case TYPE_NULL:
+				return null;
+
+			case TYPE_INTEGER:
+				return readSignedInt();
+
+			case TYPE_SET:
+				int setSize = readSize();
+				return readElements(new HashSet<>(Math.max((int) (initialCapacity(setSize) / .75f) + 1, 16)),
+						setSize);
+
+			case TYPE_LIST:
+				int listSize = readSize();
+				return readElements(new ArrayList<>(initialCapacity(listSize)), listSize);
+
+			case TYPE_BOOK_COPY:
+				return new BookCopy(readSignedInt(), readSignedInt());
+
+			case TYPE_BOOK_RATING:
+				return new BookRating(readSignedInt(), readSignedInt());
+
+			case TYPE_BOOK_EDITOR_PICK:
+				return new BookEditorPick(readSignedInt(), readBoolean());
+
+			case TYPE_BOOK:
+				return new ImmutableBook(readSignedInt(), readString(), readString(), readFloat());
+
+			case TYPE_STOCK_BOOK:
+				int isbn = readSignedInt();
+				String title = readString();
+				String author = readString();
+				float price = readFloat();
+				int numCopies = readSignedInt();
+				long numSaleMisses = readSignedLong();
+				long totalRating = readSignedLong();
+				long numTimesRated = readSignedLong();
+				return new ImmutableStockBook(isbn, title, author, price, numCopies, numSaleMisses, numTimesRated,
+						totalRating, readBoolean());
+
+			case TYPE_RESPONSE:
+				BookStoreResponse response = new BookStoreResponse();
+				response.setException(readAs(BookStoreException.class));
+				response.setList(readAs(List.class));
+				return response;
+
+			case TYPE_EXCEPTION:
+				return new BookStoreException(readString());
+
+			case TYPE_OPERATION:
+				int tag = readVarInt();
+
+				if (tag > MESSAGE_TAGS.length) {
+					throw new IOException("Unknown message tag " + (tag - 1));
+				}
+
+				return new BookStoreOperation(tag == 0 ? null : MESSAGE_TAGS[tag - 1], readValue());
+
+			case TYPE_BATCH:
+				boolean atomic = readBoolean();
+				@SuppressWarnings("unchecked")
+				List<BookStoreOperation> operations = readAs(List.class);
+				return new BookStoreBatch(operations, atomic);
+
+			case TYPE_STRING:
+				return readString();
+
+			default:
+				throw new IOException("Unknown compact type " + type);
+			}
+		}
+
+		/**
+		 * Reads a value which must be of a type.
+		 *
+		 * @param <T>
+		 *            the type
+		 * @param type
+		 *            the class of the type
+		 * @return the value, may be null
+		 * @throws IOException
+		 *             if the value is of another type
+		 */
+		private <T> T readAs(Class<T> type) throws IOException {
+			Object value = readValue();
+
+			if (value != null && !type.isInstance(value)) {
+				throw new IOException("Expected a " + type.getSimpleName() + " in the compact payload");
+			}
+
+			return type.cast(value);
+		}
+
+		/**
+		 * Reads the size of a collection. The size of a collection read from an
+		 * array is bounded by the bytes left, since each element takes at
+		 * least one.
+		 *
+		 * @return the size
+		 * @throws IOException
+		 *             if the size is invalid
+		 */
+		private int readSize() throws IOException {
+			int size = readVarInt();
+
+			if (size < 0 || (in == null && size > limit - position)) {
+				throw new IOException("Invalid collection size " + size);
+			}
+
+			return size;
+		}
+
+		/**
+		 * Gets the initial capacity of a collection, bounded when read from a
+		 * stream so that an invalid size cannot allocate ahead of the bytes.
+		 *
+		 * @param size
+		 *            the size of the collection
+		 * @return the initial capacity
+		 */
+		private int initialCapacity(int size) {
+			return in == null ? size : Math.min(size, MAX_INITIAL_CAPACITY);
+		}
+
+		/**
+		 * Reads the elements of a collection.
+		 *
+		 * @param collection
+		 *            the empty collection to fill
+		 * @param size
+		 *            the number of elements
+		 * @return the collection
+		 * @throws IOException
+		 *             if the payload is malformed
+		 */
+		private Collection<Object> readElements(Collection<Object> collection, int size) throws IOException {
+			if (size == 0) {
+				return collection;
+			}
+
+			byte elementType = readByte();
+
+			for (int i = 0; i < size; i++) {
+				collection.add(elementType == TYPE_MIXED ? readValue() : readBody(elementType));
+			}
+
+			return collection;
+		}
+	}
+}
@@ -11,6 +11,15 @@ public final class BookStoreConstants {
 	 */
 	public static final boolean BINARY_SERIALIZATION = false;
 
+	/** The Constant CONTENT_TYPE_XSTREAM of the XML payloads. */
+	public static final String CONTENT_TYPE_XSTREAM = "application/x-xstream+xml";
+
+	/** The Constant CONTENT_TYPE_KRYO of the Kryo payloads. */
+	public static final String CONTENT_TYPE_KRYO = "application/x-kryo";
+
+	/** The Constant CONTENT_TYPE_COMPACT of the hand-written binary payloads. */
+	public static final String CONTENT_TYPE_COMPACT = "application/x-bookstore-compact";
+
 	// Constants used when creating URLs
 
 	/** The Constant BOOKISBN_PARAMs. */
@@ -60,6 +69,63 @@ public final class BookStoreConstants {
 	/** The Constant PROPERTY_KEY_SERVER_PORT. */
 	public static final String PROPERTY_KEY_SERVER_PORT = "port";
 
+	/** The Constant PROPERTY_KEY_LOCK_METRICS enables the lock instrumentation. */
+	public static final String PROPERTY_KEY_LOCK_METRICS = "lockmetrics";
+
+	/** The Constant PROPERTY_KEY_ASYNC_WORKLOAD sets the interactions a workload worker keeps in flight. */
+	public static final String PROPERTY_KEY_ASYNC_WORKLOAD = "asyncworkload";
+
+	/** The Constant PROPERTY_KEY_OPEN_LOOP_RATES sets the offered loads of an open-loop workload, in interactions per second. */
+	public static final String PROPERTY_KEY_OPEN_LOOP_RATES = "openlooprates";
+
+	/** The Constant PROPERTY_KEY_WORKLOAD_TRIALS sets the number of times the workload sweep is repeated. */
+	public static final String PROPERTY_KEY_WORKLOAD_TRIALS = "workloadtrials";
+
+	/** The Constant PROPERTY_KEY_ASYNC_HANDLER sets the business threads of the async server mode. */
+	public static final String PROPERTY_KEY_ASYNC_HANDLER = "asynchandler";
+
+	/** The Constant PROPERTY_KEY_VIRTUAL_THREADS runs the server requests and workload clients on virtual threads. */
+	public static final String PROPERTY_KEY_VIRTUAL_THREADS = "virtualthreads";
+
+	/** The Constant PROPERTY_KEY_BUY_BATCH_WINDOW enables the batching of the buy books calls, in microseconds. */
+	public static final String PROPERTY_KEY_BUY_BATCH_WINDOW = "buybatchwindow";
+
+	/** The Constant PROPERTY_KEY_BUY_BATCH_SIZE sets the max buy books calls of a batch. */
+	public static final String PROPERTY_KEY_BUY_BATCH_SIZE = "buybatchsize";
+
+	/** The Constant PROPERTY_KEY_CONTENT_TYPE sets the codec of the proxies. */
+	public static final String PROPERTY_KEY_CONTENT_TYPE = "contenttype";
+
+	/** The Constant PROPERTY_KEY_READ_CACHE_SIZE enables the client cache of the books, in books. */
+	public static final String PROPERTY_KEY_READ_CACHE_SIZE = "readcachesize";
+
+	/** The Constant PROPERTY_KEY_READ_CACHE_STALENESS sets the max staleness of the client cache, in milliseconds. */
+	public static final String PROPERTY_KEY_READ_CACHE_STALENESS = "readcachestaleness";
+
+	/** The Constant PROPERTY_KEY_REQUEST_METRICS disables the per request metrics of the server when false. */
+	public static final String PROPERTY_KEY_REQUEST_METRICS = "requestmetrics";
+
+	/** The Constant PROPERTY_KEY_JFR starts a flight recording, to the file it names if any. */
+	public static final String PROPERTY_KEY_JFR = "bookstore.jfr";
+
+	/** The Constant BOOK_CHANGE_LOG_SIZE is the number of book changes the server keeps for the clients caching books. */
+	public static final int BOOK_CHANGE_LOG_SIZE = 65536;
+
+	/** The Constant SERVER_READ_BUFFER_SIZE. */
+	public static final int SERVER_READ_BUFFER_SIZE = 8192;
+
+	/** The Constant STREAM_BUFFER_SIZE of the serializers reading and writing streams. */
+	public static final int STREAM_BUFFER_SIZE = 8192;
+
+	/** The Constant SERVER_OVERLOADED. */
+	public static final String SERVER_OVERLOADED = "The server is overloaded, retry later";
+
+	/** The Constant BATCHER_STOPPED. */
+	public static final String BATCHER_STOPPED = "The buy books batcher is stopped";
+
+	/** The Constant UNSUPPORTED_CONTENT_TYPE. */
+	public static final String UNSUPPORTED_CONTENT_TYPE = "Unsupported content type: ";
+
 	/** The Constant EPSILON used for floating point number comparison */
 	public static final float EPSILON = 0.000001F;
 
@@ -0,0 +1,211 @@
+package com.acertainbookstore.utils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acertainbookstore.business.Book;
+import com.acertainbookstore.business.BookStoreBook;
+import com.acertainbookstore.business.ImmutableBook;
+import com.acertainbookstore.business.ImmutableStockBook;
+
+/**
+ * {@link BookStoreFragmentCache} keeps the encoded fields of each book sent by
+ * the {@link BookStoreCompactSerializer}, so that a listing of the catalog is
+ * assembled by copying the fragments of the books which did not change rather
+ * than by encoding them again.
+ *
+ * A fragment is keyed by the ISBN and by the kind of the book, and is valid
+ * for the very snapshot it was encoded from: {@link BookStoreBook} hands out
+ * the same snapshot until the book changes, so a changed book is told by a
+ * snapshot of another identity and encoded again. Only the immutable books
+ * are cached, as a mutable one may change under the same identity.
+ *
+ * A fragment holds its snapshot weakly, and is dropped once the store no
+ * longer holds the snapshot either, when the book changed or was removed, so
+ * that the cache is sized by the catalog. Past its max number of entries the
+ * cache takes no new book until fragments are dropped, the books it does not
+ * hold being encoded each time as without a cache.
+ *
+ * @see BookStoreBook#immutableStockBook()
+ */
+public final class BookStoreFragmentCache {
+
+	/** The Constant DEFAULT_MAX_ENTRIES, enough for catalogs of millions of books. */
+	public static final int DEFAULT_MAX_ENTRIES = 1 << 24;
+
+	/**
+	 * {@link Fragment} is the encoded fields of a book and the snapshot they
+	 * were encoded from, which it holds weakly.
+	 */
+	private static final class Fragment extends WeakReference<Book> {
+
+		/** The ISBN of the book. */
+		private final int isbn;
+
+		/** The fragments the fragment is in. */
+		private final ConcurrentHashMap<Integer, Fragment> fragments;
+
+		/** The encoded fields. */
+		private final byte[] bytes;
+
+		/**
+		 * Instantiates a new {@link Fragment}.
+		 *
+		 * @param book
+		 *            the snapshot
+		 * @param fragments
+		 *            the fragments the fragment is put in
+		 * @param bytes
+		 *            the encoded fields
+		 * @param queue
+		 *            the queue the fragment is enqueued on once the snapshot
+		 *            is collected
+		 */
+		private Fragment(Book book, ConcurrentHashMap<Integer, Fragment> fragments, byte[] bytes,
+				ReferenceQueue<Book> queue) {
+			super(book, queue);
+			this.isbn = book.getISBN();
+			this.fragments = fragments;
+			this.bytes = bytes;
+		}
+	}
+
+	/** The fragments of the books, by ISBN. */
+	private final ConcurrentHashMap<Integer, Fragment> books = new ConcurrentHashMap<>();
+
+	/** The fragments of the stock books, by ISBN. */
+	private final ConcurrentHashMap<Integer, Fragment> stockBooks = new ConcurrentHashMap<>();
+
+	/** The fragments the snapshot of which was collected. */
+	private final ReferenceQueue<Book> collected = new ReferenceQueue<>();
+
+	/** The max number of entries of each kind of book. */
+	private final int maxEntries;
+
+	/** The number of books copied from the cache. */
+	private final AtomicLong numHits = new AtomicLong();
+
+	/** The number of books encoded again. */
+	private final AtomicLong numMisses = new AtomicLong();
+
+	/**
+	 * Instantiates a new {@link BookStoreFragmentCache}.
+	 *
+	 * @param maxEntries
+	 *            the max number of entries of each kind of book
+	 */
+	public BookStoreFragmentCache(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Checks whether the fragment of a book may be cached: it must be
+	 * immutable.
+	 *
+	 * @param book
+	 *            the book
+	 * @return true if the fragment may be cached
+	 */
+	public static boolean isCacheable(Book book) {
+		return book.getClass() == ImmutableBook.class || book.getClass() == ImmutableStockBook.class;
+	}
+
+	/**
+	 * Gets the fragment encoded from a snapshot.
+	 *
+	 * @param book
+	 *            the snapshot
+	 * @param stockBook
+	 *            whether the fragment holds the fields of a stock book
+	 * @return the encoded fields, which must not be modified, or null if the
+	 *         snapshot was not encoded yet
+	 */
+	public byte[] get(Book book, boolean stockBook) {
+		Fragment fragment = (stockBook ? stockBooks : books).get(book.getISBN());
+
+		if (fragment == null || fragment.get() != book) {
+			numMisses.incrementAndGet();
+			return null;
+		}
+
+		numHits.incrementAndGet();
+		return fragment.bytes;
+	}
+
+	/**
+	 * Caches the fragment encoded from a snapshot, replacing the fragment of
+	 * the former snapshot of the book. A new book is not cached if the cache
+	 * holds its max number of entries.
+	 *
+	 * @param book
+	 *            the snapshot
+	 * @param stockBook
+	 *            whether the fragment holds the fields of a stock book
+	 * @param bytes
+	 *            the encoded fields, which must not be modified afterwards
+	 */
+	public void put(Book book, boolean stockBook, byte[] bytes) {
+		ConcurrentHashMap<Integer, Fragment> fragments = stockBook ? stockBooks : books;
+		dropCollected();
+
+		if (fragments.size() >= maxEntries && !fragments.containsKey(book.getISBN())) {
+			return;
+		}
+
+		fragments.put(book.getISBN(), new Fragment(book, fragments, bytes, collected));
+	}
+
+	/**
+	 * Drops the fragments the snapshot of which was collected, unless they
+	 * were replaced since.
+	 */
+	private void dropCollected() {
+		Reference<? extends Book> reference;
+
+		while ((reference = collected.poll()) != null) {
+			Fragment fragment = (Fragment) reference;
+			fragment.fragments.remove(fragment.isbn, fragment);
+		}
+	}
+
+	/**
+	 * Gets the number of fragments cached, including those not dropped yet
+	 * the snapshot of which was collected.
+	 *
+	 * @return the number of entries
+	 */
+	public int getNumEntries() {
+		return books.size() + stockBooks.size();
+	}
+
+	/**
+	 * Gets the number of books copied from the cache.
+	 *
+	 * @return the number of hits
+	 */
+	public long getNumHits() {
+		return numHits.get();
+	}
+
+	/**
+	 * Gets the number of books encoded again.
+	 *
+	 * @return the number of misses
+	 */
+	public long getNumMisses() {
+		return numMisses.get();
+	}
+
+	/**
+	 * Gets a one-line report of the cache, in the format of the lock metrics.
+	 *
+	 * @return the report
+	 */
+	public String getReport() {
+		return "# Fragment cache (hits=" + numHits.get() + ", misses=" + numMisses.get() + ", entries="
+				+ getNumEntries() + ")\n";
+	}
+}
@@ -1,15 +1,22 @@
 package com.acertainbookstore.utils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import com.acertainbookstore.business.ImmutableStockBook;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.CollectionSerializer;
 import org.objenesis.strategy.StdInstantiatorStrategy;
 
 /**
@@ -20,9 +27,27 @@ import org.objenesis.strategy.StdInstantiatorStrategy;
  */
 public final class BookStoreKryoSerializer implements BookStoreSerializer {
 
+	/** The Constant EMPTY_ARRAY, held by the reused input and output between the calls. */
+	private static final byte[] EMPTY_ARRAY = new byte[0];
+
 	/** The binary stream. */
 	private final Kryo binaryStream;
 
+	/** The output reused to write the streams, with a buffer of a fixed size. */
+	private final Output streamOutput = new Output(BookStoreConstants.STREAM_BUFFER_SIZE);
+
+	/** The input reused to read the streams, with a buffer of a fixed size. */
+	private final Input streamInput = new Input(BookStoreConstants.STREAM_BUFFER_SIZE);
+
+	/** The output reused to write into the arrays of the callers, growing them. */
+	private final Output arrayOutput = new Output(EMPTY_ARRAY, -1);
+
+	/** The input reused to read the arrays of the callers. */
+	private final Input arrayInput = new Input(EMPTY_ARRAY);
+
+	/** The buffer reused by the calls returning an array, trimmed after a large one. */
+	private final BookStoreBuffer scratch = new BookStoreBuffer(BookStoreConstants.STREAM_BUFFER_SIZE);
+
 	/**
 	 * Instantiates a new {@link BookStoreKryoSerializer}.
 	 */
@@ -30,6 +55,37 @@ public final class BookStoreKryoSerializer implements BookStoreSerializer {
 		binaryStream = new Kryo();
 		binaryStream.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
 		binaryStream.register(ImmutableStockBook.class);
+
+		// The fixed-size collections of the JDK cannot be created empty and
+		// filled, so they are read back as their mutable counterparts.
+		CollectionSerializer copyingSerializer = new CopyingCollectionSerializer();
+		for (Collection<?> fixedSize : Arrays.asList(Arrays.asList(1, 2), Collections.singleton(1),
+				Collections.singletonList(1), Collections.emptySet(), Collections.emptyList(),
+				Collections.unmodifiableSet(new HashSet<>()), Collections.unmodifiableList(new ArrayList<>()),
+				Collections.unmodifiableCollection(new ArrayList<>()), Set.of(), Set.of(1), Set.of(1, 2, 3), List.of(),
+				List.of(1), List.of(1, 2, 3))) {
+			binaryStream.addDefaultSerializer(fixedSize.getClass(), copyingSerializer);
+		}
+	}
+
+	/**
+	 * {@link CopyingCollectionSerializer} reads a collection into a new
+	 * {@link HashSet} if it is a set, into a new {@link ArrayList} otherwise.
+	 */
+	private static final class CopyingCollectionSerializer extends CollectionSerializer {
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * com.esotericsoftware.kryo.serializers.CollectionSerializer#create(com
+		 * .esotericsoftware.kryo.Kryo, com.esotericsoftware.kryo.io.Input,
+		 * java.lang.Class)
+		 */
+		@Override
+		protected Collection<Object> create(Kryo kryo, Input input, Class<Collection> type) {
+			return Set.class.isAssignableFrom(type) ? new HashSet<>() : new ArrayList<>();
+		}
 	}
 
 	/*
@@ -41,10 +97,15 @@ public final class BookStoreKryoSerializer implements BookStoreSerializer {
 	 */
 	@Override
 	public byte[] serialize(Object object) throws IOException {
-		try (ByteArrayOutputStream outStream = new ByteArrayOutputStream(); Output out = new Output(outStream)) {
-			binaryStream.writeClassAndObject(out, object);
-			out.flush();
-			return outStream.toByteArray();
+		scratch.reset();
+
+		try {
+			serialize(object, scratch);
+			return scratch.toByteArray();
+		} finally {
+			if (scratch.capacity() > BookStoreBufferPool.DEFAULT_MAX_RETAINED_CAPACITY) {
+				scratch.setArray(new byte[BookStoreConstants.STREAM_BUFFER_SIZE], 0);
+			}
 		}
 	}
 
@@ -55,8 +116,93 @@ public final class BookStoreKryoSerializer implements BookStoreSerializer {
 	 */
 	@Override
 	public Object deserialize(byte[] bytes) throws IOException {
-		try (InputStream inStream = new ByteArrayInputStream(bytes); Input in = new Input(inStream)) {
-			return binaryStream.readClassAndObject(in);
+		return deserialize(bytes, 0, bytes.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, com.acertainbookstore.utils.BookStoreBuffer)
+	 */
+	@Override
+	public void serialize(Object object, BookStoreBuffer buffer) throws IOException {
+		// Kryo writes into the array of the buffer and hands back the array
+		// it grew, if any.
+		arrayOutput.setBuffer(buffer.getArray(), -1);
+		arrayOutput.setPosition(buffer.size());
+
+		try {
+			binaryStream.writeClassAndObject(arrayOutput, object);
+			buffer.setArray(arrayOutput.getBuffer(), arrayOutput.position());
+		} finally {
+			arrayOutput.setBuffer(EMPTY_ARRAY, -1);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[],
+	 * int, int)
+	 */
+	@Override
+	public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+		arrayInput.setBuffer(bytes, offset, length);
+
+		try {
+			return binaryStream.readClassAndObject(arrayInput);
+		} finally {
+			arrayInput.setBuffer(EMPTY_ARRAY);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		streamOutput.setOutputStream(out);
+
+		try {
+			binaryStream.writeClassAndObject(streamOutput, object);
+			streamOutput.flush();
+		} finally {
+			streamOutput.setOutputStream(null);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream in) throws IOException {
+		streamInput.setInputStream(in);
+
+		try {
+			return binaryStream.readClassAndObject(streamInput);
+		} finally {
+			streamInput.setInputStream(null);
 		}
 	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return BookStoreConstants.CONTENT_TYPE_KRYO;
+	}
 }
@@ -34,5 +34,17 @@ public enum BookStoreMessageTag {
 	REMOVEBOOKS,
 
 	/** The tag for the get stock books by ISBN message. */
-	GETSTOCKBOOKSBYISBN;
+	GETSTOCKBOOKSBYISBN,
+
+	/** The tag for the metrics message. */
+	METRICS,
+
+	/** The tag for the batch of independent buy books orders message. */
+	BATCHBUYBOOKS,
+
+	/** The tag for the batch of operations message. */
+	EXECUTEBATCH,
+
+	/** The tag for the books changed since a version message. */
+	GETBOOKCHANGES;
 }
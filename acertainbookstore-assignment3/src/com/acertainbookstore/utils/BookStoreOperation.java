@@ -0,0 +1,128 @@
+package com.acertainbookstore.utils;
+
+import java.util.Set;
+
+import com.acertainbookstore.business.BookCopy;
+import com.acertainbookstore.business.BookEditorPick;
+import com.acertainbookstore.business.StockBook;
+
+/**
+ * {@link BookStoreOperation} is the data structure that encapsulates one
+ * operation of a batch: the message tag of the method and its input value.
+ *
+ * @see com.acertainbookstore.interfaces.BatchExecutor
+ */
+public final class BookStoreOperation {
+
+	/** The message tag. */
+	private final BookStoreMessageTag messageTag;
+
+	/** The input value. */
+	private final Object inputValue;
+
+	/**
+	 * Instantiates a new {@link BookStoreOperation}.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param inputValue
+	 *            the input value, null if the method takes none
+	 */
+	public BookStoreOperation(BookStoreMessageTag messageTag, Object inputValue) {
+		this.messageTag = messageTag;
+		this.inputValue = inputValue;
+	}
+
+	/**
+	 * Creates an add books operation.
+	 *
+	 * @param bookSet
+	 *            the book set
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation addBooks(Set<StockBook> bookSet) {
+		return new BookStoreOperation(BookStoreMessageTag.ADDBOOKS, bookSet);
+	}
+
+	/**
+	 * Creates an add copies operation.
+	 *
+	 * @param bookCopiesSet
+	 *            the book copies set
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation addCopies(Set<BookCopy> bookCopiesSet) {
+		return new BookStoreOperation(BookStoreMessageTag.ADDCOPIES, bookCopiesSet);
+	}
+
+	/**
+	 * Creates an update editor picks operation.
+	 *
+	 * @param editorPicksValues
+	 *            the editor picks values
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation updateEditorPicks(Set<BookEditorPick> editorPicksValues) {
+		return new BookStoreOperation(BookStoreMessageTag.UPDATEEDITORPICKS, editorPicksValues);
+	}
+
+	/**
+	 * Creates a remove books operation.
+	 *
+	 * @param isbnSet
+	 *            the ISBN set
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation removeBooks(Set<Integer> isbnSet) {
+		return new BookStoreOperation(BookStoreMessageTag.REMOVEBOOKS, isbnSet);
+	}
+
+	/**
+	 * Creates an operation listing the stock books.
+	 *
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation listBooks() {
+		return new BookStoreOperation(BookStoreMessageTag.LISTBOOKS, null);
+	}
+
+	/**
+	 * Creates an operation getting the stock books by ISBN.
+	 *
+	 * @param isbnSet
+	 *            the ISBN set
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation getBooksByISBN(Set<Integer> isbnSet) {
+		return new BookStoreOperation(BookStoreMessageTag.GETSTOCKBOOKSBYISBN, isbnSet);
+	}
+
+	/**
+	 * Creates a buy books operation.
+	 *
+	 * @param booksToBuy
+	 *            the books to buy
+	 * @return the book store operation
+	 */
+	public static BookStoreOperation buyBooks(Set<BookCopy> booksToBuy) {
+		return new BookStoreOperation(BookStoreMessageTag.BUYBOOKS, booksToBuy);
+	}
+
+	/**
+	 * Gets the message tag.
+	 *
+	 * @return the message tag
+	 */
+	public BookStoreMessageTag getMessageTag() {
+		return messageTag;
+	}
+
+	/**
+	 * Gets the input value.
+	 *
+	 * @return the input value
+	 */
+	public Object getInputValue() {
+		return inputValue;
+	}
+}
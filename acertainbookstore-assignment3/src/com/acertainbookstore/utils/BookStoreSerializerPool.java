@@ -0,0 +1,230 @@
+package com.acertainbookstore.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreSerializerPool} is a thread-safe {@link BookStoreSerializer}
+ * which lends the calls a serializer from a pool. Kryo and XStream instances
+ * are expensive to create and not thread-safe; unlike a
+ * {@link ThreadLocal}, the pool keeps as many instances as there are
+ * concurrent serializations rather than one per thread, which matters when
+ * each request runs on its own virtual thread.
+ *
+ * @see BookStoreSerializer
+ */
+public final class BookStoreSerializerPool implements BookStoreSerializer {
+
+	/** The Constant DEFAULT_MAX_IDLE. */
+	public static final int DEFAULT_MAX_IDLE = 64;
+
+	/** The factory of the pooled serializers. */
+	private final Supplier<BookStoreSerializer> factory;
+
+	/** The max number of idle serializers kept in the pool. */
+	private final int maxIdle;
+
+	/** The idle serializers. */
+	private final ConcurrentLinkedQueue<BookStoreSerializer> idle = new ConcurrentLinkedQueue<>();
+
+	/** The number of idle serializers, tracked apart since the queue size is linear. */
+	private final AtomicInteger numIdle = new AtomicInteger();
+
+	/** The content type of the pooled serializers. */
+	private final String contentType;
+
+	/**
+	 * Instantiates a new {@link BookStoreSerializerPool}.
+	 *
+	 * @param factory
+	 *            the factory of the pooled serializers
+	 * @param maxIdle
+	 *            the max number of idle serializers kept in the pool
+	 */
+	public BookStoreSerializerPool(Supplier<BookStoreSerializer> factory, int maxIdle) {
+		this.factory = factory;
+		this.maxIdle = maxIdle;
+
+		// The first serializer gives the content type, then waits in the pool.
+		BookStoreSerializer serializer = factory.get();
+		contentType = serializer.getContentType();
+		release(serializer);
+	}
+
+	/**
+	 * Creates a pool of the serializer selected by
+	 * {@link BookStoreConstants#BINARY_SERIALIZATION}.
+	 *
+	 * @return the book store serializer pool
+	 */
+	public static BookStoreSerializerPool newDefaultPool() {
+		if (BookStoreConstants.BINARY_SERIALIZATION) {
+			return new BookStoreSerializerPool(BookStoreKryoSerializer::new, DEFAULT_MAX_IDLE);
+		} else {
+			return new BookStoreSerializerPool(BookStoreXStreamSerializer::new, DEFAULT_MAX_IDLE);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object)
+	 */
+	@Override
+	public byte[] serialize(Object object) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			return serializer.serialize(object);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[])
+	 */
+	@Override
+	public Object deserialize(byte[] bytes) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			return serializer.deserialize(bytes);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			serializer.serialize(object, out);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream in) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			return serializer.deserialize(in);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, com.acertainbookstore.utils.BookStoreBuffer)
+	 */
+	@Override
+	public void serialize(Object object, BookStoreBuffer buffer) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			serializer.serialize(object, buffer);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[],
+	 * int, int)
+	 */
+	@Override
+	public Object deserialize(byte[] bytes, int offset, int length) throws IOException {
+		BookStoreSerializer serializer = borrow();
+
+		try {
+			return serializer.deserialize(bytes, offset, length);
+		} finally {
+			release(serializer);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Gets the number of idle serializers in the pool.
+	 *
+	 * @return the number of idle serializers
+	 */
+	public int getNumIdle() {
+		return numIdle.get();
+	}
+
+	/**
+	 * Takes an idle serializer from the pool, or creates one if the pool is
+	 * empty.
+	 *
+	 * @return the book store serializer
+	 */
+	private BookStoreSerializer borrow() {
+		BookStoreSerializer serializer = idle.poll();
+
+		if (serializer == null) {
+			return factory.get();
+		}
+
+		numIdle.decrementAndGet();
+		return serializer;
+	}
+
+	/**
+	 * Returns a serializer to the pool, or drops it if the pool is full.
+	 *
+	 * @param serializer
+	 *            the book store serializer
+	 */
+	private void release(BookStoreSerializer serializer) {
+		if (numIdle.incrementAndGet() <= maxIdle) {
+			idle.offer(serializer);
+		} else {
+			numIdle.decrementAndGet();
+		}
+	}
+}
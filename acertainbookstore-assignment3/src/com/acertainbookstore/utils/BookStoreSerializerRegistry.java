@@ -0,0 +1,174 @@
+package com.acertainbookstore.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.acertainbookstore.interfaces.BookStoreSerializer;
+
+/**
+ * {@link BookStoreSerializerRegistry} maps the content types to the
+ * thread-safe serializers which read and write them. The server selects the
+ * serializer of each request by its Content-Type header, so clients speaking
+ * different codecs share one server, and a new codec is rolled out by
+ * registering it before any client uses it.
+ *
+ * @see BookStoreSerializer
+ */
+public final class BookStoreSerializerRegistry {
+
+	/** The serializers by content type, read without locking by every request. */
+	private final Map<String, BookStoreSerializer> serializers = new ConcurrentHashMap<>();
+
+	/** The serializer of the requests without a content type. */
+	private volatile BookStoreSerializer defaultSerializer = null;
+
+	/**
+	 * Creates a registry of the pooled Kryo and XStream serializers and of the
+	 * compact serializer, which needs no pool. The default serializer is
+	 * selected by {@link BookStoreConstants#BINARY_SERIALIZATION}, so that the
+	 * clients which do not declare a content type keep working.
+	 *
+	 * @return the book store serializer registry
+	 */
+	public static BookStoreSerializerRegistry newDefaultRegistry() {
+		return newRegistry(new BookStoreCompactSerializer());
+	}
+
+	/**
+	 * Creates a registry of the default serializers for a server: its compact
+	 * serializer copies the books it already sent from a
+	 * {@link BookStoreFragmentCache}, so that the cost of encoding a listing
+	 * follows the rate of change of the catalog rather than its size.
+	 *
+	 * @return the book store serializer registry
+	 */
+	public static BookStoreSerializerRegistry newServerRegistry() {
+		return newRegistry(
+				new BookStoreCompactSerializer(new BookStoreFragmentCache(BookStoreFragmentCache.DEFAULT_MAX_ENTRIES)));
+	}
+
+	/**
+	 * Creates a registry of the pooled Kryo and XStream serializers and of a
+	 * compact serializer.
+	 *
+	 * @param compact
+	 *            the compact serializer
+	 * @return the book store serializer registry
+	 */
+	private static BookStoreSerializerRegistry newRegistry(BookStoreCompactSerializer compact) {
+		BookStoreSerializerRegistry registry = new BookStoreSerializerRegistry();
+		BookStoreSerializer xstream = new BookStoreSerializerPool(BookStoreXStreamSerializer::new,
+				BookStoreSerializerPool.DEFAULT_MAX_IDLE);
+		BookStoreSerializer kryo = new BookStoreSerializerPool(BookStoreKryoSerializer::new,
+				BookStoreSerializerPool.DEFAULT_MAX_IDLE);
+
+		registry.register(xstream);
+		registry.register(kryo);
+		registry.register(compact);
+		registry.setDefault(BookStoreConstants.BINARY_SERIALIZATION ? kryo : xstream);
+		return registry;
+	}
+
+	/**
+	 * Gets the serializer of a content type from the default registry, for a
+	 * client declaring its codec.
+	 *
+	 * @param contentType
+	 *            the content type, null or empty for the default serializer
+	 * @return the thread-safe serializer
+	 * @throws BookStoreException
+	 *             if no serializer is registered for the type
+	 */
+	public static BookStoreSerializer newSerializer(String contentType) throws BookStoreException {
+		BookStoreSerializer serializer = newDefaultRegistry().get(contentType);
+
+		if (serializer == null) {
+			throw new BookStoreException(BookStoreConstants.UNSUPPORTED_CONTENT_TYPE + contentType);
+		}
+
+		return serializer;
+	}
+
+	/**
+	 * Registers a thread-safe serializer under its content type, replacing
+	 * the serializer registered under the same type. The first serializer
+	 * registered is the default one until another is set.
+	 *
+	 * @param serializer
+	 *            the thread-safe serializer
+	 */
+	public synchronized void register(BookStoreSerializer serializer) {
+		serializers.put(normalize(serializer.getContentType()), serializer);
+
+		if (defaultSerializer == null) {
+			defaultSerializer = serializer;
+		}
+	}
+
+	/**
+	 * Sets the serializer of the requests without a content type.
+	 *
+	 * @param serializer
+	 *            the serializer, which must be registered
+	 */
+	public synchronized void setDefault(BookStoreSerializer serializer) {
+		if (serializers.get(normalize(serializer.getContentType())) != serializer) {
+			throw new IllegalArgumentException(
+					BookStoreConstants.UNSUPPORTED_CONTENT_TYPE + serializer.getContentType());
+		}
+
+		defaultSerializer = serializer;
+	}
+
+	/**
+	 * Gets the serializer of the requests without a content type.
+	 *
+	 * @return the default serializer
+	 */
+	public BookStoreSerializer getDefault() {
+		return defaultSerializer;
+	}
+
+	/**
+	 * Gets the serializer of a content type. The parameters of the type, such
+	 * as the charset, are ignored.
+	 *
+	 * @param contentType
+	 *            the content type, null or empty for the default serializer
+	 * @return the serializer, null if no serializer is registered for the
+	 *         type
+	 */
+	public BookStoreSerializer get(String contentType) {
+		if (BookStoreUtility.isEmpty(contentType)) {
+			return defaultSerializer;
+		}
+
+		return serializers.get(normalize(contentType));
+	}
+
+	/**
+	 * Gets the registered serializers.
+	 *
+	 * @return the serializers
+	 */
+	public List<BookStoreSerializer> getSerializers() {
+		return Collections.unmodifiableList(new ArrayList<>(serializers.values()));
+	}
+
+	/**
+	 * Strips the parameters of a content type and lowers its case.
+	 *
+	 * @param contentType
+	 *            the content type
+	 * @return the normalized content type
+	 */
+	private static String normalize(String contentType) {
+		int separator = contentType.indexOf(';');
+		String mimeType = separator < 0 ? contentType : contentType.substring(0, separator);
+		return mimeType.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -1,15 +1,24 @@
 package com.acertainbookstore.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.api.ContentProvider;
-import org.eclipse.jetty.client.api.ContentResponse;
 import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.util.BufferingResponseListener;
 import org.eclipse.jetty.client.util.BytesContentProvider;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpStatus;
 
 import com.acertainbookstore.client.BookStoreClientConstants;
 import com.acertainbookstore.interfaces.BookStoreSerializer;
@@ -149,7 +158,8 @@ public final class BookStoreUtility {
 	}
 
 	/**
-	 * Perform HTTP exchange.
+	 * Perform HTTP exchange. The response is de-serialized while its content
+	 * is received, so a large response is never held in full in a byte array.
 	 *
 	 * @param client
 	 *            the client
@@ -163,45 +173,212 @@ public final class BookStoreUtility {
 	 */
 	public static BookStoreResponse performHttpExchange(HttpClient client, BookStoreRequest bookStoreRequest,
 			BookStoreSerializer serializer) throws BookStoreException {
-		Request request;
+		return performConditionalHttpExchange(client, bookStoreRequest, serializer, null).getResponse();
+	}
 
-		switch (bookStoreRequest.getMethod()) {
-		case GET:
-			request = client.newRequest(bookStoreRequest.getURLString()).method(HttpMethod.GET);
-			break;
+	/**
+	 * Perform HTTP exchange revalidating a response the client kept: the
+	 * request carries its entity tag in an If-None-Match header, and the kept
+	 * response is returned if the server answers 304 Not Modified.
+	 *
+	 * @param client
+	 *            the client
+	 * @param bookStoreRequest
+	 *            the book store request
+	 * @param serializer
+	 *            the serializer
+	 * @param cachedResponse
+	 *            the response kept from the previous exchange, null if none
+	 * @return the kept response if it is still valid, the new response and
+	 *         its entity tag otherwise
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	public static BookStoreCachedResponse performConditionalHttpExchange(HttpClient client,
+			BookStoreRequest bookStoreRequest, BookStoreSerializer serializer, BookStoreCachedResponse cachedResponse)
+			throws BookStoreException {
+		Request request = newHttpRequest(client, bookStoreRequest, serializer);
 
-		case POST:
-			try {
-				byte[] serializedValue = serializer.serialize(bookStoreRequest.getInputValue());
-				ContentProvider contentProvider = new BytesContentProvider(serializedValue);
-				request = client.POST(bookStoreRequest.getURLString()).content(contentProvider);
-			} catch (IOException ex) {
-				throw new BookStoreException("Serialization error", ex);
+		if (cachedResponse != null && cachedResponse.getETag() != null) {
+			request.header(HttpHeader.IF_NONE_MATCH, cachedResponse.getETag());
+		}
+
+		InputStreamResponseListener listener = new InputStreamResponseListener();
+		Response response;
+
+		request.send(listener);
+
+		try {
+			response = listener.get(BookStoreClientConstants.CLIENT_MAX_TIMEOUT_MILLISECS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			request.abort(ex);
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_SENDING, ex);
+		} catch (TimeoutException ex) {
+			request.abort(ex);
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_TIMEOUT, ex);
+		} catch (ExecutionException ex) {
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex);
+		}
+
+		try (InputStream content = listener.getInputStream()) {
+			if (response.getStatus() == HttpStatus.NOT_MODIFIED_304 && cachedResponse != null) {
+				return cachedResponse;
 			}
 
-			break;
+			return new BookStoreCachedResponse(response.getHeaders().get(HttpHeader.ETAG),
+					decodeResponse(response.getStatus(), content, serializer));
+		} catch (IOException ex) {
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex);
+		}
+	}
 
-		default:
-			throw new IllegalArgumentException("HTTP Method not supported.");
+	/**
+	 * Perform HTTP exchange without blocking the calling thread. The request is
+	 * serialized on the calling thread, the response is de-serialized on the
+	 * client thread which receives it, so the serializer must be thread-safe.
+	 *
+	 * @param client
+	 *            the client
+	 * @param bookStoreRequest
+	 *            the book store request
+	 * @param serializer
+	 *            the thread-safe serializer
+	 * @return the future of the book store response, completed exceptionally
+	 *         with a {@link BookStoreException} on failure
+	 */
+	public static CompletableFuture<BookStoreResponse> performHttpExchangeAsync(HttpClient client,
+			BookStoreRequest bookStoreRequest, BookStoreSerializer serializer) {
+		CompletableFuture<BookStoreResponse> future = new CompletableFuture<>();
+		Request request;
+
+		try {
+			request = newHttpRequest(client, bookStoreRequest, serializer);
+		} catch (BookStoreException ex) {
+			future.completeExceptionally(ex);
+			return future;
 		}
 
-		ContentResponse response;
+		// The exchange is bounded as the synchronous ones are, or a stalled
+		// server would never complete the future.
+		request.timeout(BookStoreClientConstants.CLIENT_MAX_TIMEOUT_MILLISECS, TimeUnit.MILLISECONDS);
+		request.send(new BufferingResponseListener(BookStoreClientConstants.CLIENT_MAX_RESPONSE_BUFFER_BYTES) {
+
+			@Override
+			public void onComplete(Result result) {
+				if (result.isFailed()) {
+					future.completeExceptionally(new BookStoreException(
+							result.getFailure() instanceof TimeoutException
+									? BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_TIMEOUT
+									: BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION,
+							result.getFailure()));
+					return;
+				}
+
+				try {
+					future.complete(decodeResponse(result.getResponse().getStatus(), getContentAsInputStream(),
+							serializer));
+				} catch (BookStoreException ex) {
+					future.completeExceptionally(ex);
+				}
+			}
+		});
+
+		return future;
+	}
 
+	/**
+	 * Waits for the result of a future completed by a client call, for at
+	 * most {@link BookStoreClientConstants#CLIENT_MAX_TIMEOUT_MILLISECS}.
+	 *
+	 * @param <T>
+	 *            the type of the result
+	 * @param future
+	 *            the future
+	 * @return the result
+	 * @throws BookStoreException
+	 *             the exception which completed the future, or the failure to
+	 *             wait for it
+	 */
+	public static <T> T await(CompletableFuture<T> future) throws BookStoreException {
 		try {
-			response = request.send();
+			return future.get(BookStoreClientConstants.CLIENT_MAX_TIMEOUT_MILLISECS, TimeUnit.MILLISECONDS);
 		} catch (InterruptedException ex) {
 			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_SENDING, ex);
 		} catch (TimeoutException ex) {
 			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_TIMEOUT, ex);
 		} catch (ExecutionException ex) {
-			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex);
+			if (ex.getCause() instanceof BookStoreException) {
+				throw (BookStoreException) ex.getCause();
+			}
+
+			throw new BookStoreException(BookStoreClientConstants.STR_ERR_CLIENT_REQUEST_EXCEPTION, ex.getCause());
 		}
+	}
 
+	/**
+	 * Creates the HTTP request of a book store request, serializing its input
+	 * value if it is a POST request. The request declares the content type of
+	 * the serializer, so that the server answers in the same codec.
+	 *
+	 * @param client
+	 *            the client
+	 * @param bookStoreRequest
+	 *            the book store request
+	 * @param serializer
+	 *            the serializer
+	 * @return the request
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private static Request newHttpRequest(HttpClient client, BookStoreRequest bookStoreRequest,
+			BookStoreSerializer serializer) throws BookStoreException {
+		switch (bookStoreRequest.getMethod()) {
+		case GET:
+			return client.newRequest(bookStoreRequest.getURLString()).method(HttpMethod.GET)
+					.header(HttpHeader.ACCEPT, serializer.getContentType());
+
+		case POST:
+			try {
+				byte[] serializedValue = serializer.serialize(bookStoreRequest.getInputValue());
+				ContentProvider contentProvider = new BytesContentProvider(serializer.getContentType(),
+						serializedValue);
+				return client.POST(bookStoreRequest.getURLString()).content(contentProvider);
+			} catch (IOException ex) {
+				throw new BookStoreException("Serialization error", ex);
+			}
+
+		default:
+			throw new IllegalArgumentException("HTTP Method not supported.");
+		}
+	}
+
+	/**
+	 * De-serializes the content of a HTTP response and throws the exception it
+	 * carries, if any.
+	 *
+	 * @param status
+	 *            the HTTP status
+	 * @param content
+	 *            the content
+	 * @param serializer
+	 *            the serializer
+	 * @return the book store response
+	 * @throws BookStoreException
+	 *             the book store exception
+	 */
+	private static BookStoreResponse decodeResponse(int status, InputStream content, BookStoreSerializer serializer)
+			throws BookStoreException {
 		BookStoreResponse bookStoreResponse;
 
 		try {
-			bookStoreResponse = (BookStoreResponse) serializer.deserialize(response.getContent());
-		} catch (IOException ex) {
+			// The server does not speak the codec, so the content is plain
+			// text.
+			if (status == HttpStatus.UNSUPPORTED_MEDIA_TYPE_415) {
+				throw new BookStoreException(new String(content.readAllBytes(), StandardCharsets.UTF_8));
+			}
+
+			bookStoreResponse = (BookStoreResponse) serializer.deserialize(content);
+		} catch (IOException | RuntimeException ex) {
 			throw new BookStoreException("Deserialization error", ex);
 		}
 
@@ -1,5 +1,10 @@
 package com.acertainbookstore.utils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
 import com.acertainbookstore.interfaces.BookStoreSerializer;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.StaxDriver;
@@ -15,6 +20,9 @@ public final class BookStoreXStreamSerializer implements BookStoreSerializer {
 	/** The XML stream. */
 	private final XStream xmlStream = new XStream(new StaxDriver());
 
+	/** The buffer reused by the calls returning an array, trimmed after a large one. */
+	private final BookStoreBuffer scratch = new BookStoreBuffer(BookStoreConstants.STREAM_BUFFER_SIZE);
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -23,9 +31,19 @@ public final class BookStoreXStreamSerializer implements BookStoreSerializer {
 	 * Object)
 	 */
 	@Override
-	public byte[] serialize(Object object) {
-		String xml = xmlStream.toXML(object);
-		return xml.getBytes();
+	public byte[] serialize(Object object) throws IOException {
+		// The XML is encoded into the reused buffer rather than built as a
+		// string first.
+		scratch.reset();
+
+		try {
+			serialize(object, scratch);
+			return scratch.toByteArray();
+		} finally {
+			if (scratch.capacity() > BookStoreBufferPool.DEFAULT_MAX_RETAINED_CAPACITY) {
+				scratch.setArray(new byte[BookStoreConstants.STREAM_BUFFER_SIZE], 0);
+			}
+		}
 	}
 
 	/*
@@ -36,7 +54,53 @@ public final class BookStoreXStreamSerializer implements BookStoreSerializer {
 	 */
 	@Override
 	public Object deserialize(byte[] bytes) {
-		String xml = new String(bytes);
-		return xmlStream.fromXML(xml);
+		return deserialize(bytes, 0, bytes.length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(byte[],
+	 * int, int)
+	 */
+	@Override
+	public Object deserialize(byte[] bytes, int offset, int length) {
+		return xmlStream.fromXML(new ByteArrayInputStream(bytes, offset, length));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#serialize(java.lang.
+	 * Object, java.io.OutputStream)
+	 */
+	@Override
+	public void serialize(Object object, OutputStream out) throws IOException {
+		xmlStream.toXML(object, out);
+		out.flush();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.acertainbookstore.interfaces.BookStoreSerializer#deserialize(java.io.
+	 * InputStream)
+	 */
+	@Override
+	public Object deserialize(InputStream in) {
+		return xmlStream.fromXML(in);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.acertainbookstore.interfaces.BookStoreSerializer#getContentType()
+	 */
+	@Override
+	public String getContentType() {
+		return BookStoreConstants.CONTENT_TYPE_XSTREAM;
 	}
 }
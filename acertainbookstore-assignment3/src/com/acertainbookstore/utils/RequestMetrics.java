@@ -0,0 +1,812 @@
+package com.acertainbookstore.utils;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link RequestMetrics} records, per message tag, how many requests a server
+ * handled and how many failed, how long they took, and how long they spent in
+ * each phase: reading the body, de-serializing it, calling the store,
+ * serializing the response and writing it. The rates are counted per second
+ * over the last minute.
+ *
+ * A request is followed by a {@link Timing}, which adds up the time of its
+ * phases without synchronization and is recorded once the request is done.
+ * A phase streaming its input or output through a timed stream is credited
+ * with the time spent computing only, the time blocked on the stream going
+ * to the read or write phase. While a flight recording is running, each phase
+ * is also emitted as a {@link RequestPhaseEvent}. When the instrumentation is
+ * disabled, the timings are a shared instance doing nothing, so the requests
+ * pay a volatile read only.
+ *
+ * @see ConcurrentHistogram
+ * @see RequestMetricsMBean
+ * @see LockMetrics
+ */
+public final class RequestMetrics implements RequestMetricsMBean {
+
+	/**
+	 * {@link Phase} is a phase of a request.
+	 */
+	public enum Phase {
+
+		/** Reading the body. */
+		READ,
+
+		/** De-serializing the body. */
+		DESERIALIZE,
+
+		/** Calling the store. */
+		STORE,
+
+		/** Serializing the response. */
+		SERIALIZE,
+
+		/** Writing the response. */
+		WRITE;
+	}
+
+	/** The phases, indexed by their ordinal. */
+	private static final Phase[] PHASES = Phase.values();
+
+	/** The number of seconds whose rates are kept. */
+	private static final int RATE_SLOTS = 64;
+
+	/**
+	 * The stamp of a slot which counts no second yet, which no second of the
+	 * clock can be as it may be negative.
+	 */
+	private static final long NO_SECOND = Long.MIN_VALUE;
+
+	/** The longest window of a rate, in seconds. */
+	public static final int MAX_RATE_WINDOW = 60;
+
+	/** The windows of the rates in the report, in seconds. */
+	private static final int[] REPORTED_RATE_WINDOWS = { 1, 10, 60 };
+
+	/** Nanoseconds per microsecond, the unit used in the report. */
+	private static final double NANOS_PER_MICRO = 1000.0;
+
+	/** The timing of the requests handled while the instrumentation is disabled. */
+	private static final Timing DISABLED = new Timing(null, null);
+
+	/** The name of the instrumented server. */
+	private final String serverName;
+
+	/** Whether the instrumentation is enabled. */
+	private volatile boolean enabled;
+
+	/** The statistics per message tag, indexed by the message tag ordinal. */
+	private final TagStatistics[] tagStatistics;
+
+	/**
+	 * Instantiates a new {@link RequestMetrics}, enabled unless the
+	 * {@link BookStoreConstants#PROPERTY_KEY_REQUEST_METRICS} system property
+	 * is set to false.
+	 *
+	 * @param serverName
+	 *            the server name
+	 */
+	public RequestMetrics(String serverName) {
+		this(serverName,
+				Boolean.parseBoolean(System.getProperty(BookStoreConstants.PROPERTY_KEY_REQUEST_METRICS, "true")));
+	}
+
+	/**
+	 * Instantiates a new {@link RequestMetrics}.
+	 *
+	 * @param serverName
+	 *            the server name
+	 * @param enabled
+	 *            whether the instrumentation starts enabled
+	 */
+	public RequestMetrics(String serverName, boolean enabled) {
+		this.serverName = serverName;
+		this.enabled = enabled;
+
+		BookStoreMessageTag[] tags = BookStoreMessageTag.values();
+		tagStatistics = new TagStatistics[tags.length];
+
+		for (int i = 0; i < tags.length; i++) {
+			tagStatistics[i] = new TagStatistics();
+		}
+	}
+
+	/**
+	 * Starts the timing of a request.
+	 *
+	 * @param messageTag
+	 *            the message tag of the request
+	 * @return the timing, to pass to {@link #finish(Timing)}
+	 */
+	public Timing start(BookStoreMessageTag messageTag) {
+		return enabled ? new Timing(messageTag, tagStatistics[messageTag.ordinal()]) : DISABLED;
+	}
+
+	/**
+	 * Records a request once its response is written.
+	 *
+	 * @param timing
+	 *            the timing returned by {@link #start(BookStoreMessageTag)}
+	 */
+	public void finish(Timing timing) {
+		if (timing.statistics != null) {
+			timing.statistics.record(timing, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Gets the name of the instrumented server.
+	 *
+	 * @return the server name
+	 */
+	public String getServerName() {
+		return serverName;
+	}
+
+	/**
+	 * Gets the latency histogram of the requests of a message tag.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return the latency histogram
+	 */
+	public ConcurrentHistogram getLatency(BookStoreMessageTag messageTag) {
+		return tagStatistics[messageTag.ordinal()].latency;
+	}
+
+	/**
+	 * Gets the histogram of a phase of the requests of a message tag.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param phase
+	 *            the phase
+	 * @return the phase histogram
+	 */
+	public ConcurrentHistogram getPhase(BookStoreMessageTag messageTag, Phase phase) {
+		return tagStatistics[messageTag.ordinal()].phases[phase.ordinal()];
+	}
+
+	/**
+	 * Gets the number of requests of a message tag.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return the number of requests
+	 */
+	public long getRequests(BookStoreMessageTag messageTag) {
+		return tagStatistics[messageTag.ordinal()].requests.sum();
+	}
+
+	/**
+	 * Gets the number of requests of a message tag which failed.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @return the number of errors
+	 */
+	public long getErrors(BookStoreMessageTag messageTag) {
+		return tagStatistics[messageTag.ordinal()].errors.sum();
+	}
+
+	/**
+	 * Gets the rate of the requests of a message tag over the last complete
+	 * seconds.
+	 *
+	 * @param messageTag
+	 *            the message tag
+	 * @param windowSeconds
+	 *            the number of seconds of the window, at most
+	 *            {@link #MAX_RATE_WINDOW}
+	 * @return the requests per second
+	 */
+	public double getRatePerSecond(BookStoreMessageTag messageTag, int windowSeconds) {
+		return tagStatistics[messageTag.ordinal()].rate(currentSecond(),
+				Math.max(1, Math.min(windowSeconds, MAX_RATE_WINDOW)));
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			ObjectName name = new ObjectName(
+					LockMetrics.JMX_DOMAIN + ":type=RequestMetrics,name=" + ObjectName.quote(serverName));
+
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (JMException ex) {
+			System.err.println(ex.getMessage());
+			return false;
+		}
+
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#setEnabled(boolean)
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#getTotalRequests()
+	 */
+	@Override
+	public long getTotalRequests() {
+		long total = 0;
+
+		for (TagStatistics statistics : tagStatistics) {
+			total += statistics.requests.sum();
+		}
+
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#getTotalErrors()
+	 */
+	@Override
+	public long getTotalErrors() {
+		long total = 0;
+
+		for (TagStatistics statistics : tagStatistics) {
+			total += statistics.errors.sum();
+		}
+
+		return total;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.utils.RequestMetricsMBean#getLatencyMicros(java.
+	 * lang.String, double)
+	 */
+	@Override
+	public double getLatencyMicros(String messageTag, double percentile) {
+		return getLatency(BookStoreMessageTag.valueOf(messageTag.toUpperCase(Locale.ROOT)))
+				.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * com.acertainbookstore.utils.RequestMetricsMBean#getRatePerSecond(java.
+	 * lang.String, int)
+	 */
+	@Override
+	public double getRatePerSecond(String messageTag, int windowSeconds) {
+		return getRatePerSecond(BookStoreMessageTag.valueOf(messageTag.toUpperCase(Locale.ROOT)), windowSeconds);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#getReport()
+	 */
+	@Override
+	public String getReport() {
+		StringBuilder report = new StringBuilder();
+		report.append("# Request metrics of ").append(serverName).append(" (enabled=").append(enabled)
+				.append(", times in us, rates per s)\n");
+		long second = currentSecond();
+
+		for (BookStoreMessageTag messageTag : BookStoreMessageTag.values()) {
+			TagStatistics statistics = tagStatistics[messageTag.ordinal()];
+
+			if (statistics.requests.sum() == 0) {
+				continue;
+			}
+
+			report.append(messageTag).append(" requests=").append(statistics.requests.sum()).append(" errors=")
+					.append(statistics.errors.sum());
+
+			for (int window : REPORTED_RATE_WINDOWS) {
+				report.append(String.format(" rate%ds=%.1f", window, statistics.rate(second, window)));
+			}
+
+			report.append('\n').append(messageTag).append(" total ")
+					.append(statistics.latency.toSummaryString(NANOS_PER_MICRO)).append('\n');
+
+			for (Phase phase : PHASES) {
+				ConcurrentHistogram histogram = statistics.phases[phase.ordinal()];
+
+				if (histogram.getCount() != 0) {
+					report.append(messageTag).append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append(' ')
+							.append(histogram.toSummaryString(NANOS_PER_MICRO)).append('\n');
+				}
+			}
+		}
+
+		return report.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see com.acertainbookstore.utils.RequestMetricsMBean#reset()
+	 */
+	@Override
+	public void reset() {
+		for (TagStatistics statistics : tagStatistics) {
+			statistics.reset();
+		}
+	}
+
+	/**
+	 * Gets the current second of the monotonic clock.
+	 *
+	 * @return the second
+	 */
+	private static long currentSecond() {
+		return toSecond(System.nanoTime());
+	}
+
+	/**
+	 * Gets the second of a time of the monotonic clock, which may be
+	 * negative, rounding down so that every second is as long.
+	 *
+	 * @param nanos
+	 *            the time in nanoseconds
+	 * @return the second
+	 */
+	private static long toSecond(long nanos) {
+		return Math.floorDiv(nanos, TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Gets the slot of the ring counting a second, which may be negative.
+	 *
+	 * @param second
+	 *            the second
+	 * @return the slot
+	 */
+	private static int toSlot(long second) {
+		return Math.floorMod(second, RATE_SLOTS);
+	}
+
+	/**
+	 * {@link Timing} adds up the time a request spends in each phase. It is
+	 * used by one thread at a time.
+	 */
+	public static final class Timing {
+
+		/** The message tag of the request. */
+		private final BookStoreMessageTag messageTag;
+
+		/** The statistics the request is recorded in, null if disabled. */
+		private final TagStatistics statistics;
+
+		/** The time the request started. */
+		private final long startedAt;
+
+		/** The time spent in each phase. */
+		private final long[] phaseNanos = new long[PHASES.length];
+
+		/** The bits of the phases timed. */
+		private int timedPhases = 0;
+
+		/** The time the current phase started. */
+		private long phaseStartedAt;
+
+		/** The time spent blocked on the timed streams. */
+		private long streamNanos = 0;
+
+		/** The time spent blocked on the timed streams when the current phase started. */
+		private long streamNanosAtPhaseStart;
+
+		/** Whether the request failed. */
+		private boolean failed = false;
+
+		/** The flight recorder event of the current phase, null if none. */
+		private RequestPhaseEvent phaseEvent = null;
+
+		/**
+		 * Instantiates a new {@link Timing}.
+		 *
+		 * @param messageTag
+		 *            the message tag of the request
+		 * @param statistics
+		 *            the statistics the request is recorded in, null if
+		 *            disabled
+		 */
+		private Timing(BookStoreMessageTag messageTag, TagStatistics statistics) {
+			this.messageTag = messageTag;
+			this.statistics = statistics;
+			this.startedAt = statistics == null ? 0 : System.nanoTime();
+		}
+
+		/**
+		 * Starts a phase.
+		 */
+		public void beginPhase() {
+			if (statistics != null) {
+				phaseStartedAt = System.nanoTime();
+				streamNanosAtPhaseStart = streamNanos;
+
+				if (BookStoreFlightRecorder.isRecording()) {
+					phaseEvent = new RequestPhaseEvent();
+					phaseEvent.begin();
+				}
+			}
+		}
+
+		/**
+		 * Ends the phase started last, less the time it spent blocked on the
+		 * timed streams.
+		 *
+		 * @param phase
+		 *            the phase
+		 */
+		public void endPhase(Phase phase) {
+			if (statistics != null) {
+				long blockedNanos = streamNanos - streamNanosAtPhaseStart;
+				add(phase, System.nanoTime() - phaseStartedAt - blockedNanos);
+
+				if (phaseEvent != null) {
+					commitPhaseEvent(phase, blockedNanos);
+				}
+			}
+		}
+
+		/**
+		 * Commits the flight recorder event of the phase ended.
+		 *
+		 * @param phase
+		 *            the phase
+		 * @param blockedNanos
+		 *            the time the phase spent blocked on the timed streams
+		 */
+		private void commitPhaseEvent(Phase phase, long blockedNanos) {
+			phaseEvent.end();
+
+			if (phaseEvent.shouldCommit()) {
+				phaseEvent.messageTag = messageTag.name();
+				phaseEvent.phase = phase.name();
+				phaseEvent.blockedOnStreams = blockedNanos;
+				phaseEvent.commit();
+			}
+
+			phaseEvent = null;
+		}
+
+		/**
+		 * Adds time to a phase.
+		 *
+		 * @param phase
+		 *            the phase
+		 * @param nanos
+		 *            the time in nanoseconds
+		 */
+		private void add(Phase phase, long nanos) {
+			phaseNanos[phase.ordinal()] += nanos;
+			timedPhases |= 1 << phase.ordinal();
+		}
+
+		/**
+		 * Marks the request as failed.
+		 */
+		public void setFailed() {
+			failed = true;
+		}
+
+		/**
+		 * Wraps a stream so that the time blocked reading it goes to the read
+		 * phase.
+		 *
+		 * @param in
+		 *            the stream, may be null
+		 * @return the timed stream
+		 */
+		public InputStream timeReads(InputStream in) {
+			return statistics == null || in == null ? in : new TimedInputStream(in, this);
+		}
+
+		/**
+		 * Wraps a stream so that the time blocked writing it goes to the
+		 * write phase.
+		 *
+		 * @param out
+		 *            the stream
+		 * @return the timed stream
+		 */
+		public OutputStream timeWrites(OutputStream out) {
+			return statistics == null ? out : new TimedOutputStream(out, this);
+		}
+
+		/**
+		 * Credits a phase with the time spent blocked on a stream since a
+		 * start time.
+		 *
+		 * @param phase
+		 *            the phase
+		 * @param blockedAt
+		 *            the time the stream call started
+		 */
+		private void blocked(Phase phase, long blockedAt) {
+			long nanos = System.nanoTime() - blockedAt;
+			add(phase, nanos);
+			streamNanos += nanos;
+		}
+	}
+
+	/**
+	 * {@link TimedInputStream} credits the read phase with the time blocked
+	 * reading.
+	 */
+	private static final class TimedInputStream extends FilterInputStream {
+
+		/** The timing. */
+		private final Timing timing;
+
+		/**
+		 * Instantiates a new {@link TimedInputStream}.
+		 *
+		 * @param in
+		 *            the stream
+		 * @param timing
+		 *            the timing
+		 */
+		private TimedInputStream(InputStream in, Timing timing) {
+			super(in);
+			this.timing = timing;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#read()
+		 */
+		@Override
+		public int read() throws IOException {
+			long blockedAt = System.nanoTime();
+
+			try {
+				return in.read();
+			} finally {
+				timing.blocked(Phase.READ, blockedAt);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterInputStream#read(byte[], int, int)
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long blockedAt = System.nanoTime();
+
+			try {
+				return in.read(b, off, len);
+			} finally {
+				timing.blocked(Phase.READ, blockedAt);
+			}
+		}
+	}
+
+	/**
+	 * {@link TimedOutputStream} credits the write phase with the time blocked
+	 * writing.
+	 */
+	private static final class TimedOutputStream extends FilterOutputStream {
+
+		/** The timing. */
+		private final Timing timing;
+
+		/**
+		 * Instantiates a new {@link TimedOutputStream}.
+		 *
+		 * @param out
+		 *            the stream
+		 * @param timing
+		 *            the timing
+		 */
+		private TimedOutputStream(OutputStream out, Timing timing) {
+			super(out);
+			this.timing = timing;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterOutputStream#write(int)
+		 */
+		@Override
+		public void write(int b) throws IOException {
+			long blockedAt = System.nanoTime();
+
+			try {
+				out.write(b);
+			} finally {
+				timing.blocked(Phase.WRITE, blockedAt);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterOutputStream#write(byte[], int, int)
+		 */
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			long blockedAt = System.nanoTime();
+
+			try {
+				out.write(b, off, len);
+			} finally {
+				timing.blocked(Phase.WRITE, blockedAt);
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.io.FilterOutputStream#flush()
+		 */
+		@Override
+		public void flush() throws IOException {
+			long blockedAt = System.nanoTime();
+
+			try {
+				out.flush();
+			} finally {
+				timing.blocked(Phase.WRITE, blockedAt);
+			}
+		}
+	}
+
+	/**
+	 * {@link TagStatistics} groups the counters and histograms kept for a
+	 * message tag.
+	 */
+	private static final class TagStatistics {
+
+		/** The number of requests. */
+		private final LongAdder requests = new LongAdder();
+
+		/** The number of failed requests. */
+		private final LongAdder errors = new LongAdder();
+
+		/** The latency of the requests. */
+		private final ConcurrentHistogram latency = new ConcurrentHistogram();
+
+		/** The time of each phase, indexed by the phase ordinal. */
+		private final ConcurrentHistogram[] phases = new ConcurrentHistogram[PHASES.length];
+
+		/** The number of requests finished in each second, in a ring. */
+		private final AtomicLongArray secondCounts = new AtomicLongArray(RATE_SLOTS);
+
+		/** The second counted by each slot of the ring. */
+		private final AtomicLongArray secondStamps = new AtomicLongArray(RATE_SLOTS);
+
+		/**
+		 * Instantiates a new {@link TagStatistics}.
+		 */
+		private TagStatistics() {
+			for (int i = 0; i < phases.length; i++) {
+				phases[i] = new ConcurrentHistogram();
+			}
+
+			for (int i = 0; i < RATE_SLOTS; i++) {
+				secondStamps.set(i, NO_SECOND);
+			}
+		}
+
+		/**
+		 * Records a finished request.
+		 *
+		 * @param timing
+		 *            the timing of the request
+		 * @param finishedAt
+		 *            the time the request finished
+		 */
+		private void record(Timing timing, long finishedAt) {
+			requests.increment();
+
+			if (timing.failed) {
+				errors.increment();
+			}
+
+			latency.record(finishedAt - timing.startedAt);
+
+			for (int i = 0; i < PHASES.length; i++) {
+				if ((timing.timedPhases & (1 << i)) != 0) {
+					phases[i].record(timing.phaseNanos[i]);
+				}
+			}
+
+			long second = toSecond(finishedAt);
+			int slot = toSlot(second);
+			long stamp = secondStamps.get(slot);
+
+			// The first request of a second recycles its slot; a request
+			// counted concurrently with the recycling may be lost.
+			if (stamp != second && secondStamps.compareAndSet(slot, stamp, second)) {
+				secondCounts.set(slot, 0);
+			}
+
+			secondCounts.incrementAndGet(slot);
+		}
+
+		/**
+		 * Gets the rate of the requests over the complete seconds of a
+		 * window.
+		 *
+		 * @param currentSecond
+		 *            the current second, which is not complete
+		 * @param windowSeconds
+		 *            the number of seconds of the window
+		 * @return the requests per second
+		 */
+		private double rate(long currentSecond, int windowSeconds) {
+			long total = 0;
+
+			for (long second = currentSecond - windowSeconds; second < currentSecond; second++) {
+				int slot = toSlot(second);
+
+				if (secondStamps.get(slot) == second) {
+					total += secondCounts.get(slot);
+				}
+			}
+
+			return (double) total / windowSeconds;
+		}
+
+		/**
+		 * Resets the counters and histograms.
+		 */
+		private void reset() {
+			requests.reset();
+			errors.reset();
+			latency.reset();
+
+			for (ConcurrentHistogram phase : phases) {
+				phase.reset();
+			}
+
+			for (int i = 0; i < RATE_SLOTS; i++) {
+				secondStamps.set(i, NO_SECOND);
+			}
+		}
+	}
+}
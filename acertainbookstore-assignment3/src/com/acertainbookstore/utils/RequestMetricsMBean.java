@@ -0,0 +1,73 @@
+package com.acertainbookstore.utils;
+
+/**
+ * {@link RequestMetricsMBean} declares the JMX management interface of the
+ * {@link RequestMetrics} collected by a server.
+ *
+ * @see RequestMetrics
+ */
+public interface RequestMetricsMBean {
+
+	/**
+	 * Checks if the request instrumentation is enabled.
+	 *
+	 * @return true, if enabled
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Enables or disables the request instrumentation.
+	 *
+	 * @param enabled
+	 *            the new enabled flag
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Gets the total number of requests handled.
+	 *
+	 * @return the total requests
+	 */
+	public long getTotalRequests();
+
+	/**
+	 * Gets the total number of requests which failed.
+	 *
+	 * @return the total errors
+	 */
+	public long getTotalErrors();
+
+	/**
+	 * Gets a latency percentile of the requests of a message tag.
+	 *
+	 * @param messageTag
+	 *            the name of the message tag
+	 * @param percentile
+	 *            the percentile in the range [0, 100]
+	 * @return the latency in microseconds
+	 */
+	public double getLatencyMicros(String messageTag, double percentile);
+
+	/**
+	 * Gets the rate of the requests of a message tag over the last seconds.
+	 *
+	 * @param messageTag
+	 *            the name of the message tag
+	 * @param windowSeconds
+	 *            the number of seconds of the window
+	 * @return the requests per second
+	 */
+	public double getRatePerSecond(String messageTag, int windowSeconds);
+
+	/**
+	 * Gets the human readable report of all the collected histograms.
+	 *
+	 * @return the report
+	 */
+	public String getReport();
+
+	/**
+	 * Resets all the collected histograms and counters.
+	 */
+	public void reset();
+}
@@ -0,0 +1,38 @@
+package com.acertainbookstore.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link RequestPhaseEvent} is the flight recorder event of a phase of a
+ * request handled by the server, emitted by the {@link RequestMetrics} timing
+ * of the request.
+ *
+ * @see BookStoreFlightRecorder
+ */
+@Name("com.acertainbookstore.RequestPhase")
+@Label("Request Phase")
+@Category("Bookstore")
+@Description("A phase of a request handled by the server")
+@StackTrace(false)
+final class RequestPhaseEvent extends Event {
+
+	/** The message tag of the request. */
+	@Label("Message Tag")
+	String messageTag;
+
+	/** The phase. */
+	@Label("Phase")
+	String phase;
+
+	/** The time the phase spent blocked on the request or response stream. */
+	@Label("Blocked on Streams")
+	@Description("The part of the phase blocked reading the request or writing the response")
+	@Timespan(Timespan.NANOSECONDS)
+	long blockedOnStreams;
+}
@@ -0,0 +1,39 @@
+package com.acertainbookstore.utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * {@link StoreOperationEvent} is the flight recorder event of an operation
+ * invoked on the store, lock waits included.
+ *
+ * @see BookStoreFlightRecorder
+ */
+@Name("com.acertainbookstore.StoreOperation")
+@Label("Store Operation")
+@Category("Bookstore")
+@Description("An operation invoked on the store")
+@StackTrace(false)
+public final class StoreOperationEvent extends Event {
+
+	/** The outcome of the operations which succeeded. */
+	public static final String OK = "OK";
+
+	/** The operation. */
+	@Label("Operation")
+	public String operation;
+
+	/** The number of ISBNs the operation names. */
+	@Label("ISBN Count")
+	@Description("The number of books or operations of the input, or the number of books requested")
+	public int isbnCount;
+
+	/** The outcome. */
+	@Label("Outcome")
+	@Description("OK, or the message of the exception the operation failed with")
+	public String outcome;
+}